@@ -0,0 +1,245 @@
+package Chess.Archive;
+
+import Chess.Game.ChessGame;
+import Chess.Game.CustomChessGame;
+import Chess.Game.Game;
+import Chess.Move;
+import Chess.Notation.Fen;
+import Chess.Notation.PgnGame;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * One game in binary form. Each move is stored as its index in the game's legal move codes (see
+ * Game.getLegalMoveCodes), which only depend on the position, so a game is a few bits per ply. The header holds the
+ * variant, the result, the ply count and, for games that did not start from the usual setup, the starting FEN.
+ * <p>
+ * Layout: a flag byte, the ply count as a varint, the FEN as a varint length and ASCII bytes if the set up flag is on,
+ * then the move data as a varint length and its bytes.
+ */
+public final class GameRecord
+{
+    private static final int CUSTOM_FLAG = 0x01;
+    private static final int RANGED_FLAG = 0x02;
+    private static final int SET_UP_FLAG = 0x04;
+    private static final int RESULT_SHIFT = 4;
+    private static final String[] RESULTS = {"*", "1-0", "0-1", "1/2-1/2"};
+
+    private final boolean custom;
+    private final boolean ranged;
+    private final String result;
+    private final int plyCount;
+    private final String startFen;
+    private final byte[] moveData;
+
+    private GameRecord(boolean custom, boolean ranged, String result, int plyCount, String startFen, byte[] moveData)
+    {
+        this.custom = custom;
+        this.ranged = ranged;
+        this.result = result;
+        this.plyCount = plyCount;
+        this.startFen = startFen;
+        this.moveData = moveData;
+    }
+
+    /**
+     * Encodes the moves made so far in a game. Range coding spends log2 of the legal move count on each move instead of
+     * rounding it up to whole bits, at some cost in speed. Each move's index is found by replaying the history on a
+     * copy set up from the game's start position, so the game itself is not moved. It must not be played by other
+     * threads meanwhile.
+     * @param game Game
+     * @param ranged boolean
+     * @return GameRecord
+     */
+    public static GameRecord of(Game game, boolean ranged)
+    {
+        List<Move> history = game.getMoveHistory();
+        String result = PgnGame.resultOf(game.getGameState());
+        boolean custom = game instanceof CustomChessGame;
+        String startFen = startFenOf(game);
+        Game replay = Game.fromSnapshot(game.getStartPosition());
+        IndexEncoder encoder = new IndexEncoder(ranged);
+        for(Move next : history)
+        {
+            int[] legal = replay.getLegalMoveCodes();
+            int code = Move.encode(game.squareIndex(next.from), game.squareIndex(next.dest));
+            encoder.encode(Arrays.binarySearch(legal, code), legal.length);
+            replay.pushMove(code);
+        }
+        return new GameRecord(custom, ranged, result, history.size(), startFen, encoder.finish());
+    }
+
+    /**
+     * Reads a record from the buffer's position, leaving the position after it.
+     * @param buffer ByteBuffer
+     * @return GameRecord
+     * @throws IllegalArgumentException if the record is malformed
+     * @throws java.nio.BufferUnderflowException if the buffer ends inside the record
+     */
+    public static GameRecord read(ByteBuffer buffer)
+    {
+        int flags = buffer.get() & 0xFF;
+        int plyCount = readVarInt(buffer);
+        String startFen = null;
+        if((flags & SET_UP_FLAG) != 0)
+        {
+            byte[] fen = new byte[readVarInt(buffer)];
+            buffer.get(fen);
+            startFen = new String(fen, StandardCharsets.US_ASCII);
+        }
+        byte[] moveData = new byte[readVarInt(buffer)];
+        buffer.get(moveData);
+        return new GameRecord((flags & CUSTOM_FLAG) != 0, (flags & RANGED_FLAG) != 0,
+                RESULTS[(flags >>> RESULT_SHIFT) & 3], plyCount, startFen, moveData);
+    }
+
+    /**
+     * Writes the record at the buffer's position. See size() for the space it needs.
+     * @param buffer ByteBuffer
+     */
+    public void write(ByteBuffer buffer)
+    {
+        int flags = (custom? CUSTOM_FLAG : 0) | (ranged? RANGED_FLAG : 0) | (startFen != null? SET_UP_FLAG : 0)
+                | Arrays.asList(RESULTS).indexOf(result) << RESULT_SHIFT;
+        buffer.put((byte) flags);
+        writeVarInt(buffer, plyCount);
+        if(startFen != null)
+        {
+            writeVarInt(buffer, startFen.length());
+            buffer.put(startFen.getBytes(StandardCharsets.US_ASCII));
+        }
+        writeVarInt(buffer, moveData.length);
+        buffer.put(moveData);
+    }
+
+    /**
+     * Returns the number of bytes write() takes.
+     * @return int
+     */
+    public int size()
+    {
+        int size = 1 + varIntSize(plyCount) + varIntSize(moveData.length) + moveData.length;
+        if(startFen != null) size += varIntSize(startFen.length()) + startFen.length();
+        return size;
+    }
+
+    /**
+     * Sets up the starting position of the game.
+     * @return Game
+     */
+    public Game createStartGame()
+    {
+        return createStartGame(custom, startFen);
+    }
+
+    /**
+     * Sets up a game of either variant, from the usual setup if the FEN is null.
+     */
+    static Game createStartGame(boolean custom, String startFen)
+    {
+        if(custom) return (startFen != null)? new CustomChessGame(startFen) : new CustomChessGame();
+        return (startFen != null)? new ChessGame(startFen) : new ChessGame();
+    }
+
+    /**
+     * Returns the FEN of a game's position at ply 0, or null if that is the usual setup of its variant.
+     */
+    static String startFenOf(Game game)
+    {
+        String fen = Fen.write(game.getStartPosition());
+        String usual = (game instanceof CustomChessGame)? Fen.CUSTOM_START : Fen.STANDARD_START;
+        return fen.equals(Fen.write(Fen.parse(usual)))? null : fen;
+    }
+
+    /**
+     * Returns a stream over the moves of the game, played out on a new game set up at the start.
+     * @return MoveStream
+     */
+    public MoveStream moves()
+    {
+        return new MoveStream(createStartGame(), new IndexDecoder(moveData, ranged), plyCount);
+    }
+
+    /**
+     * Sets up the game and replays every move.
+     * @return Game
+     */
+    public Game replay()
+    {
+        MoveStream moves = moves();
+        while(moves.hasNext()) moves.nextMove();
+        return moves.getGame();
+    }
+
+    /**
+     * Returns true if the game is played on the 10x8 board.
+     * @return boolean
+     */
+    public boolean isCustomVariant()
+    {
+        return custom;
+    }
+
+    /**
+     * Returns the PGN result marker of the game: 1-0, 0-1, 1/2-1/2 or *.
+     * @return String
+     */
+    public String getResult()
+    {
+        return result;
+    }
+
+    /**
+     * Returns the number of plies in the game.
+     * @return int
+     */
+    public int getPlyCount()
+    {
+        return plyCount;
+    }
+
+    /**
+     * Returns the FEN of the starting position, or null if the game started from the usual setup of its variant.
+     * @return String
+     */
+    public String getStartFen()
+    {
+        return startFen;
+    }
+
+    static int readVarInt(ByteBuffer buffer)
+    {
+        int value = 0;
+        for(int shift = 0; shift < 32; shift += 7)
+        {
+            int b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if(b >= 0) return value;
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    static void writeVarInt(ByteBuffer buffer, int value)
+    {
+        while((value & ~0x7F) != 0)
+        {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static int varIntSize(int value)
+    {
+        int size = 1;
+        while((value & ~0x7F) != 0)
+        {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+}
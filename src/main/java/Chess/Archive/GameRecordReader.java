@@ -0,0 +1,167 @@
+package Chess.Archive;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static Chess.Archive.GameRecordWriter.FOOTER_SIZE;
+import static Chess.Archive.GameRecordWriter.MAGIC;
+
+/**
+ * Reads a game archive written by GameRecordWriter, either in order or from any game number by way of the block index.
+ * Records are read through a fixed size buffer with positional reads.
+ */
+public class GameRecordReader implements Closeable
+{
+    private final FileChannel channel;
+    private final long gameCount;
+    private final int blockSize;
+    private final long indexOffset;
+    private final long[] blockOffsets;
+    private ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+    private long bufferStart;                   // File offset of buffer index 0
+    private long nextGame;
+
+    /**
+     * Opens an archive and loads its block index.
+     * @param path Path
+     * @throws IOException if the file is not a complete archive
+     */
+    public GameRecordReader(Path path) throws IOException
+    {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try
+        {
+            long size = channel.size();
+            if(size < 4 + FOOTER_SIZE) throw new IOException("Not a game archive: " + path);
+            ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE);
+            readFully(footer, size - FOOTER_SIZE);
+            footer.flip();
+            gameCount = footer.getLong();
+            blockSize = footer.getInt();
+            indexOffset = footer.getLong();
+            if(footer.getInt() != MAGIC || blockSize < 1 || indexOffset < 4 || indexOffset > size - FOOTER_SIZE)
+                throw new IOException("Not a game archive, or not closed properly: " + path);
+
+            int blocks = (int) ((gameCount + blockSize - 1) / blockSize);
+            if(indexOffset + blocks * 8L != size - FOOTER_SIZE) throw new IOException("Corrupt block index: " + path);
+            ByteBuffer index = ByteBuffer.allocate(blocks * 8);
+            readFully(index, indexOffset);
+            index.flip();
+            blockOffsets = new long[blocks];
+            for(int i = 0; i < blocks; i++) blockOffsets[i] = index.getLong();
+        } catch (IOException | RuntimeException e)
+        {
+            channel.close();
+            throw e;
+        }
+        bufferStart = 4;
+        buffer.limit(0);
+    }
+
+    /**
+     * Returns the number of games in the archive.
+     * @return long
+     */
+    public long getGameCount()
+    {
+        return gameCount;
+    }
+
+    /**
+     * Returns the number of the game next() reads next.
+     * @return long
+     */
+    public long getNextGameNumber()
+    {
+        return nextGame;
+    }
+
+    /**
+     * Positions the reader so that next() returns the given game, counting from 0. Jumps to the start of the game's
+     * block and skips the records before it.
+     * @param gameNumber long
+     * @throws IOException
+     */
+    public void seek(long gameNumber) throws IOException
+    {
+        if(gameNumber < 0 || gameNumber > gameCount)
+            throw new IndexOutOfBoundsException("Game " + gameNumber + " of " + gameCount);
+        int block = (int) (gameNumber / blockSize);
+        nextGame = (long) block * blockSize;
+        bufferStart = (block < blockOffsets.length)? blockOffsets[block] : indexOffset;
+        buffer.limit(0);
+        while(nextGame < gameNumber) next();
+    }
+
+    /**
+     * Reads the next game, or returns null after the last one.
+     * @return GameRecord
+     * @throws IOException
+     */
+    public GameRecord next() throws IOException
+    {
+        if(nextGame >= gameCount) return null;
+        while(true)
+        {
+            int start = buffer.position();
+            try
+            {
+                GameRecord record = GameRecord.read(buffer);
+                nextGame++;
+                return record;
+            } catch (BufferUnderflowException e)
+            {
+                buffer.position(start);
+                refill();
+            }
+        }
+    }
+
+    /**
+     * Closes the file.
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException
+    {
+        channel.close();
+    }
+
+    /**
+     * Moves the unread bytes to the front of the buffer and reads more after them, growing the buffer if a single
+     * record does not fit.
+     */
+    private void refill() throws IOException
+    {
+        bufferStart += buffer.position();
+        buffer.compact();
+        if(!buffer.hasRemaining())
+        {
+            ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+            buffer.flip();
+            larger.put(buffer);
+            buffer = larger;
+        }
+        long readFrom = bufferStart + buffer.position();
+        int limit = (int) Math.min(buffer.limit(), buffer.position() + (indexOffset - readFrom));
+        buffer.limit(limit);
+        int read = (limit > buffer.position())? channel.read(buffer, readFrom) : -1;
+        buffer.flip();
+        if(read <= 0) throw new IOException("Archive ends inside game " + nextGame);
+    }
+
+    private void readFully(ByteBuffer dst, long position) throws IOException
+    {
+        while(dst.hasRemaining())
+        {
+            int read = channel.read(dst, position);
+            if(read < 0) throw new IOException("Unexpected end of archive");
+            position += read;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package Chess.Archive;
+
+import Chess.Game.Game;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Writes a game archive of GameRecords. Records are grouped in blocks of a fixed number of games, and the file offset of
+ * each block is kept in an index written at the end, so a reader can seek to any game by skipping at most one block.
+ * <p>
+ * Layout: a magic number, the records, the block offsets as longs, then a footer of the game count (long), the block
+ * size (int), the offset of the block index (long) and the magic number again.
+ */
+public class GameRecordWriter implements Closeable
+{
+    static final int MAGIC = 0x43475231;        // "CGR1"
+    static final int FOOTER_SIZE = 24;
+    public static final int DEFAULT_BLOCK_SIZE = 256;
+
+    private final FileChannel channel;
+    private final boolean ranged;
+    private final int blockSize;
+    private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+    private long position;                      // File offset of the next byte written
+    private long gameCount;
+    private long[] blockOffsets = new long[16];
+    private boolean closed;
+
+    /**
+     * Creates or truncates an archive that range codes its moves, with the default block size.
+     * @param path Path
+     * @throws IOException
+     */
+    public GameRecordWriter(Path path) throws IOException
+    {
+        this(path, true, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Creates or truncates an archive.
+     * @param path Path
+     * @param ranged boolean true to range code moves, false to bit pack them
+     * @param blockSize int games per index entry
+     * @throws IOException
+     */
+    public GameRecordWriter(Path path, boolean ranged, int blockSize) throws IOException
+    {
+        if(blockSize < 1) throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.ranged = ranged;
+        this.blockSize = blockSize;
+        buffer.putInt(MAGIC);
+        position = 4;
+    }
+
+    /**
+     * Appends the moves made so far in a game. See GameRecord.of.
+     * @param game Game
+     * @throws IOException
+     */
+    public void write(Game game) throws IOException
+    {
+        write(GameRecord.of(game, ranged));
+    }
+
+    /**
+     * Appends a record.
+     * @param record GameRecord
+     * @throws IOException
+     */
+    public void write(GameRecord record) throws IOException
+    {
+        if(gameCount % blockSize == 0)
+        {
+            int block = (int) (gameCount / blockSize);
+            if(block == blockOffsets.length) blockOffsets = Arrays.copyOf(blockOffsets, block * 2);
+            blockOffsets[block] = position;
+        }
+        int size = record.size();
+        if(size > buffer.remaining()) flush();
+        if(size > buffer.capacity())
+        {
+            ByteBuffer large = ByteBuffer.allocate(size);
+            record.write(large);
+            large.flip();
+            writeFully(large);
+        }
+        else record.write(buffer);
+        position += size;
+        gameCount++;
+    }
+
+    /**
+     * Returns the number of games written so far.
+     * @return long
+     */
+    public long getGameCount()
+    {
+        return gameCount;
+    }
+
+    /**
+     * Writes the block index and footer and closes the file.
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException
+    {
+        if(closed) return;
+        closed = true;
+        try
+        {
+            long indexOffset = position;
+            int blocks = (int) ((gameCount + blockSize - 1) / blockSize);
+            for(int i = 0; i < blocks; i++)
+            {
+                if(buffer.remaining() < 8) flush();
+                buffer.putLong(blockOffsets[i]);
+            }
+            if(buffer.remaining() < FOOTER_SIZE) flush();
+            buffer.putLong(gameCount).putInt(blockSize).putLong(indexOffset).putInt(MAGIC);
+            flush();
+        } finally
+        {
+            channel.close();
+        }
+    }
+
+    private void flush() throws IOException
+    {
+        buffer.flip();
+        writeFully(buffer);
+        buffer.clear();
+    }
+
+    private void writeFully(ByteBuffer src) throws IOException
+    {
+        while(src.hasRemaining()) channel.write(src);
+    }
+}
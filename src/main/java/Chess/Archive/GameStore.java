@@ -0,0 +1,806 @@
+package Chess.Archive;
+
+import Chess.Game.CustomChessGame;
+import Chess.Game.Game;
+import Chess.Move;
+import Chess.Pieces.Piece.PieceColor;
+import Chess.Position;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Durable store for games in progress. Every new game, move, undo and redo is appended to a write-ahead log and synced
+ * to disk before the call returns. Calls from several threads that arrive while a sync is running are written and
+ * synced together by the next one, so the cost of a sync is shared by everyone waiting on it.
+ * <p>
+ * The store mirrors each open game as its start position, its move codes and its current ply. A snapshot of the
+ * mirrors is written every snapshotInterval records, after which the logs it covers are deleted, so opening the store
+ * only reads the snapshot and a short log tail. The snapshot also holds the position of each game at its current ply,
+ * so a game is rebuilt from that position and only the moves logged after the snapshot are played, not the whole
+ * game. The resumed game's undo history starts at the snapshot.
+ * <p>
+ * The async variants of the record methods return as soon as the record is queued and complete once it is durable.
+ * Records queued while a sync runs share the next one, so a caller that cannot wait on the disk, such as a GUI, still
+ * gets group commit.
+ * <p>
+ * Files in the store directory: "snapshot" and log segments "log.N". A snapshot of generation N holds the state before
+ * log.N. Log records are framed as a length (int), the payload and its CRC32 (int), so a record torn by a crash is
+ * detected and dropped.
+ */
+public class GameStore implements Closeable
+{
+    public static final int DEFAULT_SNAPSHOT_INTERVAL = 10000;
+
+    private static final int SNAPSHOT_MAGIC = 0x43475332;      // "CGS2"
+    private static final String SNAPSHOT = "snapshot";
+    private static final String LOG_PREFIX = "log.";
+
+    private static final byte CREATE = 1, MOVE = 2, UNDO = 3, REDO = 4, FINISH = 5;
+
+    private final Path dir;
+    private final int snapshotInterval;
+    private final Object lock = new Object();
+    private final Object checkpointLock = new Object();
+    private final ExecutorService syncer = Executors.newSingleThreadExecutor(task ->
+    {
+        Thread thread = new Thread(task, "GameStore-sync");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Guarded by lock
+    private final Map<Long, Entry> games = new TreeMap<>();
+    private long nextId = 1;
+    private FileChannel log;
+    private long generation;
+    private ByteBuffer pending = ByteBuffer.allocate(1 << 12);
+    private ByteBuffer spare = ByteBuffer.allocate(1 << 12);
+    private long appendedSeq;
+    private long durableSeq;
+    private boolean flushing;
+    private IOException failure;
+    private int recordsSinceSnapshot;
+    private boolean closed;
+
+    /**
+     * The mirror of one open game. The base, if known, is the position after the first basePly moves.
+     */
+    private static final class Entry
+    {
+        final boolean custom;
+        final String startFen;
+        int[] moves;
+        int length;
+        int ply;
+        Position base;
+        int basePly;
+        int rewrites;       // Counts moves that replaced history, which can make the base stale
+
+        Entry(boolean custom, String startFen, int[] moves, int length, int ply)
+        {
+            this.custom = custom;
+            this.startFen = startFen;
+            this.moves = moves;
+            this.length = length;
+            this.ply = ply;
+        }
+
+        Entry copy()
+        {
+            Entry copy = new Entry(custom, startFen, Arrays.copyOf(moves, Math.max(8, length)), length, ply);
+            copy.base = base;
+            copy.basePly = basePly;
+            copy.rewrites = rewrites;
+            return copy;
+        }
+
+        /**
+         * Returns the ply a game rebuilt at the given ply starts from: the base ply if the base is known and not past
+         * it, else 0.
+         */
+        int startPly(int ply)
+        {
+            return (base != null && basePly <= ply)? basePly : 0;
+        }
+
+        /**
+         * Sets up a game at the start ply, which is the base ply or 0, and plays the moves up to the end ply without
+         * publishing them.
+         */
+        Game replay(int start, int end)
+        {
+            Game game = (base != null && start == basePly)? Game.fromSnapshot(base)
+                    : GameRecord.createStartGame(custom, startFen);
+            for(int i = start; i < end; i++) game.pushMove(moves[i]);
+            return game;
+        }
+    }
+
+    private GameStore(Path dir, int snapshotInterval)
+    {
+        this.dir = dir;
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    /**
+     * Opens or creates a store with the default snapshot interval.
+     * @param dir Path
+     * @return GameStore
+     * @throws IOException
+     */
+    public static GameStore open(Path dir) throws IOException
+    {
+        return open(dir, DEFAULT_SNAPSHOT_INTERVAL);
+    }
+
+    /**
+     * Opens or creates a store, recovering every game that was open when it was last used.
+     * @param dir Path
+     * @param snapshotInterval int number of log records between snapshots
+     * @return GameStore
+     * @throws IOException if the directory cannot be used or the snapshot is corrupt
+     */
+    public static GameStore open(Path dir, int snapshotInterval) throws IOException
+    {
+        Files.createDirectories(dir);
+        GameStore store = new GameStore(dir, Math.max(1, snapshotInterval));
+        store.recover();
+        return store;
+    }
+
+    /**
+     * Adds a game to the store and returns its id. Moves the game already has are recorded with it.
+     * @param game Game
+     * @return long
+     * @throws IOException
+     */
+    public long create(Game game) throws IOException
+    {
+        int ply = game.getPly();
+        List<Move> history = game.getFullHistory();
+        int length = history.size();
+        String startFen = GameRecord.startFenOf(game);
+        int[] moves = new int[Math.max(8, length)];
+        for(int i = 0; i < length; i++)
+        {
+            Move move = history.get(i);
+            moves[i] = Move.encode(game.squareIndex(move.from), game.squareIndex(move.dest));
+        }
+
+        byte[] fen = (startFen == null)? new byte[0] : startFen.getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer record = ByteBuffer.allocate(12 + fen.length + 8 + 4 * length);
+        record.put(CREATE).putLong(0).put((byte) (game instanceof CustomChessGame? 1 : 0));
+        record.putShort((short) fen.length).put(fen);
+        record.putInt(ply).putInt(length);
+        for(int i = 0; i < length; i++) record.putInt(moves[i]);
+
+        long id;
+        long seq;
+        synchronized(lock)
+        {
+            checkOpen();
+            id = nextId;
+            record.putLong(1, id);
+            seq = append(record);
+            apply(ByteBuffer.wrap(record.array()));
+        }
+        finishAppend(seq);
+        return id;
+    }
+
+    /**
+     * Records a move made in a game.
+     * @param id long
+     * @param moveCode int see Move.encode
+     * @throws IOException
+     */
+    public void recordMove(long id, int moveCode) throws IOException
+    {
+        write(moveRecord(id, moveCode));
+    }
+
+    /**
+     * Records a move taken back in a game.
+     * @param id long
+     * @throws IOException
+     */
+    public void recordUndo(long id) throws IOException
+    {
+        write(gameRecord(UNDO, id));
+    }
+
+    /**
+     * Records a move made again after being taken back.
+     * @param id long
+     * @throws IOException
+     */
+    public void recordRedo(long id) throws IOException
+    {
+        write(gameRecord(REDO, id));
+    }
+
+    /**
+     * Removes a game that has ended or been abandoned. It will not be resumed.
+     * @param id long
+     * @throws IOException
+     */
+    public void finish(long id) throws IOException
+    {
+        write(gameRecord(FINISH, id));
+    }
+
+    /**
+     * Records a move without waiting for it to be durable.
+     * @param id long
+     * @param moveCode int see Move.encode
+     * @return CompletableFuture completed when the move is durable
+     */
+    public CompletableFuture<Void> recordMoveAsync(long id, int moveCode)
+    {
+        return writeAsync(moveRecord(id, moveCode));
+    }
+
+    /**
+     * Records a move taken back without waiting for it to be durable.
+     * @param id long
+     * @return CompletableFuture completed when the undo is durable
+     */
+    public CompletableFuture<Void> recordUndoAsync(long id)
+    {
+        return writeAsync(gameRecord(UNDO, id));
+    }
+
+    /**
+     * Records a move made again without waiting for it to be durable.
+     * @param id long
+     * @return CompletableFuture completed when the redo is durable
+     */
+    public CompletableFuture<Void> recordRedoAsync(long id)
+    {
+        return writeAsync(gameRecord(REDO, id));
+    }
+
+    /**
+     * Removes a game without waiting for the removal to be durable.
+     * @param id long
+     * @return CompletableFuture completed when the removal is durable
+     */
+    public CompletableFuture<Void> finishAsync(long id)
+    {
+        return writeAsync(gameRecord(FINISH, id));
+    }
+
+    /**
+     * Returns the ids of the open games in ascending order, so the newest game is last.
+     * @return List<Long>
+     */
+    public List<Long> getOpenGames()
+    {
+        synchronized(lock)
+        {
+            return new ArrayList<>(games.keySet());
+        }
+    }
+
+    /**
+     * Rebuilds an open game at the ply it was left at. The game is set up at its position in the last snapshot and
+     * only later moves are played, so it can undo those moves but none from before the snapshot, and its ply counts
+     * from there. Moves taken back after the snapshot can still be redone. Returns null if the store has no open game
+     * with the id.
+     * @param id long
+     * @return Game
+     */
+    public Game resume(long id)
+    {
+        Entry entry;
+        synchronized(lock)
+        {
+            Entry live = games.get(id);
+            if(live == null) return null;
+            entry = live.copy();
+        }
+        int start = entry.startPly(entry.ply);
+        Game game = entry.replay(start, entry.length);
+        game.gotoPly(entry.ply - start);
+        return game;
+    }
+
+    /**
+     * Writes a snapshot of every open game and deletes the logs it makes redundant.
+     * @throws IOException
+     */
+    public void checkpoint() throws IOException
+    {
+        synchronized(checkpointLock)
+        {
+            long snapshotGeneration;
+            long snapshotNextId;
+            Map<Long, Entry> copies = new TreeMap<>();
+            synchronized(lock)
+            {
+                checkOpen();
+                while(flushing) waitForFlush();
+                flushPending();
+                for(Map.Entry<Long, Entry> game : games.entrySet())
+                    copies.put(game.getKey(), game.getValue().copy());
+                snapshotNextId = nextId;
+                log.close();
+                snapshotGeneration = generation + 1;
+                openLog(snapshotGeneration);
+                recordsSinceSnapshot = 0;
+            }
+            for(Entry copy : copies.values())
+            {
+                if(copy.base != null && copy.basePly == copy.ply) continue;
+                copy.base = copy.replay(copy.startPly(copy.ply), copy.ply).snapshot();
+                copy.basePly = copy.ply;
+            }
+            writeSnapshot(snapshotGeneration, snapshotNextId, copies);
+            synchronized(lock)
+            {
+                for(Map.Entry<Long, Entry> game : copies.entrySet())
+                {
+                    Entry live = games.get(game.getKey());
+                    Entry copy = game.getValue();
+                    if(live == null || live.rewrites != copy.rewrites) continue;
+                    live.base = copy.base;
+                    live.basePly = copy.basePly;
+                }
+            }
+            for(long gen : listLogs())
+                if(gen < snapshotGeneration) Files.deleteIfExists(dir.resolve(LOG_PREFIX + gen));
+        }
+    }
+
+    /**
+     * Writes a snapshot and closes the log. Games that are still open are resumed the next time the store is opened.
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException
+    {
+        synchronized(lock)
+        {
+            if(closed) return;
+        }
+        checkpoint();
+        synchronized(lock)
+        {
+            closed = true;
+            log.close();
+        }
+        syncer.shutdown();
+    }
+
+    private static ByteBuffer moveRecord(long id, int moveCode)
+    {
+        return ByteBuffer.allocate(13).put(MOVE).putLong(id).putInt(moveCode);
+    }
+
+    private static ByteBuffer gameRecord(byte type, long id)
+    {
+        return ByteBuffer.allocate(9).put(type).putLong(id);
+    }
+
+    /**
+     * Frames a record, appends it and waits until it is durable. Applies it to the mirrors first, so the order of the
+     * mirrors always matches the order of the log.
+     */
+    private void write(ByteBuffer record) throws IOException
+    {
+        long seq;
+        synchronized(lock)
+        {
+            checkOpen();
+            seq = append(record);
+            apply(ByteBuffer.wrap(record.array()));
+        }
+        finishAppend(seq);
+    }
+
+    /**
+     * Frames a record and appends it like write, but leaves waiting for it to the sync thread. Records appended while
+     * that thread syncs go out together in its next batch.
+     */
+    private CompletableFuture<Void> writeAsync(ByteBuffer record)
+    {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        long seq;
+        synchronized(lock)
+        {
+            try
+            {
+                checkOpen();
+            } catch (IOException e)
+            {
+                future.completeExceptionally(e);
+                return future;
+            }
+            seq = append(record);
+            apply(ByteBuffer.wrap(record.array()));
+        }
+        Runnable sync = () ->
+        {
+            try
+            {
+                finishAppend(seq);
+                future.complete(null);
+            } catch (IOException | RuntimeException e)
+            {
+                future.completeExceptionally(e);
+            }
+        };
+        try
+        {
+            syncer.execute(sync);
+        } catch (RejectedExecutionException e)
+        {
+            sync.run();         // Closed since the append
+        }
+        return future;
+    }
+
+    /**
+     * Adds a framed record to the pending batch. Returns its sequence number.
+     */
+    private long append(ByteBuffer record)
+    {
+        int length = record.capacity();
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 0, length);
+        if(pending.remaining() < length + 8)
+        {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + length + 8));
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+        pending.putInt(length).put(record.array(), 0, length).putInt((int) crc.getValue());
+        recordsSinceSnapshot++;
+        return ++appendedSeq;
+    }
+
+    /**
+     * Waits until the record with the sequence number is durable, taking a snapshot if one is due.
+     */
+    private void finishAppend(long seq) throws IOException
+    {
+        awaitDurable(seq);
+        boolean due;
+        synchronized(lock)
+        {
+            due = recordsSinceSnapshot >= snapshotInterval && !closed;
+            if(due) recordsSinceSnapshot = 0;
+        }
+        if(due) checkpoint();
+    }
+
+    /**
+     * Group commit. The first thread to find no sync running takes the whole pending batch, writes and syncs it without
+     * holding the lock, and wakes the others. Threads whose records arrived meanwhile wait for the next batch.
+     */
+    private void awaitDurable(long seq) throws IOException
+    {
+        ByteBuffer batch;
+        long batchSeq;
+        FileChannel channel;
+        synchronized(lock)
+        {
+            while(true)
+            {
+                if(failure != null) throw new IOException("Game store log failed", failure);
+                if(durableSeq >= seq) return;
+                if(!flushing) break;
+                waitForFlush();
+            }
+            flushing = true;
+            batch = pending;
+            pending = spare;
+            spare = null;
+            batchSeq = appendedSeq;
+            channel = log;
+        }
+        try
+        {
+            batch.flip();
+            while(batch.hasRemaining()) channel.write(batch);
+            channel.force(false);
+        } catch (IOException e)
+        {
+            synchronized(lock)
+            {
+                failure = e;
+                flushing = false;
+                lock.notifyAll();
+            }
+            throw e;
+        }
+        synchronized(lock)
+        {
+            batch.clear();
+            spare = batch;
+            durableSeq = batchSeq;
+            flushing = false;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Writes and syncs the pending batch while holding the lock. Only used when no group commit is running.
+     */
+    private void flushPending() throws IOException
+    {
+        pending.flip();
+        while(pending.hasRemaining()) log.write(pending);
+        log.force(false);
+        pending.clear();
+        durableSeq = appendedSeq;
+        lock.notifyAll();
+    }
+
+    private void waitForFlush() throws IOException
+    {
+        try
+        {
+            lock.wait();
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the game store log", e);
+        }
+    }
+
+    private void checkOpen() throws IOException
+    {
+        if(closed) throw new IOException("Game store is closed");
+        if(failure != null) throw new IOException("Game store log failed", failure);
+    }
+
+    /**
+     * Applies a record payload to the mirrors. Records for unknown games are ignored.
+     */
+    private void apply(ByteBuffer record)
+    {
+        byte type = record.get();
+        long id = record.getLong();
+        if(type == CREATE)
+        {
+            boolean custom = record.get() != 0;
+            byte[] fen = new byte[record.getShort()];
+            record.get(fen);
+            int ply = record.getInt();
+            int length = record.getInt();
+            int[] moves = new int[Math.max(8, length)];
+            for(int i = 0; i < length; i++) moves[i] = record.getInt();
+            String startFen = (fen.length == 0)? null : new String(fen, StandardCharsets.US_ASCII);
+            games.put(id, new Entry(custom, startFen, moves, length, ply));
+            nextId = Math.max(nextId, id + 1);
+            return;
+        }
+        Entry entry = games.get(id);
+        if(entry == null) return;
+        switch(type)
+        {
+            case MOVE:
+                if(entry.ply < entry.length) entry.rewrites++;
+                if(entry.ply < entry.basePly) entry.base = null;
+                if(entry.ply == entry.moves.length) entry.moves = Arrays.copyOf(entry.moves, entry.ply * 2);
+                entry.moves[entry.ply++] = record.getInt();
+                entry.length = entry.ply;
+                break;
+            case UNDO:
+                if(entry.ply > 0) entry.ply--;
+                break;
+            case REDO:
+                if(entry.ply < entry.length) entry.ply++;
+                break;
+            case FINISH:
+                games.remove(id);
+                break;
+        }
+    }
+
+    /**
+     * Loads the snapshot, replays the logs written after it and starts a fresh snapshot and log.
+     */
+    private void recover() throws IOException
+    {
+        Path snapshot = dir.resolve(SNAPSHOT);
+        generation = 0;
+        if(Files.exists(snapshot)) generation = readSnapshot(snapshot);
+        long lastGeneration = generation;
+        for(long gen : listLogs())
+        {
+            if(gen < generation) continue;
+            replayLog(dir.resolve(LOG_PREFIX + gen));
+            lastGeneration = gen;
+        }
+        openLog(lastGeneration + 1);
+        synchronized(lock)
+        {
+            recordsSinceSnapshot = 0;
+        }
+        checkpoint();
+    }
+
+    private void replayLog(Path file) throws IOException
+    {
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file))))
+        {
+            while(true)
+            {
+                byte[] payload;
+                try
+                {
+                    int length = in.readInt();
+                    if(length <= 0 || length > (1 << 24)) return;
+                    payload = new byte[length];
+                    in.readFully(payload);
+                    CRC32 crc = new CRC32();
+                    crc.update(payload);
+                    if(in.readInt() != (int) crc.getValue()) return;
+                } catch (EOFException e)
+                {
+                    return;         // The last record was torn by a crash
+                }
+                apply(ByteBuffer.wrap(payload));
+            }
+        }
+    }
+
+    private void openLog(long gen) throws IOException
+    {
+        log = FileChannel.open(dir.resolve(LOG_PREFIX + gen), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        generation = gen;
+    }
+
+    private List<Long> listLogs() throws IOException
+    {
+        List<Long> gens = new ArrayList<>();
+        try(DirectoryStream<Path> files = Files.newDirectoryStream(dir, LOG_PREFIX + "*"))
+        {
+            for(Path file : files)
+            {
+                try
+                {
+                    gens.add(Long.parseLong(file.getFileName().toString().substring(LOG_PREFIX.length())));
+                } catch (NumberFormatException e) {}
+            }
+        }
+        Collections.sort(gens);
+        return gens;
+    }
+
+    /**
+     * Writes a snapshot to a temporary file, syncs it and renames it over the old one, so a crash leaves either the old
+     * snapshot or the new one.
+     */
+    private void writeSnapshot(long gen, long snapshotNextId, Map<Long, Entry> copies) throws IOException
+    {
+        Path temp = dir.resolve(SNAPSHOT + ".tmp");
+        try(FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            CheckedOutputStream checked = new CheckedOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel)), new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(gen);
+            out.writeLong(snapshotNextId);
+            out.writeInt(copies.size());
+            for(Map.Entry<Long, Entry> game : copies.entrySet())
+            {
+                Entry entry = game.getValue();
+                out.writeLong(game.getKey());
+                out.writeBoolean(entry.custom);
+                out.writeUTF(entry.startFen == null? "" : entry.startFen);
+                out.writeInt(entry.ply);
+                out.writeInt(entry.length);
+                for(int i = 0; i < entry.length; i++) out.writeInt(entry.moves[i]);
+                writePosition(out, entry.base);
+            }
+            out.flush();
+            long crc = checked.getChecksum().getValue();
+            out.writeInt((int) crc);
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temp, dir.resolve(SNAPSHOT), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Loads a snapshot into the mirrors and returns its generation.
+     */
+    private long readSnapshot(Path file) throws IOException
+    {
+        try(InputStream raw = new BufferedInputStream(Files.newInputStream(file)))
+        {
+            CheckedInputStream checked = new CheckedInputStream(raw, new CRC32());
+            DataInputStream in = new DataInputStream(checked);
+            if(in.readInt() != SNAPSHOT_MAGIC) throw new IOException("Not a game store snapshot: " + file);
+            long gen = in.readLong();
+            long snapshotNextId = in.readLong();
+            int count = in.readInt();
+            Map<Long, Entry> loaded = new TreeMap<>();
+            for(int g = 0; g < count; g++)
+            {
+                long id = in.readLong();
+                boolean custom = in.readBoolean();
+                String fen = in.readUTF();
+                int ply = in.readInt();
+                int length = in.readInt();
+                int[] moves = new int[Math.max(8, length)];
+                for(int i = 0; i < length; i++) moves[i] = in.readInt();
+                Entry entry = new Entry(custom, fen.isEmpty()? null : fen, moves, length, ply);
+                entry.base = readPosition(in);
+                entry.basePly = ply;
+                loaded.put(id, entry);
+            }
+            long crc = checked.getChecksum().getValue();
+            if(new DataInputStream(raw).readInt() != (int) crc) throw new IOException("Corrupt snapshot: " + file);
+            synchronized(lock)
+            {
+                games.putAll(loaded);
+                nextId = snapshotNextId;
+            }
+            return gen;
+        } catch (EOFException e)
+        {
+            throw new IOException("Truncated snapshot: " + file, e);
+        }
+    }
+
+    /**
+     * Writes a game's position at its current ply: the board size, the side to move, one code per square as in
+     * Position.getCode, and the hash.
+     */
+    private static void writePosition(DataOutputStream out, Position position) throws IOException
+    {
+        out.writeByte(position.boardX);
+        out.writeByte(position.boardY);
+        out.writeBoolean(position.turnColor == PieceColor.BLACK);
+        for(int y = 0; y < position.boardY; y++)
+            for(int x = 0; x < position.boardX; x++) out.writeByte(position.getCode(x, y));
+        out.writeLong(position.hash);
+    }
+
+    private static Position readPosition(DataInputStream in) throws IOException
+    {
+        int boardX = in.readUnsignedByte();
+        int boardY = in.readUnsignedByte();
+        PieceColor turnColor = in.readBoolean()? PieceColor.BLACK : PieceColor.WHITE;
+        byte[] cells = new byte[boardX * boardY];
+        in.readFully(cells);
+        return new Position(boardX, boardY, cells, turnColor, in.readLong());
+    }
+}
@@ -0,0 +1,82 @@
+package Chess.Archive;
+
+import static Chess.Archive.IndexEncoder.*;
+
+/**
+ * Reads back the indices written by an IndexEncoder in the same mode. The caller supplies the count of each index, which
+ * it gets by generating the legal moves of the position the index was chosen in. Reading past the end yields zero bits.
+ */
+final class IndexDecoder
+{
+    private final byte[] data;
+    private final boolean ranged;
+    private int pos;
+
+    // Range coder state
+    private long low = 0;
+    private long range = MASK;
+    private long code = 0;
+
+    // Bit packing state
+    private int bitBuffer;
+    private int bitCount;
+
+    /**
+     * @param data byte[] as returned by IndexEncoder.finish()
+     * @param ranged boolean
+     */
+    IndexDecoder(byte[] data, boolean ranged)
+    {
+        this.data = data;
+        this.ranged = ranged;
+        if(ranged)
+            for(int i = 0; i < 4; i++) code = (code << 8) | nextByte();
+    }
+
+    /**
+     * Reads the next index in [0, count).
+     * @param count int
+     * @return int
+     */
+    int decode(int count)
+    {
+        if(count <= 1) return 0;
+        if(!ranged) return Math.min(readBits(bitsFor(count)), count - 1);
+
+        range /= count;
+        long index = Math.min(((code - low) & MASK) / range, count - 1);
+        low += index * range;
+        while(true)
+        {
+            if((low ^ (low + range)) >= TOP)
+            {
+                if(range >= BOTTOM) break;
+                range = -low & (BOTTOM - 1);
+            }
+            code = ((code << 8) | nextByte()) & MASK;
+            low = (low << 8) & MASK;
+            range = (range << 8) & MASK;
+        }
+        return (int) index;
+    }
+
+    private int readBits(int bits)
+    {
+        int value = 0;
+        for(int i = 0; i < bits; i++)
+        {
+            if(bitCount == 0)
+            {
+                bitBuffer = nextByte();
+                bitCount = 8;
+            }
+            value = (value << 1) | ((bitBuffer >>> --bitCount) & 1);
+        }
+        return value;
+    }
+
+    private int nextByte()
+    {
+        return (pos < data.length)? data[pos++] & 0xFF : 0;
+    }
+}
@@ -0,0 +1,112 @@
+package Chess.Archive;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Writes a sequence of move indices, each given with the number of legal moves it was chosen from. Either packs each
+ * index into the fewest whole bits that can hold it, or range codes it over a uniform distribution so that a move costs
+ * log2(count) bits rather than the ceiling of it. In both modes a forced move takes no space at all.
+ */
+final class IndexEncoder
+{
+    static final long TOP = 1L << 24;
+    static final long BOTTOM = 1L << 16;
+    static final long MASK = 0xFFFFFFFFL;
+
+    private final boolean ranged;
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+
+    // Range coder state
+    private long low = 0;
+    private long range = MASK;
+
+    // Bit packing state
+    private int bitBuffer;
+    private int bitCount;
+
+    /**
+     * @param ranged boolean true to range code, false to bit pack
+     */
+    IndexEncoder(boolean ranged)
+    {
+        this.ranged = ranged;
+    }
+
+    /**
+     * Adds an index in [0, count).
+     * @param index int
+     * @param count int
+     */
+    void encode(int index, int count)
+    {
+        if(index < 0 || index >= count) throw new IllegalArgumentException("Index " + index + " not below " + count);
+        if(count == 1) return;
+        if(ranged) encodeRange(index, count);
+        else writeBits(index, bitsFor(count));
+    }
+
+    /**
+     * Flushes any pending state and returns the encoded bytes. The encoder must not be used afterwards.
+     * @return byte[]
+     */
+    byte[] finish()
+    {
+        if(ranged)
+        {
+            for(int i = 0; i < 4; i++)
+            {
+                out.write((int) (low >>> 24));
+                low = (low << 8) & MASK;
+            }
+        }
+        else if(bitCount > 0)
+        {
+            out.write(bitBuffer << (8 - bitCount));
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Returns the number of bits the packed mode uses for an index chosen from count moves.
+     */
+    static int bitsFor(int count)
+    {
+        return (count <= 1)? 0 : 32 - Integer.numberOfLeadingZeros(count - 1);
+    }
+
+    /**
+     * Carryless range coder step: narrow the range to the symbol, then shift out every top byte that can no longer
+     * change. When the range gets too small without its top byte settling, it is cut down to the next byte boundary.
+     */
+    private void encodeRange(int index, int count)
+    {
+        if(count > BOTTOM) throw new IllegalArgumentException("Too many moves to range code: " + count);
+        range /= count;
+        low += index * range;
+        while(true)
+        {
+            if((low ^ (low + range)) >= TOP)
+            {
+                if(range >= BOTTOM) break;
+                range = -low & (BOTTOM - 1);
+            }
+            out.write((int) (low >>> 24));
+            low = (low << 8) & MASK;
+            range = (range << 8) & MASK;
+        }
+    }
+
+    private void writeBits(int value, int bits)
+    {
+        for(int i = bits - 1; i >= 0; i--)
+        {
+            bitBuffer = (bitBuffer << 1) | ((value >>> i) & 1);
+            if(++bitCount == 8)
+            {
+                out.write(bitBuffer);
+                bitBuffer = 0;
+                bitCount = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package Chess.Archive;
+
+import Chess.Game.Game;
+
+/**
+ * Streams the moves of a GameRecord as move codes (see Move.encode). Each move is decoded against the legal moves of
+ * the position it was played from and then played on the stream's game, which can be inspected between moves. Moves
+ * are played without publishing, so the game's view is only brought up to date after the last one.
+ */
+public final class MoveStream
+{
+    private final Game game;
+    private final IndexDecoder decoder;
+    private final int plyCount;
+    private int ply;
+
+    MoveStream(Game game, IndexDecoder decoder, int plyCount)
+    {
+        this.game = game;
+        this.decoder = decoder;
+        this.plyCount = plyCount;
+    }
+
+    /**
+     * Returns true if there are moves left.
+     * @return boolean
+     */
+    public boolean hasNext()
+    {
+        return ply < plyCount;
+    }
+
+    /**
+     * Decodes the next move, plays it and returns its move code.
+     * @return int
+     * @throws IllegalStateException if there are no moves left, or the record has more moves than the game allows
+     */
+    public int nextMove()
+    {
+        if(!hasNext()) throw new IllegalStateException("No moves left");
+        int[] legal = game.getLegalMoveCodes();
+        if(legal.length == 0) throw new IllegalStateException("Game ended at ply " + ply + " of " + plyCount);
+        int code = legal[decoder.decode(legal.length)];
+        if(!game.pushMove(code)) throw new IllegalStateException("Move not played at ply " + ply + " of " + plyCount);
+        if(++ply == plyCount) game.publishView();
+        return code;
+    }
+
+    /**
+     * Returns the game in the position after the moves read so far.
+     * @return Game
+     */
+    public Game getGame()
+    {
+        return game;
+    }
+}
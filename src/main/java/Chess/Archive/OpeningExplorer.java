@@ -0,0 +1,251 @@
+package Chess.Archive;
+
+import Chess.Game.Game;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Move statistics for the opening positions of an archive. Each (position hash, move) pair seen in a game gets one
+ * entry counting the games that played it and how they ended. Since positions are keyed by hash, lines that transpose
+ * into the same position share its entries, which makes the tree of openings a DAG.
+ * <p>
+ * Entries live off-heap in an open addressing table with linear probing inside a direct buffer, ENTRY_SIZE bytes each:
+ * the position hash (long), the move code plus one so that 0 marks a free slot (int), then the game, white win, draw and
+ * black win counts (ints) and a spare int. The table doubles when it gets 70% full. Games can be added at any time,
+ * and a query only probes the table once per legal move, so it does not slow down as the table grows.
+ * <p>
+ * Methods are synchronized so that a GUI can query while another thread appends games.
+ */
+public class OpeningExplorer
+{
+    static final int ENTRY_SIZE = 32;
+    public static final int DEFAULT_MAX_PLY = 40;
+
+    private static final int MOVE = 8, GAMES = 12, WHITE_WINS = 16, DRAWS = 20, BLACK_WINS = 24;
+    private static final int MAX_CAPACITY = 1 << 25;                 // 1GB of entries
+
+    private final int maxPly;
+    private ByteBuffer table;
+    private int capacity;
+    private int size;
+
+    /**
+     * Constructs an empty explorer that records the first DEFAULT_MAX_PLY plies of each game.
+     */
+    public OpeningExplorer()
+    {
+        this(DEFAULT_MAX_PLY, 1 << 16);
+    }
+
+    /**
+     * Constructs an empty explorer.
+     * @param maxPly int number of plies recorded from the start of each game
+     * @param initialCapacity int number of entries to allocate for, rounded up to a power of two
+     */
+    public OpeningExplorer(int maxPly, int initialCapacity)
+    {
+        this.maxPly = maxPly;
+        int cap = 16;
+        while(cap < initialCapacity && cap < MAX_CAPACITY) cap <<= 1;
+        allocate(cap);
+    }
+
+    /**
+     * Statistics of one move from a position.
+     */
+    public static final class MoveStats
+    {
+        public final int moveCode;
+        public final int games;
+        public final int whiteWins;
+        public final int draws;
+        public final int blackWins;
+
+        MoveStats(int moveCode, int games, int whiteWins, int draws, int blackWins)
+        {
+            this.moveCode = moveCode;
+            this.games = games;
+            this.whiteWins = whiteWins;
+            this.draws = draws;
+            this.blackWins = blackWins;
+        }
+
+        /**
+         * Returns the score of the move for white, counting a draw as half a win, over the games that finished.
+         * Returns 0.5 if none did.
+         * @return double
+         */
+        public double getWhiteScore()
+        {
+            int finished = whiteWins + draws + blackWins;
+            return (finished == 0)? 0.5 : (whiteWins + draws * 0.5) / finished;
+        }
+    }
+
+    /**
+     * Adds the opening of a game, up to its current ply.
+     * @param game Game
+     */
+    public void add(Game game)
+    {
+        add(GameRecord.of(game, false));
+    }
+
+    /**
+     * Adds the opening of a recorded game.
+     * @param record GameRecord
+     */
+    public void add(GameRecord record)
+    {
+        String result = record.getResult();
+        int whiteWin = result.equals("1-0")? 1 : 0,
+            draw = result.equals("1/2-1/2")? 1 : 0,
+            blackWin = result.equals("0-1")? 1 : 0;
+
+        // Replay outside the lock, then apply all the counts at once
+        int plies = Math.min(maxPly, record.getPlyCount());
+        long[] hashes = new long[plies];
+        int[] moves = new int[plies];
+        MoveStream stream = record.moves();
+        for(int i = 0; i < plies; i++)
+        {
+            hashes[i] = stream.getGame().getHash();
+            moves[i] = stream.nextMove();
+        }
+        synchronized(this)
+        {
+            for(int i = 0; i < plies; i++)
+            {
+                int slot = findOrInsert(hashes[i], moves[i]);
+                increment(slot, GAMES, 1);
+                increment(slot, WHITE_WINS, whiteWin);
+                increment(slot, DRAWS, draw);
+                increment(slot, BLACK_WINS, blackWin);
+            }
+        }
+    }
+
+    /**
+     * Adds every remaining game of an archive. Returns the number of games added.
+     * @param reader GameRecordReader
+     * @return long
+     * @throws IOException
+     */
+    public long addAll(GameRecordReader reader) throws IOException
+    {
+        long count = 0;
+        for(GameRecord record = reader.next(); record != null; record = reader.next())
+        {
+            add(record);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the statistics of every move played from the current position of a game, most played first.
+     * @param game Game
+     * @return List<MoveStats>
+     */
+    public List<MoveStats> query(Game game)
+    {
+        long hash = game.getHash();
+        int[] legal = game.getLegalMoveCodes();
+        List<MoveStats> stats = new ArrayList<>();
+        synchronized(this)
+        {
+            for(int code : legal)
+            {
+                int slot = find(hash, code);
+                if(slot < 0) continue;
+                int base = slot * ENTRY_SIZE;
+                stats.add(new MoveStats(code, table.getInt(base + GAMES), table.getInt(base + WHITE_WINS),
+                        table.getInt(base + DRAWS), table.getInt(base + BLACK_WINS)));
+            }
+        }
+        stats.sort((a, b) -> Integer.compare(b.games, a.games));
+        return stats;
+    }
+
+    /**
+     * Returns the number of (position, move) entries.
+     * @return int
+     */
+    public synchronized int size()
+    {
+        return size;
+    }
+
+    private int find(long hash, int moveCode)
+    {
+        int mask = capacity - 1;
+        for(int slot = index(hash, moveCode) & mask; ; slot = (slot + 1) & mask)
+        {
+            int base = slot * ENTRY_SIZE;
+            int move = table.getInt(base + MOVE);
+            if(move == 0) return -1;
+            if(move == moveCode + 1 && table.getLong(base) == hash) return slot;
+        }
+    }
+
+    private int findOrInsert(long hash, int moveCode)
+    {
+        int slot = find(hash, moveCode);
+        if(slot >= 0) return slot;
+        if((size + 1) * 10L > capacity * 7L) grow();
+        int mask = capacity - 1;
+        slot = index(hash, moveCode) & mask;
+        while(table.getInt(slot * ENTRY_SIZE + MOVE) != 0) slot = (slot + 1) & mask;
+        table.putLong(slot * ENTRY_SIZE, hash);
+        table.putInt(slot * ENTRY_SIZE + MOVE, moveCode + 1);
+        size++;
+        return slot;
+    }
+
+    private void increment(int slot, int field, int amount)
+    {
+        if(amount == 0) return;
+        int at = slot * ENTRY_SIZE + field;
+        table.putInt(at, table.getInt(at) + amount);
+    }
+
+    /**
+     * Doubles the table and reinserts every entry.
+     */
+    private void grow()
+    {
+        if(capacity >= MAX_CAPACITY) throw new IllegalStateException("Opening explorer is full: " + size + " entries");
+        ByteBuffer old = table;
+        int oldCapacity = capacity;
+        allocate(capacity * 2);
+        int mask = capacity - 1;
+        for(int i = 0; i < oldCapacity; i++)
+        {
+            int base = i * ENTRY_SIZE;
+            int move = old.getInt(base + MOVE);
+            if(move == 0) continue;
+            int slot = index(old.getLong(base), move - 1) & mask;
+            while(table.getInt(slot * ENTRY_SIZE + MOVE) != 0) slot = (slot + 1) & mask;
+            for(int b = 0; b < ENTRY_SIZE; b += 8)
+                table.putLong(slot * ENTRY_SIZE + b, old.getLong(base + b));
+        }
+    }
+
+    private void allocate(int entries)
+    {
+        capacity = entries;
+        table = ByteBuffer.allocateDirect(entries * ENTRY_SIZE);
+    }
+
+    /**
+     * Mixes a position hash with a move code. The position hash is already random, so a multiply and shift suffices.
+     */
+    private static int index(long hash, int moveCode)
+    {
+        long h = (hash ^ moveCode * 0x9E3779B97F4A7C15L) * 0xBF58476D1CE4E5B9L;
+        return (int) (h >>> 32);
+    }
+}
@@ -0,0 +1,205 @@
+package Chess.Archive;
+
+import Chess.Pieces.Piece;
+import Chess.Pieces.Piece.PieceColor;
+import Chess.Position;
+import Chess.Zobrist;
+
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+import static Chess.Pieces.Piece.PieceColor.*;
+import static Chess.Position.*;
+
+/**
+ * Fixed size binary encoding of a position on either board, for position databases. Every position takes SIZE bytes,
+ * so record n of a file sits at n*SIZE and a memory mapped file can be read at random.
+ * <p>
+ * Layout: a 16 bit header holding the board width flag, the side to move and the squares of both Kings, then a bitmap
+ * of the squares holding any other piece, then one 4 bit code per set bit in square order. A code is the white bit
+ * over the piece type, with the unused King type standing for a moved pawn. Moved flags are only kept for pawns, the
+ * only pieces whose moves depend on them, so a decoded position has the same hash and legal moves as the original.
+ * Squares are numbered x + y*boardX as in Position.
+ */
+public final class PackedPosition
+{
+    public static final int SIZE = 32;
+
+    private static final int HEADER_SIZE = 2;
+    private static final int WIDE_FLAG = 0x8000;
+    private static final int BLACK_FLAG = 0x4000;
+    private static final int KING_BITS = 7;
+    private static final int KING_MASK = (1 << KING_BITS) - 1;
+    private static final int MOVED_PAWN = Piece.KING;
+    private static final int CODE_WHITE = 0x8;
+
+    private PackedPosition() {}
+
+    /**
+     * Returns true if a position can be packed: an 8x8 or 10x8 board with one King of each color, and few enough other
+     * pieces that their codes fit after the bitmap. Every position reachable from either starting setup can be packed.
+     * @param position Position
+     * @return boolean
+     */
+    public static boolean canPack(Position position)
+    {
+        if(position.boardY != 8 || (position.boardX != 8 && position.boardX != 10)) return false;
+        int kings = 0, others = 0;
+        for(int y = 0; y < position.boardY; y++)
+            for(int x = 0; x < position.boardX; x++)
+            {
+                int type = position.getPieceType(x, y);
+                if(type == Piece.KING) kings += (position.getPieceColor(x, y) == WHITE)? 1 : 16;
+                else if(type >= 0) others++;
+            }
+        return kings == 17 && others <= maxOthers(position.boardX);
+    }
+
+    /**
+     * Writes a position at the buffer's position and advances it by SIZE.
+     * @param position Position
+     * @param buffer ByteBuffer
+     * @throws IllegalArgumentException if the position cannot be packed, see canPack
+     */
+    public static void write(Position position, ByteBuffer buffer)
+    {
+        if(!canPack(position)) throw new IllegalArgumentException("Position cannot be packed: " + position.boardX
+                + "x" + position.boardY + " board, or wrong number of pieces");
+        int boardX = position.boardX;
+        int squares = boardX * position.boardY;
+        int start = buffer.position();
+        int codeStart = start + HEADER_SIZE + squares / 8;
+        for(int i = start + HEADER_SIZE; i < start + SIZE; i++) buffer.put(i, (byte) 0);
+
+        int header = (boardX == 10? WIDE_FLAG : 0) | (position.turnColor == BLACK? BLACK_FLAG : 0);
+        int nibble = 0;
+        for(int sq = 0; sq < squares; sq++)
+        {
+            int code = position.getCode(sq % boardX, sq / boardX);
+            if((code & OCCUPIED) == 0) continue;
+            int type = code & TYPE_MASK;
+            if(type == Piece.KING)
+            {
+                header |= ((code & WHITE_BIT) != 0)? sq << KING_BITS : sq;
+                continue;
+            }
+            int packed = (type == Piece.PAWN && (code & MOVED_BIT) != 0)? MOVED_PAWN : type;
+            if((code & WHITE_BIT) != 0) packed |= CODE_WHITE;
+
+            int bitmapIndex = start + HEADER_SIZE + sq / 8;
+            buffer.put(bitmapIndex, (byte) (buffer.get(bitmapIndex) | 1 << (sq & 7)));
+            int codeIndex = codeStart + nibble / 2;
+            int shift = (nibble & 1) == 0? 4 : 0;
+            buffer.put(codeIndex, (byte) (buffer.get(codeIndex) | packed << shift));
+            nibble++;
+        }
+        buffer.put(start, (byte) (header >>> 8));
+        buffer.put(start + 1, (byte) header);
+        buffer.position(start + SIZE);
+    }
+
+    /**
+     * Reads a position at the buffer's position and advances it by SIZE.
+     * @param buffer ByteBuffer
+     * @return Position
+     * @throws IllegalArgumentException if the bytes are not a packed position
+     */
+    public static Position read(ByteBuffer buffer)
+    {
+        int start = buffer.position();
+        Position position = read(buffer, start);
+        buffer.position(start + SIZE);
+        return position;
+    }
+
+    /**
+     * Reads the position starting at an absolute offset of the buffer, without moving the buffer's position. Safe to
+     * call from several threads on the same buffer.
+     * @param buffer ByteBuffer
+     * @param offset int
+     * @return Position
+     * @throws IllegalArgumentException if the bytes are not a packed position
+     */
+    public static Position read(ByteBuffer buffer, int offset)
+    {
+        int header = (buffer.get(offset) & 0xFF) << 8 | (buffer.get(offset + 1) & 0xFF);
+        int boardX = ((header & WIDE_FLAG) != 0)? 10 : 8, boardY = 8;
+        int squares = boardX * boardY;
+        PieceColor turnColor = ((header & BLACK_FLAG) != 0)? BLACK : WHITE;
+        int whiteKing = (header >>> KING_BITS) & KING_MASK, blackKing = header & KING_MASK;
+        if(whiteKing >= squares || blackKing >= squares || whiteKing == blackKing)
+            throw new IllegalArgumentException("Not a packed position at offset " + offset);
+
+        byte[] cells = new byte[squares];
+        long hash = Zobrist.widthKey(boardX) ^ Zobrist.sideKey(turnColor);
+        cells[whiteKing] = (byte) (OCCUPIED | WHITE_BIT | Piece.KING);
+        cells[blackKing] = (byte) (OCCUPIED | Piece.KING);
+        hash ^= Zobrist.pieceKey(Piece.KING, WHITE, false, whiteKing % boardX, whiteKing / boardX);
+        hash ^= Zobrist.pieceKey(Piece.KING, BLACK, false, blackKing % boardX, blackKing / boardX);
+
+        int codeStart = offset + HEADER_SIZE + squares / 8;
+        int nibble = 0;
+        for(int b = 0; b < squares / 8; b++)
+        {
+            int bits = buffer.get(offset + HEADER_SIZE + b) & 0xFF;
+            while(bits != 0)
+            {
+                int sq = b * 8 + Integer.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                if(nibble == maxOthers(boardX) || cells[sq] != 0)
+                    throw new IllegalArgumentException("Not a packed position at offset " + offset);
+                int packed = buffer.get(codeStart + nibble / 2) >>> ((nibble & 1) == 0? 4 : 0);
+                nibble++;
+
+                PieceColor color = ((packed & CODE_WHITE) != 0)? WHITE : BLACK;
+                int type = packed & TYPE_MASK;
+                boolean moved = type == MOVED_PAWN;
+                if(moved) type = Piece.PAWN;
+                cells[sq] = (byte) (OCCUPIED | type | (color == WHITE? WHITE_BIT : 0) | (moved? MOVED_BIT : 0));
+                hash ^= Zobrist.pieceKey(type, color, moved, sq % boardX, sq / boardX);
+            }
+        }
+        return new Position(boardX, boardY, cells, turnColor, hash);
+    }
+
+    /**
+     * Writes positions one after another from the buffer's position. Stops early, without writing a partial record,
+     * if the buffer fills up. Returns the number of positions written.
+     * @param positions Iterable<Position>
+     * @param buffer ByteBuffer
+     * @return int
+     */
+    public static int writeAll(Iterable<Position> positions, ByteBuffer buffer)
+    {
+        int count = 0;
+        for(Position position : positions)
+        {
+            if(buffer.remaining() < SIZE) break;
+            write(position, buffer);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Reads every whole record between the buffer's position and its limit, in order. Returns the number read.
+     * @param buffer ByteBuffer
+     * @param consumer Consumer<Position>
+     * @return int
+     */
+    public static int readAll(ByteBuffer buffer, Consumer<Position> consumer)
+    {
+        int count = 0;
+        while(buffer.remaining() >= SIZE)
+        {
+            consumer.accept(read(buffer));
+            count++;
+        }
+        return count;
+    }
+
+    private static int maxOthers(int boardX)
+    {
+        return 2 * (SIZE - HEADER_SIZE - boardX);
+    }
+}
@@ -0,0 +1,167 @@
+package Chess.Archive;
+
+import Chess.Game.Game;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * On-disk index from position hash to the games of an archive that passed through the position. Built by
+ * PositionIndexBuilder. Entries are (hash, game number) pairs sorted by hash and then game number, read through memory
+ * maps. The first hash of every block of BLOCK_ENTRIES entries is kept in memory as a fence, so a lookup binary
+ * searches the fences and then only touches the one or two blocks that can hold the hash.
+ * <p>
+ * Layout: the entries, 12 bytes each (long hash, int game number), then the fences as longs, then a footer of the entry
+ * count (long), the block size (int) and a magic number.
+ * <p>
+ * Lookups are by hash only, so a rare collision can return a game that never reached the position; replay the game
+ * to be certain. Lookups are safe from several threads at once.
+ */
+public class PositionIndex implements Closeable
+{
+    static final int MAGIC = 0x43504931;        // "CPI1"
+    static final int ENTRY_SIZE = 12;
+    static final int BLOCK_ENTRIES = 512;
+    static final int FOOTER_SIZE = 16;
+    private static final int SEGMENT_SHIFT = 26;                // Entries per mapping, to stay under 2GB
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+    private final FileChannel channel;
+    private final long entryCount;
+    private final long[] fences;
+    private final MappedByteBuffer[] segments;
+
+    /**
+     * Opens an index and loads its fences.
+     * @param path Path
+     * @throws IOException if the file is not an index
+     */
+    public PositionIndex(Path path) throws IOException
+    {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try
+        {
+            long size = channel.size();
+            if(size < FOOTER_SIZE) throw new IOException("Not a position index: " + path);
+            ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE);
+            channel.read(footer, size - FOOTER_SIZE);
+            footer.flip();
+            entryCount = footer.getLong();
+            int blockEntries = footer.getInt();
+            int blocks = (int) ((entryCount + BLOCK_ENTRIES - 1) / BLOCK_ENTRIES);
+            if(footer.getInt() != MAGIC || blockEntries != BLOCK_ENTRIES
+                    || entryCount * ENTRY_SIZE + blocks * 8L + FOOTER_SIZE != size)
+                throw new IOException("Not a position index: " + path);
+
+            ByteBuffer fenceBytes = ByteBuffer.allocate(blocks * 8);
+            while(fenceBytes.hasRemaining())
+                if(channel.read(fenceBytes, entryCount * ENTRY_SIZE + fenceBytes.position()) < 0)
+                    throw new IOException("Unexpected end of index: " + path);
+            fenceBytes.flip();
+            fences = new long[blocks];
+            fenceBytes.asLongBuffer().get(fences);
+
+            segments = new MappedByteBuffer[(int) ((entryCount + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+            for(int i = 0; i < segments.length; i++)
+            {
+                long first = (long) i << SEGMENT_SHIFT;
+                long count = Math.min(entryCount - first, 1L << SEGMENT_SHIFT);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, first * ENTRY_SIZE, count * ENTRY_SIZE);
+            }
+        } catch (IOException | RuntimeException e)
+        {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of (position, game) entries.
+     * @return long
+     */
+    public long getEntryCount()
+    {
+        return entryCount;
+    }
+
+    /**
+     * Returns the numbers of the games that reached the current position of a game, in ascending order.
+     * @param game Game
+     * @return int[]
+     */
+    public int[] find(Game game)
+    {
+        return find(game.getHash());
+    }
+
+    /**
+     * Returns the numbers of the games that reached a position with the given hash, in ascending order.
+     * @param hash long
+     * @return int[]
+     */
+    public int[] find(long hash)
+    {
+        // Blocks before the first fence >= hash cannot hold it, except the last of them, which may end with it
+        int firstBlock = lowerBound(fences, hash);
+        long lo = (long) Math.max(0, firstBlock - 1) * BLOCK_ENTRIES;
+        int endBlock = firstBlock;
+        while(endBlock < fences.length && fences[endBlock] == hash) endBlock++;
+        long hi = Math.min(entryCount, (long) endBlock * BLOCK_ENTRIES);
+
+        while(lo < hi)
+        {
+            long mid = (lo + hi) >>> 1;
+            if(hashAt(mid) < hash) lo = mid + 1;
+            else hi = mid;
+        }
+        int[] games = new int[8];
+        int count = 0;
+        for(long i = lo; i < entryCount && hashAt(i) == hash; i++)
+        {
+            if(count == games.length) games = Arrays.copyOf(games, count * 2);
+            games[count++] = gameAt(i);
+        }
+        return Arrays.copyOf(games, count);
+    }
+
+    /**
+     * Closes the file. The mappings are released once they are garbage collected.
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException
+    {
+        channel.close();
+    }
+
+    private long hashAt(long entry)
+    {
+        return segments[(int) (entry >>> SEGMENT_SHIFT)].getLong((int) (entry & SEGMENT_MASK) * ENTRY_SIZE);
+    }
+
+    private int gameAt(long entry)
+    {
+        return segments[(int) (entry >>> SEGMENT_SHIFT)].getInt((int) (entry & SEGMENT_MASK) * ENTRY_SIZE + 8);
+    }
+
+    /**
+     * Returns the index of the first value not less than the key.
+     */
+    private static int lowerBound(long[] values, long key)
+    {
+        int lo = 0, hi = values.length;
+        while(lo < hi)
+        {
+            int mid = (lo + hi) >>> 1;
+            if(values[mid] < key) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+}
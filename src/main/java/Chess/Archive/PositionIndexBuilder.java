@@ -0,0 +1,290 @@
+package Chess.Archive;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static Chess.Archive.PositionIndex.*;
+
+/**
+ * Builds a PositionIndex from a game archive. The archive is split into ranges of games that are replayed on separate
+ * threads. Each thread collects the distinct positions of every game, sorts them in runs of bounded size and spills
+ * each run to a temporary file, so memory use does not grow with the archive. The runs are then merged into the index.
+ */
+public final class PositionIndexBuilder
+{
+    private static final int RUN_ENTRIES = 1 << 20;
+    private static final int IO_BUFFER = 1 << 16;
+
+    private PositionIndexBuilder() {}
+
+    /**
+     * Indexes every position of every game of an archive. Returns the number of entries written.
+     * @param archive Path written by GameRecordWriter
+     * @param index Path of the index to create or replace
+     * @param threads int
+     * @return long
+     * @throws IOException
+     */
+    public static long build(Path archive, Path index, int threads) throws IOException
+    {
+        return build(archive, index, threads, RUN_ENTRIES);
+    }
+
+    static long build(Path archive, Path index, int threads, int runEntries) throws IOException
+    {
+        long games;
+        try(GameRecordReader reader = new GameRecordReader(archive))
+        {
+            games = reader.getGameCount();
+        }
+        if(games > Integer.MAX_VALUE) throw new IOException("Too many games to index: " + games);
+        int parts = (int) Math.max(1, Math.min(threads, games));
+
+        Path runDir = Files.createTempDirectory(index.toAbsolutePath().getParent(), "index-runs");
+        List<Path> runs = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService pool = Executors.newFixedThreadPool(parts);
+        try
+        {
+            List<Future<?>> futures = new ArrayList<>();
+            for(int i = 0; i < parts; i++)
+            {
+                long from = games * i / parts, to = games * (i + 1) / parts;
+                futures.add(pool.submit(() ->
+                {
+                    new RunWriter(runDir, runs, runEntries).indexGames(archive, from, to);
+                    return null;
+                }));
+            }
+            for(Future<?> future : futures) future.get();
+            return merge(runs, index);
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while indexing " + archive, e);
+        } catch (ExecutionException e)
+        {
+            if(e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new IOException("Failed to index " + archive, e.getCause());
+        } finally
+        {
+            pool.shutdownNow();
+            for(Path run : runs) Files.deleteIfExists(run);
+            Files.deleteIfExists(runDir);
+        }
+    }
+
+    /**
+     * Merges sorted runs into the index file, recording the first hash of every block as a fence.
+     */
+    private static long merge(List<Path> runs, Path index) throws IOException
+    {
+        PriorityQueue<RunCursor> queue = new PriorityQueue<>();
+        List<DataInputStream> inputs = new ArrayList<>();
+        long[] fences = new long[64];
+        long count = 0;
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(index), IO_BUFFER)))
+        {
+            for(Path run : runs)
+            {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), IO_BUFFER));
+                inputs.add(in);
+                RunCursor cursor = new RunCursor(in);
+                if(cursor.advance()) queue.add(cursor);
+            }
+            while(!queue.isEmpty())
+            {
+                RunCursor cursor = queue.poll();
+                if(count % BLOCK_ENTRIES == 0)
+                {
+                    int block = (int) (count / BLOCK_ENTRIES);
+                    if(block == fences.length) fences = Arrays.copyOf(fences, block * 2);
+                    fences[block] = cursor.hash;
+                }
+                out.writeLong(cursor.hash);
+                out.writeInt(cursor.game);
+                count++;
+                if(cursor.advance()) queue.add(cursor);
+            }
+            int blocks = (int) ((count + BLOCK_ENTRIES - 1) / BLOCK_ENTRIES);
+            for(int i = 0; i < blocks; i++) out.writeLong(fences[i]);
+            out.writeLong(count);
+            out.writeInt(BLOCK_ENTRIES);
+            out.writeInt(MAGIC);
+        } finally
+        {
+            for(DataInputStream in : inputs) in.close();
+        }
+        return count;
+    }
+
+    /**
+     * Replays a range of games and writes their (hash, game) entries as sorted runs.
+     */
+    private static final class RunWriter
+    {
+        private final Path runDir;
+        private final List<Path> runs;
+        private final long[] hashes;
+        private final int[] games;
+        private int size;
+
+        RunWriter(Path runDir, List<Path> runs, int runEntries)
+        {
+            this.runDir = runDir;
+            this.runs = runs;
+            this.hashes = new long[runEntries];
+            this.games = new int[runEntries];
+        }
+
+        void indexGames(Path archive, long from, long to) throws IOException
+        {
+            long[] gameHashes = new long[256];
+            try(GameRecordReader reader = new GameRecordReader(archive))
+            {
+                reader.seek(from);
+                for(long n = from; n < to; n++)
+                {
+                    GameRecord record = reader.next();
+                    int plies = record.getPlyCount();
+                    if(gameHashes.length <= plies) gameHashes = new long[plies + 1];
+                    MoveStream moves = record.moves();
+                    gameHashes[0] = moves.getGame().getHash();
+                    for(int i = 1; i <= plies; i++)
+                    {
+                        moves.nextMove();
+                        gameHashes[i] = moves.getGame().getHash();
+                    }
+
+                    // A position repeated within a game is indexed once
+                    Arrays.sort(gameHashes, 0, plies + 1);
+                    for(int i = 0; i <= plies; i++)
+                        if(i == 0 || gameHashes[i] != gameHashes[i - 1]) add(gameHashes[i], (int) n);
+                }
+            }
+            if(size > 0) spill();
+        }
+
+        private void add(long hash, int game) throws IOException
+        {
+            if(size == hashes.length) spill();
+            hashes[size] = hash;
+            games[size] = game;
+            size++;
+        }
+
+        private void spill() throws IOException
+        {
+            sort(0, size - 1);
+            Path run = Files.createTempFile(runDir, "run", ".bin");
+            runs.add(run);
+            try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), IO_BUFFER)))
+            {
+                for(int i = 0; i < size; i++)
+                {
+                    out.writeLong(hashes[i]);
+                    out.writeInt(games[i]);
+                }
+            }
+            size = 0;
+        }
+
+        /**
+         * Quicksort of the parallel arrays by hash, then game.
+         */
+        private void sort(int lo, int hi)
+        {
+            while(hi - lo > 16)
+            {
+                int mid = (lo + hi) >>> 1;
+                long pivotHash = hashes[mid];
+                int pivotGame = games[mid];
+                int i = lo, j = hi;
+                while(i <= j)
+                {
+                    while(compare(i, pivotHash, pivotGame) < 0) i++;
+                    while(compare(j, pivotHash, pivotGame) > 0) j--;
+                    if(i <= j) swap(i++, j--);
+                }
+                // Recurse into the smaller side to bound the stack depth
+                if(j - lo < hi - i)
+                {
+                    sort(lo, j);
+                    lo = i;
+                }
+                else
+                {
+                    sort(i, hi);
+                    hi = j;
+                }
+            }
+            for(int i = lo + 1; i <= hi; i++)
+                for(int j = i; j > lo && compare(j, hashes[j - 1], games[j - 1]) < 0; j--) swap(j, j - 1);
+        }
+
+        private int compare(int i, long hash, int game)
+        {
+            int c = Long.compare(hashes[i], hash);
+            return (c != 0)? c : Integer.compare(games[i], game);
+        }
+
+        private void swap(int i, int j)
+        {
+            long h = hashes[i];
+            hashes[i] = hashes[j];
+            hashes[j] = h;
+            int g = games[i];
+            games[i] = games[j];
+            games[j] = g;
+        }
+    }
+
+    /**
+     * Current entry of a run being merged.
+     */
+    private static final class RunCursor implements Comparable<RunCursor>
+    {
+        private final DataInputStream in;
+        long hash;
+        int game;
+
+        RunCursor(DataInputStream in)
+        {
+            this.in = in;
+        }
+
+        boolean advance() throws IOException
+        {
+            try
+            {
+                hash = in.readLong();
+            } catch (EOFException e)
+            {
+                return false;
+            }
+            game = in.readInt();
+            return true;
+        }
+
+        @Override
+        public int compareTo(RunCursor other)
+        {
+            int c = Long.compare(hash, other.hash);
+            return (c != 0)? c : Integer.compare(game, other.game);
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package Chess.Game;
 
 import Chess.Pieces.*;
+import Chess.Notation.Fen;
+import Chess.Position;
 
 import java.io.IOException;
 
@@ -21,6 +23,7 @@ public class ChessGame extends Game
         super(8,8);
         setupPieces(WHITE);
         setupPieces(BLACK);
+        publishView();
     }
 
     /**
@@ -37,6 +40,28 @@ public class ChessGame extends Game
         for(String pieceCode : piecePositions)
             addPieceFromStringCode(pieceCode);
         validateState();
+        publishView();
+    }
+
+    /**
+     * Sets up a game from a position in standard 8x8 FEN. See Fen for the format.
+     * @param fen String
+     * @throws IllegalArgumentException if the FEN is invalid or describes a board of a different size
+     */
+    public ChessGame(String fen)
+    {
+        this(Fen.parse(fen));
+    }
+
+    /**
+     * Sets up a game from a snapshot of an 8x8 position. The snapshot's move history is not restored.
+     * @param position Position
+     * @throws IllegalArgumentException if the position is not 8x8 or a side does not have exactly one king
+     */
+    public ChessGame(Position position)
+    {
+        super(8,8);
+        loadPosition(checkSize(position));
     }
 
     /**
@@ -67,17 +92,34 @@ public class ChessGame extends Game
      */
     private void addPieceFromStringCode(String pieceCode)
     {
-        if(pieceCode.matches("[P|R|B|N|Q|K][B|W][0-7][0-7][T|F]"))
+        if(pieceCode == null || pieceCode.length() != 5) return;
+        char type  = pieceCode.charAt(0),
+             color = pieceCode.charAt(1),
+             x     = pieceCode.charAt(2),
+             y     = pieceCode.charAt(3),
+             moved = pieceCode.charAt(4);
+        if("PRBNQK".indexOf(type) >= 0 && (color == 'B' || color == 'W') && x >= '0' && x <= '7' &&
+                y >= '0' && y <= '7' && (moved == 'T' || moved == 'F'))
         {
-            char[] codes = pieceCode.toCharArray();
-            Piece piece = pieceFromCode(codes[0], codes[1]);
-            if(codes[4] == 'F') piece.markMoved();
-            int x = Character.getNumericValue(codes[2]);
-            int y = Character.getNumericValue(codes[3]);
-            addPieceToGame(piece, x,y);
+            Piece piece = pieceFromCode(type, color);
+            if(moved == 'F') piece.markMoved();
+            addPieceToGame(piece, x - '0', y - '0');
         }
     }
 
+    /**
+     * Returns the position if its board matches this game mode.
+     * @param position Position
+     * @return Position
+     * @throws IllegalArgumentException if the board is a different size
+     */
+    private static Position checkSize(Position position)
+    {
+        if(position.boardX != 8 || position.boardY != 8)
+            throw new IllegalArgumentException("Expected a 8x8 position but got " + position.boardX + "x" + position.boardY);
+        return position;
+    }
+
     /**
      * Returns string representation of the game.
      * @return String
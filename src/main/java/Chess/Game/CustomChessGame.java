@@ -2,6 +2,8 @@ package Chess.Game;
 
 import Chess.Board;
 import Chess.Pieces.*;
+import Chess.Notation.Fen;
+import Chess.Position;
 
 import java.io.IOException;
 
@@ -22,6 +24,28 @@ public class CustomChessGame extends Game
         super(10, 8);
         setupPieces(WHITE);
         setupPieces(BLACK);
+        publishView();
+    }
+
+    /**
+     * Sets up a game from a position in extended 10x8 FEN. See Fen for the format.
+     * @param fen String
+     * @throws IllegalArgumentException if the FEN is invalid or describes a board of a different size
+     */
+    public CustomChessGame(String fen)
+    {
+        this(Fen.parse(fen));
+    }
+
+    /**
+     * Sets up a game from a snapshot of a 10x8 position. The snapshot's move history is not restored.
+     * @param position Position
+     * @throws IllegalArgumentException if the position is not 10x8 or a side does not have exactly one king
+     */
+    public CustomChessGame(Position position)
+    {
+        super(10, 8);
+        loadPosition(checkSize(position));
     }
 
     /**
@@ -51,6 +75,19 @@ public class CustomChessGame extends Game
         addPieceToGame(new King(color),     5, backRow);
     }
 
+    /**
+     * Returns the position if its board matches this game mode.
+     * @param position Position
+     * @return Position
+     * @throws IllegalArgumentException if the board is a different size
+     */
+    private static Position checkSize(Position position)
+    {
+        if(position.boardX != 10 || position.boardY != 8)
+            throw new IllegalArgumentException("Expected a 10x8 position but got " + position.boardX + "x" + position.boardY);
+        return position;
+    }
+
     /**
      * Returns string representation of the game.
      * @return String
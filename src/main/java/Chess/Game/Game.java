@@ -3,13 +3,17 @@ package Chess.Game;
 import Chess.Move;
 import Chess.Pieces.*;
 import Chess.Board;
+import Chess.Position;
 import Chess.Square;
+import Chess.Zobrist;
 import Chess.Pieces.Piece.PieceColor;
 
 import static Chess.Pieces.Piece.PieceColor.*;
 import static Chess.Game.Game.GameState.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 
@@ -24,19 +28,31 @@ public abstract class Game
      */
     public enum GameState {PLAYING, WHITE_IN_CHECK, BLACK_IN_CHECK, STALEMATE, WHITE_WINS, BLACK_WINS}
 
+    /**
+     * Number of plies between two position checkpoints in the move history.
+     */
+    public static final int CHECKPOINT_INTERVAL = 16;
+
     public final int boardX;
     public final int boardY;
     protected Board chessboard;
 
-    protected HashSet<Piece> whitePieces = new HashSet<>();
-    protected HashSet<Piece> blackPieces = new HashSet<>();
+    protected PieceList whitePieces = new PieceList();
+    protected PieceList blackPieces = new PieceList();
     protected Piece whiteKing;
     protected Piece blackKing;
 
     protected List<Move> moveList = new ArrayList<>();
+    protected List<Move> redoList = new ArrayList<>();          // Moves taken back, the next one to redo is last
+    protected List<Checkpoint> checkpoints = new ArrayList<>(); // Checkpoint i is the position at ply i*INTERVAL
     protected PieceColor turnColor = WHITE;
     protected GameState state = PLAYING;
     protected boolean gameEnded = false;
+    protected boolean forfeited = false;
+    private volatile GameView view;
+    private boolean holdView = false;                           // Set while gotoPly steps through the history
+    private volatile MoveEvents events;                         // Created on first use, see getMoveEvents
+    protected long placementHash;
 
 
     /**
@@ -49,6 +65,21 @@ public abstract class Game
         boardX = boardXLen;
         boardY = boardYLen;
         chessboard = new Board(boardXLen, boardYLen);
+        placementHash = Zobrist.widthKey(chessboard.xLength);
+    }
+
+    /**
+     * Returns a game set up from a snapshot. The type of game is picked from the dimensions of the snapshot. Returns
+     * null if the snapshot is null or its dimensions do not match any game mode.
+     * @param position Position
+     * @return Game
+     */
+    public static Game fromSnapshot(Position position)
+    {
+        if(position == null) return null;
+        if(position.boardX == 8 && position.boardY == 8)  return new ChessGame(position);
+        if(position.boardX == 10 && position.boardY == 8) return new CustomChessGame(position);
+        return null;
     }
 
     /**
@@ -59,11 +90,78 @@ public abstract class Game
      */
     public void runTurn(Square from, Square dest)
     {
-        if(!gameEnded && makeMove(from, dest))
+        if(playTurn(from, dest)) publishView(MoveEvents.MOVE, moveList.get(moveList.size() - 1));
+    }
+
+    /**
+     * Runs a single loop of the game for a move given as a move code. See Move.encode.
+     * @param moveCode int
+     */
+    public void runTurn(int moveCode)
+    {
+        runTurn(squareAt(Move.fromIndex(moveCode)), squareAt(Move.destIndex(moveCode)));
+    }
+
+    /**
+     * Makes a move like runTurn, but publishes no view or move event. Meant for searches and counts that try moves on
+     * a board and take them back with popMove, which would otherwise pay for a snapshot on every node. Spectators keep
+     * seeing the view from before, so every pushed move should be popped again. Returns false if the move was not
+     * legal.
+     * @param moveCode int
+     * @return boolean
+     */
+    public boolean pushMove(int moveCode)
+    {
+        return playTurn(squareAt(Move.fromIndex(moveCode)), squareAt(Move.destIndex(moveCode)));
+    }
+
+    /**
+     * Takes back a move like undoMove, but publishes no view or move event. See pushMove.
+     * @return Move
+     */
+    public Move popMove()
+    {
+        return takeBack();
+    }
+
+    /**
+     * Makes a legal move and swaps the turn, without publishing. Returns false if the move was not made.
+     * @param from Square
+     * @param dest Square
+     * @return boolean
+     */
+    private boolean playTurn(Square from, Square dest)
+    {
+        if(gameEnded || !makeMove(from, dest)) return false;
+        swapTurnColor();
+        validateState();
+        return true;
+    }
+
+    /**
+     * Returns every legal move of the current color as move codes, in ascending order. The order only depends on the
+     * position, so a move can be identified by its index in this array. Empty if the game has ended.
+     * @return int[]
+     */
+    public int[] getLegalMoveCodes()
+    {
+        if(gameEnded) return new int[0];
+        int[] codes = new int[64];
+        int count = 0;
+        PieceList movers = getPieces(turnColor);
+        for(int i = 0; i < movers.size(); i++)
         {
-            swapTurnColor();
-            validateState();
+            Piece piece = movers.get(i);
+            if(piece == null) continue;
+            int fromIndex = squareIndex(piece.getLocation());
+            for(Square dest : getLegalMoves(piece))
+            {
+                if(count == codes.length) codes = Arrays.copyOf(codes, count * 2);
+                codes[count++] = Move.encode(fromIndex, squareIndex(dest));
+            }
         }
+        Arrays.sort(codes, 0, count);
+        return Arrays.copyOf(codes, count);
     }
 
     /**
@@ -91,14 +189,14 @@ public abstract class Game
         if(potentialMoves == null) return new HashSet<>();
 
         Piece currentColorKing = getCurrentColorKing();
-        HashSet<Piece> opposingPieces = getOpposingPieces();
+        PieceList opposingPieces = getOpposingPieces();
         Square origSqr = piece.getLocation();
         HashSet<Square> legalMoves = new HashSet<>();
 
         for(Square dest : potentialMoves)   // Attempt each potential move, and check that king is not in danger
         {
             Piece cappedPiece = chessboard.getPiece(dest);
-            opposingPieces.remove(cappedPiece);
+            if(cappedPiece != null) opposingPieces.remove(cappedPiece);
             chessboard.removePiece(dest);
             chessboard.movePiece(origSqr, dest);
             if(isKingSafe(chessboard, currentColorKing.getLocation(), opposingPieces))
@@ -109,7 +207,7 @@ public abstract class Game
             if(cappedPiece != null)          // Restore the piece that was captured (if it exists)
             {
                 chessboard.putPiece(cappedPiece, dest);
-                opposingPieces.add(cappedPiece);
+                opposingPieces.restore(cappedPiece);
             }
         }
         return legalMoves;
@@ -124,7 +222,7 @@ public abstract class Game
         if(gameEnded) return;
         state = PLAYING;
         Piece currentColorKing = getCurrentColorKing();
-        HashSet<Piece> opposingPieces = getOpposingPieces();
+        PieceList opposingPieces = getOpposingPieces();
 
         // Check if current color is in check
         if(!isKingSafe(chessboard, currentColorKing.getLocation(), opposingPieces))
@@ -143,13 +241,25 @@ public abstract class Game
     }
 
     /**
-     * Undo the last move made. Will swap the turn color and revalidate the state of the board. Returns the Move object
-     * representing the last move. Returns null if no moves have been made.
+     * Undo the last move made. Will swap the turn color and restore the state and hash recorded before the move, so no
+     * move generation is needed. Returns the Move object representing the last move. Returns null if no moves have been
+     * made, or if the game was forfeited.
      * @return Move
      */
     public Move undoMove()
     {
-        if(moveList.isEmpty()) return null;
+        Move lastMove = takeBack();
+        if(lastMove != null) publishView(MoveEvents.UNDO, lastMove);
+        return lastMove;
+    }
+
+    /**
+     * Takes back the last move without publishing. Returns null if there is none or the game was forfeited.
+     * @return Move
+     */
+    private Move takeBack()
+    {
+        if(moveList.isEmpty() || forfeited) return null;
         // Restore the board to the state before the move
         Move lastMove = moveList.remove(moveList.size() - 1);
         Piece movedPiece = lastMove.movedPiece;
@@ -160,14 +270,125 @@ public abstract class Game
         chessboard.movePiece(dest, from);
         // If the moved piece was previously unmoved, restore that too.
         if(!lastMove.hadMoved) movedPiece.markUnmoved();
-        // Add the captured piece back to the board and to its respectively team
-        addPieceToGame(cappedPiece, dest.x, dest.y);
+        // Add the captured piece back to the board and back into its slot on its team
+        if(cappedPiece != null)
+        {
+            chessboard.putPiece(cappedPiece, dest);
+            getPieces(cappedPiece.getColor()).restore(cappedPiece);
+        }
 
         swapTurnColor();
-        validateState();
+        restoreState(lastMove);
+        redoList.add(lastMove);
         return lastMove;
     }
 
+    /**
+     * Makes the last move taken back by undoMove or gotoPly again. Returns the Move object, or null if there is
+     * nothing to redo or the game was forfeited. Making any new move clears the moves available to redo.
+     * @return Move
+     */
+    public Move redoMove()
+    {
+        if(redoList.isEmpty() || forfeited) return null;
+        Move nextMove = redoList.remove(redoList.size() - 1);
+        applyMove(nextMove);
+        swapTurnColor();
+        if(redoList.isEmpty())
+        {
+            gameEnded = false;
+            validateState();
+        }
+        else state = redoList.get(redoList.size() - 1).priorState;  // Recorded before the following move was made
+        publishView(MoveEvents.REDO, nextMove);
+        return nextMove;
+    }
+
+    /**
+     * Moves the game to the position after the given number of plies in its history, which covers both the moves
+     * made and the moves available to redo. Restores the nearest checkpoint when that is cheaper than stepping there
+     * one move at a time, so at most CHECKPOINT_INTERVAL moves are replayed. Returns false if the ply is out of range
+     * or the game was forfeited.
+     * @param ply int
+     * @return boolean
+     */
+    public boolean gotoPly(int ply)
+    {
+        int current = moveList.size();
+        if(ply < 0 || ply > getHistoryLength() || forfeited) return false;
+        if(ply == current) return true;
+
+        int checkpoint = Math.min(ply / CHECKPOINT_INTERVAL, checkpoints.size() - 1);
+        holdView = true;
+        try
+        {
+            if(checkpoint >= 0 && ply - checkpoint * CHECKPOINT_INTERVAL < Math.abs(ply - current))
+                restoreCheckpoint(checkpoint);
+            while(moveList.size() > ply) undoMove();
+            while(moveList.size() < ply) redoMove();
+        } finally
+        {
+            holdView = false;
+        }
+        publishView(MoveEvents.JUMP, null);
+        return true;
+    }
+
+    /**
+     * Ends the game with a win for the other side of the given color. A forfeit is final: unlike a mate, it cannot be
+     * taken back by undoing moves. Returns false if the game had already ended.
+     * @param color PieceColor of the side giving up
+     * @return boolean
+     */
+    public boolean forfeit(PieceColor color)
+    {
+        if(gameEnded) return false;
+        gameEnded = true;
+        forfeited = true;
+        state = (color == WHITE)? BLACK_WINS : WHITE_WINS;
+        publishView(MoveEvents.FORFEIT, null);
+        return true;
+    }
+
+    /**
+     * Returns true if the game was ended by a forfeit.
+     * @return boolean
+     */
+    public boolean isForfeited()
+    {
+        return forfeited;
+    }
+
+    /**
+     * Returns the number of moves made so far.
+     * @return int
+     */
+    public int getPly()
+    {
+        return moveList.size();
+    }
+
+    /**
+     * Returns the number of plies in the game's history, including moves that were taken back and can be redone.
+     * @return int
+     */
+    public int getHistoryLength()
+    {
+        return moveList.size() + redoList.size();
+    }
+
+    /**
+     * Restores the state and hash recorded in a move. A move can only be made while the game is in progress, so the
+     * game is never over after undoing one.
+     * @param lastMove Move
+     */
+    protected void restoreState(Move lastMove)
+    {
+        state = lastMove.priorState;
+        gameEnded = false;
+        placementHash = lastMove.priorHash ^ Zobrist.sideKey(turnColor);
+    }
+
     /**
      * Check if the current moving color has any legal moves it can make. In the case that there are no moves to make
      * and check has occurred, a checkmate occurs. If check has not occured but there are still no legal moves, it is a
@@ -176,28 +397,168 @@ public abstract class Game
     public boolean currentColorHasMoves()
     {
         if(gameEnded) return false;
-        HashSet<Piece> defenders = (isWhitesTurn())? whitePieces : blackPieces;
-        for(Piece defender : defenders)
+        PieceList defenders = (isWhitesTurn())? whitePieces : blackPieces;
+        for(int i = 0; i < defenders.size(); i++)
         {
-            HashSet<Square> potentialDefense = getLegalMoves(defender);
-            if(!potentialDefense.isEmpty()) return true;
+            Piece defender = defenders.get(i);
+            if(defender != null && !getLegalMoves(defender).isEmpty()) return true;
         }
         return false;
     }
 
     /**
-     * Returns a shallow copy of the piece roster. Behavior of the game is not defined should you choose to modify the
-     * state of the pieces.
+     * Returns a shallow copy of the pieces still on the board. Behavior of the game is not defined should you choose
+     * to modify the state of the pieces.
      * @return HashSet<Piece>
      */
     public HashSet<Piece> getAllPieces()
     {
         HashSet<Piece> allPieces = new HashSet<>();
-        allPieces.addAll(whitePieces);
-        allPieces.addAll(blackPieces);
+        for(Piece piece : whitePieces) allPieces.add(piece);
+        for(Piece piece : blackPieces) allPieces.add(piece);
         return allPieces;
     }
 
+    /**
+     * Returns the piece at the coordinates. Null if no piece exists or invalid coordinates. Behavior of the game is
+     * not defined should you choose to modify the state of the piece.
+     * @param x int
+     * @param y int
+     * @return Piece
+     */
+    public Piece getPiece(int x, int y)
+    {
+        return chessboard.getPiece(x, y);
+    }
+
+    /**
+     * Returns a read-only view of the moves made so far, oldest first.
+     * @return List<Move>
+     */
+    public List<Move> getMoveHistory()
+    {
+        return Collections.unmodifiableList(moveList);
+    }
+
+    /**
+     * Returns the moves made so far followed by the moves available to redo, in the order they were played. Together
+     * with getStartPosition this describes the whole game without moving it.
+     * @return List<Move>
+     */
+    public List<Move> getFullHistory()
+    {
+        List<Move> history = new ArrayList<>(getHistoryLength());
+        history.addAll(moveList);
+        for(int i = redoList.size() - 1; i >= 0; i--) history.add(redoList.get(i));
+        return history;
+    }
+
+    /**
+     * Returns a snapshot of the position at ply 0 of the history, taken from the first checkpoint. The game is not
+     * moved, so readers of its history such as PgnWriter and GameRecord publish nothing to spectators and work on
+     * forfeited games too.
+     * @return Position
+     */
+    public Position getStartPosition()
+    {
+        if(checkpoints.isEmpty()) return snapshot();    // Nothing played yet, so the start is the current position
+        return checkpoints.get(0).toPosition();
+    }
+
+    /**
+     * Returns the index of a square on this game's board, x + y*boardX.
+     * @param sqr Square
+     * @return int
+     */
+    public int squareIndex(Square sqr)
+    {
+        return sqr.x + sqr.y * boardX;
+    }
+
+    /**
+     * Returns the square of an index on this game's board.
+     * @param index int
+     * @return Square
+     */
+    public Square squareAt(int index)
+    {
+        return new Square(index % boardX, index / boardX);
+    }
+
+    /**
+     * Returns an immutable snapshot of the current position. The move history is not included.
+     * @return Position
+     */
+    public Position snapshot()
+    {
+        byte[] cells = new byte[boardX * boardY];
+        for(PieceList pieces : new PieceList[] {whitePieces, blackPieces})
+            for(int i = 0; i < pieces.size(); i++)
+            {
+                Piece piece = pieces.get(i);
+                if(piece == null) continue;
+                Square loc = piece.getLocation();
+                cells[loc.x + loc.y * boardX] = Position.encode(piece);
+            }
+        return new Position(boardX, boardY, cells, turnColor, getHash());
+    }
+
+    /**
+     * Returns the view published after the last change to the game. Safe to call from any thread, even while the game
+     * is being played or searched on another.
+     * @return GameView
+     */
+    public GameView getView()
+    {
+        return view;
+    }
+
+    /**
+     * Returns the ring of events this game appends to on every change, creating it on first use. Games nobody
+     * subscribes to pay nothing for it. Must first be called on the thread playing the game, so no change is missed
+     * between reading the view and creating the ring; the ring itself can then be handed to any thread.
+     * @return MoveEvents
+     */
+    public MoveEvents getMoveEvents()
+    {
+        if(events == null) events = new MoveEvents(MoveEvents.DEFAULT_CAPACITY, view);
+        return events;
+    }
+
+    /**
+     * Publishes a view of the current position. Must be called by every method that changes the position or state,
+     * once the board is back in a consistent state, and by callers of pushMove and popMove once the position they
+     * leave is meant to be seen.
+     */
+    public void publishView()
+    {
+        publishView(MoveEvents.JUMP, null);
+    }
+
+    private void publishView(int kind, Move move)
+    {
+        if(holdView) return;
+        int lastMove = 0;
+        if(!moveList.isEmpty()) lastMove = encode(moveList.get(moveList.size() - 1));
+        view = new GameView(snapshot(), state, moveList.size(), lastMove);
+        MoveEvents ring = events;
+        if(ring != null) ring.publish(kind, (move == null)? 0 : encode(move), view);
+    }
+
+    private int encode(Move move)
+    {
+        return Move.encode(squareIndex(move.from), squareIndex(move.dest));
+    }
+
+    /**
+     * Returns the Zobrist hash of the current position.
+     * @return long
+     */
+    public long getHash()
+    {
+        return placementHash ^ Zobrist.sideKey(turnColor);
+    }
+
     /**
      * Returns an enum representing the current state of the game.
      * @return GameState
@@ -262,13 +623,23 @@ public abstract class Game
 
     /**
      * Returns thte set of pieces of the opposing color
-     * @return HashSet<Piece>
+     * @return PieceList
      */
-    protected HashSet<Piece> getOpposingPieces()
+    protected PieceList getOpposingPieces()
     {
         return (isWhitesTurn())? blackPieces : whitePieces;
     }
 
+    /**
+     * Returns the set of pieces of the given color.
+     * @param color PieceColor
+     * @return PieceList
+     */
+    protected PieceList getPieces(PieceColor color)
+    {
+        return (color == WHITE)? whitePieces : blackPieces;
+    }
+
     /**
      * Given a piece square and a destination square, will attempt to make a move if it is a legal move.
      * Returns true to indicate the move was successful, otherwise false.
@@ -286,30 +657,74 @@ public abstract class Game
         if(legalMoves.contains(dest))
         {
             Piece capturedPiece = chessboard.getPiece(dest);
-            // Record the move
-            moveList.add(new Move(from, dest, piece, capturedPiece));
+            // A new move replaces whatever history followed the current ply
+            redoList.clear();
+            int lastValid = moveList.size() / CHECKPOINT_INTERVAL;
+            while(checkpoints.size() > lastValid + 1) checkpoints.remove(checkpoints.size() - 1);
 
-            chessboard.removePiece(dest);
-            getOpposingPieces().remove(capturedPiece);
-            chessboard.movePiece(from, dest);
-            piece.markMoved();
+            applyMove(new Move(from, dest, piece, capturedPiece, state, getHash()));
             return true;
         }
         return false;
     }
 
+    /**
+     * Records a move and makes it on the board without checking that it is legal. Takes a checkpoint first if the
+     * move starts on a checkpoint ply that has none yet.
+     * @param move Move
+     */
+    protected void applyMove(Move move)
+    {
+        if(moveList.size() == checkpoints.size() * CHECKPOINT_INTERVAL)
+            checkpoints.add(new Checkpoint());
+        moveList.add(move);
+
+        Piece piece = move.movedPiece;
+        Piece capturedPiece = move.capturedPiece;
+        Square from = move.from;
+        Square dest = move.dest;
+        placementHash ^= Zobrist.pieceKey(piece, from.x, from.y);
+        if(capturedPiece != null)
+        {
+            placementHash ^= Zobrist.pieceKey(capturedPiece, dest.x, dest.y);
+            getPieces(capturedPiece.getColor()).remove(capturedPiece);
+        }
+        chessboard.removePiece(dest);
+        chessboard.movePiece(from, dest);
+        piece.markMoved();
+        placementHash ^= Zobrist.pieceKey(piece, dest.x, dest.y);
+    }
+
+    /**
+     * Puts the game at a checkpoint of its history. The checkpoint may be behind or ahead of the current ply, so the
+     * moves in between are shifted between the move list and the redo list without being replayed.
+     * @param index int
+     */
+    private void restoreCheckpoint(int index)
+    {
+        int checkpointPly = index * CHECKPOINT_INTERVAL;
+        while(moveList.size() > checkpointPly)
+            redoList.add(moveList.remove(moveList.size() - 1));
+        while(moveList.size() < checkpointPly)
+            moveList.add(redoList.remove(redoList.size() - 1));
+        checkpoints.get(index).restore();
+    }
+
     /**
      * Returns true if the current color's king is in a safe position.
      * @param board Board
      * @param kingLocation Square
-     * @param opposing HashSet<Piece>
+     * @param opposing PieceList
      * @return boolean
      */
-    protected boolean isKingSafe(Board board, Square kingLocation, HashSet<Piece> opposing)
+    protected boolean isKingSafe(Board board, Square kingLocation, PieceList opposing)
     {
-        for(Piece enemy : opposing)
-            if (enemy.canAttack(board, kingLocation))
+        for(int i = 0; i < opposing.size(); i++)
+        {
+            Piece enemy = opposing.get(i);
+            if(enemy != null && enemy.canAttack(board, kingLocation))
                 return false;
+        }
         return true;
     }
 
@@ -331,8 +746,171 @@ public abstract class Game
                 blackKing = piece;
             else return;
         }
-        HashSet<Piece> pieceSet = (isWhite)? whitePieces : blackPieces;
+        PieceList pieceSet = (isWhite)? whitePieces : blackPieces;
         pieceSet.add(piece);
         chessboard.putPiece(piece, x,y);
+        placementHash ^= Zobrist.pieceKey(piece, x, y);
+    }
+
+    /**
+     * Places every piece of a snapshot onto the board and takes its side to move. Meant to be called on a freshly
+     * constructed game with an empty board of matching dimensions.
+     * @param position Position
+     * @throws IllegalArgumentException if a side does not have exactly one king
+     */
+    protected void loadPosition(Position position)
+    {
+        // Games need exactly one king a side to find check, as in Fen.parse
+        int whiteKings = 0, blackKings = 0;
+        for(int y = 0; y < position.boardY; y++)
+            for(int x = 0; x < position.boardX; x++)
+            {
+                if(position.getPieceType(x, y) != Piece.KING) continue;
+                if(position.getPieceColor(x, y) == WHITE) whiteKings++;
+                else blackKings++;
+            }
+        if(whiteKings != 1 || blackKings != 1)
+            throw new IllegalArgumentException("Need one king a side in position, got " + whiteKings + " white and "
+                    + blackKings + " black");
+
+        for(int y = 0; y < position.boardY; y++)
+            for(int x = 0; x < position.boardX; x++)
+                addPieceToGame(Position.decode(position.getCode(x, y)), x, y);
+        turnColor = position.turnColor;
+        validateState();
+        publishView();
+    }
+
+    /**
+     * Compact copy of a position in the move history. Pieces are never created or destroyed during a game, so a
+     * checkpoint only records where each roster slot stood and whether it had moved, plus the side to move, state and
+     * hash. Restoring one keeps the same Piece objects, so the Moves in the history stay valid.
+     */
+    protected final class Checkpoint
+    {
+        private static final short CAPTURED = -1;
+        private static final short MOVED = 0x4000;
+
+        private final short[] white;
+        private final short[] black;
+        private final PieceColor turnColor;
+        private final GameState state;
+        private final boolean gameEnded;
+        private final long placementHash;
+
+        /**
+         * Records the current position of the game.
+         */
+        Checkpoint()
+        {
+            white = record(whitePieces);
+            black = record(blackPieces);
+            turnColor = Game.this.turnColor;
+            state = Game.this.state;
+            gameEnded = Game.this.gameEnded;
+            placementHash = Game.this.placementHash;
+        }
+
+        /**
+         * Encodes the square index and moved flag of every slot in the roster.
+         * @param pieces PieceList
+         * @return short[]
+         */
+        private short[] record(PieceList pieces)
+        {
+            short[] slots = new short[pieces.size()];
+            for(int i = 0; i < slots.length; i++)
+            {
+                Piece piece = pieces.get(i);
+                if(piece == null) slots[i] = CAPTURED;
+                else
+                {
+                    Square loc = piece.getLocation();
+                    slots[i] = (short) (loc.x + loc.y * boardX);
+                    if(piece.hasMoved()) slots[i] |= MOVED;
+                }
+            }
+            return slots;
+        }
+
+        /**
+         * Returns the checkpoint as a snapshot, with each piece's moved flag as it was then.
+         * @return Position
+         */
+        Position toPosition()
+        {
+            byte[] cells = new byte[boardX * boardY];
+            encode(cells, whitePieces, white);
+            encode(cells, blackPieces, black);
+            return new Position(boardX, boardY, cells, turnColor, placementHash ^ Zobrist.sideKey(turnColor));
+        }
+
+        /**
+         * Writes the square codes of the roster's recorded slots into the cells of a snapshot.
+         * @param cells byte[]
+         * @param pieces PieceList
+         * @param slots short[]
+         */
+        private void encode(byte[] cells, PieceList pieces, short[] slots)
+        {
+            for(int i = 0; i < slots.length; i++)
+            {
+                if(slots[i] == CAPTURED) continue;
+                int code = Position.encode(pieces.getOwner(i)) & ~Position.MOVED_BIT;
+                if((slots[i] & MOVED) != 0) code |= Position.MOVED_BIT;
+                cells[slots[i] & ~MOVED] = (byte) code;
+            }
+        }
+
+        /**
+         * Puts every piece back where it stood when the checkpoint was taken.
+         */
+        void restore()
+        {
+            lift(whitePieces);
+            lift(blackPieces);
+            place(whitePieces, white);
+            place(blackPieces, black);
+            Game.this.turnColor = turnColor;
+            Game.this.state = state;
+            Game.this.gameEnded = gameEnded;
+            Game.this.placementHash = placementHash;
+        }
+
+        /**
+         * Takes every active piece of the roster off the board.
+         * @param pieces PieceList
+         */
+        private void lift(PieceList pieces)
+        {
+            for(int i = 0; i < pieces.size(); i++)
+            {
+                Piece piece = pieces.get(i);
+                if(piece != null) chessboard.removePiece(piece.getLocation());
+            }
+        }
+
+        /**
+         * Places the roster back onto the board from its recorded slots.
+         * @param pieces PieceList
+         * @param slots short[]
+         */
+        private void place(PieceList pieces, short[] slots)
+        {
+            for(int i = 0; i < slots.length; i++)
+            {
+                Piece piece = pieces.getOwner(i);
+                if(slots[i] == CAPTURED)
+                {
+                    pieces.remove(piece);
+                    continue;
+                }
+                int index = slots[i] & ~MOVED;
+                pieces.restore(piece);
+                chessboard.putPiece(piece, index % boardX, index / boardX);
+                if((slots[i] & MOVED) != 0) piece.markMoved();
+                else piece.markUnmoved();
+            }
+        }
     }
 }
@@ -0,0 +1,44 @@
+package Chess.Game;
+
+import Chess.Game.Game.GameState;
+import Chess.Position;
+
+/**
+ * Immutable view of a game after a ply: the position, the state, the ply and the move that led to it. A game publishes
+ * a new view whenever its position changes, see Game.getView. Views never change after construction, so any number of
+ * threads can read the latest one while the game is being played, without locks and without seeing the moves that
+ * move generation tries out on the live board.
+ */
+public final class GameView
+{
+    public final Position position;
+    public final GameState state;
+    public final int ply;
+    public final int lastMove;      // Move code, see Move.encode, or 0 before the first move
+
+    GameView(Position position, GameState state, int ply, int lastMove)
+    {
+        this.position = position;
+        this.state = state;
+        this.ply = ply;
+        this.lastMove = lastMove;
+    }
+
+    /**
+     * Returns the Zobrist hash of the position.
+     * @return long
+     */
+    public long getHash()
+    {
+        return position.hash;
+    }
+
+    /**
+     * Returns true if the game has ended in this view.
+     * @return boolean
+     */
+    public boolean isOver()
+    {
+        return state == GameState.WHITE_WINS || state == GameState.BLACK_WINS || state == GameState.STALEMATE;
+    }
+}
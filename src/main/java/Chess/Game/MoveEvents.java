@@ -0,0 +1,225 @@
+package Chess.Game;
+
+import Chess.Game.Game.GameState;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Ring buffer of the changes made to one game, for fanning them out to many spectators or logs at once. The game is
+ * the only writer; it appends one event per change, numbered by a sequence that starts at 0. Any number of
+ * subscribers read the ring on their own threads, each at its own pace and in batches, without locks and without the
+ * writer knowing about them.
+ *
+ * The ring only keeps the last capacity events. A subscriber that falls further behind than that has missed events and
+ * must catch up from the latest view of the game instead, see Subscriber.catchUp.
+ *
+ * Each event is packed into a long holding its kind, the move code, the ply and the state after the change. See
+ * kindOf, moveOf, plyOf and stateOf.
+ */
+public final class MoveEvents
+{
+    public static final int MOVE = 1;       // A move was made, its code is the move
+    public static final int UNDO = 2;       // A move was taken back, its code is the move taken back
+    public static final int REDO = 3;       // A move taken back was made again
+    public static final int JUMP = 4;       // The game went to another ply of its history, catch up from the view
+    public static final int FORFEIT = 5;    // A side gave up, the state tells which
+
+    public static final int DEFAULT_CAPACITY = 256;
+
+    private static final GameState[] STATES = GameState.values();
+
+    private final AtomicLongArray slots;
+    private final int mask;
+    private final AtomicLong published = new AtomicLong();     // Sequence of the next event to be written
+    private volatile Tip tip;
+
+    /**
+     * Creates a ring holding the given number of events, starting from the given view.
+     * @param capacity int, rounded up to a power of two
+     * @param view GameView the game is at
+     */
+    MoveEvents(int capacity, GameView view)
+    {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        slots = new AtomicLongArray(size);
+        mask = size - 1;
+        tip = new Tip(view, 0);
+    }
+
+    /**
+     * Appends an event. Called by the game only, on the thread playing it.
+     * @param kind int, one of the event kinds
+     * @param moveCode int, see Move.encode
+     * @param view GameView published for the change
+     */
+    void publish(int kind, int moveCode, GameView view)
+    {
+        long sequence = published.get();
+        slots.set((int) sequence & mask, pack(kind, moveCode, view.ply, view.state));
+        published.set(sequence + 1);
+        tip = new Tip(view, sequence + 1);
+    }
+
+    /**
+     * Returns the sequence the next event will have, which is also the number of events written so far.
+     * @return long
+     */
+    public long getSequence()
+    {
+        return published.get();
+    }
+
+    /**
+     * Returns the number of events the ring keeps.
+     * @return int
+     */
+    public int getCapacity()
+    {
+        return mask + 1;
+    }
+
+    /**
+     * Returns a new subscriber, positioned at the latest view of the game. See Subscriber.getView.
+     * @return Subscriber
+     */
+    public Subscriber subscribe()
+    {
+        Subscriber subscriber = new Subscriber();
+        subscriber.catchUp();
+        return subscriber;
+    }
+
+    /**
+     * Returns the kind of an event: MOVE, UNDO, REDO, JUMP or FORFEIT.
+     * @param event long
+     * @return int
+     */
+    public static int kindOf(long event)
+    {
+        return (int) (event >>> 56);
+    }
+
+    /**
+     * Returns the move code of an event, or 0 for kinds without a move.
+     * @param event long
+     * @return int
+     */
+    public static int moveOf(long event)
+    {
+        return (int) event & 0xFFFF;
+    }
+
+    /**
+     * Returns the ply of the game after an event.
+     * @param event long
+     * @return int
+     */
+    public static int plyOf(long event)
+    {
+        return (int) (event >>> 16);
+    }
+
+    /**
+     * Returns the state of the game after an event.
+     * @param event long
+     * @return GameState
+     */
+    public static GameState stateOf(long event)
+    {
+        return STATES[(int) (event >>> 48) & 0xFF];
+    }
+
+    private static long pack(int kind, int moveCode, int ply, GameState state)
+    {
+        return (long) kind << 56 | (long) state.ordinal() << 48 | (ply & 0xFFFFFFFFL) << 16 | (moveCode & 0xFFFF);
+    }
+
+    /**
+     * Latest view of the game and the sequence of the first event after it.
+     */
+    private static final class Tip
+    {
+        final GameView view;
+        final long sequence;
+
+        Tip(GameView view, long sequence)
+        {
+            this.view = view;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * Reading position of one consumer. A subscriber is meant to be used by one thread at a time; any number of
+     * subscribers can read the same ring at once.
+     */
+    public final class Subscriber
+    {
+        private long next;
+        private GameView view;
+
+        private Subscriber()
+        {
+        }
+
+        /**
+         * Copies the events after the ones already read into the given array, oldest first, and returns how many
+         * were copied. Returns 0 if there is nothing new, or -1 if the subscriber fell so far behind that events it
+         * had not read were overwritten. After -1 nothing is read until catchUp is called.
+         * @param events long[] to fill, its length is the most events read at once
+         * @return int
+         */
+        public int poll(long[] events)
+        {
+            long end = Math.min(published.get(), next + events.length);
+            int count = (int) (end - next);
+            for(int i = 0; i < count; i++) events[i] = slots.get((int) (next + i) & mask);
+            // The oldest slot read is overwritten by the event capacity places after it, which is only written once
+            // the writer has moved past that sequence, so checking afterwards tells whether every copy was whole.
+            if(published.get() - next > mask) return -1;
+            next = end;
+            return count;
+        }
+
+        /**
+         * Skips every event not yet read and moves to the latest view of the game. The events polled afterwards
+         * start from that view.
+         * @return GameView
+         */
+        public GameView catchUp()
+        {
+            Tip latest = tip;
+            next = latest.sequence;
+            view = latest.view;
+            return view;
+        }
+
+        /**
+         * Returns the view the subscriber last caught up to. It does not follow the events polled since.
+         * @return GameView
+         */
+        public GameView getView()
+        {
+            return view;
+        }
+
+        /**
+         * Returns the sequence of the next event to read.
+         * @return long
+         */
+        public long getNext()
+        {
+            return next;
+        }
+
+        /**
+         * Returns the number of events written that the subscriber has not read yet.
+         * @return long
+         */
+        public long getLag()
+        {
+            return published.get() - next;
+        }
+    }
+}
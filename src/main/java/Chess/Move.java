@@ -1,10 +1,12 @@
 package Chess;
 
+import Chess.Game.Game.GameState;
 import Chess.Pieces.Piece;
 
 /**
  * Representation of a Move in Chess. Records the piece moved, piece captured, and the squares involved in the move.
- * Also tracks whether the moving piece had previously moved, so we can restore that state.
+ * Also tracks whether the moving piece had previously moved, and the game state and hash from before the move, so we
+ * can restore that state without recomputing it.
  */
 public class Move
 {
@@ -13,6 +15,8 @@ public class Move
     public final Piece movedPiece;
     public final Piece capturedPiece;
     public final boolean hadMoved;
+    public final GameState priorState;
+    public final long priorHash;
 
     /**
      * Constructors a new Move object that stores the given parameters.
@@ -22,11 +26,59 @@ public class Move
      * @param capped Piece
      */
     public Move(Square from, Square dest, Piece moved, Piece capped)
+    {
+        this(from, dest, moved, capped, GameState.PLAYING, 0L);
+    }
+
+    /**
+     * Constructors a new Move object that also records the state and hash of the game before the move was made.
+     * @param from Square
+     * @param dest Square
+     * @param moved Piece
+     * @param capped Piece
+     * @param priorState GameState
+     * @param priorHash long
+     */
+    public Move(Square from, Square dest, Piece moved, Piece capped, GameState priorState, long priorHash)
     {
         this.from = from;
         this.dest = dest;
         movedPiece = moved;
         capturedPiece = capped;
         hadMoved = moved.hasMoved();
+        this.priorState = priorState;
+        this.priorHash = priorHash;
+    }
+
+    /**
+     * Packs a move into an int code from the square indices of its squares. A square's index is x + y*boardX. Codes
+     * of moves from the same position sort by origin square first, then by destination.
+     * @param fromIndex int
+     * @param destIndex int
+     * @return int
+     */
+    public static int encode(int fromIndex, int destIndex)
+    {
+        return (fromIndex << 8) | destIndex;
+    }
+
+    /**
+     * Returns the origin square index of a move code.
+     * @param code int
+     * @return int
+     */
+    public static int fromIndex(int code)
+    {
+        return code >>> 8;
+    }
+
+    /**
+     * Returns the destination square index of a move code.
+     * @param code int
+     * @return int
+     */
+    public static int destIndex(int code)
+    {
+        return code & 0xFF;
     }
 }
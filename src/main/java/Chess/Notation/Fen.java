@@ -0,0 +1,180 @@
+package Chess.Notation;
+
+import Chess.Game.Game;
+import Chess.Pieces.Piece;
+import Chess.Pieces.Piece.PieceColor;
+import Chess.Position;
+import Chess.Zobrist;
+
+import static Chess.Pieces.Piece.PieceColor.*;
+
+/**
+ * Reads and writes positions in Forsyth-Edwards Notation. Standard FEN describes the 8x8 game. The extended form used
+ * for the 10x8 game has ten files per rank and adds E (Empress) and C (Princess) to the piece letters. The castling and
+ * en passant fields are always "-" since neither rule exists in this game. A pawn counts as unmoved only while it
+ * stands on its starting rank; every other piece is loaded as unmoved, since the flag has no effect on how it moves.
+ */
+public final class Fen
+{
+    public static final String STANDARD_START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w - - 0 1";
+    public static final String CUSTOM_START = "ernbqkbnre/cppppppppc/10/10/10/10/CPPPPPPPPC/ERNBQKBNRE w - - 0 1";
+
+    private Fen() {}
+
+    /**
+     * Parses the placement and side to move of a FEN string into a Position. Any board width up to
+     * Zobrist.MAX_FILES is accepted as long as every rank has the same number of files, and each side must have exactly
+     * one king. The move counters, if present, are ignored.
+     * @param fen String
+     * @return Position
+     * @throws IllegalArgumentException if the string is not valid FEN
+     */
+    public static Position parse(String fen)
+    {
+        if(fen == null) throw new IllegalArgumentException("FEN is null");
+        int len = fen.length();
+        int i = 0;
+        while(i < len && fen.charAt(i) == ' ') i++;
+
+        // Measure the first rank to learn the width of the board, and count the ranks.
+        int boardX = 0, boardY = 1;
+        int end = i;
+        for(; end < len && fen.charAt(end) != ' '; end++)
+        {
+            char c = fen.charAt(end);
+            if(c == '/') boardY++;
+            else if(boardY > 1) continue;
+            else if(isDigit(c))
+            {
+                int run = c - '0';
+                while(end + 1 < len && isDigit(fen.charAt(end + 1))) run = run * 10 + (fen.charAt(++end) - '0');
+                boardX += run;
+            }
+            else boardX++;
+        }
+        if(boardX <= 0 || boardX > Zobrist.MAX_FILES || boardY > Zobrist.MAX_RANKS)
+            throw new IllegalArgumentException("Bad board size in FEN: " + fen);
+
+        byte[] cells = new byte[boardX * boardY];
+        long hash = Zobrist.widthKey(boardX);
+        int whiteKings = 0, blackKings = 0;
+        int x = 0, y = boardY - 1;
+        for(; i < end; i++)
+        {
+            char c = fen.charAt(i);
+            if(c == '/')
+            {
+                if(x != boardX) throw new IllegalArgumentException("Bad rank length in FEN: " + fen);
+                x = 0;
+                y--;
+            }
+            else if(isDigit(c))
+            {
+                int run = c - '0';
+                while(i + 1 < end && isDigit(fen.charAt(i + 1))) run = run * 10 + (fen.charAt(++i) - '0');
+                x += run;
+            }
+            else
+            {
+                PieceColor color = (c >= 'a')? BLACK : WHITE;
+                int type = Piece.typeFromLetter((c >= 'a')? (char) (c - 32) : c);
+                if(type < 0 || x >= boardX) throw new IllegalArgumentException("Bad piece '" + c + "' in FEN: " + fen);
+                boolean moved = (type == Piece.PAWN) && y != homeRank(color, boardY);
+                int code = Position.OCCUPIED | type;
+                if(color == WHITE) code |= Position.WHITE_BIT;
+                if(moved) code |= Position.MOVED_BIT;
+                cells[x + y * boardX] = (byte) code;
+                if(type == Piece.KING && color == WHITE) whiteKings++;
+                else if(type == Piece.KING) blackKings++;
+                hash ^= Zobrist.pieceKey(type, color, moved, x, y);
+                x++;
+            }
+            if(x > boardX) throw new IllegalArgumentException("Bad rank length in FEN: " + fen);
+        }
+        if(x != boardX || y != 0) throw new IllegalArgumentException("Bad placement in FEN: " + fen);
+        // Games need exactly one king a side to find check
+        if(whiteKings != 1 || blackKings != 1)
+            throw new IllegalArgumentException("Need one king a side in FEN: " + fen);
+
+        // Side to move, defaults to white if missing
+        while(i < len && fen.charAt(i) == ' ') i++;
+        PieceColor turnColor = WHITE;
+        if(i < len)
+        {
+            char side = fen.charAt(i);
+            if(side == 'b') turnColor = BLACK;
+            else if(side != 'w') throw new IllegalArgumentException("Bad side to move in FEN: " + fen);
+        }
+        hash ^= Zobrist.sideKey(turnColor);
+        return new Position(boardX, boardY, cells, turnColor, hash);
+    }
+
+    /**
+     * Writes a position as FEN. The move counters are written for the start of the game.
+     * @param position Position
+     * @return String
+     */
+    public static String write(Position position)
+    {
+        return write(position, 0);
+    }
+
+    /**
+     * Writes the current position of a game as FEN, with the fullmove number taken from its move history.
+     * @param game Game
+     * @return String
+     */
+    public static String write(Game game)
+    {
+        return write(game.snapshot(), game.getPly());
+    }
+
+    /**
+     * Writes a position as FEN, with the fullmove number for the given ply.
+     * @param position Position
+     * @param ply int
+     * @return String
+     */
+    public static String write(Position position, int ply)
+    {
+        StringBuilder sb = new StringBuilder(96);
+        for(int y = position.boardY - 1; y >= 0; y--)
+        {
+            int run = 0;
+            for(int x = 0; x < position.boardX; x++)
+            {
+                int code = position.getCode(x, y);
+                if((code & Position.OCCUPIED) == 0)
+                {
+                    run++;
+                    continue;
+                }
+                if(run > 0) sb.append(run);
+                run = 0;
+                char letter = Piece.TYPE_LETTERS.charAt(code & Position.TYPE_MASK);
+                sb.append(((code & Position.WHITE_BIT) != 0)? letter : Character.toLowerCase(letter));
+            }
+            if(run > 0) sb.append(run);
+            if(y > 0) sb.append('/');
+        }
+        sb.append((position.turnColor == WHITE)? " w" : " b");
+        sb.append(" - - 0 ").append(ply / 2 + 1);
+        return sb.toString();
+    }
+
+    /**
+     * Returns the rank pawns of a color start on.
+     * @param color PieceColor
+     * @param boardY int
+     * @return int
+     */
+    public static int homeRank(PieceColor color, int boardY)
+    {
+        return (color == WHITE)? 1 : boardY - 2;
+    }
+
+    private static boolean isDigit(char c)
+    {
+        return c >= '0' && c <= '9';
+    }
+}
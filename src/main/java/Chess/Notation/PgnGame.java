@@ -0,0 +1,137 @@
+package Chess.Notation;
+
+import Chess.Game.ChessGame;
+import Chess.Game.CustomChessGame;
+import Chess.Game.Game;
+import Chess.Game.Game.GameState;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One game read from a PGN archive: its tag pairs, its moves in SAN, and its result. Knows how to set up the game it
+ * describes and replay its moves.
+ */
+public class PgnGame
+{
+    /**
+     * Value of the Variant tag used for the 10x8 game.
+     */
+    public static final String CUSTOM_VARIANT = "Custom 10x8";
+
+    public final long offset;
+    private final Map<String, String> tags;
+    private final List<String> moves;
+    private final String result;
+
+    /**
+     * Constructs a game record. The collections are not copied.
+     * @param offset long byte offset of the game in its archive
+     * @param tags Map<String, String>
+     * @param moves List<String>
+     * @param result String
+     */
+    public PgnGame(long offset, Map<String, String> tags, List<String> moves, String result)
+    {
+        this.offset = offset;
+        this.tags = tags;
+        this.moves = moves;
+        this.result = result;
+    }
+
+    /**
+     * Returns the value of a tag, or null if the game does not have it.
+     * @param name String
+     * @return String
+     */
+    public String getTag(String name)
+    {
+        return tags.get(name);
+    }
+
+    /**
+     * Returns all the tag pairs in the order they appeared.
+     * @return Map<String, String>
+     */
+    public Map<String, String> getTags()
+    {
+        return Collections.unmodifiableMap(tags);
+    }
+
+    /**
+     * Returns the moves of the game in SAN.
+     * @return List<String>
+     */
+    public List<String> getMoves()
+    {
+        return Collections.unmodifiableList(moves);
+    }
+
+    /**
+     * Returns the game termination marker: 1-0, 0-1, 1/2-1/2 or *.
+     * @return String
+     */
+    public String getResult()
+    {
+        return result;
+    }
+
+    /**
+     * Returns true if the game is played on the 10x8 board, either by its Variant tag or by the width of its FEN tag.
+     * @return boolean
+     */
+    public boolean isCustomVariant()
+    {
+        String variant = tags.get("Variant");
+        if(variant != null) return variant.contains("10x8");
+        String fen = tags.get("FEN");
+        return fen != null && Fen.parse(fen).boardX == 10;
+    }
+
+    /**
+     * Sets up the starting position of the game, from the FEN tag if there is one.
+     * @return Game
+     */
+    public Game createStartGame()
+    {
+        String fen = tags.get("FEN");
+        if(isCustomVariant()) return (fen != null)? new CustomChessGame(fen) : new CustomChessGame();
+        return (fen != null)? new ChessGame(fen) : new ChessGame();
+    }
+
+    /**
+     * Sets up the game and replays every move. The moves can then be read back from the game's move history.
+     * @return Game
+     * @throws IllegalArgumentException if a move is not legal in the position it is played from
+     */
+    public Game replay()
+    {
+        Game game = createStartGame();
+        for(int i = 0; i < moves.size(); i++)
+        {
+            String san = moves.get(i);
+            int code = San.parse(game, san, game.getLegalMoveCodes());
+            if(code < 0 || !game.pushMove(code))
+                throw new IllegalArgumentException("Illegal move " + san + " at ply " + (i + 1) + " of game at " + offset);
+        }
+        game.publishView();
+        return game;
+    }
+
+    /**
+     * Returns the PGN result marker for the state of a game.
+     * @param state GameState
+     * @return String
+     */
+    public static String resultOf(GameState state)
+    {
+        switch (state)
+        {
+            case WHITE_WINS: return "1-0";
+            case BLACK_WINS: return "0-1";
+            case STALEMATE:  return "1/2-1/2";
+            default:         return "*";
+        }
+    }
+}
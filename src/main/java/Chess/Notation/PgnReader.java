@@ -0,0 +1,339 @@
+package Chess.Notation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Streaming reader for PGN archives. Reads the file through a FileChannel into a fixed size buffer, so archives of any
+ * size can be read without holding more than one game in memory. Comments, variations and numeric annotation glyphs
+ * are skipped. A reader can be limited to a byte range of the file, which is how the parallel mode splits an archive
+ * between threads.
+ */
+public class PgnReader implements Closeable
+{
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int EOF = -1;
+
+    private final FileChannel channel;
+    private final boolean ownsChannel;
+    private final long rangeEnd;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private long bufferStart;           // File position of buffer index 0
+    private final StringBuilder token = new StringBuilder(32);
+
+    /**
+     * Opens a reader over a whole file.
+     * @param path Path
+     * @throws IOException
+     */
+    public PgnReader(Path path) throws IOException
+    {
+        this(FileChannel.open(path, StandardOpenOption.READ), 0, Long.MAX_VALUE, true);
+    }
+
+    /**
+     * Opens a reader over the games that start within [start, end) of a shared channel. The start must be a game
+     * boundary, see findGameStart. A game that starts before end is read to its finish even if it crosses end. The
+     * channel is read with positional reads and is not closed by this reader.
+     * @param channel FileChannel
+     * @param start long
+     * @param end long
+     */
+    public PgnReader(FileChannel channel, long start, long end)
+    {
+        this(channel, start, end, false);
+    }
+
+    private PgnReader(FileChannel channel, long start, long end, boolean ownsChannel)
+    {
+        this.channel = channel;
+        this.ownsChannel = ownsChannel;
+        this.rangeEnd = end;
+        bufferStart = start;
+        buffer.limit(0);
+    }
+
+    /**
+     * Reads the next game. Returns null when there are no more games in the range.
+     * @return PgnGame
+     * @throws IOException
+     */
+    public PgnGame next() throws IOException
+    {
+        int c = skipWhitespace();
+        if(c == EOF) return null;
+        long offset = position() - 1;
+        if(offset >= rangeEnd) return null;
+
+        Map<String, String> tags = new LinkedHashMap<>();
+        while(c == '[')
+        {
+            readTag(tags);
+            c = skipWhitespace();
+        }
+
+        List<String> moves = new ArrayList<>(96);
+        String result = "*";
+        while(c != EOF)
+        {
+            if(c == '[')                        // Next game started without a termination marker
+            {
+                unread();
+                break;
+            }
+            else if(c == '{') skipPast('}');
+            else if(c == ';') skipPast('\n');
+            else if(c == '(') skipVariation();
+            else if(c == '$') readWord(readByte());
+            else if(c != ')')                   // A stray close of a variation is ignored
+            {
+                String word = readWord(c);
+                if(isResult(word))
+                {
+                    result = word;
+                    break;
+                }
+                String move = stripMoveNumber(word);
+                if(!move.isEmpty()) moves.add(move);
+            }
+            c = skipWhitespace();
+        }
+        if(tags.containsKey("Result") && result.equals("*")) result = tags.get("Result");
+        return new PgnGame(offset, tags, moves, result);
+    }
+
+    /**
+     * Closes the underlying file if this reader opened it.
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException
+    {
+        if(ownsChannel) channel.close();
+    }
+
+    /**
+     * Finds the first game boundary at or after a file position: the start of a tag line that follows a line that is
+     * not a tag. Returns the size of the file if there is none.
+     * @param channel FileChannel
+     * @param from long
+     * @return long
+     * @throws IOException
+     */
+    public static long findGameStart(FileChannel channel, long from) throws IOException
+    {
+        if(from <= 0) return 0;
+        PgnReader scan = new PgnReader(channel, from - 1, Long.MAX_VALUE);
+        int c = scan.readByte();
+        if(c != '\n') c = scan.skipPast('\n');  // Start at a fresh line
+        boolean prevIsTag = true;
+        while(c != EOF)
+        {
+            long lineStart = scan.position();
+            c = scan.readByte();
+            if(c == '[' && !prevIsTag) return lineStart;
+            if(c != '\n' && c != '\r' && c != EOF) prevIsTag = (c == '[');
+            if(c != '\n') c = scan.skipPast('\n');
+        }
+        return channel.size();
+    }
+
+    /**
+     * Reads every game of an archive on several threads, splitting the file at game boundaries. The consumer is
+     * called from the worker threads, so it must be thread safe. Games are not delivered in file order. Returns the
+     * number of games read.
+     * @param path Path
+     * @param threads int
+     * @param consumer Consumer<PgnGame>
+     * @return long
+     * @throws IOException
+     */
+    public static long forEachParallel(Path path, int threads, Consumer<PgnGame> consumer) throws IOException
+    {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            long size = channel.size();
+            threads = Math.max(1, threads);
+            long[] bounds = new long[threads + 1];
+            for(int i = 1; i < threads; i++)
+                bounds[i] = Math.max(bounds[i-1], findGameStart(channel, size * i / threads));
+            bounds[threads] = size;
+
+            AtomicLong count = new AtomicLong();
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            try
+            {
+                List<Future<?>> parts = new ArrayList<>();
+                for(int i = 0; i < threads; i++)
+                {
+                    long start = bounds[i], end = bounds[i+1];
+                    if(start >= end) continue;
+                    parts.add(pool.submit(() ->
+                    {
+                        PgnReader reader = new PgnReader(channel, start, end);
+                        for(PgnGame game = reader.next(); game != null; game = reader.next())
+                        {
+                            consumer.accept(game);
+                            count.incrementAndGet();
+                        }
+                        return null;
+                    }));
+                }
+                for(Future<?> part : parts) part.get();
+            } catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while reading " + path, e);
+            } catch (ExecutionException e)
+            {
+                if(e.getCause() instanceof IOException) throw (IOException) e.getCause();
+                throw new IOException("Failed to read " + path, e.getCause());
+            } finally
+            {
+                pool.shutdownNow();
+            }
+            return count.get();
+        }
+    }
+
+    /**
+     * Reads one tag pair, assuming the opening bracket has been consumed.
+     */
+    private void readTag(Map<String, String> tags) throws IOException
+    {
+        token.setLength(0);
+        int c = skipWhitespace();
+        while(c != EOF && c != ' ' && c != '"' && c != ']')
+        {
+            token.append((char) c);
+            c = readByte();
+        }
+        String name = token.toString();
+        while(c != EOF && c != '"' && c != ']') c = readByte();
+        token.setLength(0);
+        if(c == '"')
+        {
+            for(c = readByte(); c != EOF && c != '"'; c = readByte())
+            {
+                if(c == '\\') c = readByte();
+                if(c != EOF) token.append((char) c);
+            }
+            skipPast(']');
+        }
+        if(!name.isEmpty()) tags.put(name, token.toString());
+    }
+
+    /**
+     * Reads a movetext word starting with the given character.
+     */
+    private String readWord(int c) throws IOException
+    {
+        token.setLength(0);
+        while(c != EOF && c > ' ' && c != '{' && c != '(' && c != ')' && c != ';' && c != '[')
+        {
+            token.append((char) c);
+            c = readByte();
+        }
+        if(c != EOF) unread();
+        return token.toString();
+    }
+
+    /**
+     * Skips a variation, including any nested variations and comments inside it.
+     */
+    private void skipVariation() throws IOException
+    {
+        int depth = 1;
+        for(int c = readByte(); c != EOF; c = readByte())
+        {
+            if(c == '(') depth++;
+            else if(c == ')' && --depth == 0) return;
+            else if(c == '{') skipPast('}');
+        }
+    }
+
+    /**
+     * Removes a leading move number such as "12." or "12..." from a word.
+     */
+    private static String stripMoveNumber(String word)
+    {
+        int i = 0;
+        while(i < word.length() && Character.isDigit(word.charAt(i))) i++;
+        if(i == 0) return word;
+        while(i < word.length() && word.charAt(i) == '.') i++;
+        return word.substring(i);
+    }
+
+    private static boolean isResult(String word)
+    {
+        return word.equals("1-0") || word.equals("0-1") || word.equals("1/2-1/2") || word.equals("*");
+    }
+
+    /**
+     * Skips whitespace and returns the first other character.
+     */
+    private int skipWhitespace() throws IOException
+    {
+        int c = readByte();
+        while(c != EOF && c <= ' ') c = readByte();
+        return c;
+    }
+
+    /**
+     * Skips up to and including the given character. Returns the character, or EOF if it was never found.
+     */
+    private int skipPast(char stop) throws IOException
+    {
+        int c = readByte();
+        while(c != EOF && c != stop) c = readByte();
+        return c;
+    }
+
+    /**
+     * Returns the file position of the next byte to read.
+     */
+    private long position()
+    {
+        return bufferStart + buffer.position();
+    }
+
+    private void unread()
+    {
+        buffer.position(buffer.position() - 1);
+    }
+
+    /**
+     * Returns the next byte as an unsigned value, refilling the buffer from the channel when it runs dry.
+     */
+    private int readByte() throws IOException
+    {
+        if(!buffer.hasRemaining())
+        {
+            // Keep the last byte so that unread() still works across a refill
+            long next = position();
+            boolean keepLast = buffer.position() > 0;
+            bufferStart = keepLast? next - 1 : next;
+            buffer.clear();
+            int read = channel.read(buffer, bufferStart);
+            buffer.flip();
+            if(read <= 0) return EOF;
+            if(keepLast) buffer.position(1);
+            if(!buffer.hasRemaining()) return EOF;
+        }
+        return buffer.get() & 0xFF;
+    }
+}
@@ -0,0 +1,114 @@
+package Chess.Notation;
+
+import Chess.Game.CustomChessGame;
+import Chess.Game.Game;
+import Chess.Move;
+import Chess.Position;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes games as PGN with moves in SAN. Games on the 10x8 board get a Variant tag, and games that did not start from
+ * the standard setup get SetUp and FEN tags.
+ */
+public class PgnWriter
+{
+    private static final int LINE_LENGTH = 80;
+    private static final String[] ROSTER = {"Event", "Site", "Date", "Round", "White", "Black", "Result"};
+
+    private final Appendable out;
+
+    /**
+     * Constructs a writer that appends games to the given output.
+     * @param out Appendable
+     */
+    public PgnWriter(Appendable out)
+    {
+        this.out = out;
+    }
+
+    /**
+     * Writes a game with default tags.
+     * @param game Game
+     * @throws IOException
+     */
+    public void write(Game game) throws IOException
+    {
+        write(game, new LinkedHashMap<>());
+    }
+
+    /**
+     * Writes the moves made so far in a game, followed by a blank line. The seven standard tags are always written,
+     * filled with "?" unless given, and the Result tag defaults to the state of the game. SAN is generated by replaying
+     * the history on a copy set up from the game's start position, so the game itself is not moved and forfeited games
+     * are written like any other. It must not be played by other threads meanwhile.
+     * @param game Game
+     * @param tags Map<String, String>
+     * @throws IOException
+     */
+    public void write(Game game, Map<String, String> tags) throws IOException
+    {
+        List<Move> history = game.getMoveHistory();
+        String result = tags.getOrDefault("Result", PgnGame.resultOf(game.getGameState()));
+        Position start = game.getStartPosition();
+        Game replay = Game.fromSnapshot(start);
+        boolean custom = game instanceof CustomChessGame;
+        String startFen = custom? Fen.CUSTOM_START : Fen.STANDARD_START;
+
+        Map<String, String> all = new LinkedHashMap<>();
+        for(String name : ROSTER) all.put(name, tags.getOrDefault(name, "?"));
+        all.put("Result", result);
+        if(custom) all.put("Variant", PgnGame.CUSTOM_VARIANT);
+        if(!start.equals(Fen.parse(startFen)))
+        {
+            all.put("SetUp", "1");
+            all.put("FEN", Fen.write(start));
+        }
+        for(Map.Entry<String, String> tag : tags.entrySet())
+            all.putIfAbsent(tag.getKey(), tag.getValue());
+        for(Map.Entry<String, String> tag : all.entrySet())
+            out.append('[').append(tag.getKey()).append(" \"").append(escape(tag.getValue())).append("\"]\n");
+        out.append('\n');
+
+        StringBuilder line = new StringBuilder(LINE_LENGTH + 16);
+        int blackFirst = replay.isBlacksTurn()? 1 : 0;
+        for(int i = 0; i < history.size(); i++)
+        {
+            StringBuilder word = new StringBuilder(16);
+            int moveNumber = (i + blackFirst) / 2 + 1;
+            if(replay.isWhitesTurn()) word.append(moveNumber).append(". ");
+            else if(i == 0) word.append(moveNumber).append("... ");
+
+            Move next = history.get(i);
+            int code = Move.encode(game.squareIndex(next.from), game.squareIndex(next.dest));
+            word.append(San.format(replay, code, replay.getLegalMoveCodes()));
+            replay.pushMove(code);
+            word.append(San.suffix(replay.getGameState()));
+            appendWord(line, word);
+        }
+        appendWord(line, new StringBuilder(result));
+        out.append(line).append("\n\n");
+    }
+
+    /**
+     * Adds a word to the current movetext line, flushing the line first if the word would not fit.
+     */
+    private void appendWord(StringBuilder line, CharSequence word) throws IOException
+    {
+        if(line.length() > 0 && line.length() + 1 + word.length() > LINE_LENGTH)
+        {
+            out.append(line).append('\n');
+            line.setLength(0);
+        }
+        if(line.length() > 0) line.append(' ');
+        line.append(word);
+    }
+
+    private static String escape(String value)
+    {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
@@ -0,0 +1,156 @@
+package Chess.Notation;
+
+import Chess.Game.Game;
+import Chess.Game.Game.GameState;
+import Chess.Move;
+import Chess.Pieces.Piece;
+
+/**
+ * Standard Algebraic Notation for moves. Files are lettered a-j and ranks numbered from 1 at white's side. Pieces use
+ * the FEN letters, so the Empress is E and the Princess is C. Pawn moves have no letter, and pawn captures start with
+ * the file the pawn left. A move is disambiguated by file, then rank, then both, only when another piece of the same
+ * type can reach the same square.
+ */
+public final class San
+{
+    private San() {}
+
+    /**
+     * Formats a legal move of the current position without its check suffix. Call before making the move, then append
+     * suffix() of the state that follows.
+     * @param game Game
+     * @param moveCode int
+     * @param legalMoves int[] the result of game.getLegalMoveCodes()
+     * @return String
+     */
+    public static String format(Game game, int moveCode, int[] legalMoves)
+    {
+        int boardX = game.boardX;
+        int from = Move.fromIndex(moveCode),
+            dest = Move.destIndex(moveCode);
+        int fromX = from % boardX, fromY = from / boardX,
+            destX = dest % boardX, destY = dest / boardX;
+        Piece piece = game.getPiece(fromX, fromY);
+        boolean capture = game.getPiece(destX, destY) != null;
+
+        StringBuilder sb = new StringBuilder(8);
+        if(piece.getType() == Piece.PAWN)
+        {
+            if(capture) sb.append(fileChar(fromX));
+        }
+        else
+        {
+            sb.append(Piece.TYPE_LETTERS.charAt(piece.getType()));
+            boolean ambiguous = false, sameFile = false, sameRank = false;
+            for(int other : legalMoves)
+            {
+                int otherFrom = Move.fromIndex(other);
+                if(other == moveCode || Move.destIndex(other) != dest) continue;
+                Piece rival = game.getPiece(otherFrom % boardX, otherFrom / boardX);
+                if(rival.getType() != piece.getType()) continue;
+                ambiguous = true;
+                if(otherFrom % boardX == fromX) sameFile = true;
+                if(otherFrom / boardX == fromY) sameRank = true;
+            }
+            if(ambiguous)
+            {
+                if(!sameFile) sb.append(fileChar(fromX));
+                else if(!sameRank) sb.append(rankChar(fromY));
+                else sb.append(fileChar(fromX)).append(rankChar(fromY));
+            }
+        }
+        if(capture) sb.append('x');
+        sb.append(fileChar(destX)).append(rankChar(destY));
+        return sb.toString();
+    }
+
+    /**
+     * Returns the suffix for the state reached after a move: "#" for checkmate, "+" for check, otherwise empty.
+     * @param state GameState
+     * @return String
+     */
+    public static String suffix(GameState state)
+    {
+        switch (state)
+        {
+            case WHITE_WINS:
+            case BLACK_WINS:     return "#";
+            case WHITE_IN_CHECK:
+            case BLACK_IN_CHECK: return "+";
+            default:             return "";
+        }
+    }
+
+    /**
+     * Finds the legal move a SAN string refers to in the current position. Check, mate and annotation suffixes are
+     * ignored. Returns the move code, or -1 if the string matches no legal move or more than one.
+     * @param game Game
+     * @param san CharSequence
+     * @param legalMoves int[] the result of game.getLegalMoveCodes()
+     * @return int
+     */
+    public static int parse(Game game, CharSequence san, int[] legalMoves)
+    {
+        int end = san.length();
+        while(end > 0 && "+#!?".indexOf(san.charAt(end - 1)) >= 0) end--;
+        if(end < 2) return -1;
+
+        int start = 0;
+        int type = Piece.PAWN;
+        char first = san.charAt(0);
+        if(first >= 'A' && first <= 'Z')
+        {
+            type = Piece.typeFromLetter(first);
+            if(type < 0) return -1;
+            start = 1;
+        }
+        int destX = san.charAt(end - 2) - 'a',
+            destY = san.charAt(end - 1) - '1';
+        if(destX < 0 || destX >= game.boardX || destY < 0 || destY >= game.boardY) return -1;
+
+        // Whatever sits between the piece letter and the destination is disambiguation, or the capture mark
+        int wantX = -1, wantY = -1;
+        for(int i = start; i < end - 2; i++)
+        {
+            char c = san.charAt(i);
+            if(c >= 'a' && c <= 'z' && c != 'x') wantX = c - 'a';
+            else if(c >= '1' && c <= '9') wantY = c - '1';
+            else if(c != 'x' && c != '-') return -1;
+        }
+
+        int dest = destX + destY * game.boardX;
+        int found = -1;
+        for(int code : legalMoves)
+        {
+            if(Move.destIndex(code) != dest) continue;
+            int from = Move.fromIndex(code);
+            int fromX = from % game.boardX,
+                fromY = from / game.boardX;
+            if((wantX >= 0 && fromX != wantX) || (wantY >= 0 && fromY != wantY)) continue;
+            if(game.getPiece(fromX, fromY).getType() != type) continue;
+            if(found >= 0) return -1;
+            found = code;
+        }
+        return found;
+    }
+
+    /**
+     * Returns the file letter of an x coordinate.
+     * @param x int
+     * @return char
+     */
+    public static char fileChar(int x)
+    {
+        return (char) ('a' + x);
+    }
+
+    /**
+     * Returns the rank digit of a y coordinate.
+     * @param y int
+     * @return char
+     */
+    public static char rankChar(int y)
+    {
+        return (char) ('1' + y);
+    }
+}
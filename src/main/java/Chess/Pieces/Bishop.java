@@ -1,13 +1,12 @@
 package Chess.Pieces;
 
-import Chess.Board;
-import Chess.Square;
 import static Chess.Pieces.Piece.PieceColor.*;
 import static Chess.Pieces.PieceIcons.BISHOP_W;
 import static Chess.Pieces.PieceIcons.BISHOP_B;
 
-import java.util.HashSet;
-
+/**
+ * Bishops move diagonally up until the first obstructing piece or the board boundary. Movement is generated by MoveGenerator.
+ */
 public class Bishop extends Piece
 {
 
@@ -17,23 +16,9 @@ public class Bishop extends Piece
      */
     public Bishop(PieceColor color)
     {
-        this.color = color;
+        super(color, BISHOP);
         if(color == WHITE)
             icon = BISHOP_W;
         else icon = BISHOP_B;
     }
-
-    /**
-     * Bishops move diagonally up until the first obstructing piece or the board boundary.
-     * @param board Board
-     */
-    protected HashSet<Square> getMyPossibleMoves(Board board)
-    {
-        HashSet<Square> moves = new HashSet<>();
-        addLineToMoves(board, 1,  1, moves);
-        addLineToMoves(board,-1,  1, moves);
-        addLineToMoves(board, 1, -1, moves);
-        addLineToMoves(board,-1, -1, moves);
-        return moves;
-    }
 }
@@ -1,17 +1,11 @@
 package Chess.Pieces;
 
-import Chess.Board;
-import Chess.Square;
 import static Chess.Pieces.Piece.PieceColor.*;
 import static Chess.Pieces.PieceIcons.EMPR_W;
 import static Chess.Pieces.PieceIcons.EMPR_B;
 
-import java.util.HashSet;
-
-import static java.lang.Math.abs;
-
 /**
- * A custom piece, combines the movement of a knight and a rook.
+ * A custom piece, combines the movement of a knight and a rook. Movement is generated by MoveGenerator.
  */
 public class Empress extends Piece
 {
@@ -22,37 +16,9 @@ public class Empress extends Piece
      */
     public Empress(PieceColor color)
     {
-        this.color = color;
+        super(color, EMPRESS);
         if(color == WHITE)
             icon = EMPR_W;
         else icon = EMPR_B;
     }
-
-    /**
-     * An empress can hop over pieces and moves in an L shape. It can also move horizontally and vertically up to the
-     * first obstructing piece or up to the board boundary.
-     * @param board Board
-     */
-    protected HashSet<Square> getMyPossibleMoves(Board board)
-    {
-        HashSet<Square> moves = new HashSet<>();
-        int x = location.x,
-            y = location.y;
-
-        // Calculate knight movements
-        for(int dx = -2; dx <= 2; dx++)
-            for(int dy = -2; dy <= 2; dy++)
-            {
-                boolean isLShapedMove = (abs(dx) + abs(dy) == 3) && (dx != 0 || dy != 0);
-                if(isLShapedMove && isOpenOrCapturable(board, x+dx, y+dy))
-                    moves.add(new Square(x+dx, y+dy));
-            }
-
-        // Calculate rook movements
-        addLineToMoves(board,  1,  0, moves);
-        addLineToMoves(board, -1,  0, moves);
-        addLineToMoves(board,  0,  1, moves);
-        addLineToMoves(board,  0, -1, moves);
-        return moves;
-    }
 }
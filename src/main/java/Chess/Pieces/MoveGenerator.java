@@ -0,0 +1,202 @@
+package Chess.Pieces;
+
+import Chess.Board;
+import Chess.Square;
+
+import java.util.Collection;
+
+import static Chess.Pieces.Piece.*;
+import static Chess.Pieces.Piece.PieceColor.*;
+
+/**
+ * Table driven move generator shared by every piece type. Each type code maps to a mask of movement components
+ * (leaps and slides), so the generator is a single non-virtual code path no matter which piece is being asked.
+ */
+public final class MoveGenerator
+{
+    /*
+     * Movement components. A piece's moveset is the union of the components in its mask.
+     */
+    public static final int PAWN_STEP   = 1;
+    public static final int KING_LEAP   = 2;
+    public static final int KNIGHT_LEAP = 4;
+    public static final int ORTHO_SLIDE = 8;
+    public static final int DIAG_SLIDE  = 16;
+
+    private static final int[] COMPONENTS = new int[TYPE_COUNT];
+
+    private static final int[] KING_DX   = {-1, -1, -1,  0,  0,  1,  1,  1};
+    private static final int[] KING_DY   = {-1,  0,  1, -1,  1, -1,  0,  1};
+    private static final int[] KNIGHT_DX = {-2, -2, -1, -1,  1,  1,  2,  2};
+    private static final int[] KNIGHT_DY = {-1,  1, -2,  2, -2,  2, -1,  1};
+    private static final int[] ORTHO_DX  = { 1, -1,  0,  0};
+    private static final int[] ORTHO_DY  = { 0,  0,  1, -1};
+    private static final int[] DIAG_DX   = { 1, -1,  1, -1};
+    private static final int[] DIAG_DY   = { 1,  1, -1, -1};
+
+    static
+    {
+        COMPONENTS[KING]     = KING_LEAP;
+        COMPONENTS[PAWN]     = PAWN_STEP;
+        COMPONENTS[KNIGHT]   = KNIGHT_LEAP;
+        COMPONENTS[PRINCESS] = KNIGHT_LEAP | DIAG_SLIDE;
+        COMPONENTS[EMPRESS]  = KNIGHT_LEAP | ORTHO_SLIDE;
+        COMPONENTS[BISHOP]   = DIAG_SLIDE;
+        COMPONENTS[ROOK]     = ORTHO_SLIDE;
+        COMPONENTS[QUEEN]    = ORTHO_SLIDE | DIAG_SLIDE;
+    }
+
+    private MoveGenerator() {}
+
+    /**
+     * Returns the movement component mask of the given piece type code.
+     * @param type int
+     * @return int
+     */
+    public static int components(int type)
+    {
+        return COMPONENTS[type];
+    }
+
+    /**
+     * Adds all open or capturable squares the piece can move to from its current location. Assumes the piece has a
+     * valid location on the board.
+     * @param board Board
+     * @param piece Piece
+     * @param moves Collection<Square>
+     */
+    public static void addMoves(Board board, Piece piece, Collection<Square> moves)
+    {
+        int mask = COMPONENTS[piece.type];
+        int x = piece.location.x,
+            y = piece.location.y;
+        PieceColor color = piece.color;
+
+        if((mask & PAWN_STEP) != 0)
+            addPawnMoves(board, x, y, color, piece.hasMoved, moves);
+        if((mask & KING_LEAP) != 0)
+            addLeaps(board, x, y, color, KING_DX, KING_DY, moves);
+        if((mask & KNIGHT_LEAP) != 0)
+            addLeaps(board, x, y, color, KNIGHT_DX, KNIGHT_DY, moves);
+        if((mask & ORTHO_SLIDE) != 0)
+            addSlides(board, x, y, color, ORTHO_DX, ORTHO_DY, moves);
+        if((mask & DIAG_SLIDE) != 0)
+            addSlides(board, x, y, color, DIAG_DX, DIAG_DY, moves);
+    }
+
+    /**
+     * Returns true if the piece can attack the target coordinates. Follows the same rules as the generated moveset,
+     * except for pawns which attack both forward diagonals regardless of what occupies them. Assumes the piece and the
+     * target are both valid squares on the board.
+     * @param board Board
+     * @param piece Piece
+     * @param tx int
+     * @param ty int
+     * @return boolean
+     */
+    public static boolean canAttack(Board board, Piece piece, int tx, int ty)
+    {
+        int mask = COMPONENTS[piece.type];
+        int dx = tx - piece.location.x,
+            dy = ty - piece.location.y;
+        if(dx == 0 && dy == 0) return false;
+
+        if((mask & PAWN_STEP) != 0)
+            return (dx == 1 || dx == -1) && dy == ((piece.color == WHITE)? 1 : -1);
+
+        int adx = (dx < 0)? -dx : dx,
+            ady = (dy < 0)? -dy : dy;
+        boolean isLeap = ((mask & KING_LEAP) != 0 && adx <= 1 && ady <= 1) ||
+                         ((mask & KNIGHT_LEAP) != 0 && adx + ady == 3 && adx != 0 && ady != 0);
+        boolean isSlide = ((mask & ORTHO_SLIDE) != 0 && (dx == 0 || dy == 0)) ||
+                          ((mask & DIAG_SLIDE) != 0 && adx == ady);
+        if(!isLeap && !isSlide) return false;
+        if(!isOpenOrEnemy(board, tx, ty, piece.color)) return false;
+        if(isLeap) return true;
+
+        // Walk the line towards the target, every square in between must be empty
+        int stepX = Integer.signum(dx),
+            stepY = Integer.signum(dy);
+        for(int x = piece.location.x + stepX, y = piece.location.y + stepY; x != tx || y != ty; x += stepX, y += stepY)
+            if(board.getPiece(x, y) != null) return false;
+        return true;
+    }
+
+    /**
+     * A pawn can only move forward towards the opposing side, two squares on its first move, and captures one square
+     * diagonally forward.
+     */
+    private static void addPawnMoves(Board board, int x, int y, PieceColor color, boolean hasMoved,
+                                     Collection<Square> moves)
+    {
+        int dir = (color == WHITE)? 1 : -1;
+        if(board.isOpenSquare(x, y+dir))
+        {
+            moves.add(new Square(x, y+dir));
+            if(!hasMoved && board.isOpenSquare(x, y + 2*dir))
+                moves.add(new Square(x, y + 2*dir));
+        }
+        if(hasEnemy(board, x+1, y+dir, color))
+            moves.add(new Square(x+1, y+dir));
+        if(hasEnemy(board, x-1, y+dir, color))
+            moves.add(new Square(x-1, y+dir));
+    }
+
+    /**
+     * Adds every offset square that is open or capturable.
+     */
+    private static void addLeaps(Board board, int x, int y, PieceColor color, int[] dxs, int[] dys,
+                                 Collection<Square> moves)
+    {
+        for(int i = 0; i < dxs.length; i++)
+        {
+            int curX = x + dxs[i],
+                curY = y + dys[i];
+            if(board.isValidSqr(curX, curY) && isOpenOrEnemy(board, curX, curY, color))
+                moves.add(new Square(curX, curY));
+        }
+    }
+
+    /**
+     * Adds every open square along each direction, up to and including the first capturable piece.
+     */
+    private static void addSlides(Board board, int x, int y, PieceColor color, int[] dxs, int[] dys,
+                                  Collection<Square> moves)
+    {
+        for(int i = 0; i < dxs.length; i++)
+        {
+            int dx = dxs[i],
+                dy = dys[i];
+            for(int curX = x+dx, curY = y+dy; board.isValidSqr(curX, curY); curX += dx, curY += dy)
+            {
+                Piece occupant = board.getPiece(curX, curY);
+                if(occupant == null)
+                    moves.add(new Square(curX, curY));
+                else
+                {
+                    if(occupant.color != color) moves.add(new Square(curX, curY));
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns true if the square has a piece with a color other than the given color.
+     */
+    private static boolean hasEnemy(Board board, int x, int y, PieceColor color)
+    {
+        Piece occupant = board.getPiece(x, y);
+        return occupant != null && occupant.color != color;
+    }
+
+    /**
+     * Returns true if the square is empty or holds a piece with a color other than the given color. Assumes the square
+     * is valid.
+     */
+    private static boolean isOpenOrEnemy(Board board, int x, int y, PieceColor color)
+    {
+        Piece occupant = board.getPiece(x, y);
+        return occupant == null || occupant.color != color;
+    }
+}
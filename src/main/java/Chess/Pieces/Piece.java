@@ -19,14 +19,35 @@ public abstract class Piece
      */
     public enum PieceColor {BLACK, WHITE}
 
+    /*
+     * Piece type codes. The codes are ordered from the cheapest attack test to the most expensive, so iterating pieces
+     * in type order checks the King and the leapers before any of the sliders.
+     */
+    public static final int KING     = 0;
+    public static final int PAWN     = 1;
+    public static final int KNIGHT   = 2;
+    public static final int PRINCESS = 3;
+    public static final int EMPRESS  = 4;
+    public static final int BISHOP   = 5;
+    public static final int ROOK     = 6;
+    public static final int QUEEN    = 7;
+    public static final int TYPE_COUNT = 8;
+
+    /**
+     * Letter of each piece type, indexed by type code. E is the Empress and C the Princess.
+     */
+    public static final String TYPE_LETTERS = "KPNCEBRQ";
+
+    protected final int type;
     protected PieceColor color;
     protected boolean hasMoved;
     protected Square location;
     protected ImageIcon icon;
+    int slot = -1;          // Slot owned in a PieceList roster, managed by PieceList
 
     /**
      * Constructs a piece given two character codes pertaining to the piece type and color.<br>
-     * Piece Type : K(King), Q(Queen), B(Bishop), N(Knight), R(Rook), P(Pawn)<br>
+     * Piece Type : K(King), Q(Queen), B(Bishop), N(Knight), R(Rook), E(Empress), C(Princess), P(Pawn)<br>
      * Color : B(Black), W(White)
      * @param pieceType char
      * @param color char
@@ -34,29 +55,60 @@ public abstract class Piece
     public static Piece pieceFromCode(char pieceType, char color)
     {
         PieceColor clr = (color == 'B')? BLACK : WHITE;
-        switch (pieceType)
+        return pieceFromType(typeFromLetter(pieceType), clr);
+    }
+
+    /**
+     * Returns the type code of an uppercase piece letter, or -1 if the letter is not a piece.
+     * @param letter char
+     * @return int
+     */
+    public static int typeFromLetter(char letter)
+    {
+        switch (letter)
         {
-            case 'K': return new King(clr);
-            case 'Q': return new Queen(clr);
-            case 'B': return new Bishop(clr);
-            case 'N': return new Knight(clr);
-            case 'R': return new Rook(clr);
-            default : return new Pawn(clr);
+            case 'K': return KING;
+            case 'Q': return QUEEN;
+            case 'B': return BISHOP;
+            case 'N': return KNIGHT;
+            case 'R': return ROOK;
+            case 'E': return EMPRESS;
+            case 'C': return PRINCESS;
+            case 'P': return PAWN;
+            default : return -1;
         }
     }
 
     /**
-     * Returns all possible open or capturable squares a piece can move to on the given board.
-     * @param board Board
-     * @return Hashset<Square>
+     * Constructs a piece of the given type code and color. Defaults to a Pawn for unknown codes.
+     * @param type int
+     * @param color PieceColor
+     * @return Piece
      */
-    protected abstract HashSet<Square> getMyPossibleMoves(Board board);
+    public static Piece pieceFromType(int type, PieceColor color)
+    {
+        switch (type)
+        {
+            case KING:     return new King(color);
+            case QUEEN:    return new Queen(color);
+            case BISHOP:   return new Bishop(color);
+            case KNIGHT:   return new Knight(color);
+            case ROOK:     return new Rook(color);
+            case EMPRESS:  return new Empress(color);
+            case PRINCESS: return new Princess(color);
+            default :      return new Pawn(color);
+        }
+    }
 
     /**
-     * Default super constructor. Pieces always start out unmoved.
+     * Super constructor. Sets the color and type code of the piece. Pieces always start out unmoved.
+     * @param color PieceColor
+     * @param type int
      */
-    public Piece()
+    protected Piece(PieceColor color, int type)
     {
+        this.color = color;
+        this.type = type;
         hasMoved = false;
     }
 
@@ -67,10 +119,12 @@ public abstract class Piece
      * @param board Board
      * @return Hashset<Square>
      */
-    public HashSet<Square> getPossibleMoves(Board board)
+    public final HashSet<Square> getPossibleMoves(Board board)
     {
-        if(board == null || !board.isValidSqr(location)) return new HashSet<>();
-        return getMyPossibleMoves(board);
+        HashSet<Square> moves = new HashSet<>();
+        if(board == null || !board.isValidSqr(location)) return moves;
+        MoveGenerator.addMoves(board, this, moves);
+        return moves;
     }
 
     /**
@@ -79,11 +133,11 @@ public abstract class Piece
      * @param target Square
      * @return boolean
      */
-    public boolean canAttack(Board board, Square target)
+    public final boolean canAttack(Board board, Square target)
     {
         if(board == null || !board.isValidSqr(location)
                          || !board.isValidSqr(target)) return false;
-        return getPossibleMoves(board).contains(target);
+        return MoveGenerator.canAttack(board, this, target.x, target.y);
     }
 
     /**
@@ -93,38 +147,11 @@ public abstract class Piece
      * @param y int
      * @return boolean
      */
-    public boolean canAttack(Board board, int x, int y)
+    public final boolean canAttack(Board board, int x, int y)
     {
         return canAttack(board, new Square(x,y));
     }
 
-    /**
-     * Helper function used for searching all open or capturable squares on the board in a straight line.
-     * Assumes piece can move onto capturable pieces, but not through them. Parameters dx and dy specify the
-     * change in that direction
-     * @param board Board
-     * @param dx int
-     * @param dy int
-     * @param moves HashSet<Square>
-     */
-    protected void addLineToMoves(Board board, int dx, int dy, HashSet<Square> moves)
-    {
-        if(dx == 0 && dy == 0) return;
-        int x = location.x,
-            y = location.y;
-        for(int curX = x+dx, curY = y+dy; board.isValidSqr(curX, curY); curX += dx, curY += dy)
-        {
-            if(board.isOpenSquare(curX, curY))
-                moves.add(new Square(curX, curY));
-            else if(hasEnemy(board, curX, curY))
-            {
-                moves.add(new Square(curX, curY));
-                break;
-            }
-            else break;
-        }
-    }
-
     /**
      * Returns true if the square has a piece with opposite color of the attacker. False if empty, contains friendly,
      * or is invalid square.
@@ -151,12 +178,21 @@ public abstract class Piece
     }
 
     /**
-     * True if this piece is a King. Normally false, but may be overriden.
+     * True if this piece is a King.
      * @return boolean
      */
-    public boolean isKing()
+    public final boolean isKing()
+    {
+        return type == KING;
+    }
+
+    /**
+     * Returns the type code of the piece.
+     * @return int
+     */
+    public final int getType()
     {
-        return false;
+        return type;
     }
 
     /**
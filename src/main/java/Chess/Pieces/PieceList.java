@@ -0,0 +1,160 @@
+package Chess.Pieces;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Dense roster of the pieces of one side. Every piece added to the list owns a fixed slot, and slots are kept ordered
+ * by piece type code so Kings and leapers come before sliders. Removing a captured piece only clears its slot, so a
+ * capture and its restore during make/undo are both O(1) and never reorder the roster.
+ */
+public class PieceList implements Iterable<Piece>
+{
+    private Piece[] roster = new Piece[16];
+    private Piece[] active = new Piece[16];
+    private int slots = 0;
+    private int count = 0;
+
+    /**
+     * Adds a piece to the roster, keeping the slots ordered by type code. Meant for setting up a game, since it may
+     * shift the slots of pieces with a higher type code. Does nothing if the piece is null or already in the list.
+     * @param piece Piece
+     */
+    public void add(Piece piece)
+    {
+        if(piece == null || contains(piece)) return;
+        if(slots == roster.length) grow();
+
+        int slot = slots;
+        while(slot > 0 && roster[slot-1].type > piece.type)
+        {
+            roster[slot] = roster[slot-1];
+            active[slot] = active[slot-1];
+            roster[slot].slot = slot;
+            slot--;
+        }
+        roster[slot] = piece;
+        active[slot] = piece;
+        piece.slot = slot;
+        slots++;
+        count++;
+    }
+
+    /**
+     * Clears the slot of a captured piece. Does nothing if the piece is not in the list or already removed.
+     * @param piece Piece
+     */
+    public void remove(Piece piece)
+    {
+        if(!contains(piece) || active[piece.slot] == null) return;
+        active[piece.slot] = null;
+        count--;
+    }
+
+    /**
+     * Puts a previously removed piece back into its slot. Does nothing if the piece is not in the list or already
+     * active.
+     * @param piece Piece
+     */
+    public void restore(Piece piece)
+    {
+        if(!contains(piece) || active[piece.slot] != null) return;
+        active[piece.slot] = piece;
+        count++;
+    }
+
+    /**
+     * Returns true if the piece owns a slot in this list, whether it is active or removed.
+     * @param piece Piece
+     * @return boolean
+     */
+    public boolean contains(Piece piece)
+    {
+        return piece != null && piece.slot >= 0 && piece.slot < slots && roster[piece.slot] == piece;
+    }
+
+    /**
+     * Returns the active piece in the slot, or null if the slot's piece has been removed.
+     * @param slot int
+     * @return Piece
+     */
+    public Piece get(int slot)
+    {
+        return active[slot];
+    }
+
+    /**
+     * Returns the piece that owns the slot, whether or not it has been removed.
+     * @param slot int
+     * @return Piece
+     */
+    public Piece getOwner(int slot)
+    {
+        return roster[slot];
+    }
+
+    /**
+     * Returns the number of slots in the list. Slots of removed pieces are included.
+     * @return int
+     */
+    public int size()
+    {
+        return slots;
+    }
+
+    /**
+     * Returns the number of active pieces in the list.
+     * @return int
+     */
+    public int count()
+    {
+        return count;
+    }
+
+    /**
+     * Iterates over the active pieces in slot order.
+     * @return Iterator<Piece>
+     */
+    @Override
+    public Iterator<Piece> iterator()
+    {
+        return new Iterator<Piece>()
+        {
+            private int next = seek(0);
+
+            private int seek(int from)
+            {
+                while(from < slots && active[from] == null) from++;
+                return from;
+            }
+
+            @Override
+            public boolean hasNext()
+            {
+                return next < slots;
+            }
+
+            @Override
+            public Piece next()
+            {
+                if(next >= slots) throw new NoSuchElementException();
+                Piece piece = active[next];
+                next = seek(next + 1);
+                return piece;
+            }
+        };
+    }
+
+    /**
+     * Doubles the capacity of the slot arrays.
+     */
+    private void grow()
+    {
+        Piece[] newRoster = new Piece[roster.length * 2];
+        Piece[] newActive = new Piece[roster.length * 2];
+        System.arraycopy(roster, 0, newRoster, 0, slots);
+        System.arraycopy(active, 0, newActive, 0, slots);
+        roster = newRoster;
+        active = newActive;
+    }
+}
@@ -1,13 +1,12 @@
 package Chess.Pieces;
 
-import Chess.Board;
-import Chess.Square;
 import static Chess.Pieces.Piece.PieceColor.*;
 import static Chess.Pieces.PieceIcons.ROOK_W;
 import static Chess.Pieces.PieceIcons.ROOK_B;
 
-import java.util.HashSet;
-
+/**
+ * Rooks move horizontally or vertically up until the first obstructing piece or the board boundary. Movement is generated by MoveGenerator.
+ */
 public class Rook extends Piece
 {
 
@@ -17,23 +16,9 @@ public class Rook extends Piece
      */
     public Rook(PieceColor color)
     {
-        this.color = color;
+        super(color, ROOK);
         if(color == WHITE)
             icon = ROOK_W;
         else icon = ROOK_B;
     }
-
-    /**
-     * Rooks move horizontally or vertically up until the first obstructing piece or the board boundary.
-     * @param board Board
-     */
-    protected HashSet<Square> getMyPossibleMoves(Board board)
-    {
-        HashSet<Square> moves = new HashSet<>();
-        addLineToMoves(board,  1,  0, moves);
-        addLineToMoves(board, -1,  0, moves);
-        addLineToMoves(board,  0,  1, moves);
-        addLineToMoves(board,  0, -1, moves);
-        return moves;
-    }
 }
@@ -0,0 +1,193 @@
+package Chess;
+
+import Chess.Pieces.Piece;
+import Chess.Pieces.Piece.PieceColor;
+
+import java.util.Arrays;
+
+import static Chess.Pieces.Piece.PieceColor.*;
+
+/**
+ * Immutable snapshot of a game position. Stores the placement of every piece as one byte per square, along with the
+ * side to move, each piece's moved flag and the position's Zobrist hash. Since it never changes after construction, a
+ * Position can be shared freely between threads while the game it came from keeps going.
+ */
+public final class Position
+{
+    /*
+     * Layout of a square's byte code. An empty square is 0.
+     */
+    public static final int TYPE_MASK = 0x07;
+    public static final int WHITE_BIT = 0x08;
+    public static final int MOVED_BIT = 0x10;
+    public static final int OCCUPIED  = 0x20;
+
+    public final int boardX;
+    public final int boardY;
+    public final PieceColor turnColor;
+    public final long hash;
+    private final byte[] cells;
+
+    /**
+     * Constructs a position from square codes laid out as x + y*boardX. The array is copied.
+     * @param boardX int
+     * @param boardY int
+     * @param cells byte[]
+     * @param turnColor PieceColor
+     * @param hash long
+     */
+    public Position(int boardX, int boardY, byte[] cells, PieceColor turnColor, long hash)
+    {
+        this(boardX, boardY, turnColor, hash, Arrays.copyOf(cells, boardX * boardY));
+    }
+
+    /**
+     * Constructs a position that takes ownership of the given cell array. Only for callers that have just built the
+     * array and never touch it again.
+     */
+    Position(int boardX, int boardY, PieceColor turnColor, long hash, byte[] cells)
+    {
+        this.boardX = boardX;
+        this.boardY = boardY;
+        this.cells = cells;
+        this.turnColor = turnColor;
+        this.hash = hash;
+    }
+
+    /**
+     * Takes a snapshot of a board. The hash is computed from scratch.
+     * @param board Board
+     * @param turnColor PieceColor
+     * @return Position
+     */
+    public static Position of(Board board, PieceColor turnColor)
+    {
+        byte[] cells = new byte[board.xLength * board.yLength];
+        for(int x = 0; x < board.xLength; x++)
+            for(int y = 0; y < board.yLength; y++)
+                cells[x + y * board.xLength] = encode(board.getPiece(x, y));
+        return new Position(board.xLength, board.yLength, turnColor, Zobrist.hash(board, turnColor), cells);
+    }
+
+    /**
+     * Returns the square code of a piece. 0 if null.
+     * @param piece Piece
+     * @return byte
+     */
+    public static byte encode(Piece piece)
+    {
+        if(piece == null) return 0;
+        int code = OCCUPIED | piece.getType();
+        if(piece.getColor() == WHITE) code |= WHITE_BIT;
+        if(piece.hasMoved()) code |= MOVED_BIT;
+        return (byte) code;
+    }
+
+    /**
+     * Creates a new piece from a square code. Returns null if the code is an empty square.
+     * @param code int
+     * @return Piece
+     */
+    public static Piece decode(int code)
+    {
+        if((code & OCCUPIED) == 0) return null;
+        Piece piece = Piece.pieceFromType(code & TYPE_MASK, ((code & WHITE_BIT) != 0)? WHITE : BLACK);
+        if((code & MOVED_BIT) != 0) piece.markMoved();
+        return piece;
+    }
+
+    /**
+     * Returns the square code at the coordinates. 0 if empty or invalid coordinates.
+     * @param x int
+     * @param y int
+     * @return int
+     */
+    public int getCode(int x, int y)
+    {
+        if(!isValidSqr(x, y)) return 0;
+        return cells[x + y * boardX];
+    }
+
+    /**
+     * Returns true if there is a piece at the coordinates.
+     * @param x int
+     * @param y int
+     * @return boolean
+     */
+    public boolean hasPiece(int x, int y)
+    {
+        return (getCode(x, y) & OCCUPIED) != 0;
+    }
+
+    /**
+     * Returns the type code of the piece at the coordinates, or -1 if the square is empty or invalid.
+     * @param x int
+     * @param y int
+     * @return int
+     */
+    public int getPieceType(int x, int y)
+    {
+        int code = getCode(x, y);
+        return ((code & OCCUPIED) != 0)? code & TYPE_MASK : -1;
+    }
+
+    /**
+     * Returns the color of the piece at the coordinates. Null if the square is empty or invalid.
+     * @param x int
+     * @param y int
+     * @return PieceColor
+     */
+    public PieceColor getPieceColor(int x, int y)
+    {
+        int code = getCode(x, y);
+        if((code & OCCUPIED) == 0) return null;
+        return ((code & WHITE_BIT) != 0)? WHITE : BLACK;
+    }
+
+    /**
+     * Returns true if the piece at the coordinates has been marked as moved. False if the square is empty.
+     * @param x int
+     * @param y int
+     * @return boolean
+     */
+    public boolean hasMoved(int x, int y)
+    {
+        return (getCode(x, y) & MOVED_BIT) != 0;
+    }
+
+    /**
+     * Returns true if the coordinates refer to a valid square.
+     * @param x int
+     * @param y int
+     * @return boolean
+     */
+    public boolean isValidSqr(int x, int y)
+    {
+        return (x >= 0) && (x < boardX) && (y >= 0) && (y < boardY);
+    }
+
+    /**
+     * Positions are equal if they have the same dimensions, placement, moved flags and side to move.
+     * @param obj Object
+     * @return boolean
+     */
+    @Override
+    public boolean equals(Object obj)
+    {
+        if(this == obj) return true;
+        if(!(obj instanceof Position)) return false;
+        Position pos = (Position) obj;
+        return hash == pos.hash && boardX == pos.boardX && boardY == pos.boardY &&
+                turnColor == pos.turnColor && Arrays.equals(cells, pos.cells);
+    }
+
+    /**
+     * Returns the low bits of the Zobrist hash.
+     * @return int
+     */
+    @Override
+    public int hashCode()
+    {
+        return (int) (hash ^ (hash >>> 32));
+    }
+}
@@ -0,0 +1,240 @@
+package Chess.Search;
+
+import Chess.Game.Game;
+import Chess.Position;
+
+import java.io.Closeable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs searches in the background, so that neither the Swing event thread nor a server handler ever waits on one.
+ * analyze returns at once with a future of the result, and the result of each depth is passed to an optional listener
+ * as the search deepens.
+ * <p>
+ * Searches run on a fixed number of daemon threads, each with its own Search, and wait in a bounded queue; a request
+ * that finds the queue full fails with RejectedExecutionException rather than piling up. Cancelling the future takes
+ * the request off the queue, or stops its search within about a millisecond of search time. Once a time limit passes
+ * the future completes at once with the deepest result found so far, or fails with TimeoutException if no depth
+ * completed, and the search stops soon after on its own.
+ */
+public class Analyzer implements Closeable
+{
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    private static Analyzer shared;
+
+    private final ThreadPoolExecutor pool;
+    private final ScheduledExecutorService timer;
+    private final ThreadLocal<Search> searches;
+
+    /**
+     * Limits of one analysis. Whichever is reached first ends the search.
+     */
+    public static final class Limits
+    {
+        public final long nodeLimit;
+        public final int maxDepth;
+        public final long timeMillis;      // 0 for no time limit
+
+        /**
+         * Constructs limits.
+         * @param nodeLimit long
+         * @param maxDepth int
+         * @param timeMillis long, 0 for no time limit
+         */
+        public Limits(long nodeLimit, int maxDepth, long timeMillis)
+        {
+            this.nodeLimit = nodeLimit;
+            this.maxDepth = maxDepth;
+            this.timeMillis = timeMillis;
+        }
+
+        /**
+         * Returns limits that only bound the search time.
+         * @param timeMillis long
+         * @return Limits
+         */
+        public static Limits ofTime(long timeMillis)
+        {
+            return new Limits(Long.MAX_VALUE, 64, timeMillis);
+        }
+    }
+
+    /**
+     * Constructs an analyzer.
+     * @param threads int, number of searches run at once
+     * @param queueCapacity int, number of requests that can wait for a thread
+     * @param table TranspositionTable shared by the searches, or null to search without one
+     */
+    public Analyzer(int threads, int queueCapacity, TranspositionTable table)
+    {
+        AtomicInteger count = new AtomicInteger();
+        pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), task ->
+        {
+            Thread thread = new Thread(task, "Analyzer-" + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        ScheduledThreadPoolExecutor deadlines = new ScheduledThreadPoolExecutor(1, task ->
+        {
+            Thread thread = new Thread(task, "Analyzer-deadlines");
+            thread.setDaemon(true);
+            return thread;
+        });
+        deadlines.setRemoveOnCancelPolicy(true);
+        timer = deadlines;
+        searches = ThreadLocal.withInitial(() -> new Search(new Evaluator(), table));
+    }
+
+    /**
+     * Returns the analyzer shared by the whole application, with a thread per core, created on first use. It is never
+     * closed; its threads are daemons.
+     * @return Analyzer
+     */
+    public static synchronized Analyzer getShared()
+    {
+        if(shared == null)
+            shared = new Analyzer(Runtime.getRuntime().availableProcessors(), DEFAULT_QUEUE_CAPACITY, null);
+        return shared;
+    }
+
+    /**
+     * Analyzes a position in the background.
+     * @param position Position
+     * @param limits Limits
+     * @return CompletableFuture of Search.Result
+     */
+    public CompletableFuture<Search.Result> analyze(Position position, Limits limits)
+    {
+        return analyze(position, limits, null);
+    }
+
+    /**
+     * Analyzes a position in the background, passing the result of each completed depth to the listener. The listener
+     * is called on the searching thread, so a Swing listener should hand its update to invokeLater. It is not called
+     * once the future has completed.
+     * @param position Position
+     * @param limits Limits
+     * @param listener Consumer of Search.Result or null
+     * @return CompletableFuture of Search.Result
+     */
+    public CompletableFuture<Search.Result> analyze(Position position, Limits limits,
+                                                    Consumer<Search.Result> listener)
+    {
+        Job job = new Job(position, limits, listener);
+        try
+        {
+            pool.execute(job);
+        } catch (RejectedExecutionException e)
+        {
+            job.future.completeExceptionally(e);
+            return job.future;
+        }
+        ScheduledFuture<?> expiry = (limits.timeMillis > 0)?
+                timer.schedule(job::expire, limits.timeMillis, TimeUnit.MILLISECONDS) : null;
+        job.future.whenComplete((result, error) ->
+        {
+            if(expiry != null) expiry.cancel(false);
+            if(!job.started) pool.remove(job);      // Frees its place in the queue
+        });
+        return job.future;
+    }
+
+    /**
+     * Returns the number of requests waiting for a thread.
+     * @return int
+     */
+    public int getQueued()
+    {
+        return pool.getQueue().size();
+    }
+
+    /**
+     * Returns the number of searches running.
+     * @return int
+     */
+    public int getActive()
+    {
+        return pool.getActiveCount();
+    }
+
+    /**
+     * Stops the threads. Requests still waiting are dropped, and their futures complete with a
+     * RejectedExecutionException.
+     */
+    @Override
+    public void close()
+    {
+        for(Runnable dropped : pool.shutdownNow())
+            ((Job) dropped).future.completeExceptionally(new RejectedExecutionException("Closed"));
+        timer.shutdownNow();
+    }
+
+    /**
+     * One request: runs its search unless the future completed while it waited, and stops the search as soon as the
+     * future completes in any way.
+     */
+    private final class Job implements Runnable
+    {
+        final Position position;
+        final Limits limits;
+        final Consumer<Search.Result> listener;
+        final long deadline;
+        final CompletableFuture<Search.Result> future = new CompletableFuture<>();
+        volatile Search.Result latest;
+        volatile boolean started;
+
+        Job(Position position, Limits limits, Consumer<Search.Result> listener)
+        {
+            this.position = position;
+            this.limits = limits;
+            this.listener = listener;
+            this.deadline = (limits.timeMillis > 0)? System.nanoTime() + limits.timeMillis * 1_000_000 : 0;
+        }
+
+        @Override
+        public void run()
+        {
+            started = true;
+            if(future.isDone()) return;
+            try
+            {
+                Search.Result result = searches.get().search(Game.fromSnapshot(position), limits.nodeLimit,
+                        limits.maxDepth, this::shouldStop, this::progress);
+                future.complete(result);
+            } catch (RuntimeException e)
+            {
+                future.completeExceptionally(e);
+            }
+        }
+
+        private boolean shouldStop()
+        {
+            return future.isDone() || (deadline != 0 && System.nanoTime() - deadline >= 0);
+        }
+
+        private void progress(Search.Result result)
+        {
+            latest = result;
+            if(listener != null && !future.isDone()) listener.accept(result);
+        }
+
+        private void expire()
+        {
+            Search.Result result = latest;
+            if(result != null) future.complete(result);
+            else future.completeExceptionally(new TimeoutException("No depth done in " + limits.timeMillis + "ms"));
+        }
+    }
+}
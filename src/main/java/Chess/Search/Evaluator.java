@@ -0,0 +1,71 @@
+package Chess.Search;
+
+import Chess.Game.Game;
+import Chess.Pieces.Piece;
+
+import static Chess.Pieces.Piece.PieceColor.*;
+
+/**
+ * Static evaluation of a position: material, plus a small bonus for each rank a pawn has advanced. The piece values are
+ * a parameter so they can be tuned, the Empress and Princess values in particular being guesses from the values of the
+ * pieces they combine.
+ */
+public class Evaluator
+{
+    /**
+     * Default values in centipawns, indexed by piece type: King, Pawn, Knight, Princess, Empress, Bishop, Rook, Queen.
+     */
+    public static final int[] DEFAULT_VALUES = {0, 100, 300, 850, 900, 325, 500, 925};
+    public static final int PAWN_ADVANCE = 5;
+
+    private final int[] values;
+
+    /**
+     * Constructs an evaluator with the default piece values.
+     */
+    public Evaluator()
+    {
+        this(DEFAULT_VALUES);
+    }
+
+    /**
+     * Constructs an evaluator with the given piece values, indexed by piece type.
+     * @param values int[]
+     */
+    public Evaluator(int[] values)
+    {
+        if(values.length != Piece.TYPE_COUNT) throw new IllegalArgumentException("Need one value per piece type");
+        this.values = values.clone();
+    }
+
+    /**
+     * Returns the value of a piece type.
+     * @param type int
+     * @return int
+     */
+    public int getValue(int type)
+    {
+        return values[type];
+    }
+
+    /**
+     * Scores the current position of a game in centipawns, from the point of view of the side to move.
+     * @param game Game
+     * @return int
+     */
+    public int evaluate(Game game)
+    {
+        int score = 0;
+        for(int y = 0; y < game.boardY; y++)
+            for(int x = 0; x < game.boardX; x++)
+            {
+                Piece piece = game.getPiece(x, y);
+                if(piece == null) continue;
+                int value = values[piece.getType()];
+                if(piece.getType() == Piece.PAWN)
+                    value += PAWN_ADVANCE * ((piece.getColor() == WHITE)? y - 1 : game.boardY - 2 - y);
+                score += (piece.getColor() == WHITE)? value : -value;
+            }
+        return game.isWhitesTurn()? score : -score;
+    }
+}
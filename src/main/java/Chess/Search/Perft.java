@@ -0,0 +1,56 @@
+package Chess.Search;
+
+import Chess.Game.Game;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Counts the move paths of a given length from a position, to check move generation against known totals. Moves are
+ * made and taken back on the game itself with pushMove and popMove, so it is left as it was and spectators of it see
+ * nothing.
+ */
+public final class Perft
+{
+    private Perft() {}
+
+    /**
+     * Returns the number of legal move sequences of the given length from the current position of a game.
+     * @param game Game
+     * @param depth int
+     * @return long
+     */
+    public static long count(Game game, int depth)
+    {
+        if(depth == 0) return 1;
+        int[] moves = game.getLegalMoveCodes();
+        if(depth == 1) return moves.length;
+        long total = 0;
+        for(int code : moves)
+        {
+            game.pushMove(code);
+            total += count(game, depth - 1);
+            game.popMove();
+        }
+        return total;
+    }
+
+    /**
+     * Returns the count of each legal move from the current position, in move code order, for finding where two move
+     * generators disagree.
+     * @param game Game
+     * @param depth int at least 1
+     * @return Map of move code to count
+     */
+    public static Map<Integer, Long> divide(Game game, int depth)
+    {
+        Map<Integer, Long> counts = new LinkedHashMap<>();
+        for(int code : game.getLegalMoveCodes())
+        {
+            game.pushMove(code);
+            counts.put(code, count(game, depth - 1));
+            game.popMove();
+        }
+        return counts;
+    }
+}
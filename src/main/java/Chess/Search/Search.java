@@ -0,0 +1,307 @@
+package Chess.Search;
+
+import Chess.Game.Game;
+import Chess.Game.Game.GameState;
+import Chess.Move;
+import Chess.Pieces.Piece;
+
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import static Chess.Search.TranspositionTable.*;
+
+/**
+ * Alpha-beta search with iterative deepening, a capture-only quiescence search and an optional transposition table.
+ * The search is limited by a node budget, where a node is a move made on the board, so with the same budget it always
+ * returns the same result for the same position and table contents. A Search object is not thread safe, but several
+ * can share one table.
+ * <p>
+ * A search can also be given a stop condition, polled every STOP_CHECK_NODES nodes, and a listener that is told the
+ * result of every depth as it completes. See Analyzer for running searches in the background.
+ */
+public class Search
+{
+    public static final int MATE = 30000;
+    private static final int INFINITY = MATE + 1;
+    private static final int MATE_BOUND = MATE - 1000;     // Scores beyond this are mates, counted in plies
+    private static final int STOP_CHECK_NODES = 64;         // About a millisecond
+
+    private final Evaluator evaluator;
+    private final TranspositionTable table;
+    private long nodes;
+    private long nodeLimit;
+    private BooleanSupplier stop;
+    private boolean aborted;
+
+    /**
+     * Result of a search.
+     */
+    public static final class Result
+    {
+        public final int moveCode;
+        public final int score;
+        public final int depth;
+        public final long nodes;
+
+        Result(int moveCode, int score, int depth, long nodes)
+        {
+            this.moveCode = moveCode;
+            this.score = score;
+            this.depth = depth;
+            this.nodes = nodes;
+        }
+    }
+
+    /**
+     * Constructs a search.
+     * @param evaluator Evaluator
+     * @param table TranspositionTable or null to search without one
+     */
+    public Search(Evaluator evaluator, TranspositionTable table)
+    {
+        this.evaluator = evaluator;
+        this.table = table;
+    }
+
+    /**
+     * Searches the current position of a game. The game itself is not touched, the search runs on a copy of its
+     * position. Returns the best move found by the last depth completed within the budget, and its score from the point
+     * of view of the side to move. The move is 0 if the game has ended.
+     * @param game Game
+     * @param nodeLimit long
+     * @param maxDepth int
+     * @return Result
+     */
+    public Result search(Game game, long nodeLimit, int maxDepth)
+    {
+        return search(game, nodeLimit, maxDepth, null, null);
+    }
+
+    /**
+     * Searches the current position of a game like search(game, nodeLimit, maxDepth), but also ends the search early
+     * once the stop condition holds, and reports the result of each completed depth to the listener, on the searching
+     * thread. A search that is stopped returns what it had found so far.
+     * @param game Game
+     * @param nodeLimit long
+     * @param maxDepth int
+     * @param stop BooleanSupplier or null
+     * @param listener Consumer of Result or null
+     * @return Result
+     */
+    public Result search(Game game, long nodeLimit, int maxDepth, BooleanSupplier stop, Consumer<Result> listener)
+    {
+        return search(game, nodeLimit, maxDepth, stop, listener, null);
+    }
+
+    /**
+     * Continues a search of the same position from a result it passed to its listener, as if it had never stopped: the
+     * next depth is searched first, starting from the move found, and the nodes already searched count against the
+     * limit. Lets a scheduler set a long search aside between two depths and pick it up later.
+     * @param game Game
+     * @param nodeLimit long
+     * @param maxDepth int
+     * @param stop BooleanSupplier or null
+     * @param listener Consumer of Result or null
+     * @param resume Result of a completed depth, or null to start from scratch
+     * @return Result
+     */
+    public Result search(Game game, long nodeLimit, int maxDepth, BooleanSupplier stop, Consumer<Result> listener,
+                         Result resume)
+    {
+        Game board = Game.fromSnapshot(game.snapshot());
+        this.nodes = (resume == null)? 0 : resume.nodes;
+        this.nodeLimit = nodeLimit;
+        this.stop = stop;
+        this.aborted = false;
+
+        int[] moves = board.getLegalMoveCodes();
+        if(moves.length == 0) return new Result(0, terminalScore(board, 0), 0, 0);
+        int bestMove = moves[0], bestScore = 0, bestDepth = 0;
+        if(resume != null && resume.moveCode != 0)
+        {
+            if(Math.abs(resume.score) > MATE_BOUND) return resume;
+            bestMove = resume.moveCode;
+            bestScore = resume.score;
+            bestDepth = resume.depth;
+        }
+        for(int depth = bestDepth + 1; depth <= maxDepth; depth++)
+        {
+            order(board, moves, bestMove);
+            int alpha = -INFINITY, iterationMove = 0;
+            for(int code : moves)
+            {
+                int score = -child(board, code, depth - 1, -INFINITY, -alpha, 1);
+                if(aborted) break;
+                if(score > alpha)
+                {
+                    alpha = score;
+                    iterationMove = code;
+                }
+            }
+            // A cut short iteration still searched the previous best move first, so a better move it found is sound
+            if(iterationMove != 0)
+            {
+                bestMove = iterationMove;
+                bestScore = alpha;
+                if(!aborted) bestDepth = depth;
+            }
+            if(aborted) break;
+            if(table != null) table.store(board.getHash(), bestMove, toTable(bestScore, 0), depth, BOUND_EXACT);
+            if(listener != null) listener.accept(new Result(bestMove, bestScore, depth, nodes));
+            if(Math.abs(bestScore) > MATE_BOUND) break;
+        }
+        return new Result(bestMove, bestScore, bestDepth, nodes);
+    }
+
+    /**
+     * Makes a move, searches the resulting position and takes the move back. Returns the score for the side that moved
+     * into the position, negated by the caller.
+     */
+    private int child(Game board, int code, int depth, int alpha, int beta, int ply)
+    {
+        if(++nodes > nodeLimit || (stop != null && nodes % STOP_CHECK_NODES == 0 && stop.getAsBoolean()))
+        {
+            aborted = true;
+            return 0;
+        }
+        board.pushMove(code);
+        int score = (depth > 0)? negamax(board, depth, alpha, beta, ply) : quiesce(board, alpha, beta, ply);
+        board.popMove();
+        return score;
+    }
+
+    private int negamax(Game board, int depth, int alpha, int beta, int ply)
+    {
+        long hash = board.getHash();
+        int tableMove = 0;
+        if(table != null)
+        {
+            long data = table.probe(hash);
+            if(data != 0)
+            {
+                tableMove = move(data);
+                if(depth(data) >= depth)
+                {
+                    int score = fromTable(score(data), ply);
+                    int bound = bound(data);
+                    if(bound == BOUND_EXACT) return score;
+                    if(bound == BOUND_LOWER && score >= beta) return score;
+                    if(bound == BOUND_UPPER && score <= alpha) return score;
+                }
+            }
+        }
+
+        int[] moves = board.getLegalMoveCodes();
+        if(moves.length == 0) return terminalScore(board, ply);
+        order(board, moves, tableMove);
+        int best = -INFINITY, bestMove = 0, originalAlpha = alpha;
+        for(int code : moves)
+        {
+            int score = -child(board, code, depth - 1, -beta, -alpha, ply + 1);
+            if(aborted) return 0;
+            if(score > best)
+            {
+                best = score;
+                bestMove = code;
+            }
+            if(score > alpha) alpha = score;
+            if(alpha >= beta) break;
+        }
+        if(table != null)
+        {
+            int bound = (best <= originalAlpha)? BOUND_UPPER : (best >= beta)? BOUND_LOWER : BOUND_EXACT;
+            table.store(hash, bestMove, toTable(best, ply), depth, bound);
+        }
+        return best;
+    }
+
+    /**
+     * Searches captures only, until the position is quiet, so that the evaluation is not taken in the middle of an
+     * exchange.
+     */
+    private int quiesce(Game board, int alpha, int beta, int ply)
+    {
+        GameState state = board.getGameState();
+        if(state == GameState.WHITE_WINS || state == GameState.BLACK_WINS || state == GameState.STALEMATE)
+            return terminalScore(board, ply);
+        int standPat = evaluator.evaluate(board);
+        if(standPat >= beta) return standPat;
+        if(standPat > alpha) alpha = standPat;
+
+        int[] moves = board.getLegalMoveCodes();
+        int captures = 0;
+        for(int code : moves)
+            if(capturedValue(board, code) > 0) moves[captures++] = code;
+        order(board, moves, captures, 0);
+        for(int i = 0; i < captures; i++)
+        {
+            int score = -child(board, moves[i], 0, -beta, -alpha, ply + 1);
+            if(aborted) return 0;
+            if(score >= beta) return score;
+            if(score > alpha) alpha = score;
+        }
+        return alpha;
+    }
+
+    /**
+     * Scores a position with no legal moves: mated, counted so that quicker mates score higher, or stalemated.
+     */
+    private static int terminalScore(Game board, int ply)
+    {
+        GameState state = board.getGameState();
+        return (state == GameState.WHITE_WINS || state == GameState.BLACK_WINS)? -MATE + ply : 0;
+    }
+
+    private void order(Game board, int[] moves, int firstMove)
+    {
+        order(board, moves, moves.length, firstMove);
+    }
+
+    /**
+     * Sorts the first count moves: the given move first, then captures of the most valuable pieces, then the rest in
+     * code order. Insertion sort, since move lists are short.
+     */
+    private void order(Game board, int[] moves, int count, int firstMove)
+    {
+        int[] keys = new int[count];
+        for(int i = 0; i < count; i++)
+            keys[i] = (moves[i] == firstMove)? Integer.MAX_VALUE : capturedValue(board, moves[i]);
+        for(int i = 1; i < count; i++)
+        {
+            int move = moves[i], key = keys[i];
+            int j = i - 1;
+            for(; j >= 0 && keys[j] < key; j--)
+            {
+                moves[j + 1] = moves[j];
+                keys[j + 1] = keys[j];
+            }
+            moves[j + 1] = move;
+            keys[j + 1] = key;
+        }
+    }
+
+    private int capturedValue(Game board, int code)
+    {
+        int dest = Move.destIndex(code);
+        Piece captured = board.getPiece(dest % board.boardX, dest / board.boardX);
+        return (captured == null)? 0 : evaluator.getValue(captured.getType());
+    }
+
+    /**
+     * Mate scores are stored relative to the position rather than the root, so that they stay right when the position
+     * is reached at another ply.
+     */
+    private static int toTable(int score, int ply)
+    {
+        if(score > MATE_BOUND) return score + ply;
+        if(score < -MATE_BOUND) return score - ply;
+        return score;
+    }
+
+    private static int fromTable(int score, int ply)
+    {
+        if(score > MATE_BOUND) return score - ply;
+        if(score < -MATE_BOUND) return score + ply;
+        return score;
+    }
+}
@@ -0,0 +1,79 @@
+package Chess.Search;
+
+import Chess.Game.Game;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Main class of a search worker process started by WorkerPool. Takes requests from its SharedRing one at a time,
+ * searches them without a transposition table and writes the replies back, so its results are the same as a Search run
+ * in the pool's own JVM. Exits when the pool asks it to, or when the pool's process is gone.
+ */
+public final class SearchWorker
+{
+    private static final int SPINS = 100;
+    private static final long MAX_PARK_NANOS = 1_000_000;
+    private static final long PARENT_CHECK_NANOS = 500_000_000;
+
+    private SearchWorker()
+    {
+    }
+
+    /**
+     * Usage: SearchWorker ringFile
+     */
+    public static void main(String[] args) throws IOException
+    {
+        try(SharedRing ring = SharedRing.open(Paths.get(args[0])))
+        {
+            ring.setPid(ProcessHandle.current().pid());
+            ProcessHandle parent = ProcessHandle.current().parent().orElse(null);
+            Search search = new Search(new Evaluator(), null);
+            int idle = 0;
+            long nextParentCheck = System.nanoTime() + PARENT_CHECK_NANOS;
+            while(!ring.isStopRequested())
+            {
+                ring.beat();
+                SharedRing.Request request = ring.pollRequest();
+                if(request != null)
+                {
+                    idle = 0;
+                    reply(ring, request, run(ring, search, request));
+                    continue;
+                }
+                // Spin briefly for requests sent back to back, then park for longer and longer
+                if(++idle <= SPINS) Thread.onSpinWait();
+                else LockSupport.parkNanos(Math.min(MAX_PARK_NANOS, 1000L << Math.min(10, idle - SPINS)));
+                if(System.nanoTime() - nextParentCheck > 0)
+                {
+                    if(parent != null && !parent.isAlive()) return;
+                    nextParentCheck = System.nanoTime() + PARENT_CHECK_NANOS;
+                }
+            }
+        }
+    }
+
+    private static Search.Result run(SharedRing ring, Search search, SharedRing.Request request)
+    {
+        if(request.position == null) return null;
+        Game game = Game.fromSnapshot(request.position);
+        if(game == null) return null;
+        return search.search(game, request.nodeLimit, request.maxDepth, () ->
+        {
+            ring.beat();
+            return ring.getCancelled() == request.jobId || ring.isStopRequested();
+        }, null);
+    }
+
+    private static void reply(SharedRing ring, SharedRing.Request request, Search.Result result)
+    {
+        int status = (result == null)? SharedRing.STATUS_BAD_POSITION : SharedRing.STATUS_OK;
+        while(!ring.offerReply(request.jobId, status, result))
+        {
+            if(ring.isStopRequested()) return;
+            LockSupport.parkNanos(MAX_PARK_NANOS);
+        }
+    }
+}
@@ -0,0 +1,418 @@
+package Chess.Search;
+
+import Chess.Archive.PackedPosition;
+import Chess.Game.ChessGame;
+import Chess.Game.CustomChessGame;
+import Chess.Game.Game;
+import Chess.Game.Game.GameState;
+import Chess.Position;
+import Chess.Symmetry;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates training data by having the search play games against itself. Games alternate between ChessGame and
+ * CustomChessGame, start with a few random moves so that they differ, and then play the move found by a search of a
+ * fixed number of nodes, so a run is reproducible from its seed whatever the thread timing, unless a shared
+ * transposition table is used.
+ * <p>
+ * Every searched position is written as one RECORD_SIZE record: the PackedPosition, the search score from white's point
+ * of view as a short, and the result of the game as a byte (1 white won, 0 drawn or unfinished, -1 black won), then a
+ * pad byte. A game's records are held in a buffer until its result is known, then appended to the worker's current
+ * shard file, which is rolled over once it reaches the shard size. Memory use is therefore one game buffer and one
+ * write buffer per thread, whatever the number of games.
+ * <p>
+ * Positions repeat across games, mostly near the start, so the run also estimates how many distinct positions it wrote,
+ * counting symmetric positions as the same, with a HyperLogLog over their canonical hashes.
+ */
+public class SelfPlay
+{
+    public static final int RECORD_SIZE = PackedPosition.SIZE + 4;
+    public static final int MAGIC = 0x53504431;     // "SPD1"
+    private static final int IO_BUFFER = 1 << 16;
+    private static final int MAX_DEPTH = 64;
+    private static final int HLL_BITS = 12;
+
+    private final Path outDir;
+    private final int threads;
+    private final long nodesPerMove;
+    private long shardBytes = 64L << 20;
+    private int maxPly = 300;
+    private int minOpeningPly = 2;
+    private int maxOpeningPly = 8;
+    private TranspositionTable table;
+    private Evaluator evaluator = new Evaluator();
+
+    /**
+     * Counts for a run.
+     */
+    public static final class Stats
+    {
+        public final int games;
+        public final long positions;
+        public final long nodes;
+        public final long elapsedNanos;
+        public final long distinctPositions;
+        public final int shards;
+
+        Stats(int games, long positions, long nodes, long elapsedNanos, long distinctPositions, int shards)
+        {
+            this.games = games;
+            this.positions = positions;
+            this.nodes = nodes;
+            this.elapsedNanos = elapsedNanos;
+            this.distinctPositions = distinctPositions;
+            this.shards = shards;
+        }
+
+        public double getPositionsPerSecond()
+        {
+            return positions * 1e9 / Math.max(1, elapsedNanos);
+        }
+
+        public double getNodesPerSecond()
+        {
+            return nodes * 1e9 / Math.max(1, elapsedNanos);
+        }
+
+        /**
+         * Returns the estimated share of written positions that repeat an earlier one, as a percentage.
+         * @return double
+         */
+        public double getDuplicatePercent()
+        {
+            if(positions == 0) return 0;
+            return Math.max(0, 100.0 * (positions - distinctPositions) / positions);
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%d games, %d positions in %d shards, %.1fs, %.0f positions/s, %.0f nodes/s, "
+                    + "~%d distinct (%.1f%% duplicates)", games, positions, shards, elapsedNanos / 1e9,
+                    getPositionsPerSecond(), getNodesPerSecond(), distinctPositions, getDuplicatePercent());
+        }
+    }
+
+    /**
+     * Constructs a generator.
+     * @param outDir Path of the directory to write shards to, created if missing
+     * @param threads int
+     * @param nodesPerMove long search budget of each move
+     */
+    public SelfPlay(Path outDir, int threads, long nodesPerMove)
+    {
+        if(threads < 1 || nodesPerMove < 1) throw new IllegalArgumentException("Need at least one thread and node");
+        this.outDir = outDir;
+        this.threads = threads;
+        this.nodesPerMove = nodesPerMove;
+    }
+
+    public void setShardBytes(long shardBytes)
+    {
+        this.shardBytes = Math.max(RECORD_SIZE, shardBytes);
+    }
+
+    public void setMaxPly(int maxPly)
+    {
+        this.maxPly = maxPly;
+    }
+
+    /**
+     * Sets the range of the number of random moves that start each game.
+     * @param min int
+     * @param max int
+     */
+    public void setOpeningPly(int min, int max)
+    {
+        if(min < 0 || max < min) throw new IllegalArgumentException("Bad opening range " + min + ".." + max);
+        this.minOpeningPly = min;
+        this.maxOpeningPly = max;
+    }
+
+    /**
+     * Sets a transposition table shared by all threads, or null for none.
+     * @param table TranspositionTable
+     */
+    public void setTable(TranspositionTable table)
+    {
+        this.table = table;
+    }
+
+    public void setEvaluator(Evaluator evaluator)
+    {
+        this.evaluator = evaluator;
+    }
+
+    /**
+     * Plays the given number of games and writes their positions. Game i uses seed + i for its opening, so runs with
+     * different seeds give different games.
+     * @param games int
+     * @param seed long
+     * @return Stats
+     * @throws IOException
+     */
+    public Stats run(int games, long seed) throws IOException
+    {
+        Files.createDirectories(outDir);
+        if(table != null) table.newSearch();
+        long start = System.nanoTime();
+        AtomicInteger nextGame = new AtomicInteger();
+        AtomicLong positions = new AtomicLong(), nodes = new AtomicLong();
+        AtomicInteger shards = new AtomicInteger();
+        AtomicIntegerArray registers = new AtomicIntegerArray(1 << HLL_BITS);
+
+        int workers = Math.max(1, Math.min(threads, games));
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try
+        {
+            List<Future<?>> futures = new ArrayList<>();
+            for(int w = 0; w < workers; w++)
+            {
+                int worker = w;
+                futures.add(pool.submit(() ->
+                {
+                    try(Worker out = new Worker(worker, shards, registers))
+                    {
+                        for(int i = nextGame.getAndIncrement(); i < games; i = nextGame.getAndIncrement())
+                        {
+                            out.playGame(i, seed + i);
+                            positions.addAndGet(out.gamePositions);
+                            nodes.addAndGet(out.gameNodes);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for(Future<?> future : futures) future.get();
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted during self-play", e);
+        } catch (ExecutionException e)
+        {
+            if(e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new IOException("Self-play failed", e.getCause());
+        } finally
+        {
+            pool.shutdownNow();
+        }
+        return new Stats(games, positions.get(), nodes.get(), System.nanoTime() - start, estimate(registers),
+                shards.get());
+    }
+
+    /**
+     * Plays games on one thread and writes them to its own shards.
+     */
+    private class Worker implements AutoCloseable
+    {
+        private final int worker;
+        private final AtomicInteger shards;
+        private final AtomicIntegerArray registers;
+        private final Search search = new Search(evaluator, table);
+        private final ByteBuffer gameBuffer;
+        private OutputStream shard;
+        private long shardSize;
+        private int shardNumber;
+        private long gamePositions, gameNodes;
+
+        Worker(int worker, AtomicInteger shards, AtomicIntegerArray registers)
+        {
+            this.worker = worker;
+            this.shards = shards;
+            this.registers = registers;
+            this.gameBuffer = ByteBuffer.allocate(RECORD_SIZE * Math.max(1, maxPly));
+        }
+
+        void playGame(int index, long seed) throws IOException
+        {
+            Game game = (index % 2 == 0)? new ChessGame() : new CustomChessGame();
+            Random random = new Random(seed);
+            int opening = minOpeningPly + random.nextInt(maxOpeningPly - minOpeningPly + 1);
+            gameBuffer.clear();
+            gamePositions = 0;
+            gameNodes = 0;
+
+            for(int ply = 0; ply < maxPly; ply++)
+            {
+                int[] moves = game.getLegalMoveCodes();
+                if(moves.length == 0) break;
+                if(ply < opening)
+                {
+                    game.runTurn(moves[random.nextInt(moves.length)]);
+                    continue;
+                }
+                Search.Result result = search.search(game, nodesPerMove, MAX_DEPTH);
+                gameNodes += result.nodes;
+                Position position = game.snapshot();
+                if(PackedPosition.canPack(position))
+                {
+                    int score = game.isWhitesTurn()? result.score : -result.score;
+                    PackedPosition.write(position, gameBuffer);
+                    gameBuffer.putShort((short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, score)));
+                    gameBuffer.put((byte) 0);     // Result, filled in below
+                    gameBuffer.put((byte) 0);
+                    addHash(registers, Symmetry.canonicalHash(position));
+                    gamePositions++;
+                }
+                game.runTurn(result.moveCode);
+            }
+
+            GameState state = game.getGameState();
+            byte outcome = (byte) ((state == GameState.WHITE_WINS)? 1 : (state == GameState.BLACK_WINS)? -1 : 0);
+            for(int offset = RECORD_SIZE - 2; offset < gameBuffer.position(); offset += RECORD_SIZE)
+                gameBuffer.put(offset, outcome);
+            writeGame();
+        }
+
+        private void writeGame() throws IOException
+        {
+            if(gameBuffer.position() == 0) return;
+            if(shard == null || shardSize + gameBuffer.position() > shardBytes && shardSize > Integer.BYTES)
+                nextShard();
+            shard.write(gameBuffer.array(), 0, gameBuffer.position());
+            shardSize += gameBuffer.position();
+        }
+
+        private void nextShard() throws IOException
+        {
+            close();
+            Path file = outDir.resolve(String.format("shard-%02d-%04d.bin", worker, shardNumber++));
+            shard = new BufferedOutputStream(Files.newOutputStream(file), IO_BUFFER);
+            ByteBuffer header = ByteBuffer.allocate(Integer.BYTES).putInt(MAGIC);
+            shard.write(header.array());
+            shardSize = Integer.BYTES;
+            shards.incrementAndGet();
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            if(shard != null) shard.close();
+            shard = null;
+        }
+    }
+
+    /**
+     * Adds a hash to a HyperLogLog: the low bits pick a register, which keeps the highest count of leading zeros seen
+     * in the other bits.
+     */
+    private static void addHash(AtomicIntegerArray registers, long hash)
+    {
+        hash *= 0x9E3779B97F4A7C15L;     // Zobrist keys are random, but canonical hashes favor low values, so remix
+        int register = (int) (hash >>> (64 - HLL_BITS));
+        int rank = Long.numberOfLeadingZeros((hash << HLL_BITS) | (1L << (HLL_BITS - 1))) + 1;
+        registers.accumulateAndGet(register, rank, Math::max);
+    }
+
+    private static long estimate(AtomicIntegerArray registers)
+    {
+        int m = registers.length(), zeros = 0;
+        double sum = 0;
+        for(int i = 0; i < m; i++)
+        {
+            int rank = registers.get(i);
+            if(rank == 0) zeros++;
+            sum += Math.scalb(1.0, -rank);
+        }
+        double alpha = 0.7213 / (1 + 1.079 / m);
+        double raw = alpha * m * m / sum;
+        if(raw <= 2.5 * m && zeros > 0) raw = m * Math.log((double) m / zeros);    // Linear counting for small counts
+        return Math.round(raw);
+    }
+
+    /**
+     * Reads every record of a shard file, passing each to the reader.
+     * @param file Path
+     * @param reader RecordReader
+     * @return int number of records read
+     * @throws IOException
+     */
+    public static int readShard(Path file, RecordReader reader) throws IOException
+    {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if(buffer.remaining() < Integer.BYTES || buffer.getInt() != MAGIC)
+                throw new IOException("Not a self-play shard: " + file);
+            if(buffer.remaining() % RECORD_SIZE != 0) throw new IOException("Truncated shard: " + file);
+            int count = 0;
+            while(buffer.hasRemaining())
+            {
+                Position position = PackedPosition.read(buffer);
+                int score = buffer.getShort();
+                int result = buffer.get();
+                buffer.get();
+                reader.accept(position, score, result);
+                count++;
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Receives the records of a shard.
+     */
+    public interface RecordReader
+    {
+        /**
+         * @param position Position
+         * @param score int from white's point of view
+         * @param result int 1 white won, 0 drawn or unfinished, -1 black won
+         */
+        void accept(Position position, int score, int result);
+    }
+
+    /**
+     * Lists the shard files of a directory, in name order.
+     * @param dir Path
+     * @return List of Path
+     * @throws IOException
+     */
+    public static List<Path> listShards(Path dir) throws IOException
+    {
+        List<Path> shards = new ArrayList<>();
+        try(DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "shard-*.bin"))
+        {
+            for(Path file : stream) shards.add(file);
+        }
+        shards.sort(null);
+        return shards;
+    }
+
+    /**
+     * Usage: SelfPlay outDir games [nodesPerMove] [threads] [seed]
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if(args.length < 2)
+        {
+            System.err.println("Usage: SelfPlay outDir games [nodesPerMove] [threads] [seed]");
+            return;
+        }
+        long nodes = (args.length > 2)? Long.parseLong(args[2]) : 20000;
+        int threads = (args.length > 3)? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        long seed = (args.length > 4)? Long.parseLong(args[4]) : System.nanoTime();
+        SelfPlay selfPlay = new SelfPlay(Paths.get(args[0]), threads, nodes);
+        System.out.println(selfPlay.run(Integer.parseInt(args[1]), seed));
+    }
+}
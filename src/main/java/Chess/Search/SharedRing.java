@@ -0,0 +1,289 @@
+package Chess.Search;
+
+import Chess.Archive.PackedPosition;
+import Chess.Position;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Memory mapped file shared by a WorkerPool and one SearchWorker process: a ring of search requests from the pool to
+ * the worker, a ring of replies back, and a few control words. Each ring has exactly one writer and one reader, so
+ * the only synchronization is a release store of the writer's counter after the slot is filled and an acquire load by
+ * the reader, through VarHandles on the mapped buffer. Both processes map the same pages, so nothing is copied or
+ * serialized beyond packing the position.
+ * <p>
+ * Layout, native byte order, every counter on its own cache line:
+ * <pre>
+ * 0        header       magic, slots, heartbeat, stop flag, cancelled job id, worker pid
+ * 64       requests     tail (written by the pool), then at +64 head (written by the worker), then the slots
+ * ...      replies      tail (written by the worker), then at +64 head (written by the pool), then the slots
+ * </pre>
+ * Request slot: job id long, node limit long, max depth int, pad, PackedPosition. Reply slot: job id long, nodes long,
+ * move code int, score int, depth int, status int.
+ */
+final class SharedRing implements Closeable
+{
+    static final int STATUS_OK = 0;
+    static final int STATUS_BAD_POSITION = 1;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final int MAGIC = 0x43535731;         // "CSW1"
+    private static final int LINE = 64;
+    private static final int HEARTBEAT = 8, STOP = 16, CANCELLED = 24, PID = 32;
+    private static final int REQUEST_SLOT = 64, REPLY_SLOT = 32;
+    private static final int REQUESTS = LINE;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer map;
+    private final int slots;
+    private final int replies;        // Offset of the reply ring
+
+    /**
+     * A request read by the worker.
+     */
+    static final class Request
+    {
+        final long jobId;
+        final long nodeLimit;
+        final int maxDepth;
+        final Position position;    // Null if the slot did not hold a valid position
+
+        Request(long jobId, long nodeLimit, int maxDepth, Position position)
+        {
+            this.jobId = jobId;
+            this.nodeLimit = nodeLimit;
+            this.maxDepth = maxDepth;
+            this.position = position;
+        }
+    }
+
+    /**
+     * A reply read by the pool.
+     */
+    static final class Reply
+    {
+        final long jobId;
+        final int status;
+        final Search.Result result;
+
+        Reply(long jobId, int status, Search.Result result)
+        {
+            this.jobId = jobId;
+            this.status = status;
+            this.result = result;
+        }
+    }
+
+    private SharedRing(FileChannel channel, MappedByteBuffer map, int slots)
+    {
+        this.channel = channel;
+        this.map = map;
+        this.slots = slots;
+        this.replies = REQUESTS + 2 * LINE + slots * REQUEST_SLOT;
+    }
+
+    private static long size(int slots)
+    {
+        return REQUESTS + 2 * LINE + (long) slots * REQUEST_SLOT + 2 * LINE + (long) slots * REPLY_SLOT;
+    }
+
+    /**
+     * Creates or overwrites the file of a ring with the given number of slots, a power of two. Called by the pool.
+     * @param path Path
+     * @param slots int
+     * @return SharedRing
+     * @throws IOException
+     */
+    static SharedRing create(Path path, int slots) throws IOException
+    {
+        if(Integer.bitCount(slots) != 1) throw new IllegalArgumentException("Slots must be a power of two: " + slots);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try
+        {
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size(slots));
+            map.order(ByteOrder.nativeOrder());
+            map.putInt(4, slots);
+            map.putInt(0, MAGIC);
+            return new SharedRing(channel, map, slots);
+        } catch (IOException | RuntimeException e)
+        {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens the file of a ring created by the pool. Called by the worker.
+     * @param path Path
+     * @return SharedRing
+     * @throws IOException
+     */
+    static SharedRing open(Path path) throws IOException
+    {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try
+        {
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            map.order(ByteOrder.nativeOrder());
+            int slots = map.getInt(4);
+            if(map.getInt(0) != MAGIC || channel.size() != size(slots)) throw new IOException("Not a worker ring");
+            return new SharedRing(channel, map, slots);
+        } catch (IOException | RuntimeException e)
+        {
+            channel.close();
+            throw e;
+        }
+    }
+
+    int getSlots()
+    {
+        return slots;
+    }
+
+    /**
+     * Empties both rings and clears the control words, for a new worker process. Only called while no worker has the
+     * file open.
+     */
+    void reset()
+    {
+        for(int offset : new int[] {HEARTBEAT, STOP, CANCELLED, PID, REQUESTS, REQUESTS + LINE, replies,
+                replies + LINE})
+            LONGS.setVolatile(map, offset, 0L);
+    }
+
+    /**
+     * Adds a request, or returns false if the ring is full. Called by the pool.
+     */
+    boolean offerRequest(long jobId, long nodeLimit, int maxDepth, Position position)
+    {
+        long tail = (long) LONGS.get(map, REQUESTS);
+        if(tail - (long) LONGS.getAcquire(map, REQUESTS + LINE) >= slots) return false;
+        int slot = REQUESTS + 2 * LINE + (int) (tail & (slots - 1)) * REQUEST_SLOT;
+        map.putLong(slot, jobId);
+        map.putLong(slot + 8, nodeLimit);
+        map.putInt(slot + 16, maxDepth);
+        PackedPosition.write(position, map.duplicate().position(slot + 24));
+        LONGS.setRelease(map, REQUESTS, tail + 1);
+        return true;
+    }
+
+    /**
+     * Takes the next request, or returns null if there is none. Called by the worker.
+     */
+    Request pollRequest()
+    {
+        long head = (long) LONGS.get(map, REQUESTS + LINE);
+        if(head == (long) LONGS.getAcquire(map, REQUESTS)) return null;
+        int slot = REQUESTS + 2 * LINE + (int) (head & (slots - 1)) * REQUEST_SLOT;
+        Position position;
+        try
+        {
+            position = PackedPosition.read(map, slot + 24);
+        } catch (IllegalArgumentException e)
+        {
+            position = null;
+        }
+        Request request = new Request(map.getLong(slot), map.getLong(slot + 8), map.getInt(slot + 16), position);
+        LONGS.setRelease(map, REQUESTS + LINE, head + 1);
+        return request;
+    }
+
+    /**
+     * Adds a reply, or returns false if the ring is full. Called by the worker.
+     */
+    boolean offerReply(long jobId, int status, Search.Result result)
+    {
+        long tail = (long) LONGS.get(map, replies);
+        if(tail - (long) LONGS.getAcquire(map, replies + LINE) >= slots) return false;
+        int slot = replies + 2 * LINE + (int) (tail & (slots - 1)) * REPLY_SLOT;
+        map.putLong(slot, jobId);
+        map.putLong(slot + 8, (result == null)? 0 : result.nodes);
+        map.putInt(slot + 16, (result == null)? 0 : result.moveCode);
+        map.putInt(slot + 20, (result == null)? 0 : result.score);
+        map.putInt(slot + 24, (result == null)? 0 : result.depth);
+        map.putInt(slot + 28, status);
+        LONGS.setRelease(map, replies, tail + 1);
+        return true;
+    }
+
+    /**
+     * Takes the next reply, or returns null if there is none. Called by the pool.
+     */
+    Reply pollReply()
+    {
+        long head = (long) LONGS.get(map, replies + LINE);
+        if(head == (long) LONGS.getAcquire(map, replies)) return null;
+        int slot = replies + 2 * LINE + (int) (head & (slots - 1)) * REPLY_SLOT;
+        int status = map.getInt(slot + 28);
+        Search.Result result = (status != STATUS_OK)? null
+                : new Search.Result(map.getInt(slot + 16), map.getInt(slot + 20), map.getInt(slot + 24),
+                        map.getLong(slot + 8));
+        Reply reply = new Reply(map.getLong(slot), status, result);
+        LONGS.setRelease(map, replies + LINE, head + 1);
+        return reply;
+    }
+
+    /**
+     * Tells the pool the worker is alive. Called by the worker while idle and while searching.
+     */
+    void beat()
+    {
+        LONGS.setRelease(map, HEARTBEAT, (long) LONGS.get(map, HEARTBEAT) + 1);
+    }
+
+    long getHeartbeat()
+    {
+        return (long) LONGS.getAcquire(map, HEARTBEAT);
+    }
+
+    /**
+     * Asks the worker to exit once its current search stops.
+     */
+    void requestStop()
+    {
+        LONGS.setRelease(map, STOP, 1L);
+    }
+
+    boolean isStopRequested()
+    {
+        return (long) LONGS.getAcquire(map, STOP) != 0;
+    }
+
+    /**
+     * Asks the worker to stop the search of the given job if it is running it. Job ids start at 1.
+     */
+    void cancel(long jobId)
+    {
+        LONGS.setRelease(map, CANCELLED, jobId);
+    }
+
+    long getCancelled()
+    {
+        return (long) LONGS.getAcquire(map, CANCELLED);
+    }
+
+    void setPid(long pid)
+    {
+        LONGS.setRelease(map, PID, pid);
+    }
+
+    long getPid()
+    {
+        return (long) LONGS.getAcquire(map, PID);
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        channel.close();
+    }
+}
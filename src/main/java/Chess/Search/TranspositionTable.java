@@ -0,0 +1,248 @@
+package Chess.Search;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Search results keyed by position hash, kept in a memory mapped file so they survive restarts. Pages of the file are
+ * only read in as positions hash to them, so opening a large table costs nothing up front. Both board sizes can share a
+ * table, since the Zobrist hash covers the board width.
+ * <p>
+ * The file is a header followed by buckets of BUCKET_SIZE entries, 16 bytes each: the position hash XORed with the
+ * data, then the data. A write torn between the two longs by another thread fails the XOR check and reads as a miss,
+ * so the table needs no locks. The data packs the best move, score, depth, bound and the search generation that wrote
+ * it, see the static accessors.
+ * <p>
+ * Each search should call newSearch() first. A store replaces the entry for the same position, or else the entry in the
+ * bucket that is worth least, where entries lose worth for every generation they have not been refreshed in. So old
+ * analysis is evicted first once the table is full, but deep results outlive shallow ones for a while.
+ */
+public class TranspositionTable implements Closeable
+{
+    public static final int BOUND_EXACT = 1;
+    public static final int BOUND_LOWER = 2;     // Score is at least the stored score (the search failed high)
+    public static final int BOUND_UPPER = 3;     // Score is at most the stored score (the search failed low)
+
+    static final int ENTRY_SIZE = 16;
+    static final int BUCKET_SIZE = 4;
+    static final int HEADER_SIZE = 64;
+    static final long MAX_BYTES = 1L << 30;
+
+    private static final int MAGIC = 0x43545431;         // "CTT1"
+    private static final int AGE_BITS = 6;
+    private static final int AGE_MASK = (1 << AGE_BITS) - 1;
+    private static final long VALID = 1L << 48;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer map;
+    private final int bucketMask;
+    private int generation;
+
+    /**
+     * Opens a table file, creating it if needed. The table holds as many entries as fit in maxBytes, rounded down to a
+     * power of two buckets, up to 1GB. An existing file of a different size is cleared and resized.
+     * @param path Path
+     * @param maxBytes long
+     * @throws IOException
+     */
+    public TranspositionTable(Path path, long maxBytes) throws IOException
+    {
+        long buckets = Long.highestOneBit(Math.max(1, Math.min(maxBytes, MAX_BYTES) / (ENTRY_SIZE * BUCKET_SIZE)));
+        long size = HEADER_SIZE + buckets * ENTRY_SIZE * BUCKET_SIZE;
+        bucketMask = (int) buckets - 1;
+
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try
+        {
+            boolean fresh = channel.size() != size;
+            if(fresh) channel.truncate(0);
+            map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            if(!fresh && map.getInt(0) == MAGIC && map.getLong(8) == buckets) generation = map.getInt(4);
+            else
+            {
+                if(!fresh) for(long i = HEADER_SIZE; i < size; i += 8) map.putLong((int) i, 0L);
+                map.putInt(0, MAGIC);
+                map.putLong(8, buckets);
+                generation = 0;
+            }
+        } catch (IOException | RuntimeException e)
+        {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Starts a new search generation. Entries from earlier generations become cheaper to replace.
+     */
+    public synchronized void newSearch()
+    {
+        generation = (generation + 1) & AGE_MASK;
+        map.putInt(4, generation);
+    }
+
+    /**
+     * Returns the data stored for a position, or 0 if there is none.
+     * @param hash long
+     * @return long
+     */
+    public long probe(long hash)
+    {
+        int bucket = bucketOffset(hash);
+        for(int i = 0; i < BUCKET_SIZE; i++)
+        {
+            int at = bucket + i * ENTRY_SIZE;
+            long data = map.getLong(at + 8);
+            if((map.getLong(at) ^ data) == hash && (data & VALID) != 0) return data;
+        }
+        return 0;
+    }
+
+    /**
+     * Stores a search result for a position.
+     * @param hash long
+     * @param moveCode int best move, see Move.encode, or 0 if none
+     * @param score int between Short.MIN_VALUE and Short.MAX_VALUE
+     * @param depth int between 0 and 255
+     * @param bound int one of the BOUND constants
+     */
+    public void store(long hash, int moveCode, int score, int depth, int bound)
+    {
+        int gen = generation;
+        int bucket = bucketOffset(hash);
+        int target = -1, empty = -1;
+        int leastWorth = Integer.MAX_VALUE;
+        for(int i = 0; i < BUCKET_SIZE; i++)
+        {
+            int at = bucket + i * ENTRY_SIZE;
+            long old = map.getLong(at + 8);
+            if((old & VALID) == 0)
+            {
+                if(empty < 0) empty = at;
+                continue;
+            }
+            if((map.getLong(at) ^ old) == hash)
+            {
+                // Keep a deeper result from this search unless the new one is exact
+                if(age(old) == gen && depth(old) > depth && bound != BOUND_EXACT) return;
+                if(moveCode == 0) moveCode = move(old);
+                empty = at;
+                break;
+            }
+            int worth = depth(old) - 8 * ((gen - age(old)) & AGE_MASK);
+            if(worth < leastWorth)
+            {
+                leastWorth = worth;
+                target = at;
+            }
+        }
+        if(empty >= 0) target = empty;
+        long data = pack(moveCode, score, depth, bound, gen);
+        map.putLong(target, hash ^ data);
+        map.putLong(target + 8, data);
+    }
+
+    /**
+     * Returns the permille of a sample of entries written by the current generation.
+     * @return int
+     */
+    public int getUsage()
+    {
+        int sample = Math.min(1000 / BUCKET_SIZE, bucketMask + 1) * BUCKET_SIZE;
+        int used = 0;
+        for(int i = 0; i < sample; i++)
+        {
+            long data = map.getLong(HEADER_SIZE + i * ENTRY_SIZE + 8);
+            if((data & VALID) != 0 && age(data) == generation) used++;
+        }
+        return used * 1000 / sample;
+    }
+
+    /**
+     * Returns the number of entries the table can hold.
+     * @return long
+     */
+    public long capacity()
+    {
+        return (long) (bucketMask + 1) * BUCKET_SIZE;
+    }
+
+    /**
+     * Writes changed pages to disk.
+     */
+    public void force()
+    {
+        map.force();
+    }
+
+    /**
+     * Writes changed pages to disk and closes the file. The mapping is released once it is garbage collected.
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException
+    {
+        force();
+        channel.close();
+    }
+
+    /**
+     * Returns the best move of stored data, or 0 if none.
+     * @param data long
+     * @return int
+     */
+    public static int move(long data)
+    {
+        return (int) (data & 0xFFFF);
+    }
+
+    /**
+     * Returns the score of stored data.
+     * @param data long
+     * @return int
+     */
+    public static int score(long data)
+    {
+        return (short) (data >>> 16);
+    }
+
+    /**
+     * Returns the search depth of stored data.
+     * @param data long
+     * @return int
+     */
+    public static int depth(long data)
+    {
+        return (int) (data >>> 32) & 0xFF;
+    }
+
+    /**
+     * Returns the bound of stored data, one of the BOUND constants.
+     * @param data long
+     * @return int
+     */
+    public static int bound(long data)
+    {
+        return (int) (data >>> 40) & 0x3;
+    }
+
+    private static int age(long data)
+    {
+        return (int) (data >>> 42) & AGE_MASK;
+    }
+
+    private static long pack(int moveCode, int score, int depth, int bound, int gen)
+    {
+        return VALID | (long) gen << 42 | (long) (bound & 0x3) << 40 | (long) (depth & 0xFF) << 32
+                | (long) (score & 0xFFFF) << 16 | (moveCode & 0xFFFF);
+    }
+
+    private int bucketOffset(long hash)
+    {
+        return HEADER_SIZE + ((int) hash & bucketMask) * BUCKET_SIZE * ENTRY_SIZE;
+    }
+}
@@ -0,0 +1,360 @@
+package Chess.Search;
+
+import Chess.Archive.PackedPosition;
+import Chess.Position;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs searches in separate JVM processes, so that the garbage and pauses of heavy searching stay out of the heap of
+ * the GUI or server. Each worker process is a SearchWorker sharing a SharedRing file with the pool: requests and
+ * replies pass through memory mapped rings, with positions packed as PackedPosition, rather than over sockets.
+ * <p>
+ * One I/O thread of the pool does all the work on the pool's side of the rings: it hands queued requests to the
+ * workers with the fewest in flight, completes futures from the replies, and watches the processes. A worker that exits
+ * or stops sending heartbeats for the hang time is killed and started again, and the requests it had not answered are
+ * sent to the new process, so callers only see a delay. A request still unanswered after MAX_ATTEMPTS workers died on
+ * it fails with an IOException instead.
+ * <p>
+ * Futures complete on the I/O thread, so actions chained on them should be quick or async. Cancelling a future takes
+ * the request off the queue, or stops its search in the worker.
+ */
+public class WorkerPool implements Closeable
+{
+    public static final int MAX_ATTEMPTS = 3;
+    private static final int RING_SLOTS = 64;
+    private static final long MAX_PARK_NANOS = 1_000_000;
+
+    private final Path dir;
+    private final Worker[] workers;
+    private final ConcurrentLinkedQueue<Job> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicLong nextJobId = new AtomicLong(1);
+    private final AtomicLong restarts = new AtomicLong();
+    private List<String> jvmOptions = Arrays.asList("-Xmx256m", "-XX:+UseSerialGC");
+    private long hangMillis = 10_000;
+    private Thread io;
+    private volatile boolean running;
+
+    /**
+     * Constructs a pool. Nothing is started until start is called.
+     * @param processes int number of worker processes
+     * @param dir Path of the directory for the ring files, created if missing
+     */
+    public WorkerPool(int processes, Path dir)
+    {
+        if(processes < 1) throw new IllegalArgumentException("Need at least one process");
+        this.dir = dir;
+        this.workers = new Worker[processes];
+    }
+
+    /**
+     * Sets the options passed to the worker JVMs, such as heap size and collector.
+     * @param jvmOptions List of String
+     */
+    public void setJvmOptions(List<String> jvmOptions)
+    {
+        this.jvmOptions = new ArrayList<>(jvmOptions);
+    }
+
+    /**
+     * Sets how long a worker may go without a heartbeat before it is considered hung and restarted. It beats about
+     * every millisecond, idle or searching.
+     * @param hangMillis long
+     */
+    public void setHangMillis(long hangMillis)
+    {
+        this.hangMillis = hangMillis;
+    }
+
+    /**
+     * Creates the ring files and starts the worker processes and the I/O thread.
+     * @throws IOException
+     */
+    public synchronized void start() throws IOException
+    {
+        if(io != null) throw new IllegalStateException("Pool already started");
+        Files.createDirectories(dir);
+        for(int i = 0; i < workers.length; i++)
+        {
+            workers[i] = new Worker(dir.resolve("worker-" + i + ".ring"));
+            workers[i].launch();
+        }
+        running = true;
+        io = new Thread(this::ioLoop, "WorkerPool-io");
+        io.setDaemon(true);
+        io.start();
+    }
+
+    /**
+     * Searches a position in a worker process. Fails with IllegalArgumentException if the position cannot be packed,
+     * see PackedPosition.canPack.
+     * @param position Position
+     * @param nodeLimit long
+     * @param maxDepth int
+     * @return CompletableFuture of Search.Result
+     */
+    public CompletableFuture<Search.Result> search(Position position, long nodeLimit, int maxDepth)
+    {
+        Job job = new Job(nextJobId.getAndIncrement(), position, nodeLimit, maxDepth);
+        if(!PackedPosition.canPack(position))
+        {
+            job.future.completeExceptionally(new IllegalArgumentException("Position cannot be sent to a worker"));
+            return job.future;
+        }
+        if(!running)
+        {
+            job.future.completeExceptionally(new IllegalStateException("Pool is not running"));
+            return job.future;
+        }
+        job.future.whenComplete((result, error) ->
+        {
+            if(!job.future.isCancelled()) return;
+            queue.remove(job);
+            Worker worker = job.worker;
+            if(worker != null) worker.ring.cancel(job.id);
+        });
+        queue.add(job);
+        LockSupport.unpark(io);
+        return job.future;
+    }
+
+    /**
+     * Returns the number of times a worker process was restarted.
+     * @return long
+     */
+    public long getRestarts()
+    {
+        return restarts.get();
+    }
+
+    /**
+     * Returns the process ids of the running workers, 0 for one that has not started yet.
+     * @return long[]
+     */
+    public long[] getWorkerPids()
+    {
+        long[] pids = new long[workers.length];
+        for(int i = 0; i < workers.length; i++) pids[i] = (workers[i] == null)? 0 : workers[i].ring.getPid();
+        return pids;
+    }
+
+    /**
+     * Stops the workers and the I/O thread. Requests not yet answered fail with an IOException.
+     * @throws IOException
+     */
+    @Override
+    public synchronized void close() throws IOException
+    {
+        if(io == null) return;
+        running = false;
+        LockSupport.unpark(io);
+        try
+        {
+            io.join();
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        io = null;
+        IOException closed = new IOException("Worker pool closed");
+        for(Job job : queue) job.future.completeExceptionally(closed);
+        queue.clear();
+        for(Worker worker : workers)
+        {
+            worker.stop();
+            for(Job job : worker.inFlight.values()) job.future.completeExceptionally(closed);
+            worker.ring.close();
+            Files.deleteIfExists(worker.file);
+        }
+    }
+
+    private void ioLoop()
+    {
+        int idle = 0;
+        while(running)
+        {
+            boolean busy = false;
+            for(Worker worker : workers)
+            {
+                busy |= worker.collect();
+                worker.watch();
+            }
+            busy |= dispatch();
+            if(busy) idle = 0;
+            else if(++idle > 100) LockSupport.parkNanos(Math.min(MAX_PARK_NANOS, 1000L << Math.min(10, idle - 100)));
+            else Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Hands queued jobs to the workers with the fewest in flight while they have room. Returns true if any was sent.
+     */
+    private boolean dispatch()
+    {
+        boolean sent = false;
+        Job job;
+        while((job = queue.peek()) != null)
+        {
+            Worker target = null;
+            for(Worker worker : workers)
+                if(worker.inFlight.size() < RING_SLOTS && (target == null
+                        || worker.inFlight.size() < target.inFlight.size())) target = worker;
+            if(target == null || !target.send(job)) break;
+            queue.poll();
+            sent = true;
+        }
+        return sent;
+    }
+
+    /**
+     * A search request and the worker it was last sent to.
+     */
+    private static final class Job
+    {
+        final long id;
+        final Position position;
+        final long nodeLimit;
+        final int maxDepth;
+        final CompletableFuture<Search.Result> future = new CompletableFuture<>();
+        volatile Worker worker;
+        int attempts;
+
+        Job(long id, Position position, long nodeLimit, int maxDepth)
+        {
+            this.id = id;
+            this.position = position;
+            this.nodeLimit = nodeLimit;
+            this.maxDepth = maxDepth;
+        }
+    }
+
+    /**
+     * One worker process and its ring. Only used by the I/O thread, apart from start and close.
+     */
+    private final class Worker
+    {
+        final Path file;
+        final SharedRing ring;
+        final Map<Long, Job> inFlight = new LinkedHashMap<>();
+        Process process;
+        long lastBeat;
+        long lastBeatNanos;
+
+        Worker(Path file) throws IOException
+        {
+            this.file = file;
+            this.ring = SharedRing.create(file, RING_SLOTS);
+        }
+
+        void launch() throws IOException
+        {
+            ring.reset();
+            List<String> command = new ArrayList<>();
+            command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+            command.addAll(jvmOptions);
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(SearchWorker.class.getName());
+            command.add(file.toString());
+            process = new ProcessBuilder(command).redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+            lastBeat = 0;
+            lastBeatNanos = System.nanoTime();
+        }
+
+        boolean send(Job job)
+        {
+            if(job.future.isDone()) return true;
+            if(!ring.offerRequest(job.id, job.nodeLimit, job.maxDepth, job.position)) return false;
+            job.worker = this;
+            inFlight.put(job.id, job);
+            return true;
+        }
+
+        /**
+         * Completes the futures of the replies waiting in the ring. Returns true if there were any.
+         */
+        boolean collect()
+        {
+            boolean any = false;
+            SharedRing.Reply reply;
+            while((reply = ring.pollReply()) != null)
+            {
+                any = true;
+                Job job = inFlight.remove(reply.jobId);
+                if(job == null) continue;
+                if(reply.status == SharedRing.STATUS_OK) job.future.complete(reply.result);
+                else job.future.completeExceptionally(new IllegalArgumentException("Worker could not read position"));
+            }
+            return any;
+        }
+
+        /**
+         * Restarts the process if it exited or stopped beating, and sends it the jobs left unanswered.
+         */
+        void watch()
+        {
+            long beat = ring.getHeartbeat(), now = System.nanoTime();
+            if(beat != lastBeat)
+            {
+                lastBeat = beat;
+                lastBeatNanos = now;
+            }
+            boolean hung = now - lastBeatNanos > TimeUnit.MILLISECONDS.toNanos(hangMillis);
+            if(process.isAlive() && !hung) return;
+
+            process.destroyForcibly();
+            try
+            {
+                process.waitFor(5, TimeUnit.SECONDS);
+                collect();      // Replies written before it died are still good
+                launch();
+            } catch (IOException | InterruptedException e)
+            {
+                running = false;
+                for(Job job : inFlight.values()) job.future.completeExceptionally(e);
+                inFlight.clear();
+                return;
+            }
+            restarts.incrementAndGet();
+            List<Job> unanswered = new ArrayList<>(inFlight.values());
+            inFlight.clear();
+            for(Job job : unanswered)
+            {
+                if(++job.attempts >= MAX_ATTEMPTS)
+                    job.future.completeExceptionally(new IOException("Worker died " + job.attempts + " times"));
+                else send(job);
+            }
+        }
+
+        /**
+         * Asks the process to exit, and kills it if it has not within a second.
+         */
+        void stop()
+        {
+            ring.requestStop();
+            try
+            {
+                if(!process.waitFor(1, TimeUnit.SECONDS)) process.destroyForcibly().waitFor(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e)
+            {
+                process.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
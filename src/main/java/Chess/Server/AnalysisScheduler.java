@@ -0,0 +1,430 @@
+package Chess.Server;
+
+import Chess.Game.Game;
+import Chess.Position;
+import Chess.Search.Analyzer.Limits;
+import Chess.Search.Evaluator;
+import Chess.Search.Search;
+import Chess.Search.TranspositionTable;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Runs analysis jobs for many tenants on a fixed set of worker threads, where interactive jobs, such as a player
+ * asking for the best move now, come before batch jobs, such as analyzing an archive.
+ * <p>
+ * Waiting jobs are kept per priority class and, within a class, per tenant. Workers always take an interactive job
+ * first, and take turns between the tenants of a class, so one tenant queuing thousands of jobs does not hold up the
+ * others. A batch job that completes a depth while an interactive job is waiting is set aside and its worker takes the
+ * interactive job; the batch job goes back to the front of its tenant's queue and later continues with the next depth,
+ * so no completed work is lost.
+ * <p>
+ * Futures, listeners, time limits and cancellation work as in Analyzer. getStats reports the queue depth and the wait
+ * and total latency of each class.
+ */
+public class AnalysisScheduler implements Closeable
+{
+    public enum Priority {INTERACTIVE, BATCH}
+
+    private static final Priority[] PRIORITIES = Priority.values();
+
+    private final Object lock = new Object();
+    private final ClassQueue[] queues = new ClassQueue[PRIORITIES.length];
+    private final Stats[] stats = new Stats[PRIORITIES.length];
+    private final int maxQueued;
+    private final Thread[] workers;
+    private final ScheduledThreadPoolExecutor timer;
+    private final TranspositionTable table;
+    private int queued;
+    private volatile boolean closed;
+
+    /**
+     * Queue depth, throughput and latency of one priority class. Latencies run from submission: wait until a worker
+     * first starts the job, total until its future completes. Completions are counted by a callback of the future, so
+     * they can show up just after the future completes.
+     */
+    public static final class Stats
+    {
+        public final LatencyHistogram wait = new LatencyHistogram();
+        public final LatencyHistogram total = new LatencyHistogram();
+        private final AtomicLong submitted = new AtomicLong();
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong preempted = new AtomicLong();
+        private volatile int queued;
+
+        /**
+         * Returns the number of jobs of the class waiting for a worker, including jobs set aside.
+         * @return int
+         */
+        public int getQueued()
+        {
+            return queued;
+        }
+
+        /**
+         * Returns the number of jobs of the class submitted.
+         * @return long
+         */
+        public long getSubmitted()
+        {
+            return submitted.get();
+        }
+
+        /**
+         * Returns the number of jobs of the class whose future completed, in any way.
+         * @return long
+         */
+        public long getCompleted()
+        {
+            return completed.get();
+        }
+
+        /**
+         * Returns the number of times a job of the class was set aside for an interactive job.
+         * @return long
+         */
+        public long getPreempted()
+        {
+            return preempted.get();
+        }
+    }
+
+    /**
+     * Constructs a scheduler and starts its workers.
+     * @param threads int, number of jobs run at once
+     * @param maxQueued int, number of jobs that can wait; more are rejected
+     * @param table TranspositionTable shared by the workers, or null to search without one
+     */
+    public AnalysisScheduler(int threads, int maxQueued, TranspositionTable table)
+    {
+        this.maxQueued = maxQueued;
+        this.table = table;
+        for(int i = 0; i < PRIORITIES.length; i++)
+        {
+            queues[i] = new ClassQueue();
+            stats[i] = new Stats();
+        }
+        timer = new ScheduledThreadPoolExecutor(1, task ->
+        {
+            Thread thread = new Thread(task, "AnalysisScheduler-deadlines");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+        workers = new Thread[threads];
+        for(int i = 0; i < threads; i++)
+        {
+            workers[i] = new Thread(this::work, "AnalysisScheduler-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    /**
+     * Queues an analysis of a position.
+     * @param tenant String the job is counted against for fairness
+     * @param priority Priority
+     * @param position Position
+     * @param limits Limits
+     * @return CompletableFuture of Search.Result
+     */
+    public CompletableFuture<Search.Result> submit(String tenant, Priority priority, Position position, Limits limits)
+    {
+        return submit(tenant, priority, position, limits, null);
+    }
+
+    /**
+     * Queues an analysis of a position, passing the result of each completed depth to the listener on the worker
+     * thread. Fails the future with RejectedExecutionException if too many jobs are waiting.
+     * @param tenant String the job is counted against for fairness
+     * @param priority Priority
+     * @param position Position
+     * @param limits Limits
+     * @param listener Consumer of Search.Result or null
+     * @return CompletableFuture of Search.Result
+     */
+    public CompletableFuture<Search.Result> submit(String tenant, Priority priority, Position position, Limits limits,
+                                                   Consumer<Search.Result> listener)
+    {
+        Job job = new Job(tenant, priority, position, limits, listener);
+        Stats classStats = stats[priority.ordinal()];
+        classStats.submitted.incrementAndGet();
+        synchronized(lock)
+        {
+            if(closed || queued >= maxQueued)
+            {
+                job.future.completeExceptionally(new RejectedExecutionException(closed? "Closed" : "Queue is full"));
+                classStats.completed.incrementAndGet();
+                return job.future;
+            }
+            enqueue(job, false);
+            lock.notify();
+        }
+        ScheduledFuture<?> expiry = (limits.timeMillis > 0)?
+                timer.schedule(job::expire, limits.timeMillis, TimeUnit.MILLISECONDS) : null;
+        job.future.whenComplete((result, error) ->
+        {
+            if(expiry != null) expiry.cancel(false);
+            synchronized(lock)
+            {
+                if(job.waiting) dequeue(job);       // Frees its place in the queue
+            }
+            classStats.completed.incrementAndGet();
+            classStats.total.record(System.nanoTime() - job.submitted);
+        });
+        return job.future;
+    }
+
+    /**
+     * Returns the stats of a priority class.
+     * @param priority Priority
+     * @return Stats
+     */
+    public Stats getStats(Priority priority)
+    {
+        return stats[priority.ordinal()];
+    }
+
+    /**
+     * Stops the workers. Running jobs stop within about a millisecond and complete with what they found so far; jobs
+     * still waiting fail with RejectedExecutionException.
+     */
+    @Override
+    public void close()
+    {
+        ArrayDeque<Job> dropped = new ArrayDeque<>();
+        synchronized(lock)
+        {
+            closed = true;
+            for(ClassQueue queue : queues)
+            {
+                Job job;
+                while((job = queue.poll()) != null) dropped.add(job);
+            }
+            lock.notifyAll();
+        }
+        for(Job job : dropped) job.future.completeExceptionally(new RejectedExecutionException("Closed"));
+        for(Thread worker : workers) worker.interrupt();
+        timer.shutdownNow();
+    }
+
+    private void work()
+    {
+        Search search = new Search(new Evaluator(), table);
+        Job job = null;
+        while(true)
+        {
+            if(job == null)
+            {
+                synchronized(lock)
+                {
+                    while(!closed && (job = poll(Priority.INTERACTIVE)) == null && (job = poll(Priority.BATCH)) == null)
+                    {
+                        try
+                        {
+                            lock.wait();
+                        } catch (InterruptedException e)
+                        {
+                            // Checked by the loop
+                        }
+                    }
+                    if(closed) return;
+                }
+            }
+            job = run(search, job);
+        }
+    }
+
+    /**
+     * Runs a job until it completes or is set aside, and returns the interactive job it was set aside for, if any.
+     */
+    private Job run(Search search, Job job)
+    {
+        if(job.future.isDone()) return null;
+        if(job.started == 0)
+        {
+            job.started = System.nanoTime();
+            stats[job.priority.ordinal()].wait.record(job.started - job.submitted);
+        }
+        try
+        {
+            Search.Result result = search.search(Game.fromSnapshot(job.position), job.limits.nodeLimit,
+                    job.limits.maxDepth, job::shouldStop, job::progress, job.latest);
+            Job next = job.preemptedBy;
+            if(next == null || job.future.isDone())
+            {
+                job.future.complete(result);
+                return next;
+            }
+            job.preemptedBy = null;
+            stats[job.priority.ordinal()].preempted.incrementAndGet();
+            synchronized(lock)
+            {
+                if(closed) job.future.completeExceptionally(new RejectedExecutionException("Closed"));
+                else
+                {
+                    enqueue(job, true);
+                    lock.notify();
+                }
+            }
+            return next;
+        } catch (RuntimeException e)
+        {
+            job.future.completeExceptionally(e);
+            return job.preemptedBy;
+        }
+    }
+
+    /**
+     * Takes the next waiting job of a class, or returns null. Called holding the lock.
+     */
+    private Job poll(Priority priority)
+    {
+        Job job = queues[priority.ordinal()].poll();
+        if(job != null) countQueued(priority, -1);
+        return job;
+    }
+
+    /**
+     * Adds a job to its tenant's queue, at the back for a new job or at the front for one set aside. Called holding
+     * the lock.
+     */
+    private void enqueue(Job job, boolean front)
+    {
+        queues[job.priority.ordinal()].add(job, front);
+        countQueued(job.priority, 1);
+    }
+
+    /**
+     * Removes a waiting job that completed before a worker took it. Called holding the lock.
+     */
+    private void dequeue(Job job)
+    {
+        queues[job.priority.ordinal()].remove(job);
+        countQueued(job.priority, -1);
+    }
+
+    private void countQueued(Priority priority, int change)
+    {
+        queued += change;
+        stats[priority.ordinal()].queued += change;
+    }
+
+    /**
+     * Waiting jobs of one priority class: a queue per tenant, and the tenants with waiting jobs in the order they get
+     * their next turn. Only used holding the lock.
+     */
+    private static final class ClassQueue
+    {
+        final Map<String, ArrayDeque<Job>> byTenant = new HashMap<>();
+        final ArrayDeque<String> turns = new ArrayDeque<>();
+
+        void add(Job job, boolean front)
+        {
+            ArrayDeque<Job> jobs = byTenant.get(job.tenant);
+            if(jobs == null)
+            {
+                jobs = new ArrayDeque<>();
+                byTenant.put(job.tenant, jobs);
+                if(front) turns.addFirst(job.tenant);
+                else turns.addLast(job.tenant);
+            }
+            if(front) jobs.addFirst(job);
+            else jobs.addLast(job);
+            job.waiting = true;
+        }
+
+        Job poll()
+        {
+            String tenant = turns.pollFirst();
+            if(tenant == null) return null;
+            ArrayDeque<Job> jobs = byTenant.get(tenant);
+            Job job = jobs.pollFirst();
+            if(jobs.isEmpty()) byTenant.remove(tenant);
+            else turns.addLast(tenant);
+            job.waiting = false;
+            return job;
+        }
+
+        void remove(Job job)
+        {
+            ArrayDeque<Job> jobs = byTenant.get(job.tenant);
+            jobs.remove(job);
+            if(jobs.isEmpty())
+            {
+                byTenant.remove(job.tenant);
+                turns.remove(job.tenant);
+            }
+            job.waiting = false;
+        }
+    }
+
+    /**
+     * One analysis. Between its turns on a worker it keeps the last depth completed, which the next turn resumes from.
+     */
+    private final class Job
+    {
+        final String tenant;
+        final Priority priority;
+        final Position position;
+        final Limits limits;
+        final Consumer<Search.Result> listener;
+        final long submitted = System.nanoTime();
+        final long deadline;
+        final CompletableFuture<Search.Result> future = new CompletableFuture<>();
+        volatile Search.Result latest;
+        volatile Job preemptedBy;       // Set by the worker between two depths, stops the search
+        boolean waiting;                // Guarded by the lock
+        long started;                   // Only used by the worker running the job
+
+        Job(String tenant, Priority priority, Position position, Limits limits, Consumer<Search.Result> listener)
+        {
+            this.tenant = tenant;
+            this.priority = priority;
+            this.position = position;
+            this.limits = limits;
+            this.listener = listener;
+            this.deadline = (limits.timeMillis > 0)? submitted + limits.timeMillis * 1_000_000 : 0;
+        }
+
+        private boolean shouldStop()
+        {
+            return preemptedBy != null || future.isDone() || closed
+                    || (deadline != 0 && System.nanoTime() - deadline >= 0);
+        }
+
+        /**
+         * Called by the search after each depth, which is where a batch job gives way to a waiting interactive one.
+         */
+        private void progress(Search.Result result)
+        {
+            latest = result;
+            if(listener != null && !future.isDone()) listener.accept(result);
+            if(priority == Priority.BATCH && result.depth < limits.maxDepth)
+            {
+                synchronized(lock)
+                {
+                    preemptedBy = AnalysisScheduler.this.poll(Priority.INTERACTIVE);
+                }
+            }
+        }
+
+        private void expire()
+        {
+            Search.Result result = latest;
+            if(result != null) future.complete(result);
+            else future.completeExceptionally(new TimeoutException("No depth done in " + limits.timeMillis + "ms"));
+        }
+    }
+}
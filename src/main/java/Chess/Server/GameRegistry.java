@@ -0,0 +1,517 @@
+package Chess.Server;
+
+import Chess.Game.Game;
+import Chess.Game.Game.GameState;
+import Chess.Game.GameView;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Hosts games on a fixed set of worker threads, each game owned by exactly one worker. Game is not thread safe, even
+ * for reads, since move generation makes and unmakes moves on the board, so instead of locking games, every operation
+ * on a game is sent as a task to its owner's queue and runs there. Games are placed by hashing their id, and can later
+ * be moved to another worker by rebalance.
+ * <p>
+ * The route from a game id to its owner is guarded by striped read-write locks, held only while a task is queued.
+ * Moving a game takes the write lock of its stripe to tell the new owner to expect it, point the route at the new owner
+ * and queue the hand over on the old one. Tasks queued before that run on the old owner, and tasks queued after wait on
+ * the new owner until the game arrives, so tasks for one game always run in the order they were submitted.
+ * <p>
+ * After every task a worker publishes an immutable GameInfo for the game, so listing games and collecting stats read
+ * those and never wait on the workers.
+ * <p>
+ * Closing the registry stops its workers. Operations still queued, and any submitted later, fail with a
+ * RejectedExecutionException.
+ */
+public class GameRegistry implements AutoCloseable
+{
+    private static final int STRIPES = 64;
+    private static final Task EXPECT = (worker, entry) -> {};     // Marks a game as on its way to the worker
+
+    private final Worker[] workers;
+    private final ReadWriteLock[] stripes = new ReadWriteLock[STRIPES];
+    private final Map<Integer, Integer> moved = new ConcurrentHashMap<>();      // Owner of games moved by rebalance
+    private final Map<Integer, GameInfo> infos = new ConcurrentHashMap<>();
+    private final Map<Integer, Long> opsAtLastRebalance = new HashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger(1);
+    private final AtomicInteger size = new AtomicInteger();
+    private volatile boolean closed;        // Only set while holding every stripe's write lock
+
+    /**
+     * Published summary of a game: where it runs, how busy it is, and the game's own published view.
+     */
+    public static final class GameInfo
+    {
+        public final int id;
+        public final int owner;
+        public final GameView view;
+        public final GameState state;
+        public final int ply;
+        public final long operations;
+
+        GameInfo(int id, int owner, Game game, long operations)
+        {
+            this.id = id;
+            this.owner = owner;
+            this.view = game.getView();
+            this.state = view.state;
+            this.ply = view.ply;
+            this.operations = operations;
+        }
+    }
+
+    /**
+     * Load of one worker.
+     */
+    public static final class WorkerStats
+    {
+        public final int games;
+        public final int queued;
+        public final long tasks;
+
+        WorkerStats(int games, int queued, long tasks)
+        {
+            this.games = games;
+            this.queued = queued;
+            this.tasks = tasks;
+        }
+    }
+
+    /**
+     * A game and the number of tasks run on it, only touched by its owner.
+     */
+    private static final class Entry
+    {
+        final int id;
+        final Game game;
+        long operations;
+
+        Entry(int id, Game game)
+        {
+            this.id = id;
+            this.game = game;
+        }
+    }
+
+    /**
+     * Work for a game, run by its owner with the game's entry, or null if there is no such game.
+     */
+    private interface Task
+    {
+        void run(Worker worker, Entry entry);
+    }
+
+    /**
+     * Message in a worker's queue. A null task installs the entry, or gives up waiting for it if that is null. The
+     * future, if any, is the one the task completes, and is failed instead if the registry closes first.
+     */
+    private static final class Message
+    {
+        final int gameId;
+        final Task task;
+        final Entry entry;
+        final CompletableFuture<?> future;
+
+        Message(int gameId, Task task, Entry entry)
+        {
+            this(gameId, task, entry, null);
+        }
+
+        Message(int gameId, Task task, Entry entry, CompletableFuture<?> future)
+        {
+            this.gameId = gameId;
+            this.task = task;
+            this.entry = entry;
+            this.future = future;
+        }
+    }
+
+    /**
+     * Constructs a registry and starts its workers.
+     * @param threads int number of workers
+     */
+    public GameRegistry(int threads)
+    {
+        if(threads < 1) throw new IllegalArgumentException("Need at least one thread");
+        workers = new Worker[threads];
+        for(int i = 0; i < STRIPES; i++) stripes[i] = new ReentrantReadWriteLock();
+        for(int i = 0; i < threads; i++)
+        {
+            workers[i] = new Worker(i);
+            workers[i].thread.start();
+        }
+    }
+
+    /**
+     * Adds a game and returns its id. The game must not be used by the caller afterwards.
+     * @param game Game
+     * @return int
+     * @throws RejectedExecutionException if the registry is closed
+     */
+    public int add(Game game)
+    {
+        int id = nextId.getAndIncrement();
+        Entry entry = new Entry(id, game);
+        Lock lock = stripes[id & (STRIPES - 1)].readLock();
+        lock.lock();
+        try
+        {
+            if(closed) throw new RejectedExecutionException("Game registry is closed");
+            size.incrementAndGet();
+            infos.put(id, new GameInfo(id, ownerOf(id), game, 0));
+            workers[ownerOf(id)].queue.add(new Message(id, null, entry));
+        } finally
+        {
+            lock.unlock();
+        }
+        return id;
+    }
+
+    /**
+     * Runs an action on a game's owner thread. The future completes with the action's result, or exceptionally with
+     * what it threw, or with an IllegalArgumentException if there is no such game. Dependent stages run on the owner
+     * thread unless given an executor, so they should be short.
+     * @param gameId int
+     * @param action Function from Game to T
+     * @return CompletableFuture of T
+     */
+    public <T> CompletableFuture<T> submit(int gameId, Function<Game, T> action)
+    {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        send(gameId, future, (worker, entry) ->
+        {
+            if(entry == null)
+            {
+                future.completeExceptionally(new IllegalArgumentException("No game " + gameId));
+                return;
+            }
+            T result = null;
+            RuntimeException failure = null;
+            try
+            {
+                result = action.apply(entry.game);
+            } catch (RuntimeException e)
+            {
+                failure = e;
+            }
+            entry.operations++;
+            worker.publish(entry);      // Before completing, so the submitter sees its own change in getInfo
+            if(failure == null) future.complete(result);
+            else future.completeExceptionally(failure);
+        });
+        return future;
+    }
+
+    /**
+     * Removes a game. The future completes with false if there was no such game. Its route is dropped under the write
+     * lock of its stripe, after which migrate no longer finds the game, so a move in flight cannot route it again.
+     * @param gameId int
+     * @return CompletableFuture of Boolean
+     */
+    public CompletableFuture<Boolean> remove(int gameId)
+    {
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        send(gameId, future, (worker, entry) ->
+        {
+            if(entry != null)
+            {
+                worker.games.remove(gameId);
+                worker.gameCount--;
+                Lock lock = stripes[gameId & (STRIPES - 1)].writeLock();
+                lock.lock();
+                try
+                {
+                    infos.remove(gameId);
+                    moved.remove(gameId);
+                } finally
+                {
+                    lock.unlock();
+                }
+                size.decrementAndGet();
+            }
+            future.complete(entry != null);
+        });
+        return future;
+    }
+
+    /**
+     * Returns the number of games.
+     * @return int
+     */
+    public int size()
+    {
+        return size.get();
+    }
+
+    /**
+     * Returns the last published summary of a game, or null if there is no such game.
+     * @param gameId int
+     * @return GameInfo
+     */
+    public GameInfo getInfo(int gameId)
+    {
+        return infos.get(gameId);
+    }
+
+    /**
+     * Returns the last published summary of every game, by id.
+     * @return List of GameInfo
+     */
+    public List<GameInfo> list()
+    {
+        List<GameInfo> list = new ArrayList<>(infos.values());
+        list.sort(Comparator.comparingInt(info -> info.id));
+        return list;
+    }
+
+    /**
+     * Returns the load of every worker, by index.
+     * @return List of WorkerStats
+     */
+    public List<WorkerStats> getWorkerStats()
+    {
+        List<WorkerStats> stats = new ArrayList<>();
+        for(Worker worker : workers)
+            stats.add(new WorkerStats(worker.gameCount, worker.queue.size(), worker.tasks.get()));
+        return stats;
+    }
+
+    /**
+     * Moves games from busy workers to quiet ones. The load of a game is the number of tasks run on it since the last
+     * rebalance. While the busiest worker has more than tolerance times the average load, its busiest game that makes
+     * the spread smaller is moved to the quietest worker. Returns the number of games moved.
+     * @param tolerance double, 1.25 allows a worker 25% more than the average
+     * @return int
+     */
+    public synchronized int rebalance(double tolerance)
+    {
+        long[] load = new long[workers.length];
+        Map<Integer, List<long[]>> byWorker = new HashMap<>();     // Owner to {id, load} of its games
+        Map<Integer, Long> current = new HashMap<>();
+        for(GameInfo info : infos.values())
+        {
+            long delta = info.operations - opsAtLastRebalance.getOrDefault(info.id, 0L);
+            current.put(info.id, info.operations);
+            load[info.owner] += delta;
+            byWorker.computeIfAbsent(info.owner, k -> new ArrayList<>()).add(new long[] {info.id, delta});
+        }
+        opsAtLastRebalance.clear();
+        opsAtLastRebalance.putAll(current);
+
+        long total = 0;
+        for(long l : load) total += l;
+        double limit = tolerance * total / workers.length;
+        for(List<long[]> games : byWorker.values()) games.sort((a, b) -> Long.compare(b[1], a[1]));
+
+        int movedGames = 0;
+        while(true)
+        {
+            int busiest = 0, quietest = 0;
+            for(int i = 1; i < load.length; i++)
+            {
+                if(load[i] > load[busiest]) busiest = i;
+                if(load[i] < load[quietest]) quietest = i;
+            }
+            if(load[busiest] <= limit || busiest == quietest) break;
+            long gap = load[busiest] - load[quietest];
+            long[] pick = null;
+            List<long[]> games = byWorker.getOrDefault(busiest, new ArrayList<>());
+            for(long[] game : games)
+                if(game[1] > 0 && game[1] < gap)
+                {
+                    pick = game;
+                    break;
+                }
+            if(pick == null) break;
+            games.remove(pick);
+            byWorker.computeIfAbsent(quietest, k -> new ArrayList<>()).add(pick);
+            load[busiest] -= pick[1];
+            load[quietest] += pick[1];
+            migrate((int) pick[0], quietest);
+            movedGames++;
+        }
+        return movedGames;
+    }
+
+    /**
+     * Moves a game to another worker, see the class comment.
+     */
+    void migrate(int gameId, int target)
+    {
+        Lock lock = stripes[gameId & (STRIPES - 1)].writeLock();
+        lock.lock();
+        try
+        {
+            int owner = ownerOf(gameId);
+            if(owner == target || closed || !infos.containsKey(gameId)) return;     // Removed games have no info
+            workers[target].queue.add(new Message(gameId, EXPECT, null));
+            if(target == Math.floorMod(gameId, workers.length)) moved.remove(gameId);
+            else moved.put(gameId, target);
+            workers[owner].queue.add(new Message(gameId, (worker, entry) ->
+            {
+                if(entry != null)
+                {
+                    worker.games.remove(gameId);
+                    worker.gameCount--;
+                }
+                workers[target].queue.add(new Message(gameId, null, entry));
+            }, null));
+        } finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the worker that owns a game, or would own it.
+     * @param gameId int
+     * @return int
+     */
+    public int ownerOf(int gameId)
+    {
+        Integer owner = moved.get(gameId);
+        return (owner != null)? owner : Math.floorMod(gameId, workers.length);
+    }
+
+    /**
+     * Stops the workers and fails every operation they had not run. Games still in the registry are dropped.
+     */
+    @Override
+    public void close()
+    {
+        for(ReadWriteLock stripe : stripes) stripe.writeLock().lock();
+        try
+        {
+            if(closed) return;
+            closed = true;
+        } finally
+        {
+            for(ReadWriteLock stripe : stripes) stripe.writeLock().unlock();
+        }
+        for(Worker worker : workers) worker.thread.interrupt();
+        boolean interrupted = false;
+        for(Worker worker : workers)
+        {
+            while(worker.thread.isAlive())
+            {
+                try
+                {
+                    worker.thread.join();
+                } catch (InterruptedException e)
+                {
+                    interrupted = true;
+                }
+            }
+        }
+        if(interrupted) Thread.currentThread().interrupt();
+
+        RejectedExecutionException rejected = new RejectedExecutionException("Game registry is closed");
+        List<Message> dropped = new ArrayList<>();
+        for(Worker worker : workers)
+        {
+            worker.queue.drainTo(dropped);
+            for(List<Message> waiting : worker.expected.values()) dropped.addAll(waiting);
+            worker.expected.clear();
+        }
+        for(Message message : dropped)
+            if(message.future != null) message.future.completeExceptionally(rejected);
+    }
+
+    /**
+     * Queues a task on a game's owner, or fails its future if the registry is closed.
+     */
+    private void send(int gameId, CompletableFuture<?> future, Task task)
+    {
+        Lock lock = stripes[gameId & (STRIPES - 1)].readLock();
+        lock.lock();
+        try
+        {
+            if(closed) future.completeExceptionally(new RejectedExecutionException("Game registry is closed"));
+            else workers[ownerOf(gameId)].queue.add(new Message(gameId, task, null, future));
+        } finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * A thread and the games it owns.
+     */
+    private final class Worker implements Runnable
+    {
+        final int index;
+        final Thread thread;
+        final BlockingQueue<Message> queue = new LinkedBlockingQueue<>();
+        final Map<Integer, Entry> games = new HashMap<>();
+        final Map<Integer, List<Message>> expected = new HashMap<>();  // Tasks waiting for games on their way here
+        final AtomicLong tasks = new AtomicLong();
+        volatile int gameCount;
+
+        Worker(int index)
+        {
+            this.index = index;
+            thread = new Thread(this, "GameRegistry-" + index);
+            thread.setDaemon(true);
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                while(true)
+                {
+                    handle(queue.take());
+                    tasks.lazySet(tasks.get() + 1);
+                }
+            } catch (InterruptedException e)
+            {
+                // Closed, close fails what is left in the queue
+            }
+        }
+
+        private void handle(Message message)
+        {
+            int id = message.gameId;
+            if(message.task == EXPECT) expected.put(id, new ArrayList<>());
+            else if(message.task == null) install(id, message.entry);
+            else if(expected.containsKey(id)) expected.get(id).add(message);
+            else message.task.run(this, games.get(id));
+        }
+
+        /**
+         * Takes in a game, or learns it is gone, and runs the tasks that were waiting for it.
+         */
+        private void install(int id, Entry entry)
+        {
+            if(entry != null)
+            {
+                games.put(id, entry);
+                gameCount++;
+                publish(entry);
+            }
+            List<Message> waiting = expected.remove(id);
+            if(waiting != null) for(Message message : waiting) handle(message);
+        }
+
+        void publish(Entry entry)
+        {
+            infos.put(entry.id, new GameInfo(entry.id, index, entry.game, entry.operations));
+        }
+    }
+}
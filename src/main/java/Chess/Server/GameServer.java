@@ -0,0 +1,502 @@
+package Chess.Server;
+
+import Chess.Game.ChessGame;
+import Chess.Game.CustomChessGame;
+import Chess.Game.Game;
+import Chess.Game.Game.GameState;
+import Chess.Game.GameView;
+import Chess.Move;
+import Chess.Notation.Fen;
+import Chess.Notation.San;
+import Chess.Pieces.Piece.PieceColor;
+import Chess.Server.GameRegistry.GameInfo;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Hosts many games at once over a local TCP line protocol. Every game can be reached from any connection by its id, so
+ * the two players of a game may share a connection or use one each. Each connection is served by its own thread,
+ * virtual when the JVM has them, which hands every command to the owner of its game in a GameRegistry and waits for the
+ * reply. Commands for the same game run one at a time on its owner, without locks.
+ * <p>
+ * Commands are one line each, words separated by spaces, and get a one line reply starting with OK or ERR:
+ * <pre>
+ * NEW [STANDARD|CUSTOM]        OK id
+ * NEW FEN fen                  OK id
+ * MOVE id move                 OK san state        move in SAN (Nf3) or coordinates (g1f3)
+ * UNDO id                      OK state
+ * FORFEIT id WHITE|BLACK       OK state            color of the side giving up
+ * STATE id                     OK state ply fen
+ * LEGAL id                     OK san san ...
+ * DROP id                      OK
+ * LIST                         OK id:ply:state ...
+ * STATS                        OK games moves p50 p99    latencies of MOVE in microseconds
+ * QUIT                         BYE
+ * </pre>
+ * State is one of the GameState names.
+ */
+public class GameServer implements Closeable
+{
+    public static final int DEFAULT_MAX_GAMES = 100_000;
+    private static final int BACKLOG = 4096;
+    private static final long REBALANCE_MILLIS = 1000;
+    private static final double REBALANCE_TOLERANCE = 1.25;
+
+    private final GameRegistry registry;
+    private final boolean ownsRegistry;     // Made by this server, so closed with it
+    private final LongAdder moves = new LongAdder();
+    private final LatencyHistogram moveLatency = new LatencyHistogram();
+    private final int maxGames;
+
+    private final Set<Socket> clients = ConcurrentHashMap.newKeySet();
+    private ServerSocket serverSocket;
+    private ExecutorService executor;
+    private Thread acceptor;
+    private ScheduledExecutorService rebalancer;
+
+    /**
+     * Constructs a server that hosts up to DEFAULT_MAX_GAMES games.
+     */
+    public GameServer()
+    {
+        this(DEFAULT_MAX_GAMES);
+    }
+
+    /**
+     * Constructs a server that hosts up to the given number of games, on a worker per processor. The registry is
+     * closed with the server.
+     * @param maxGames int
+     */
+    public GameServer(int maxGames)
+    {
+        this(maxGames, new GameRegistry(Runtime.getRuntime().availableProcessors()), true);
+    }
+
+    /**
+     * Constructs a server that hosts up to the given number of games in a registry. The registry stays open when the
+     * server closes.
+     * @param maxGames int
+     * @param registry GameRegistry
+     */
+    public GameServer(int maxGames, GameRegistry registry)
+    {
+        this(maxGames, registry, false);
+    }
+
+    private GameServer(int maxGames, GameRegistry registry, boolean ownsRegistry)
+    {
+        this.maxGames = maxGames;
+        this.registry = registry;
+        this.ownsRegistry = ownsRegistry;
+    }
+
+    /**
+     * Starts listening on the loopback address, and moving busy games between the registry's workers every second.
+     * Port 0 picks a free port, see getPort.
+     * @param port int
+     * @throws IOException
+     */
+    public synchronized void start(int port) throws IOException
+    {
+        if(serverSocket != null) throw new IllegalStateException("Server already started");
+        serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), BACKLOG);
+        executor = newConnectionExecutor();
+        acceptor = new Thread(this::acceptLoop, "GameServer-accept");
+        acceptor.start();
+        rebalancer = Executors.newSingleThreadScheduledExecutor(task ->
+        {
+            Thread thread = new Thread(task, "GameServer-rebalance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        rebalancer.scheduleWithFixedDelay(() -> registry.rebalance(REBALANCE_TOLERANCE), REBALANCE_MILLIS,
+                REBALANCE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the port the server listens on.
+     * @return int
+     */
+    public int getPort()
+    {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Returns the number of games hosted.
+     * @return int
+     */
+    public int getGameCount()
+    {
+        return registry.size();
+    }
+
+    /**
+     * Returns the registry holding the games.
+     * @return GameRegistry
+     */
+    public GameRegistry getRegistry()
+    {
+        return registry;
+    }
+
+    /**
+     * Returns the latencies of the MOVE commands handled so far.
+     * @return LatencyHistogram
+     */
+    public LatencyHistogram getMoveLatency()
+    {
+        return moveLatency;
+    }
+
+    /**
+     * Stops accepting connections and closes the open ones. If the server made its registry, the registry is closed
+     * too and its games are dropped, otherwise the games are kept.
+     * @throws IOException
+     */
+    @Override
+    public synchronized void close() throws IOException
+    {
+        if(serverSocket != null)
+        {
+            serverSocket.close();
+            for(Socket client : clients) client.close();
+            executor.shutdown();
+            rebalancer.shutdownNow();
+            try
+            {
+                acceptor.join();
+                executor.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            serverSocket = null;
+        }
+        if(ownsRegistry) registry.close();
+    }
+
+    /**
+     * Returns a virtual thread per task executor where the JVM has them, Java 21 and later, and a cached pool of
+     * platform threads otherwise.
+     */
+    static ExecutorService newConnectionExecutor()
+    {
+        try
+        {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e)
+        {
+            return Executors.newCachedThreadPool(task ->
+            {
+                Thread thread = new Thread(task, "GameServer-connection");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private void acceptLoop()
+    {
+        while(!serverSocket.isClosed())
+        {
+            Socket client = null;
+            try
+            {
+                client = serverSocket.accept();
+                client.setTcpNoDelay(true);
+                clients.add(client);
+                Socket accepted = client;
+                executor.execute(() -> serve(accepted));
+            } catch (IOException e)
+            {
+                // The socket was closed
+            } catch (RejectedExecutionException e)
+            {
+                // Closing, drop the connection just accepted
+                clients.remove(client);
+                try
+                {
+                    client.close();
+                } catch (IOException ignored) {}
+            }
+        }
+    }
+
+    private void serve(Socket client)
+    {
+        try(Socket socket = client;
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF_8));
+            Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), UTF_8)))
+        {
+            String line;
+            while((line = in.readLine()) != null)
+            {
+                String reply = execute(line);
+                out.write(reply);
+                out.write('\n');
+                out.flush();
+                if(reply.equals("BYE")) break;
+            }
+        } catch (IOException e)
+        {
+            // Client went away
+        } finally
+        {
+            clients.remove(client);
+        }
+    }
+
+    /**
+     * Runs one command line and returns the reply, without the line break. Connections call this for every line they
+     * read, and it can be called directly to drive the server without a socket.
+     * @param line String
+     * @return String
+     */
+    public String execute(String line)
+    {
+        String[] words = line.trim().split("\\s+");
+        String command = words[0].toUpperCase(Locale.ROOT);
+        try
+        {
+            switch(command)
+            {
+                case "NEW":     return newGame(words, line);
+                case "MOVE":    return move(words);
+                case "UNDO":    return undo(words);
+                case "FORFEIT": return forfeit(words);
+                case "STATE":   return state(words);
+                case "LEGAL":   return legal(words);
+                case "DROP":    return drop(words);
+                case "LIST":    return list();
+                case "STATS":   return stats();
+                case "QUIT":    return "BYE";
+                case "":        return "ERR Empty command";
+                default:        return "ERR Unknown command " + words[0];
+            }
+        } catch (IllegalArgumentException e)
+        {
+            return "ERR " + e.getMessage();
+        }
+    }
+
+    private String newGame(String[] words, String line)
+    {
+        String mode = (words.length > 1)? words[1].toUpperCase(Locale.ROOT) : "STANDARD";
+        Game game;
+        if(mode.equals("STANDARD") && words.length <= 2) game = new ChessGame();
+        else if(mode.equals("CUSTOM") && words.length <= 2) game = new CustomChessGame();
+        else if(mode.equals("FEN") && words.length > 2)
+        {
+            String fen = line.trim().split("\\s+", 3)[2];
+            game = Game.fromSnapshot(Fen.parse(fen));
+            if(game == null) throw new IllegalArgumentException("No game mode for board size in FEN: " + fen);
+        }
+        else throw new IllegalArgumentException("Usage: NEW [STANDARD|CUSTOM] or NEW FEN fen");
+
+        int id = addGame(game);
+        return (id < 0)? "ERR Too many games" : "OK " + id;
+    }
+
+    /**
+     * Hosts a game and returns its id, or -1 if the server already hosts its maximum number of games.
+     */
+    int addGame(Game game)
+    {
+        if(registry.size() >= maxGames) return -1;
+        return registry.add(game);
+    }
+
+    /**
+     * Counts a move and records how long the command took, for STATS.
+     */
+    void recordMove(long nanos, boolean played)
+    {
+        if(played) moves.increment();
+        moveLatency.record(nanos);
+    }
+
+    private String move(String[] words)
+    {
+        if(words.length != 3) throw new IllegalArgumentException("Usage: MOVE id move");
+        long start = System.nanoTime();
+        return await(registry.submit(parseId(words[1]), game ->
+        {
+            int[] legal = game.getLegalMoveCodes();
+            int code = (legal.length == 0)? -1 : parseMove(game, words[2], legal);
+            try
+            {
+                if(legal.length == 0) return "ERR Game is over";
+                if(code < 0) return "ERR Illegal move " + words[2];
+                String san = San.format(game, code, legal);
+                game.runTurn(code);
+                GameState state = game.getGameState();
+                return "OK " + san + San.suffix(state) + " " + state;
+            } finally
+            {
+                recordMove(System.nanoTime() - start, code >= 0);
+            }
+        }));
+    }
+
+    private String undo(String[] words)
+    {
+        return await(registry.submit(parseId(words), game ->
+        {
+            if(game.undoMove() == null) return game.isForfeited()? "ERR Game was forfeited" : "ERR No move to undo";
+            return "OK " + game.getGameState();
+        }));
+    }
+
+    private String forfeit(String[] words)
+    {
+        if(words.length != 3) throw new IllegalArgumentException("Usage: FORFEIT id WHITE|BLACK");
+        PieceColor color;
+        if(words[2].equalsIgnoreCase("WHITE")) color = PieceColor.WHITE;
+        else if(words[2].equalsIgnoreCase("BLACK")) color = PieceColor.BLACK;
+        else throw new IllegalArgumentException("Bad color " + words[2]);
+        return await(registry.submit(parseId(words[1]), game ->
+                game.forfeit(color)? "OK " + game.getGameState() : "ERR Game is over"));
+    }
+
+    /**
+     * Answers from the game's published view, so spectators polling a game never queue behind its moves.
+     */
+    private String state(String[] words)
+    {
+        GameInfo info = registry.getInfo(parseId(words));
+        if(info == null) throw new IllegalArgumentException("No game " + words[1]);
+        GameView view = info.view;
+        return "OK " + view.state + " " + view.ply + " " + Fen.write(view.position, view.ply);
+    }
+
+    private String legal(String[] words)
+    {
+        return await(registry.submit(parseId(words), game ->
+        {
+            int[] legal = game.getLegalMoveCodes();
+            StringBuilder reply = new StringBuilder("OK");
+            for(int code : legal) reply.append(' ').append(San.format(game, code, legal));
+            return reply.toString();
+        }));
+    }
+
+    private String drop(String[] words)
+    {
+        return await(registry.remove(parseId(words)))? "OK" : "ERR No game " + words[1];
+    }
+
+    /**
+     * Lists games from their published summaries, without waiting on their owners.
+     */
+    private String list()
+    {
+        StringBuilder reply = new StringBuilder("OK");
+        for(GameInfo info : registry.list())
+            reply.append(' ').append(info.id).append(':').append(info.ply).append(':').append(info.state);
+        return reply.toString();
+    }
+
+    private String stats()
+    {
+        return "OK " + registry.size() + " " + moves.sum() + " " + moveLatency.getPercentileMicros(50) + " "
+                + moveLatency.getPercentileMicros(99);
+    }
+
+    /**
+     * Waits for a task, passing on what it threw so that an IllegalArgumentException becomes an ERR reply.
+     */
+    private static <T> T await(CompletableFuture<T> future)
+    {
+        try
+        {
+            return future.join();
+        } catch (CompletionException e)
+        {
+            if(e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    private static int parseId(String[] words)
+    {
+        if(words.length != 2) throw new IllegalArgumentException("Usage: " + words[0] + " id");
+        return parseId(words[1]);
+    }
+
+    private static int parseId(String id)
+    {
+        try
+        {
+            return Integer.parseInt(id);
+        } catch (NumberFormatException e)
+        {
+            throw new IllegalArgumentException("Bad game id " + id);
+        }
+    }
+
+    /**
+     * Finds a legal move given in coordinates, such as g1f3, or failing that in SAN. Returns -1 if there is none.
+     */
+    static int parseMove(Game game, String text, int[] legal)
+    {
+        if(text.length() == 4)
+        {
+            int from = squareOf(game, text.charAt(0), text.charAt(1)),
+                dest = squareOf(game, text.charAt(2), text.charAt(3));
+            if(from >= 0 && dest >= 0)
+            {
+                int code = Move.encode(from, dest);
+                for(int move : legal) if(move == code) return code;
+            }
+        }
+        return San.parse(game, text, legal);
+    }
+
+    private static int squareOf(Game game, char file, char rank)
+    {
+        int x = file - 'a', y = rank - '1';
+        if(x < 0 || x >= game.boardX || y < 0 || y >= game.boardY) return -1;
+        return x + y * game.boardX;
+    }
+
+    /**
+     * Usage: GameServer [port] [binaryPort]
+     */
+    public static void main(String[] args) throws IOException
+    {
+        GameServer server = new GameServer();
+        server.start((args.length > 0)? Integer.parseInt(args[0]) : 7777);
+        System.out.println("Listening on port " + server.getPort());
+        if(args.length > 1)
+        {
+            NioTransport transport = new NioTransport(server, Runtime.getRuntime().availableProcessors());
+            transport.start(Integer.parseInt(args[1]));
+            System.out.println("Binary frames on port " + transport.getPort());
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package Chess.Server;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations, for percentiles of request latency. Each power of two is split into 4 buckets, so a
+ * percentile is reported within 25% of its true value, from 1 microsecond up to about half an hour.
+ */
+public final class LatencyHistogram
+{
+    private static final int SUB_BUCKETS = 4;
+    private static final int BUCKETS = 32 * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /**
+     * Records one duration.
+     * @param nanos long
+     */
+    public void record(long nanos)
+    {
+        counts.incrementAndGet(bucketOf(nanos / 1000));
+    }
+
+    /**
+     * Returns the number of durations recorded.
+     * @return long
+     */
+    public long getCount()
+    {
+        long total = 0;
+        for(int i = 0; i < BUCKETS; i++) total += counts.get(i);
+        return total;
+    }
+
+    /**
+     * Returns the upper bound, in microseconds, of the bucket holding the given percentile. Returns 0 if nothing was
+     * recorded.
+     * @param percentile double between 0 and 100
+     * @return long
+     */
+    public long getPercentileMicros(double percentile)
+    {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for(int i = 0; i < BUCKETS; i++) total += snapshot[i] = counts.get(i);
+        if(total == 0) return 0;
+        long rank = (long) Math.ceil(total * percentile / 100);
+        long seen = 0;
+        for(int i = 0; i < BUCKETS; i++)
+        {
+            seen += snapshot[i];
+            if(seen >= rank) return upperBound(i);
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+    /**
+     * Clears the histogram. Durations recorded at the same time may or may not be kept.
+     */
+    public void reset()
+    {
+        for(int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+    }
+
+    private static int bucketOf(long micros)
+    {
+        if(micros < 1) return 0;
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        // The two bits below the highest pick the sub-bucket
+        int sub = (exponent >= 2)? (int) (micros >>> (exponent - 2)) & 3 : (int) (micros << (2 - exponent)) & 3;
+        return Math.min(BUCKETS - 1, exponent * SUB_BUCKETS + sub + 1);
+    }
+
+    private static long upperBound(int bucket)
+    {
+        if(bucket == 0) return 1;
+        int exponent = (bucket - 1) / SUB_BUCKETS, sub = (bucket - 1) % SUB_BUCKETS;
+        return ((4L + sub + 1) << exponent) >> 2;
+    }
+}
@@ -0,0 +1,477 @@
+package Chess.Server;
+
+import Chess.Game.ChessGame;
+import Chess.Game.CustomChessGame;
+import Chess.Game.Game;
+import Chess.Move;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static Chess.Server.NioTransport.*;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Headless load generator for sizing servers. Simulates many players, each playing random legal moves in one game at a
+ * time, either directly on Game objects in this JVM or through a GameServer over its text or binary protocol. Each
+ * player keeps a local copy of its game to pick legal moves from, so only the moves themselves are timed.
+ * <p>
+ * A player starts a standard or custom game, chosen at random by the custom share, pauses for a random think time
+ * before each move, and starts a new game once its game ends or reaches the maximum ply. Games are dropped from the
+ * server when done. Players run on virtual threads where the JVM has them.
+ * <p>
+ * The Report gives the throughput and the latency percentiles of moves and new games, and prints as one line of JSON.
+ */
+public class LoadGenerator
+{
+    public enum Mode {DIRECT, LINE, BINARY}
+
+    private final Mode mode;
+    private final int players;
+    private int port;
+    private long minThinkMillis = 0;
+    private long maxThinkMillis = 0;
+    private int customPercent = 50;
+    private int maxPly = 200;
+
+    private final LongAdder moves = new LongAdder();
+    private final LongAdder games = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LatencyHistogram moveLatency = new LatencyHistogram();
+    private final LatencyHistogram newGameLatency = new LatencyHistogram();
+
+    /**
+     * Results of a run. Latencies are in microseconds.
+     */
+    public static final class Report
+    {
+        public final Mode mode;
+        public final int players;
+        public final long elapsedNanos;
+        public final long moves;
+        public final long games;
+        public final long errors;
+        public final long moveP50, moveP99, moveP999;
+        public final long newGameP50, newGameP99, newGameP999;
+
+        Report(LoadGenerator run, long elapsedNanos)
+        {
+            this.mode = run.mode;
+            this.players = run.players;
+            this.elapsedNanos = elapsedNanos;
+            this.moves = run.moves.sum();
+            this.games = run.games.sum();
+            this.errors = run.errors.sum();
+            this.moveP50 = run.moveLatency.getPercentileMicros(50);
+            this.moveP99 = run.moveLatency.getPercentileMicros(99);
+            this.moveP999 = run.moveLatency.getPercentileMicros(99.9);
+            this.newGameP50 = run.newGameLatency.getPercentileMicros(50);
+            this.newGameP99 = run.newGameLatency.getPercentileMicros(99);
+            this.newGameP999 = run.newGameLatency.getPercentileMicros(99.9);
+        }
+
+        public double getMovesPerSecond()
+        {
+            return moves * 1e9 / Math.max(1, elapsedNanos);
+        }
+
+        /**
+         * Returns the report as one line of JSON.
+         * @return String
+         */
+        public String toJson()
+        {
+            return String.format(Locale.ROOT, "{\"mode\":\"%s\",\"players\":%d,\"seconds\":%.3f,\"moves\":%d,"
+                    + "\"games\":%d,\"errors\":%d,\"movesPerSecond\":%.1f,"
+                    + "\"moveMicros\":{\"p50\":%d,\"p99\":%d,\"p999\":%d},"
+                    + "\"newGameMicros\":{\"p50\":%d,\"p99\":%d,\"p999\":%d}}",
+                    mode.name().toLowerCase(Locale.ROOT), players, elapsedNanos / 1e9, moves, games, errors,
+                    getMovesPerSecond(), moveP50, moveP99, moveP999, newGameP50, newGameP99, newGameP999);
+        }
+
+        @Override
+        public String toString()
+        {
+            return toJson();
+        }
+    }
+
+    /**
+     * Constructs a generator. For the LINE and BINARY modes, set the server's port with setPort.
+     * @param mode Mode
+     * @param players int
+     */
+    public LoadGenerator(Mode mode, int players)
+    {
+        if(players < 1) throw new IllegalArgumentException("Need at least one player");
+        this.mode = mode;
+        this.players = players;
+    }
+
+    /**
+     * Sets the port of the server on the loopback address, for the LINE and BINARY modes.
+     * @param port int
+     */
+    public void setPort(int port)
+    {
+        this.port = port;
+    }
+
+    /**
+     * Sets the range of the pause before each move.
+     * @param min long milliseconds
+     * @param max long milliseconds
+     */
+    public void setThinkMillis(long min, long max)
+    {
+        if(min < 0 || max < min) throw new IllegalArgumentException("Bad think time range " + min + ".." + max);
+        this.minThinkMillis = min;
+        this.maxThinkMillis = max;
+    }
+
+    /**
+     * Sets the share of games played as CustomChessGame, the rest being ChessGame.
+     * @param customPercent int between 0 and 100
+     */
+    public void setCustomPercent(int customPercent)
+    {
+        if(customPercent < 0 || customPercent > 100) throw new IllegalArgumentException("Bad percentage");
+        this.customPercent = customPercent;
+    }
+
+    public void setMaxPly(int maxPly)
+    {
+        this.maxPly = maxPly;
+    }
+
+    /**
+     * Runs every player for the given time and returns the results. Player i plays with seed + i. A player finishes
+     * the move it is making when time is up, then drops its game.
+     * @param durationMillis long
+     * @param seed long
+     * @return Report
+     * @throws InterruptedException
+     */
+    public Report run(long durationMillis, long seed) throws InterruptedException
+    {
+        moves.reset();
+        games.reset();
+        errors.reset();
+        moveLatency.reset();
+        newGameLatency.reset();
+        long start = System.nanoTime();
+        long end = start + durationMillis * 1_000_000;
+        ExecutorService executor = GameServer.newConnectionExecutor();
+        for(int i = 0; i < players; i++)
+        {
+            Random random = new Random(seed + i);
+            executor.execute(() -> play(random, end));
+        }
+        executor.shutdown();
+        if(!executor.awaitTermination(durationMillis + 30_000, TimeUnit.MILLISECONDS)) executor.shutdownNow();
+        return new Report(this, System.nanoTime() - start);
+    }
+
+    private void play(Random random, long end)
+    {
+        try(Driver driver = connect())
+        {
+            while(System.nanoTime() < end)
+            {
+                boolean custom = random.nextInt(100) < customPercent;
+                Game game = custom? new CustomChessGame() : new ChessGame();
+                long started = System.nanoTime();
+                int id = driver.newGame(game, custom);
+                newGameLatency.record(System.nanoTime() - started);
+                if(id < 0)
+                {
+                    errors.increment();
+                    think(random);
+                    continue;
+                }
+                games.increment();
+                playGame(driver, game, id, random, end);
+                driver.drop(id);
+            }
+        } catch (IOException e)
+        {
+            errors.increment();
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void playGame(Driver driver, Game game, int id, Random random, long end)
+            throws IOException, InterruptedException
+    {
+        while(game.getPly() < maxPly && System.nanoTime() < end)
+        {
+            int[] legal = game.getLegalMoveCodes();
+            if(legal.length == 0) return;
+            think(random);
+            int code = legal[random.nextInt(legal.length)];
+            long started = System.nanoTime();
+            boolean played = driver.move(game, id, code);
+            moveLatency.record(System.nanoTime() - started);
+            if(!played)
+            {
+                errors.increment();
+                return;
+            }
+            if(!driver.playsLocally()) game.pushMove(code);     // Keeps the local copy in step, untimed
+            moves.increment();
+        }
+    }
+
+    private void think(Random random) throws InterruptedException
+    {
+        if(maxThinkMillis <= 0) return;
+        long millis = minThinkMillis + (long) (random.nextDouble() * (maxThinkMillis - minThinkMillis));
+        Thread.sleep(millis);
+    }
+
+    private Driver connect() throws IOException
+    {
+        switch(mode)
+        {
+            case LINE:      return new LineDriver(port);
+            case BINARY:    return new BinaryDriver(port);
+            default:        return new DirectDriver();
+        }
+    }
+
+    /**
+     * Plays a player's moves on its target. The player keeps its local game in step with the target itself, outside the
+     * timed move, unless the driver plays on the local game.
+     */
+    private interface Driver extends Closeable
+    {
+        /**
+         * Starts a game like the given local one and returns its id, or -1 if the target refused it.
+         */
+        int newGame(Game local, boolean custom) throws IOException;
+
+        /**
+         * Plays a legal move of the local game on the target and returns once the target has answered. Returns false
+         * if the target refused it.
+         */
+        boolean move(Game local, int id, int code) throws IOException;
+
+        void drop(int id) throws IOException;
+
+        /**
+         * Returns true if the target is the local game, so a move is already played on it.
+         */
+        default boolean playsLocally()
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Plays on the local game itself, to measure the game code without a server.
+     */
+    private static final class DirectDriver implements Driver
+    {
+        @Override
+        public int newGame(Game local, boolean custom)
+        {
+            return 0;
+        }
+
+        @Override
+        public boolean move(Game local, int id, int code)
+        {
+            local.runTurn(code);
+            return true;
+        }
+
+        @Override
+        public boolean playsLocally()
+        {
+            return true;
+        }
+
+        @Override
+        public void drop(int id) {}
+
+        @Override
+        public void close() {}
+    }
+
+    /**
+     * Plays through the text protocol, one connection per player, moves given in coordinates.
+     */
+    private static final class LineDriver implements Driver
+    {
+        private final Socket socket;
+        private final BufferedReader in;
+        private final Writer out;
+
+        LineDriver(int port) throws IOException
+        {
+            socket = new Socket(InetAddress.getLoopbackAddress(), port);
+            socket.setTcpNoDelay(true);
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF_8));
+            out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), UTF_8));
+        }
+
+        private String send(String command) throws IOException
+        {
+            out.write(command);
+            out.write('\n');
+            out.flush();
+            String reply = in.readLine();
+            if(reply == null) throw new IOException("Server closed the connection");
+            return reply;
+        }
+
+        @Override
+        public int newGame(Game local, boolean custom) throws IOException
+        {
+            String reply = send(custom? "NEW CUSTOM" : "NEW STANDARD");
+            return reply.startsWith("OK ")? Integer.parseInt(reply.substring(3)) : -1;
+        }
+
+        @Override
+        public boolean move(Game local, int id, int code) throws IOException
+        {
+            int from = Move.fromIndex(code), dest = Move.destIndex(code);
+            String move = "" + square(local, from) + square(local, dest);
+            return send("MOVE " + id + " " + move).startsWith("OK");
+        }
+
+        private static String square(Game game, int index)
+        {
+            return "" + (char) ('a' + index % game.boardX) + (char) ('1' + index / game.boardX);
+        }
+
+        @Override
+        public void drop(int id) throws IOException
+        {
+            send("DROP " + id);
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            socket.close();
+        }
+    }
+
+    /**
+     * Plays through the binary protocol of NioTransport, one blocking channel per player and one frame at a time.
+     */
+    private static final class BinaryDriver implements Driver
+    {
+        private final SocketChannel channel;
+        private final ByteBuffer request = ByteBuffer.allocate(REQUEST_SIZE);
+        private final ByteBuffer reply = ByteBuffer.allocate(RESPONSE_SIZE);
+
+        BinaryDriver(int port) throws IOException
+        {
+            channel = SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            channel.socket().setTcpNoDelay(true);
+        }
+
+        /**
+         * Sends one request and waits for its reply, left in the reply buffer. Returns the status.
+         */
+        private byte send(byte op, int id, int from, int dest) throws IOException
+        {
+            request.clear();
+            putRequest(request, op, id, from, dest);
+            request.flip();
+            while(request.hasRemaining()) channel.write(request);
+            reply.clear();
+            while(reply.hasRemaining())
+                if(channel.read(reply) < 0) throw new IOException("Server closed the connection");
+            return reply.get(1);
+        }
+
+        @Override
+        public int newGame(Game local, boolean custom) throws IOException
+        {
+            byte status = send(custom? OP_NEW_CUSTOM : OP_NEW_STANDARD, 0, 0, 0);
+            return (status == STATUS_OK)? reply.getInt(4) : -1;
+        }
+
+        @Override
+        public boolean move(Game local, int id, int code) throws IOException
+        {
+            return send(OP_MOVE, id, Move.fromIndex(code), Move.destIndex(code)) == STATUS_OK;
+        }
+
+        @Override
+        public void drop(int id) throws IOException
+        {
+            send(OP_DROP, id, 0, 0);
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            channel.close();
+        }
+    }
+
+    /**
+     * Usage: LoadGenerator direct|line|binary players seconds [minThinkMillis maxThinkMillis] [customPercent] [port]
+     * <p>
+     * Without a port, the line and binary modes start a server in this JVM to test against.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        if(args.length < 3)
+        {
+            System.err.println("Usage: LoadGenerator direct|line|binary players seconds "
+                    + "[minThinkMillis maxThinkMillis] [customPercent] [port]");
+            return;
+        }
+        Mode mode = Mode.valueOf(args[0].toUpperCase(Locale.ROOT));
+        LoadGenerator generator = new LoadGenerator(mode, Integer.parseInt(args[1]));
+        long millis = (long) (Double.parseDouble(args[2]) * 1000);
+        if(args.length > 4) generator.setThinkMillis(Long.parseLong(args[3]), Long.parseLong(args[4]));
+        if(args.length > 5) generator.setCustomPercent(Integer.parseInt(args[5]));
+
+        GameServer server = null;
+        NioTransport transport = null;
+        if(args.length > 6) generator.setPort(Integer.parseInt(args[6]));
+        else if(mode != Mode.DIRECT)
+        {
+            server = new GameServer();
+            server.start(0);
+            generator.setPort(server.getPort());
+            if(mode == Mode.BINARY)
+            {
+                transport = new NioTransport(server, Runtime.getRuntime().availableProcessors());
+                transport.start(0);
+                generator.setPort(transport.getPort());
+            }
+        }
+        try
+        {
+            System.out.println(generator.run(millis, System.nanoTime()).toJson());
+        } finally
+        {
+            if(transport != null) transport.close();
+            if(server != null) server.close();
+        }
+    }
+}
@@ -0,0 +1,500 @@
+package Chess.Server;
+
+import Chess.Game.ChessGame;
+import Chess.Game.CustomChessGame;
+import Chess.Game.Game;
+import Chess.Move;
+import Chess.Pieces.Piece.PieceColor;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Binary transport for the games of a GameServer, over non-blocking sockets. A few event loop threads each serve many
+ * connections through a Selector, instead of a thread per connection. Requests are fixed size frames, so a client can
+ * send many without waiting for replies: every read handles all the complete frames it got, and the replies are queued
+ * in pooled direct buffers and sent with one gathering write.
+ * <p>
+ * Request frame, REQUEST_SIZE bytes, big-endian:
+ * <pre>
+ * op       byte    OP_ constant
+ * game id  int     ignored by the OP_NEW ops
+ * from     byte    square index (x + y*boardX) for OP_MOVE, 0 white or 1 black for OP_FORFEIT, otherwise 0
+ * dest     byte    square index for OP_MOVE, otherwise 0
+ * </pre>
+ * Response frame, RESPONSE_SIZE bytes, one per request in the same order:
+ * <pre>
+ * op       byte    op of the request
+ * status   byte    STATUS_ constant
+ * state    byte    ordinal of the GameState after the request, 0 if there is no game or it was dropped
+ * reserved byte
+ * game id  int     id of the game, the new one for OP_NEW ops
+ * ply      int     ply of the game after the request
+ * </pre>
+ * Requests are handed to the owners of their games in the server's GameRegistry, so the event loops never run game
+ * code, and requests for games on different owners run in parallel. Replies still go out in request order: each
+ * connection keeps its requests in flight in a queue, and a reply is written once every request before it has one.
+ * Games are shared with the server's text protocol.
+ */
+public class NioTransport implements Closeable
+{
+    public static final int REQUEST_SIZE = 7;
+    public static final int RESPONSE_SIZE = 12;
+
+    public static final byte OP_NEW_STANDARD = 1;
+    public static final byte OP_NEW_CUSTOM   = 2;
+    public static final byte OP_MOVE    = 3;
+    public static final byte OP_UNDO    = 4;
+    public static final byte OP_FORFEIT = 5;
+    public static final byte OP_STATE   = 6;
+    public static final byte OP_DROP    = 7;
+
+    public static final byte STATUS_OK           = 0;
+    public static final byte STATUS_NO_GAME      = 1;
+    public static final byte STATUS_ILLEGAL_MOVE = 2;
+    public static final byte STATUS_GAME_OVER    = 3;
+    public static final byte STATUS_NO_UNDO      = 4;
+    public static final byte STATUS_FULL         = 5;
+    public static final byte STATUS_BAD_REQUEST  = 6;
+
+    private static final int READ_BUFFER = 1 << 14;
+    private static final int WRITE_BUFFER = 1 << 12;
+    private static final int MAX_PENDING = 16;     // Write buffers queued on a connection before it stops reading
+    private static final int MAX_IN_FLIGHT = 4096; // Requests waiting on game owners before a connection stops reading
+    private static final int MAX_POOLED = 256;     // Free write buffers kept by each loop
+
+    private final GameServer server;
+    private final EventLoop[] loops;
+    private ServerSocketChannel serverChannel;
+    private volatile boolean running;
+    private int nextLoop;
+
+    /**
+     * Constructs a transport for a server's games.
+     * @param server GameServer
+     * @param threads int number of event loops
+     */
+    public NioTransport(GameServer server, int threads)
+    {
+        if(threads < 1) throw new IllegalArgumentException("Need at least one thread");
+        this.server = server;
+        this.loops = new EventLoop[threads];
+    }
+
+    /**
+     * Starts listening on the loopback address. Port 0 picks a free port, see getPort.
+     * @param port int
+     * @throws IOException
+     */
+    public synchronized void start(int port) throws IOException
+    {
+        if(serverChannel != null) throw new IllegalStateException("Transport already started");
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 4096);
+        serverChannel.configureBlocking(false);
+        running = true;
+        for(int i = 0; i < loops.length; i++) loops[i] = new EventLoop(i);
+        serverChannel.register(loops[0].selector, SelectionKey.OP_ACCEPT);
+        for(EventLoop loop : loops) loop.thread.start();
+    }
+
+    /**
+     * Returns the port the transport listens on.
+     * @return int
+     * @throws IOException
+     */
+    public int getPort() throws IOException
+    {
+        return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+    }
+
+    /**
+     * Stops the event loops and closes every connection.
+     * @throws IOException
+     */
+    @Override
+    public synchronized void close() throws IOException
+    {
+        if(serverChannel == null) return;
+        running = false;
+        for(EventLoop loop : loops) loop.selector.wakeup();
+        try
+        {
+            for(EventLoop loop : loops) loop.thread.join();
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        serverChannel.close();
+        serverChannel = null;
+    }
+
+    /**
+     * Writes a request frame at the buffer's position, for clients.
+     * @param buffer ByteBuffer
+     * @param op byte
+     * @param gameId int
+     * @param from int
+     * @param dest int
+     */
+    public static void putRequest(ByteBuffer buffer, byte op, int gameId, int from, int dest)
+    {
+        buffer.put(op).putInt(gameId).put((byte) from).put((byte) dest);
+    }
+
+    /**
+     * Buffers of a connection: requests read but not yet handled, requests waiting on their game's owner, and replies
+     * not yet written.
+     */
+    private static final class Connection
+    {
+        final SocketChannel channel;
+        final ByteBuffer in = ByteBuffer.allocateDirect(READ_BUFFER);
+        final ArrayDeque<Request> inFlight = new ArrayDeque<>();
+        final ArrayDeque<ByteBuffer> out = new ArrayDeque<>();
+        final AtomicBoolean woken = new AtomicBoolean();
+        SelectionKey key;
+        ByteBuffer filling;
+        ByteBuffer[] batch = new ByteBuffer[4];
+
+        Connection(SocketChannel channel)
+        {
+            this.channel = channel;
+        }
+    }
+
+    /**
+     * A request waiting for its reply. The result packs the status, state and ply, see reply.
+     */
+    private static final class Request
+    {
+        final byte op;
+        final int gameId;
+        final CompletableFuture<Long> result;
+
+        Request(byte op, int gameId, CompletableFuture<Long> result)
+        {
+            this.op = op;
+            this.gameId = gameId;
+            this.result = result;
+        }
+    }
+
+    /**
+     * One selector thread and the connections registered with it. The first loop also accepts connections and deals
+     * them out to every loop in turn.
+     */
+    private final class EventLoop implements Runnable
+    {
+        final Selector selector;
+        final Thread thread;
+        final Queue<SocketChannel> added = new ConcurrentLinkedQueue<>();
+        final Queue<Connection> woken = new ConcurrentLinkedQueue<>();
+        final ArrayDeque<ByteBuffer> pool = new ArrayDeque<>();
+
+        EventLoop(int index) throws IOException
+        {
+            selector = Selector.open();
+            thread = new Thread(this, "NioTransport-" + index);
+            thread.setDaemon(true);
+        }
+
+        void add(SocketChannel channel)
+        {
+            added.add(channel);
+            selector.wakeup();
+        }
+
+        /**
+         * Called from game owners when a request of the connection completes, at most once until the loop gets to it.
+         */
+        void wake(Connection connection)
+        {
+            if(!connection.woken.compareAndSet(false, true)) return;
+            woken.add(connection);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                while(running)
+                {
+                    selector.select();
+                    registerAdded();
+                    replyWoken();
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while(keys.hasNext())
+                    {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        if(!key.isValid()) continue;
+                        if(key.isAcceptable())
+                        {
+                            accept();
+                            continue;
+                        }
+                        Connection connection = (Connection) key.attachment();
+                        try
+                        {
+                            if(key.isReadable()) read(key, connection);
+                            if(key.isValid() && key.isWritable()) flush(key, connection);
+                        } catch (IOException e)
+                        {
+                            closeConnection(key);
+                        }
+                    }
+                }
+            } catch (IOException | ClosedSelectorException e)
+            {
+                // Stop serving on a broken selector
+            } finally
+            {
+                for(SelectionKey key : selector.keys()) if(key.attachment() != null) closeConnection(key);
+                for(SocketChannel channel : added) closeQuietly(channel);
+                try
+                {
+                    selector.close();
+                } catch (IOException ignored) {}
+            }
+        }
+
+        private void accept() throws IOException
+        {
+            SocketChannel channel;
+            while((channel = serverChannel.accept()) != null)
+            {
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                loops[nextLoop].add(channel);
+                nextLoop = (nextLoop + 1) % loops.length;
+            }
+        }
+
+        private void registerAdded()
+        {
+            SocketChannel channel;
+            while((channel = added.poll()) != null)
+            {
+                try
+                {
+                    channel.configureBlocking(false);
+                    Connection connection = new Connection(channel);
+                    connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+                } catch (IOException e)
+                {
+                    closeQuietly(channel);
+                }
+            }
+        }
+
+        private void replyWoken()
+        {
+            Connection connection;
+            while((connection = woken.poll()) != null)
+            {
+                connection.woken.set(false);
+                if(!connection.key.isValid()) continue;
+                try
+                {
+                    flush(connection.key, connection);
+                } catch (IOException e)
+                {
+                    closeConnection(connection.key);
+                }
+            }
+        }
+
+        /**
+         * Reads what the socket has, hands every complete frame to the game owners, and sends the replies that are
+         * ready.
+         */
+        private void read(SelectionKey key, Connection connection) throws IOException
+        {
+            ByteBuffer in = connection.in;
+            if(connection.channel.read(in) < 0) throw new IOException("Connection closed");
+            in.flip();
+            while(in.remaining() >= REQUEST_SIZE)
+            {
+                Request request = handle(in);
+                connection.inFlight.add(request);
+                if(!request.result.isDone()) request.result.whenComplete((result, e) -> wake(connection));
+            }
+            in.compact();
+            flush(key, connection);
+        }
+
+        /**
+         * Writes the replies of the requests at the head of the queue that have completed.
+         */
+        private void collectReplies(Connection connection)
+        {
+            ArrayDeque<Request> inFlight = connection.inFlight;
+            while(!inFlight.isEmpty() && inFlight.peek().result.isDone())
+            {
+                Request request = inFlight.poll();
+                long result;
+                try
+                {
+                    result = request.result.join();
+                } catch (CompletionException e)
+                {
+                    result = reply(e.getCause() instanceof IllegalArgumentException? STATUS_NO_GAME
+                            : STATUS_BAD_REQUEST, 0, 0);
+                }
+                ByteBuffer buffer = replyBuffer(connection);
+                buffer.put(request.op).put((byte) (result >>> 40)).put((byte) (result >>> 32)).put((byte) 0)
+                        .putInt(request.gameId).putInt((int) result);
+            }
+        }
+
+        /**
+         * Returns a buffer with room for one reply, taking a new one from the pool when the current one is full.
+         */
+        private ByteBuffer replyBuffer(Connection connection)
+        {
+            ByteBuffer filling = connection.filling;
+            if(filling != null && filling.remaining() >= RESPONSE_SIZE) return filling;
+            if(filling != null) connection.out.add(filling.flip());
+            filling = pool.poll();
+            if(filling == null) filling = ByteBuffer.allocateDirect(WRITE_BUFFER);
+            return connection.filling = filling;
+        }
+
+        /**
+         * Writes the ready replies in one gathering write. Buffers written out go back to the pool. If the socket
+         * cannot take everything, waits for it to become writable, and stops reading requests while too many replies
+         * or requests are queued.
+         */
+        private void flush(SelectionKey key, Connection connection) throws IOException
+        {
+            collectReplies(connection);
+            ArrayDeque<ByteBuffer> out = connection.out;
+            if(connection.filling != null && connection.filling.position() > 0)
+            {
+                out.add(connection.filling.flip());
+                connection.filling = null;
+            }
+            if(!out.isEmpty())
+            {
+                if(connection.batch.length < out.size()) connection.batch = new ByteBuffer[out.size() * 2];
+                ByteBuffer[] batch = out.toArray(connection.batch);
+                connection.channel.write(batch, 0, out.size());
+                Arrays.fill(batch, null);
+                while(!out.isEmpty() && !out.peek().hasRemaining())
+                {
+                    ByteBuffer done = out.poll();
+                    if(pool.size() < MAX_POOLED) pool.add(done.clear());
+                }
+            }
+            int ops = out.isEmpty()? 0 : SelectionKey.OP_WRITE;
+            if(out.size() < MAX_PENDING && connection.inFlight.size() < MAX_IN_FLIGHT) ops |= SelectionKey.OP_READ;
+            if(key.interestOps() != ops) key.interestOps(ops);
+        }
+
+        private void closeConnection(SelectionKey key)
+        {
+            Connection connection = (Connection) key.attachment();
+            key.cancel();
+            closeQuietly(connection.channel);
+        }
+    }
+
+    /**
+     * Reads one request frame and starts it. New games are added at once, everything else runs on the game's owner.
+     */
+    private Request handle(ByteBuffer in)
+    {
+        byte op = in.get();
+        int gameId = in.getInt();
+        int from = in.get() & 0xFF, dest = in.get() & 0xFF;
+
+        if(op == OP_NEW_STANDARD || op == OP_NEW_CUSTOM)
+        {
+            Game game = (op == OP_NEW_STANDARD)? new ChessGame() : new CustomChessGame();
+            long result = reply(STATUS_OK, game.getGameState().ordinal(), 0);
+            gameId = server.addGame(game);
+            if(gameId < 0) result = reply(STATUS_FULL, 0, 0);
+            return new Request(op, gameId, CompletableFuture.completedFuture(result));
+        }
+        if(op == OP_DROP)
+        {
+            return new Request(op, gameId, server.getRegistry().remove(gameId).thenApply(removed ->
+                    reply(removed? STATUS_OK : STATUS_NO_GAME, 0, 0)));
+        }
+
+        long start = System.nanoTime();
+        return new Request(op, gameId, server.getRegistry().submit(gameId, game ->
+        {
+            byte status;
+            switch(op)
+            {
+                case OP_MOVE:
+                    status = move(game, from, dest);
+                    server.recordMove(System.nanoTime() - start, status == STATUS_OK);
+                    break;
+                case OP_UNDO:
+                    if(game.undoMove() != null) status = STATUS_OK;
+                    else status = game.isForfeited()? STATUS_GAME_OVER : STATUS_NO_UNDO;
+                    break;
+                case OP_FORFEIT:
+                    if(from > 1) status = STATUS_BAD_REQUEST;
+                    else status = game.forfeit((from == 0)? PieceColor.WHITE : PieceColor.BLACK)? STATUS_OK
+                            : STATUS_GAME_OVER;
+                    break;
+                case OP_STATE:
+                    status = STATUS_OK;
+                    break;
+                default:
+                    status = STATUS_BAD_REQUEST;
+            }
+            return reply(status, game.getGameState().ordinal(), game.getPly());
+        }));
+    }
+
+    private static byte move(Game game, int from, int dest)
+    {
+        int squares = game.boardX * game.boardY;
+        if(from >= squares || dest >= squares) return STATUS_BAD_REQUEST;
+        int[] legal = game.getLegalMoveCodes();
+        if(legal.length == 0) return STATUS_GAME_OVER;
+        int code = Move.encode(from, dest);
+        if(Arrays.binarySearch(legal, code) < 0) return STATUS_ILLEGAL_MOVE;
+        game.runTurn(code);
+        return STATUS_OK;
+    }
+
+    /**
+     * Packs the status, state and ply of a reply into a long.
+     */
+    private static long reply(byte status, int state, int ply)
+    {
+        return ((long) status << 40) | ((long) state << 32) | (ply & 0xFFFFFFFFL);
+    }
+
+    private static void closeQuietly(SocketChannel channel)
+    {
+        try
+        {
+            channel.close();
+        } catch (IOException ignored) {}
+    }
+}
@@ -0,0 +1,472 @@
+package Chess.Server;
+
+import Chess.Game.Game;
+import Chess.Notation.Fen;
+import Chess.Notation.San;
+import Chess.Position;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Splits perft counts and root move analysis into jobs for PerftWorker processes, which may run on this machine or on
+ * others. Workers connect to the coordinator, one connection per worker thread, and each connection runs one job at a
+ * time over a line protocol:
+ * <pre>
+ * PERFT id depth fen           OK id count
+ * SCORE id nodes depth fen     OK id score          score for the side to move in fen
+ *                              ERR id message
+ * </pre>
+ * A perft run plays out every move sequence of the split depth from the root, merges the sequences that reach the same
+ * position under the same root move, and sends each distinct position as a job for the remaining depth. A connection
+ * that fails, or that takes longer than the job timeout, is closed and its job goes back to the front of the queue for
+ * another worker, so losing workers only slows a run down. A job that has lost MAX_ATTEMPTS workers fails its run with
+ * an IOException instead, so a job that kills every worker cannot hang the run. Only one run is active at a time.
+ */
+public class PerftCoordinator implements Closeable
+{
+    public static final int MAX_ATTEMPTS = 3;
+    private static final long POLL_MILLIS = 100;
+
+    private final LinkedBlockingDeque<Job> queue = new LinkedBlockingDeque<>();
+    private final Set<Socket> workers = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger nextJobId = new AtomicInteger(1);
+    private final AtomicLong reassigned = new AtomicLong();
+    private long jobTimeoutMillis = 0;
+    private ServerSocket serverSocket;
+    private ExecutorService executor;
+    private Thread acceptor;
+    private volatile boolean running;
+
+    /**
+     * Totals of a perft run.
+     */
+    public static final class PerftResult
+    {
+        public final long nodes;
+        public final Map<Integer, Long> byRootMove;     // Move code to count, in move code order
+        public final int jobs;
+
+        PerftResult(long nodes, Map<Integer, Long> byRootMove, int jobs)
+        {
+            this.nodes = nodes;
+            this.byRootMove = Collections.unmodifiableMap(byRootMove);
+            this.jobs = jobs;
+        }
+    }
+
+    /**
+     * One position sent to a worker, with how many times it counts toward its root move.
+     */
+    private static final class Job
+    {
+        final int id;
+        final String command;
+        final int rootMove;
+        final long multiplicity;
+        final Run run;
+        long value;
+        int attempts;       // Workers lost while running it
+
+        Job(int id, String command, int rootMove, long multiplicity, Run run)
+        {
+            this.id = id;
+            this.command = command;
+            this.rootMove = rootMove;
+            this.multiplicity = multiplicity;
+            this.run = run;
+        }
+    }
+
+    /**
+     * The jobs of one run, counted down as replies come in.
+     */
+    private static final class Run
+    {
+        final CountDownLatch remaining;
+        volatile String error;
+
+        Run(int jobs)
+        {
+            remaining = new CountDownLatch(jobs);
+        }
+    }
+
+    /**
+     * Sets how long a worker may take over one job before its connection is dropped and the job given to another
+     * worker. 0, the default, waits for ever.
+     * @param jobTimeoutMillis long
+     */
+    public void setJobTimeoutMillis(long jobTimeoutMillis)
+    {
+        this.jobTimeoutMillis = jobTimeoutMillis;
+    }
+
+    /**
+     * Starts listening for workers on the loopback address. Port 0 picks a free port, see getPort.
+     * @param port int
+     * @throws IOException
+     */
+    public void start(int port) throws IOException
+    {
+        start(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    /**
+     * Starts listening for workers on the given address, such as a wildcard address for workers on other hosts.
+     * @param address InetSocketAddress
+     * @throws IOException
+     */
+    public synchronized void start(InetSocketAddress address) throws IOException
+    {
+        if(serverSocket != null) throw new IllegalStateException("Coordinator already started");
+        serverSocket = new ServerSocket();
+        serverSocket.bind(address);
+        running = true;
+        executor = GameServer.newConnectionExecutor();
+        acceptor = new Thread(this::acceptLoop, "PerftCoordinator-accept");
+        acceptor.start();
+    }
+
+    /**
+     * Returns the port the coordinator listens on.
+     * @return int
+     */
+    public int getPort()
+    {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Returns the number of worker connections open.
+     * @return int
+     */
+    public int getWorkerCount()
+    {
+        return workers.size();
+    }
+
+    /**
+     * Waits until at least the given number of worker connections are open. Returns false if the time ran out first.
+     * @param count int
+     * @param timeoutMillis long
+     * @return boolean
+     * @throws InterruptedException
+     */
+    public boolean awaitWorkers(int count, long timeoutMillis) throws InterruptedException
+    {
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while(workers.size() < count)
+        {
+            if(System.nanoTime() - end > 0) return false;
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of jobs given to another worker because the first one failed.
+     * @return long
+     */
+    public long getReassigned()
+    {
+        return reassigned.get();
+    }
+
+    /**
+     * Counts the move sequences of the given length from a position, splitting the work at the split depth.
+     * @param root Position
+     * @param depth int at least 1
+     * @param splitDepth int between 1 and depth
+     * @return PerftResult
+     * @throws IOException if a worker could not run a job
+     * @throws InterruptedException
+     */
+    public synchronized PerftResult perft(Position root, int depth, int splitDepth)
+            throws IOException, InterruptedException
+    {
+        if(depth < 1 || splitDepth < 1 || splitDepth > depth)
+            throw new IllegalArgumentException("Bad depths " + depth + "/" + splitDepth);
+        Game game = newGame(root);
+
+        // Distinct positions at the split depth under each root move, with how many sequences reach them
+        Map<Integer, Map<Position, Long>> frontier = new LinkedHashMap<>();
+        for(int code : game.getLegalMoveCodes())
+        {
+            Map<Position, Long> positions = new HashMap<>();
+            game.pushMove(code);
+            expand(game, splitDepth - 1, positions);
+            game.popMove();
+            frontier.put(code, positions);
+        }
+
+        int jobCount = 0;
+        for(Map<Position, Long> positions : frontier.values()) jobCount += positions.size();
+        Run run = new Run(jobCount);
+        List<Job> jobs = new ArrayList<>(jobCount);
+        for(Map.Entry<Integer, Map<Position, Long>> entry : frontier.entrySet())
+            for(Map.Entry<Position, Long> position : entry.getValue().entrySet())
+            {
+                int id = nextJobId.getAndIncrement();
+                String command = "PERFT " + id + " " + (depth - splitDepth) + " " + Fen.write(position.getKey());
+                jobs.add(new Job(id, command, entry.getKey(), position.getValue(), run));
+            }
+        execute(run, jobs);
+
+        Map<Integer, Long> byRootMove = new LinkedHashMap<>();
+        long total = 0;
+        for(int code : frontier.keySet()) byRootMove.put(code, 0L);
+        for(Job job : jobs)
+        {
+            long count = job.value * job.multiplicity;
+            byRootMove.merge(job.rootMove, count, Long::sum);
+            total += count;
+        }
+        return new PerftResult(total, byRootMove, jobCount);
+    }
+
+    /**
+     * Scores every legal move of a position with a search of the given budget on the position it leads to, one job per
+     * move. Returns each move code with its score for the side to move in the root, in move code order.
+     * @param root Position
+     * @param nodesPerMove long
+     * @param maxDepth int
+     * @return Map of move code to score
+     * @throws IOException if a worker could not run a job
+     * @throws InterruptedException
+     */
+    public synchronized Map<Integer, Integer> scoreRootMoves(Position root, long nodesPerMove, int maxDepth)
+            throws IOException, InterruptedException
+    {
+        Game game = newGame(root);
+        int[] moves = game.getLegalMoveCodes();
+        Run run = new Run(moves.length);
+        List<Job> jobs = new ArrayList<>(moves.length);
+        for(int code : moves)
+        {
+            game.pushMove(code);
+            int id = nextJobId.getAndIncrement();
+            jobs.add(new Job(id, "SCORE " + id + " " + nodesPerMove + " " + maxDepth + " " + Fen.write(game.snapshot()),
+                    code, 1, run));
+            game.popMove();
+        }
+        execute(run, jobs);
+        Map<Integer, Integer> scores = new LinkedHashMap<>();
+        for(Job job : jobs) scores.put(job.rootMove, (int) -job.value);
+        return scores;
+    }
+
+    /**
+     * Stops listening and closes the worker connections, which makes the workers exit.
+     * @throws IOException
+     */
+    @Override
+    public synchronized void close() throws IOException
+    {
+        if(serverSocket == null) return;
+        running = false;
+        serverSocket.close();
+        for(Socket worker : workers) worker.close();
+        executor.shutdown();
+        try
+        {
+            acceptor.join();
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        serverSocket = null;
+    }
+
+    private static Game newGame(Position root)
+    {
+        Game game = Game.fromSnapshot(root);
+        if(game == null) throw new IllegalArgumentException("No game mode for a " + root.boardX + " wide board");
+        return game;
+    }
+
+    /**
+     * Adds the positions the given number of plies ahead, counting the sequences that reach each one.
+     */
+    private static void expand(Game game, int depth, Map<Position, Long> positions)
+    {
+        if(depth == 0)
+        {
+            positions.merge(game.snapshot(), 1L, Long::sum);
+            return;
+        }
+        for(int code : game.getLegalMoveCodes())
+        {
+            game.pushMove(code);
+            expand(game, depth - 1, positions);
+            game.popMove();
+        }
+    }
+
+    /**
+     * Queues the jobs of a run and waits for all of them. Jobs still queued when one fails are dropped.
+     */
+    private void execute(Run run, List<Job> jobs) throws IOException, InterruptedException
+    {
+        if(!running) throw new IllegalStateException("Coordinator is not running");
+        queue.addAll(jobs);
+        try
+        {
+            run.remaining.await();
+        } finally
+        {
+            queue.removeIf(job -> job.run == run);
+        }
+        if(run.error != null) throw new IOException(run.error);
+    }
+
+    /**
+     * Marks a run failed and releases its waiter.
+     */
+    private static void fail(Run run, String error)
+    {
+        run.error = error;
+        while(run.remaining.getCount() > 0) run.remaining.countDown();
+    }
+
+    private void acceptLoop()
+    {
+        while(!serverSocket.isClosed())
+        {
+            try
+            {
+                Socket worker = serverSocket.accept();
+                worker.setTcpNoDelay(true);
+                workers.add(worker);
+                executor.execute(() -> serve(worker));
+            } catch (IOException e)
+            {
+                // The socket was closed
+            }
+        }
+    }
+
+    /**
+     * Feeds one worker connection jobs until it fails or the coordinator closes. A failed job goes back to the front of
+     * the queue, or fails its run after MAX_ATTEMPTS tries.
+     */
+    private void serve(Socket worker)
+    {
+        try(Socket socket = worker;
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF_8));
+            Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), UTF_8)))
+        {
+            if(jobTimeoutMillis > 0) socket.setSoTimeout((int) Math.min(Integer.MAX_VALUE, jobTimeoutMillis));
+            while(running)
+            {
+                Job job = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if(job == null) continue;
+                String reply;
+                try
+                {
+                    out.write(job.command);
+                    out.write('\n');
+                    out.flush();
+                    reply = in.readLine();
+                    if(reply == null) throw new IOException("Worker closed the connection");
+                } catch (IOException e)
+                {
+                    if(++job.attempts >= MAX_ATTEMPTS)
+                        fail(job.run, "Job " + job.id + " lost " + job.attempts + " workers");
+                    else
+                    {
+                        reassigned.incrementAndGet();
+                        queue.addFirst(job);
+                    }
+                    throw e;
+                }
+                handle(job, reply);
+            }
+        } catch (IOException e)
+        {
+            // Worker lost, its job was put back or its run failed
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        } finally
+        {
+            workers.remove(worker);
+        }
+    }
+
+    private static void handle(Job job, String reply)
+    {
+        String[] words = reply.split(" ", 3);
+        if(words.length == 3 && words[0].equals("OK") && words[1].equals(Integer.toString(job.id)))
+        {
+            try
+            {
+                job.value = Long.parseLong(words[2]);
+                job.run.remaining.countDown();
+                return;
+            } catch (NumberFormatException e)
+            {
+                // Reported below
+            }
+        }
+        fail(job.run, "Job " + job.id + " failed: " + reply);
+    }
+
+    /**
+     * Usage: PerftCoordinator port workers fen depth [splitDepth]
+     * <p>
+     * Listens on all interfaces, waits for the given number of worker connections, then runs perft and prints the
+     * count of each root move and the total.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        if(args.length < 4)
+        {
+            System.err.println("Usage: PerftCoordinator port workers fen depth [splitDepth]");
+            return;
+        }
+        try(PerftCoordinator coordinator = new PerftCoordinator())
+        {
+            coordinator.start(new InetSocketAddress(Integer.parseInt(args[0])));
+            System.out.println("Waiting for " + args[1] + " workers on port " + coordinator.getPort());
+            coordinator.awaitWorkers(Integer.parseInt(args[1]), TimeUnit.DAYS.toMillis(1));
+            Position root = Fen.parse(args[2]);
+            int depth = Integer.parseInt(args[3]);
+            int split = (args.length > 4)? Integer.parseInt(args[4]) : Math.min(2, depth);
+            long start = System.nanoTime();
+            PerftResult result = coordinator.perft(root, depth, split);
+            Game game = newGame(root);
+            int[] legal = game.getLegalMoveCodes();
+            for(Map.Entry<Integer, Long> entry : result.byRootMove.entrySet())
+                System.out.println(San.format(game, entry.getKey(), legal) + ": " + entry.getValue());
+            System.out.printf("%d nodes, %d jobs, %d reassigned, %.1fs%n", result.nodes, result.jobs,
+                    coordinator.getReassigned(), (System.nanoTime() - start) / 1e9);
+        }
+    }
+}
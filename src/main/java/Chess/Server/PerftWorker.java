@@ -0,0 +1,124 @@
+package Chess.Server;
+
+import Chess.Game.Game;
+import Chess.Notation.Fen;
+import Chess.Search.Evaluator;
+import Chess.Search.Perft;
+import Chess.Search.Search;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Runs the jobs of a PerftCoordinator, see there for the protocol. A worker dials in to the coordinator rather than
+ * listening itself, so workers on other hosts only need to reach the coordinator's port, and one can be added to a
+ * run at any time. Scores are searched without a transposition table, so every worker gives the same answer.
+ */
+public final class PerftWorker
+{
+    private PerftWorker()
+    {
+    }
+
+    /**
+     * Connects to a coordinator and runs its jobs one at a time until it closes the connection.
+     * @param host String
+     * @param port int
+     * @throws IOException
+     */
+    public static void run(String host, int port) throws IOException
+    {
+        Search search = new Search(new Evaluator(), null);
+        try(Socket socket = new Socket(host, port);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF_8));
+            Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), UTF_8)))
+        {
+            socket.setTcpNoDelay(true);
+            String line;
+            while((line = in.readLine()) != null)
+            {
+                out.write(execute(search, line));
+                out.write('\n');
+                out.flush();
+            }
+        }
+    }
+
+    /**
+     * Runs one job line and returns its reply line. Any failure is sent back as an ERR reply, so the coordinator does
+     * not count the job against a lost worker.
+     */
+    static String execute(Search search, String line)
+    {
+        String[] words = line.split(" ", 5);
+        String id = (words.length > 1)? words[1] : "0";
+        try
+        {
+            if(words[0].equals("PERFT") && words.length >= 4)
+            {
+                words = line.split(" ", 4);
+                return "OK " + id + " " + Perft.count(load(words[3]), Integer.parseInt(words[2]));
+            }
+            if(words[0].equals("SCORE") && words.length == 5)
+            {
+                Search.Result result = search.search(load(words[4]), Long.parseLong(words[2]),
+                        Integer.parseInt(words[3]));
+                return "OK " + id + " " + result.score;
+            }
+            return "ERR " + id + " Unknown job";
+        } catch (IllegalArgumentException e)
+        {
+            return "ERR " + id + " " + e.getMessage();
+        } catch (RuntimeException e)
+        {
+            return "ERR " + id + " " + e;
+        }
+    }
+
+    private static Game load(String fen)
+    {
+        Game game = Game.fromSnapshot(Fen.parse(fen));
+        if(game == null) throw new IllegalArgumentException("No game mode for " + fen);
+        return game;
+    }
+
+    /**
+     * Usage: PerftWorker host port [threads]
+     * <p>
+     * Opens one connection per thread, so a coordinator can keep every core of this host busy.
+     */
+    public static void main(String[] args) throws InterruptedException
+    {
+        if(args.length < 2)
+        {
+            System.err.println("Usage: PerftWorker host port [threads]");
+            return;
+        }
+        String host = args[0];
+        int port = Integer.parseInt(args[1]);
+        int threads = (args.length > 2)? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        Thread[] connections = new Thread[threads];
+        for(int i = 0; i < threads; i++)
+        {
+            connections[i] = new Thread(() ->
+            {
+                try
+                {
+                    run(host, port);
+                } catch (IOException e)
+                {
+                    System.err.println("PerftWorker: " + e.getMessage());
+                }
+            }, "PerftWorker-" + i);
+            connections[i].start();
+        }
+        for(Thread connection : connections) connection.join();
+    }
+}
@@ -0,0 +1,204 @@
+package Chess;
+
+import Chess.Pieces.Piece;
+import Chess.Pieces.Piece.PieceColor;
+
+import static Chess.Pieces.Piece.PieceColor.*;
+import static Chess.Position.*;
+
+/**
+ * Board symmetries, for storing one entry per class of equivalent positions in books, tables and caches.
+ * <p>
+ * A transform is a combination of the flag bits below. The square part transposes first, then flips files, then flips
+ * ranks. The color part swaps the color of every piece and the side to move. Without castling or en passant, only pawns
+ * care about direction, so:
+ * <ul>
+ *     <li>Flipping files is always valid, on either board.</li>
+ *     <li>Flipping ranks together with swapping colors is always valid.</li>
+ *     <li>Without pawns, flipping ranks and swapping colors are each valid alone, and on a square board so is
+ *     transposing, which gives all 8 symmetries of the square.</li>
+ * </ul>
+ * So a position with pawns has 4 equivalent forms, a pawnless one on 10x8 has 8, and a pawnless one on 8x8 has 16.
+ */
+public final class Symmetry
+{
+    public static final int IDENTITY  = 0;
+    public static final int FLIP_X    = 1;
+    public static final int FLIP_Y    = 2;
+    public static final int TRANSPOSE = 4;
+    public static final int SWAP_COLORS = 8;
+    public static final int COUNT = 16;
+
+    private Symmetry() {}
+
+    /**
+     * Returns true if a transform turns the position into an equivalent one.
+     * @param position Position
+     * @param transform int
+     * @return boolean
+     */
+    public static boolean isValid(Position position, int transform)
+    {
+        if(transform < 0 || transform >= COUNT) return false;
+        if((transform & TRANSPOSE) != 0 && position.boardX != position.boardY) return false;
+        boolean colorMatchesRanks = ((transform & FLIP_Y) != 0) == ((transform & SWAP_COLORS) != 0);
+        if(colorMatchesRanks && (transform & TRANSPOSE) == 0) return true;
+        return !hasPawns(position);
+    }
+
+    /**
+     * Returns the transform that takes a position to its canonical form: of all its valid transforms, the one that gives
+     * the lowest hash, preferring the lowest transform on a tie.
+     * @param position Position
+     * @return int
+     */
+    public static int canonicalTransform(Position position)
+    {
+        boolean pawns = hasPawns(position);
+        boolean square = position.boardX == position.boardY;
+        int best = IDENTITY;
+        long bestHash = position.hash;
+        for(int t = 1; t < COUNT; t++)
+        {
+            if((t & TRANSPOSE) != 0 && (!square || pawns)) continue;
+            if(pawns && ((t & FLIP_Y) != 0) != ((t & SWAP_COLORS) != 0)) continue;
+            long hash = transformedHash(position, t);
+            if(Long.compareUnsigned(hash, bestHash) < 0)
+            {
+                best = t;
+                bestHash = hash;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the hash of a position's canonical form. Equivalent positions have the same canonical hash.
+     * @param position Position
+     * @return long
+     */
+    public static long canonicalHash(Position position)
+    {
+        return transformedHash(position, canonicalTransform(position));
+    }
+
+    /**
+     * Returns the canonical form of a position.
+     * @param position Position
+     * @return Position
+     */
+    public static Position canonicalize(Position position)
+    {
+        return apply(position, canonicalTransform(position));
+    }
+
+    /**
+     * Returns the position a transform turns the given one into. The transform should be valid for it, see isValid.
+     * @param position Position
+     * @param transform int
+     * @return Position
+     */
+    public static Position apply(Position position, int transform)
+    {
+        if(transform == IDENTITY) return position;
+        int boardX = position.boardX, boardY = position.boardY;
+        byte[] cells = new byte[boardX * boardY];
+        for(int y = 0; y < boardY; y++)
+            for(int x = 0; x < boardX; x++)
+            {
+                int code = position.getCode(x, y);
+                if(code == 0) continue;
+                if((transform & SWAP_COLORS) != 0) code ^= WHITE_BIT;
+                cells[transformSquare(x + y * boardX, transform, boardX, boardY)] = (byte) code;
+            }
+        return new Position(boardX, boardY, turnColorAfter(position.turnColor, transform),
+                transformedHash(position, transform), cells);
+    }
+
+    /**
+     * Returns the square index (x + y*boardX) a transform moves a square to.
+     * @param index int
+     * @param transform int
+     * @param boardX int
+     * @param boardY int
+     * @return int
+     */
+    public static int transformSquare(int index, int transform, int boardX, int boardY)
+    {
+        int x = index % boardX, y = index / boardX;
+        if((transform & TRANSPOSE) != 0)
+        {
+            int t = x;
+            x = y;
+            y = t;
+        }
+        if((transform & FLIP_X) != 0) x = boardX - 1 - x;
+        if((transform & FLIP_Y) != 0) y = boardY - 1 - y;
+        return x + y * boardX;
+    }
+
+    /**
+     * Returns the move code (see Move.encode) a transform turns a move into. Moves found in a canonical table can be
+     * mapped back to the real position with the inverse transform.
+     * @param moveCode int
+     * @param transform int
+     * @param boardX int
+     * @param boardY int
+     * @return int
+     */
+    public static int transformMove(int moveCode, int transform, int boardX, int boardY)
+    {
+        return Move.encode(transformSquare(Move.fromIndex(moveCode), transform, boardX, boardY),
+                transformSquare(Move.destIndex(moveCode), transform, boardX, boardY));
+    }
+
+    /**
+     * Returns the transform that undoes the given one.
+     * @param transform int
+     * @return int
+     */
+    public static int inverse(int transform)
+    {
+        if((transform & TRANSPOSE) == 0) return transform;
+        // Undoing means flipping first and transposing last, which is the same as transposing first and then flipping
+        // the other axis
+        int flips = transform & (FLIP_X | FLIP_Y);
+        int swapped = ((flips & FLIP_X) != 0? FLIP_Y : 0) | ((flips & FLIP_Y) != 0? FLIP_X : 0);
+        return (transform & ~(FLIP_X | FLIP_Y)) | swapped;
+    }
+
+    /**
+     * Computes the hash of a transformed position without building it.
+     */
+    private static long transformedHash(Position position, int transform)
+    {
+        if(transform == IDENTITY) return position.hash;
+        int boardX = position.boardX, boardY = position.boardY;
+        long hash = Zobrist.widthKey(boardX) ^ Zobrist.sideKey(turnColorAfter(position.turnColor, transform));
+        boolean swap = (transform & SWAP_COLORS) != 0;
+        for(int y = 0; y < boardY; y++)
+            for(int x = 0; x < boardX; x++)
+            {
+                int code = position.getCode(x, y);
+                if((code & OCCUPIED) == 0) continue;
+                PieceColor color = (((code & WHITE_BIT) != 0) != swap)? WHITE : BLACK;
+                int to = transformSquare(x + y * boardX, transform, boardX, boardY);
+                hash ^= Zobrist.pieceKey(code & TYPE_MASK, color, (code & MOVED_BIT) != 0, to % boardX, to / boardX);
+            }
+        return hash;
+    }
+
+    private static PieceColor turnColorAfter(PieceColor turnColor, int transform)
+    {
+        if((transform & SWAP_COLORS) == 0) return turnColor;
+        return (turnColor == WHITE)? BLACK : WHITE;
+    }
+
+    private static boolean hasPawns(Position position)
+    {
+        for(int y = 0; y < position.boardY; y++)
+            for(int x = 0; x < position.boardX; x++)
+                if(position.getPieceType(x, y) == Piece.PAWN) return true;
+        return false;
+    }
+}
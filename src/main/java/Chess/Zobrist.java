@@ -0,0 +1,116 @@
+package Chess;
+
+import Chess.Pieces.Piece;
+import Chess.Pieces.Piece.PieceColor;
+
+import static Chess.Pieces.Piece.PieceColor.*;
+
+/**
+ * Zobrist keys used to hash positions. A position's hash is the XOR of one key per piece on the board, plus a key for
+ * the side to move and one for the board width. The keys come from a fixed seed so hashes are stable between runs and
+ * can be stored on disk.<br>
+ * Only a pawn's moved flag changes how it can move, so only pawns have a separate key for being marked moved.
+ */
+public final class Zobrist
+{
+    public static final int MAX_FILES = 16;
+    public static final int MAX_RANKS = 16;
+
+    private static final int KINDS = Piece.TYPE_COUNT + 1;    // Every type, plus moved pawns
+    private static final int MOVED_PAWN = Piece.TYPE_COUNT;
+
+    private static final long[] PIECE_KEYS = new long[2 * KINDS * MAX_FILES * MAX_RANKS];
+    private static final long[] WIDTH_KEYS = new long[MAX_FILES + 1];
+    private static final long BLACK_TO_MOVE;
+
+    static
+    {
+        long seed = 0x2545F4914F6CDD1DL;
+        for(int i = 0; i < PIECE_KEYS.length; i++)
+            PIECE_KEYS[i] = seed = splitMix(seed);
+        for(int i = 0; i < WIDTH_KEYS.length; i++)
+            WIDTH_KEYS[i] = seed = splitMix(seed);
+        BLACK_TO_MOVE = splitMix(seed);
+    }
+
+    private Zobrist() {}
+
+    /**
+     * Returns the key of a piece with the given properties standing on the given coordinates.
+     * @param type int
+     * @param color PieceColor
+     * @param moved boolean
+     * @param x int
+     * @param y int
+     * @return long
+     */
+    public static long pieceKey(int type, PieceColor color, boolean moved, int x, int y)
+    {
+        int kind = (type == Piece.PAWN && moved)? MOVED_PAWN : type;
+        int colorIdx = (color == WHITE)? 0 : 1;
+        return PIECE_KEYS[((colorIdx * KINDS + kind) * MAX_RANKS + y) * MAX_FILES + x];
+    }
+
+    /**
+     * Returns the key of the piece standing on the given coordinates.
+     * @param piece Piece
+     * @param x int
+     * @param y int
+     * @return long
+     */
+    public static long pieceKey(Piece piece, int x, int y)
+    {
+        return pieceKey(piece.getType(), piece.getColor(), piece.hasMoved(), x, y);
+    }
+
+    /**
+     * Returns the key for the side to move. White to move has no key.
+     * @param turnColor PieceColor
+     * @return long
+     */
+    public static long sideKey(PieceColor turnColor)
+    {
+        return (turnColor == BLACK)? BLACK_TO_MOVE : 0L;
+    }
+
+    /**
+     * Returns the key for the width of the board, so identical placements on different variants hash differently.
+     * @param boardX int
+     * @return long
+     */
+    public static long widthKey(int boardX)
+    {
+        return WIDTH_KEYS[boardX];
+    }
+
+    /**
+     * Computes the hash of a board from scratch.
+     * @param board Board
+     * @param turnColor PieceColor
+     * @return long
+     */
+    public static long hash(Board board, PieceColor turnColor)
+    {
+        long hash = widthKey(board.xLength) ^ sideKey(turnColor);
+        for(int x = 0; x < board.xLength; x++)
+            for(int y = 0; y < board.yLength; y++)
+            {
+                Piece piece = board.getPiece(x, y);
+                if(piece != null) hash ^= pieceKey(piece, x, y);
+            }
+        return hash;
+    }
+
+    /**
+     * SplitMix64 step, used to expand the fixed seed into keys.
+     * @param seed long
+     * @return long
+     */
+    private static long splitMix(long seed)
+    {
+        long z = seed + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -13,6 +13,8 @@ import javax.swing.*;
 import java.awt.*;
 import javax.swing.border.*;
 import java.awt.event.ActionListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.util.HashSet;
 
 /**
@@ -31,8 +33,12 @@ public class ChessGUI
     private SquareButton[][] boardSqrs;
 
     private JButton undoButton;
+    private JButton redoButton;
+    private JButton firstButton;
+    private JButton lastButton;
     private JButton newgameButton;
     private JButton forfeitButton;
+    private JButton hintButton;
 
     private PlayerLabel whitePlayer;
     private PlayerLabel blackPlayer;
@@ -85,6 +91,17 @@ public class ChessGUI
         window.pack();
     }
 
+    /**
+     * Redraws the pieces of the Game object on the current board, for when the game jumps to another ply.
+     * @param chessgame Game
+     */
+    public void showPieces(Game chessgame)
+    {
+        for(SquareButton[] column : boardSqrs)
+            for(SquareButton square : column) square.setIcon(null);
+        setupPieces(chessgame);
+    }
+
     /**
      * Returns the name of the PlayerLabel playing the given color.
      * @param color PieceColor
@@ -145,6 +162,24 @@ public class ChessGUI
         undoButton.addActionListener(actl);
     }
 
+    /**
+     * Adds an ActionListener for the First Move button.
+     * @param actl ActionListener
+     */
+    public void addFirstListener(ActionListener actl)
+    {
+        firstButton.addActionListener(actl);
+    }
+
+    /**
+     * Adds an ActionListener for the Last Move button.
+     * @param actl ActionListener
+     */
+    public void addLastListener(ActionListener actl)
+    {
+        lastButton.addActionListener(actl);
+    }
+
     /**
      * Adds an ActionListener for all the JButtons representing the board squares.
      * @param actl ActionListener
@@ -156,6 +191,40 @@ public class ChessGUI
                 boardSqrs[x][y].addActionListener(actl);
     }
 
+    /**
+     * Adds an ActionListener for the Hint button.
+     * @param actl ActionListener
+     */
+    public void addHintListener(ActionListener actl)
+    {
+        hintButton.addActionListener(actl);
+    }
+
+    /**
+     * Adds an ActionListener for the Redo Move button.
+     * @param actl ActionListener
+     */
+    public void addRedoListener(ActionListener actl)
+    {
+        redoButton.addActionListener(actl);
+    }
+
+    /**
+     * Adds a task to run when the window is being closed, before the application exits.
+     * @param task Runnable
+     */
+    public void addCloseListener(Runnable task)
+    {
+        window.addWindowListener(new WindowAdapter()
+        {
+            @Override
+            public void windowClosing(WindowEvent e)
+            {
+                task.run();
+            }
+        });
+    }
+
     /**
      * Helper function for determining if the coordinates refer to a valid square on the board.
      * @param x int
@@ -216,7 +285,8 @@ public class ChessGUI
     }
 
     /**
-     * Helper function for initializing the toolbar component. Contains the undo, forfeit, and new game buttons.
+     * Helper function for initializing the toolbar component. Contains the first, undo, redo, last, forfeit, hint and
+     * new game buttons.
      * @return JToolBar
      */
     private JToolBar initToolbar()
@@ -224,13 +294,22 @@ public class ChessGUI
         JToolBar tools = new JToolBar();
         tools.setFloatable(false);
         undoButton = new JButton("Undo Last Move");
+        redoButton = new JButton("Redo Move");
+        firstButton = new JButton("First Move");
+        lastButton = new JButton("Last Move");
         newgameButton = new JButton("New Game");
         forfeitButton = new JButton("Forfeit Game");
+        hintButton = new JButton("Hint");
         tools.add(newgameButton);
         tools.addSeparator();
         tools.add(forfeitButton);
         tools.addSeparator();
+        tools.add(firstButton);
         tools.add(undoButton);
+        tools.add(redoButton);
+        tools.add(lastButton);
+        tools.addSeparator();
+        tools.add(hintButton);
         return tools;
     }
 
@@ -325,4 +404,4 @@ public class ChessGUI
             boardSqrs[x][y].setIcon(piece.getIcon());
         }
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
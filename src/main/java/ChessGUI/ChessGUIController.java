@@ -1,5 +1,6 @@
 package ChessGUI;
 
+import Chess.Archive.GameStore;
 import Chess.Game.ChessGame;
 import Chess.Game.CustomChessGame;
 import Chess.Game.Game;
@@ -7,6 +8,8 @@ import Chess.Game.Game.GameState;
 import static Chess.Game.Game.GameState.*;
 
 import Chess.Move;
+import Chess.Notation.San;
+import Chess.Search.Analyzer;
 import static Chess.Pieces.Piece.PieceColor.*;
 
 import Chess.Pieces.Piece.PieceColor;
@@ -14,13 +17,24 @@ import Chess.Square;
 
 import javax.swing.*;
 import java.awt.*;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 /**
  * Controller class for the Chess view (ChessGUI)
  */
 public class ChessGUIController
 {
+    private static final Path STORE_DIR = Paths.get(System.getProperty("user.home"), ".chessapp", "games");
+    private static final long HINT_MILLIS = 2000;
+
+    private GameStore store;        // Null if the store could not be opened, then games are only kept in memory
+    private long gameId = -1;       // Id of the current game in the store
     private Game chessGame;
     private ChessGUI chessGUI;
     private Square currentFrom;
@@ -51,6 +65,54 @@ public class ChessGUIController
         chessGUI.addForfeitListener(e -> forfeitGame());
 
         chessGUI.addUndoListener(e -> undoMove());
+
+        chessGUI.addRedoListener(e -> redoMove());
+
+        chessGUI.addFirstListener(e -> jumpToPly(0));
+
+        chessGUI.addLastListener(e -> jumpToPly(Integer.MAX_VALUE));
+
+        chessGUI.addHintListener(e -> showHint());
+
+        chessGUI.addCloseListener(this::closeStore);
+
+        openStore();
+    }
+
+    /**
+     * Opens the game store and offers to resume the most recent game that was left unfinished.
+     */
+    private void openStore()
+    {
+        try
+        {
+            store = GameStore.open(STORE_DIR);
+        } catch (IOException e)
+        {
+            displayMsg("Games will not be saved: " + e.getMessage(), "Storage unavailable");
+            return;
+        }
+        List<Long> open = store.getOpenGames();
+        if(open.isEmpty()) return;
+        long lastId = open.get(open.size() - 1);
+        int reply = JOptionPane.showConfirmDialog(null, "Resume the unfinished game?", "Resume Game?",
+                JOptionPane.YES_NO_OPTION);
+        if(reply == JOptionPane.YES_OPTION)
+        {
+            Game resumed = store.resume(lastId);
+            gameId = lastId;
+            beginSession(resumed);
+            validateGameState();
+        }
+        else storeAsync(target -> target.finishAsync(lastId));
+    }
+
+    /**
+     * Writes a final snapshot of the game store. Called when the window closes.
+     */
+    private void closeStore()
+    {
+        storeAction(() -> store.close());
     }
 
     /**
@@ -67,17 +129,28 @@ public class ChessGUIController
         Game mode = promptGameMode();
         if(mode != null)
         {
-            chessGame = mode;
-            chessGUI.setupGame(chessGame);  // This inits a brand new board with new SquareButtons for the game
-            currentFrom = null;
-            currentMoveset = null;
-            isFirstClick = true;
-            gameInSession = true;
-            setTurnColor();
-            initSquareListeners();          // for which we need to init their ActionListeners
+            endStoredGame();
+            storeAction(() -> gameId = store.create(mode));
+            beginSession(mode);
         }
     }
 
+    /**
+     * Sets up the board for a game and starts a session with it.
+     * @param game Game
+     */
+    private void beginSession(Game game)
+    {
+        chessGame = game;
+        chessGUI.setupGame(chessGame);  // This inits a brand new board with new SquareButtons for the game
+        currentFrom = null;
+        currentMoveset = null;
+        isFirstClick = true;
+        gameInSession = true;
+        setTurnColor();
+        initSquareListeners();          // for which we need to init their ActionListeners
+    }
+
     /**
      * Function to be called when the Forfeit Game button is pressed. Alerts the users that the current moving player
      * has forfeited. Then increments the score of the "Winner" and ends the current game session.
@@ -90,6 +163,7 @@ public class ChessGUIController
             String forfeiter = chessGUI.getPlayerName(chessGame.getTurnColor());
             displayMsg(forfeiter + " forfeits!", "Forfeit!");
             gameInSession = false;
+            endStoredGame();
         }
         else displayMsg("Please start a new game.", "No game in session");
     }
@@ -127,6 +201,8 @@ public class ChessGUIController
         if(currentMoveset.contains(dest))
         {
             chessGame.runTurn(currentFrom, dest);
+            int moveCode = Move.encode(chessGame.squareIndex(currentFrom), chessGame.squareIndex(dest));
+            if(gameId >= 0) storeAsync(target -> target.recordMoveAsync(gameId, moveCode));
             chessGUI.moveSquareIcon(currentFrom, dest);
             validateGameState();
             setTurnColor();
@@ -149,6 +225,7 @@ public class ChessGUIController
                 displayMsg("No moves to undo.", "Nothing to undo");
                 return;
             }
+            if(gameId >= 0) storeAsync(target -> target.recordUndoAsync(gameId));
             chessGUI.moveSquareIcon(mv.dest, mv.from);
             if (mv.capturedPiece != null)
                 chessGUI.setSquareIcon(mv.dest, mv.capturedPiece.getIcon());
@@ -158,6 +235,76 @@ public class ChessGUIController
         else displayMsg("Please start a new game.", "No game in session");
     }
 
+    /**
+     * Function to be done when the redo button is clicked. Makes the last undone move again in the internal Game and
+     * updates the GUI accordingly. Does nothing if there are no moves to redo.
+     */
+    private void redoMove()
+    {
+        if(gameInSession)
+        {
+            Move mv = chessGame.redoMove();
+            if (mv == null)
+            {
+                displayMsg("No moves to redo.", "Nothing to redo");
+                return;
+            }
+            if(gameId >= 0) storeAsync(target -> target.recordRedoAsync(gameId));
+            chessGUI.moveSquareIcon(mv.from, mv.dest);
+            validateGameState();
+            setTurnColor();
+        }
+        else displayMsg("Please start a new game.", "No game in session");
+    }
+
+    /**
+     * Function to be done when the first or last move button is clicked. Jumps the internal Game to the given ply, or
+     * its last one if the ply is past it, and redraws the pieces. The store records the jump as the undos or redos it
+     * is made of.
+     * @param ply int
+     */
+    private void jumpToPly(int ply)
+    {
+        if(gameInSession)
+        {
+            int current = chessGame.getPly();
+            ply = Math.min(ply, chessGame.getHistoryLength());
+            if(ply == current || !chessGame.gotoPly(ply)) return;
+            if(gameId >= 0)
+            {
+                long id = gameId;
+                for(int i = current; i < ply; i++) storeAsync(target -> target.recordRedoAsync(id));
+                for(int i = ply; i < current; i++) storeAsync(target -> target.recordUndoAsync(id));
+            }
+            chessGUI.showPieces(chessGame);
+            validateGameState();
+            setTurnColor();
+        }
+        else displayMsg("Please start a new game.", "No game in session");
+    }
+
+    /**
+     * Function to be done when the hint button is clicked. Searches the current position in the background and, if the
+     * board has not changed by the time the search is done, tells the moving player the best move found.
+     */
+    private void showHint()
+    {
+        if(!gameInSession)
+        {
+            displayMsg("Please start a new game.", "No game in session");
+            return;
+        }
+        Game game = chessGame;
+        long hash = game.getHash();
+        Analyzer.getShared().analyze(game.snapshot(), Analyzer.Limits.ofTime(HINT_MILLIS))
+                .whenComplete((result, error) -> SwingUtilities.invokeLater(() ->
+        {
+            if(!gameInSession || chessGame != game || game.getHash() != hash) return;   // The board moved on
+            if(error != null || result.moveCode == 0) displayMsg("No hint available.", "Hint");
+            else displayMsg("Try " + San.format(game, result.moveCode, game.getLegalMoveCodes()), "Hint");
+        }));
+    }
+
     /**
      * Checks if check/checkmate/stalemate has occurred and updates the appropriate flags. Also alerts the users. If the
      * state is an end game state (checkmate/stalemate) then the game session is ended and the appropriate player(s)
@@ -183,7 +330,70 @@ public class ChessGUIController
             case STALEMATE      : displayMsg("Stalemate!", "STALEMATE!");
         }
         if(state == WHITE_WINS || state == BLACK_WINS || state == STALEMATE) // Game has ended if any of these are true
+        {
             gameInSession = false;
+            endStoredGame();
+        }
+    }
+
+    /**
+     * Removes the current game from the store so that it is not offered for resuming.
+     */
+    private void endStoredGame()
+    {
+        if(gameId < 0) return;
+        long id = gameId;
+        gameId = -1;
+        storeAsync(target -> target.finishAsync(id));
+    }
+
+    /**
+     * A write to the game store.
+     */
+    private interface StoreAction
+    {
+        void run() throws IOException;
+    }
+
+    /**
+     * Runs a write to the game store if there is one. If it fails, tells the users and stops saving games.
+     * @param action StoreAction
+     */
+    private void storeAction(StoreAction action)
+    {
+        if(store == null) return;
+        try
+        {
+            action.run();
+        } catch (IOException e)
+        {
+            storeFailed(e);
+        }
+    }
+
+    /**
+     * Hands a write to the game store without waiting for the disk, so the board never stalls on a sync and writes
+     * from quick clicks share one. Failures are reported on the event thread like storeAction's.
+     * @param write Function from the store to the pending write
+     */
+    private void storeAsync(Function<GameStore, CompletableFuture<Void>> write)
+    {
+        if(store == null) return;
+        GameStore target = store;
+        write.apply(target).whenComplete((done, error) ->
+        {
+            if(error != null) SwingUtilities.invokeLater(() ->
+            {
+                if(store == target) storeFailed(error);
+            });
+        });
+    }
+
+    private void storeFailed(Throwable error)
+    {
+        store = null;
+        gameId = -1;
+        displayMsg("Games will no longer be saved: " + error.getMessage(), "Storage error");
     }
 
     /**
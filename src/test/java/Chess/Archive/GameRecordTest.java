@@ -0,0 +1,161 @@
+package Chess.Archive;
+
+import Chess.Game.ChessGame;
+import Chess.Game.CustomChessGame;
+import Chess.Game.Game;
+import Chess.Move;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class GameRecordTest
+{
+
+    /**
+     * Helper function that plays random legal moves until the game ends or reaches the ply limit.
+     */
+    static Game playRandom(Game game, Random random, int maxPly)
+    {
+        for(int i = 0; i < maxPly; i++)
+        {
+            int[] legal = game.getLegalMoveCodes();
+            if(legal.length == 0) break;
+            game.runTurn(legal[random.nextInt(legal.length)]);
+        }
+        return game;
+    }
+
+    private static int[] moveCodes(Game game)
+    {
+        List<Move> history = game.getMoveHistory();
+        int[] codes = new int[history.size()];
+        for(int i = 0; i < codes.length; i++)
+            codes[i] = Move.encode(game.squareIndex(history.get(i).from), game.squareIndex(history.get(i).dest));
+        return codes;
+    }
+
+    /**
+     * Checks both codings stream back the same moves for both board sizes, and that range coding is never larger.
+     */
+    @Test
+    public void testRoundTrip()
+    {
+        Random random = new Random(33);
+        for(int i = 0; i < 20; i++)
+        {
+            Game game = playRandom((i % 2 == 0)? new ChessGame() : new CustomChessGame(), random, 120);
+            int[] expected = moveCodes(game);
+            GameRecord packed = GameRecord.of(game, false);
+            GameRecord ranged = GameRecord.of(game, true);
+            assertTrue(ranged.size() <= packed.size() + 4);
+
+            for(GameRecord record : new GameRecord[] {packed, ranged})
+            {
+                assertEquals(game instanceof CustomChessGame, record.isCustomVariant());
+                assertNull(record.getStartFen());
+                MoveStream moves = record.moves();
+                for(int code : expected)
+                {
+                    assertTrue(moves.hasNext());
+                    assertEquals(code, moves.nextMove());
+                }
+                assertFalse(moves.hasNext());
+                assertEquals(game.snapshot(), moves.getGame().snapshot());
+                assertEquals(game.getGameState(), moves.getGame().getGameState());
+                assertEquals(game.snapshot(), moves.getGame().getView().position);
+            }
+        }
+    }
+
+    /**
+     * Checks the header fields of a finished game that started from a set up position, and its buffer round trip.
+     */
+    @Test
+    public void testHeader()
+    {
+        Game game = new ChessGame("7k/6pp/8/8/8/8/8/R3K3 w");
+        game.runTurn(Move.encode(0, 56));
+        GameRecord record = GameRecord.of(game, true);
+        assertEquals("1-0", record.getResult());
+        assertEquals(1, record.getPlyCount());
+        assertEquals("7k/6pp/8/8/8/8/8/R3K3 w - - 0 1", record.getStartFen());
+
+        ByteBuffer buffer = ByteBuffer.allocate(record.size());
+        record.write(buffer);
+        assertFalse(buffer.hasRemaining());
+        buffer.flip();
+        GameRecord read = GameRecord.read(buffer);
+        assertEquals(record.getResult(), read.getResult());
+        assertEquals(record.getStartFen(), read.getStartFen());
+        assertEquals(game.getHash(), read.replay().getHash());
+    }
+
+    /**
+     * Checks a forfeited game is recorded from its real start, with its moves and result, without moving it.
+     */
+    @Test
+    public void testForfeited()
+    {
+        Game game = playRandom(new CustomChessGame(), new Random(34), 40);
+        int[] expected = moveCodes(game);
+        String result = game.isWhitesTurn()? "0-1" : "1-0";
+        assertTrue(game.forfeit(game.getTurnColor()));
+        GameRecord record = GameRecord.of(game, true);
+        assertEquals(result, record.getResult());
+        assertNull(record.getStartFen());
+        assertEquals(expected.length, record.getPlyCount());
+        MoveStream moves = record.moves();
+        for(int code : expected) assertEquals(code, moves.nextMove());
+        assertEquals(game.snapshot(), moves.getGame().snapshot());
+        assertEquals(expected.length, game.getPly());
+        assertTrue(game.isForfeited());
+    }
+
+    /**
+     * Writes an archive, then reads it in order and by seeking.
+     */
+    @Test
+    public void testArchive() throws IOException
+    {
+        Path file = Files.createTempFile("games", ".cgr");
+        try
+        {
+            Random random = new Random(7);
+            List<Long> hashes = new ArrayList<>();
+            try(GameRecordWriter writer = new GameRecordWriter(file, true, 8))
+            {
+                for(int i = 0; i < 50; i++)
+                {
+                    Game game = playRandom((i % 3 == 0)? new CustomChessGame() : new ChessGame(), random, 60);
+                    writer.write(game);
+                    hashes.add(game.getHash());
+                }
+            }
+            try(GameRecordReader reader = new GameRecordReader(file))
+            {
+                assertEquals(50, reader.getGameCount());
+                for(long hash : hashes) assertEquals(hash, reader.next().replay().getHash());
+                assertNull(reader.next());
+
+                for(int n : new int[] {37, 0, 49, 8, 15})
+                {
+                    reader.seek(n);
+                    assertEquals((long) hashes.get(n), reader.next().replay().getHash());
+                }
+                reader.seek(50);
+                assertNull(reader.next());
+            }
+        } finally
+        {
+            Files.delete(file);
+        }
+    }
+}
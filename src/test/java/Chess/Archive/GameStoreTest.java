@@ -0,0 +1,245 @@
+package Chess.Archive;
+
+import Chess.Game.ChessGame;
+import Chess.Game.CustomChessGame;
+import Chess.Game.Game;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class GameStoreTest
+{
+    private Path dir;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        dir = Files.createTempDirectory("store-test");
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        try(Stream<Path> files = Files.walk(dir))
+        {
+            for(Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) Files.delete(file);
+        }
+    }
+
+    /**
+     * Helper function that makes a random move in a game and records it.
+     */
+    private static void playAndRecord(GameStore store, long id, Game game, Random random) throws IOException
+    {
+        int[] legal = game.getLegalMoveCodes();
+        if(legal.length == 0) return;
+        int code = legal[random.nextInt(legal.length)];
+        game.runTurn(code);
+        store.recordMove(id, code);
+    }
+
+    private static void assertSameGame(Game expected, Game actual)
+    {
+        assertEquals(expected.getClass(), actual.getClass());
+        assertEquals(expected.snapshot(), actual.snapshot());
+        // Resumed games only keep the history after the last snapshot, but always keep their redo moves
+        assertEquals(expected.getHistoryLength() - expected.getPly(), actual.getHistoryLength() - actual.getPly());
+        assertEquals(expected.getGameState(), actual.getGameState());
+    }
+
+    /**
+     * Records moves, undos and redos without closing the store, as if the program crashed, and resumes the games.
+     */
+    @Test
+    public void testResumeAfterCrash() throws IOException
+    {
+        Random random = new Random(37);
+        GameStore store = GameStore.open(dir);
+        Game standard = new ChessGame(), custom = new CustomChessGame();
+        long standardId = store.create(standard), customId = store.create(custom);
+        for(int i = 0; i < 12; i++)
+        {
+            playAndRecord(store, standardId, standard, random);
+            playAndRecord(store, customId, custom, random);
+        }
+        for(int i = 0; i < 3; i++)
+        {
+            standard.undoMove();
+            store.recordUndo(standardId);
+        }
+        standard.redoMove();
+        store.recordRedo(standardId);
+
+        Game finished = new ChessGame("4k3/8/8/8/8/8/8/4K3 w");
+        long finishedId = store.create(finished);
+        store.finish(finishedId);
+
+        GameStore reopened = GameStore.open(dir);
+        assertEquals(List.of(standardId, customId), reopened.getOpenGames());
+        assertSameGame(standard, reopened.resume(standardId));
+        assertSameGame(custom, reopened.resume(customId));
+        assertNull(reopened.resume(finishedId));
+
+        // New ids never reuse old ones
+        assertTrue(reopened.create(new ChessGame()) > finishedId);
+        reopened.close();
+        store.close();
+    }
+
+    /**
+     * Checks games that already have moves, and set up positions, are stored whole.
+     */
+    @Test
+    public void testCreateWithHistory() throws IOException
+    {
+        Game game = new ChessGame("4k3/8/8/8/8/5N2/8/1N2K3 b");
+        game.runTurn(new Chess.Square(4,7), new Chess.Square(3,7));
+        game.runTurn(new Chess.Square(1,0), new Chess.Square(3,1));
+        game.undoMove();
+        try(GameStore store = GameStore.open(dir))
+        {
+            long id = store.create(game);
+            assertSameGame(game, store.resume(id));
+        }
+        try(GameStore store = GameStore.open(dir))
+        {
+            assertSameGame(game, store.resume(store.getOpenGames().get(0)));
+
+            // A forfeit ends the game but its history is still recorded from the real start
+            assertTrue(game.forfeit(game.getTurnColor()));
+            Game resumed = store.resume(store.create(game));
+            assertEquals(game.snapshot(), resumed.snapshot());
+            assertEquals(game.getPly(), resumed.getPly());
+        }
+    }
+
+    /**
+     * Checks resumed games start at their snapshot position, and are replayed from the start once moves before the
+     * snapshot are taken back or replaced. Also writes without waiting, as the GUI does.
+     */
+    @Test
+    public void testResumeFromSnapshot() throws Exception
+    {
+        Random random = new Random(39);
+        Game game = new CustomChessGame();
+        long id;
+        try(GameStore store = GameStore.open(dir))
+        {
+            id = store.create(game);
+            for(int i = 0; i < 30; i++) playAndRecord(store, id, game, random);
+            store.checkpoint();
+            Game resumed = store.resume(id);
+            assertSameGame(game, resumed);
+            assertEquals(0, resumed.getPly());
+
+            for(int i = 0; i < 4; i++)
+            {
+                game.undoMove();
+                store.recordUndoAsync(id).get();
+            }
+            resumed = store.resume(id);
+            assertSameGame(game, resumed);
+            assertEquals(game.getPly(), resumed.getPly());
+
+            int code = game.getLegalMoveCodes()[0];
+            game.runTurn(code);
+            store.recordMoveAsync(id, code).get();
+            store.checkpoint();
+            assertSameGame(game, store.resume(id));
+            game.undoMove();
+            store.recordUndoAsync(id);
+        }
+        try(GameStore store = GameStore.open(dir))
+        {
+            assertSameGame(game, store.resume(id));
+            store.finishAsync(id).get();
+            assertTrue(store.getOpenGames().isEmpty());
+        }
+    }
+
+    /**
+     * Checks frequent snapshots remove old logs, and that a torn record at the end of the log is dropped.
+     */
+    @Test
+    public void testSnapshotsAndTornLog() throws IOException
+    {
+        Random random = new Random(38);
+        GameStore store = GameStore.open(dir, 5);
+        Game game = new ChessGame();
+        long id = store.create(game);
+        for(int i = 0; i < 23; i++) playAndRecord(store, id, game, random);
+
+        List<Path> logs = new ArrayList<>();
+        try(Stream<Path> files = Files.list(dir))
+        {
+            files.filter(f -> f.getFileName().toString().startsWith("log.")).forEach(logs::add);
+        }
+        assertEquals(1, logs.size());
+        Files.write(logs.get(0), new byte[] {0, 0, 0, 13, 2, 0, 0}, StandardOpenOption.APPEND);
+
+        try(GameStore reopened = GameStore.open(dir, 5))
+        {
+            assertSameGame(game, reopened.resume(id));
+        }
+        store.close();
+    }
+
+    /**
+     * Records moves for many games from several threads at once.
+     */
+    @Test
+    public void testConcurrentGames() throws Exception
+    {
+        int threads = 8, gamesPerThread = 10;
+        List<Game> games = new ArrayList<>();
+        List<Long> ids = new ArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try(GameStore store = GameStore.open(dir, 200))
+        {
+            for(int i = 0; i < threads * gamesPerThread; i++)
+            {
+                Game game = new ChessGame();
+                games.add(game);
+                ids.add(store.create(game));
+            }
+            List<Future<?>> futures = new ArrayList<>();
+            for(int t = 0; t < threads; t++)
+            {
+                int first = t * gamesPerThread;
+                futures.add(pool.submit(() ->
+                {
+                    Random random = new Random(first);
+                    for(int ply = 0; ply < 20; ply++)
+                        for(int g = first; g < first + gamesPerThread; g++)
+                            playAndRecord(store, ids.get(g), games.get(g), random);
+                    return null;
+                }));
+            }
+            for(Future<?> future : futures) future.get();
+        } finally
+        {
+            pool.shutdown();
+        }
+
+        try(GameStore store = GameStore.open(dir))
+        {
+            assertEquals(ids, store.getOpenGames());
+            for(int g = 0; g < games.size(); g++) assertSameGame(games.get(g), store.resume(ids.get(g)));
+        }
+    }
+}
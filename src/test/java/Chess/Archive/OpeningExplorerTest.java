@@ -0,0 +1,79 @@
+package Chess.Archive;
+
+import Chess.Archive.OpeningExplorer.MoveStats;
+import Chess.Game.ChessGame;
+import Chess.Game.Game;
+import Chess.Notation.San;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class OpeningExplorerTest
+{
+
+    /**
+     * Helper function that plays moves given in SAN.
+     */
+    private static Game play(String... moves)
+    {
+        Game game = new ChessGame();
+        for(String san : moves) game.runTurn(San.parse(game, san, game.getLegalMoveCodes()));
+        return game;
+    }
+
+    private static MoveStats statsFor(List<MoveStats> stats, Game game, String san)
+    {
+        int code = San.parse(game, san, game.getLegalMoveCodes());
+        for(MoveStats s : stats) if(s.moveCode == code) return s;
+        return null;
+    }
+
+    /**
+     * Checks counts and results, and that lines reaching the same position share their statistics.
+     */
+    @Test
+    public void testTranspositions()
+    {
+        OpeningExplorer explorer = new OpeningExplorer();
+        explorer.add(play("f3", "e5", "g4", "Qh4"));
+        explorer.add(play("Nf3", "Nf6", "d4", "d5"));
+        explorer.add(play("d4", "Nf6", "Nf3", "e6"));
+
+        Game start = new ChessGame();
+        List<MoveStats> first = explorer.query(start);
+        assertEquals(3, first.size());
+        MoveStats f3 = statsFor(first, start, "f3");
+        assertEquals(1, f3.games);
+        assertEquals(1, f3.blackWins);
+        assertEquals(0.0, f3.getWhiteScore(), 1e-9);
+        assertEquals(0.5, statsFor(first, start, "d4").getWhiteScore(), 1e-9);
+
+        // 1. Nf3 Nf6 2. d4 and 1. d4 Nf6 2. Nf3 reach the same position
+        Game merged = play("Nf3", "Nf6", "d4");
+        List<MoveStats> next = explorer.query(merged);
+        assertEquals(2, next.size());
+        assertNotNull(statsFor(next, merged, "d5"));
+        assertNotNull(statsFor(next, merged, "e6"));
+
+        assertTrue(explorer.query(play("e4")).isEmpty());
+    }
+
+    /**
+     * Adds enough random games to grow the table several times and checks the first move counts add up.
+     */
+    @Test
+    public void testGrowth()
+    {
+        OpeningExplorer explorer = new OpeningExplorer(20, 16);
+        Random random = new Random(36);
+        for(int i = 0; i < 100; i++) explorer.add(GameRecordTest.playRandom(new ChessGame(), random, 30));
+        assertTrue(explorer.size() > 1000);
+
+        int games = 0;
+        for(MoveStats stats : explorer.query(new ChessGame())) games += stats.games;
+        assertEquals(100, games);
+    }
+}
@@ -0,0 +1,148 @@
+package Chess.Archive;
+
+import Chess.Game.ChessGame;
+import Chess.Game.CustomChessGame;
+import Chess.Game.Game;
+import Chess.Notation.Fen;
+import Chess.Pieces.Piece;
+import Chess.Position;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PackedPositionTest
+{
+
+    /**
+     * Collects every position of a few random games on both boards.
+     */
+    private static List<Position> samplePositions()
+    {
+        Random random = new Random(34);
+        List<Position> positions = new ArrayList<>();
+        for(int i = 0; i < 10; i++)
+        {
+            Game game = (i % 2 == 0)? new ChessGame() : new CustomChessGame();
+            positions.add(game.snapshot());
+            for(int ply = 0; ply < 80; ply++)
+            {
+                int[] legal = game.getLegalMoveCodes();
+                if(legal.length == 0) break;
+                game.runTurn(legal[random.nextInt(legal.length)]);
+                positions.add(game.snapshot());
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Checks two positions hold the same pieces, pawn moved flags, side to move and hash.
+     */
+    private static void assertSamePosition(Position expected, Position actual)
+    {
+        assertEquals(expected.hash, actual.hash);
+        assertEquals(expected.turnColor, actual.turnColor);
+        assertEquals(expected.boardX, actual.boardX);
+        for(int x = 0; x < expected.boardX; x++)
+            for(int y = 0; y < expected.boardY; y++)
+            {
+                assertEquals(expected.getPieceType(x, y), actual.getPieceType(x, y));
+                assertEquals(expected.getPieceColor(x, y), actual.getPieceColor(x, y));
+                if(expected.getPieceType(x, y) == Piece.PAWN)
+                    assertEquals(expected.hasMoved(x, y), actual.hasMoved(x, y));
+            }
+    }
+
+    @Test
+    public void testRoundTrip()
+    {
+        List<Position> positions = samplePositions();
+        ByteBuffer buffer = ByteBuffer.allocate(positions.size() * PackedPosition.SIZE);
+        assertEquals(positions.size(), PackedPosition.writeAll(positions, buffer));
+        assertFalse(buffer.hasRemaining());
+
+        buffer.flip();
+        List<Position> read = new ArrayList<>();
+        assertEquals(positions.size(), PackedPosition.readAll(buffer, read::add));
+        for(int i = 0; i < positions.size(); i++)
+        {
+            assertSamePosition(positions.get(i), read.get(i));
+            assertSamePosition(positions.get(i), PackedPosition.read(buffer, i * PackedPosition.SIZE));
+        }
+    }
+
+    /**
+     * Checks a decoded position loads into a game with the same legal moves.
+     */
+    @Test
+    public void testDecodeToGame()
+    {
+        Game game = new CustomChessGame();
+        game.runTurn(new Chess.Square(0,1), new Chess.Square(1,3));
+        ByteBuffer buffer = ByteBuffer.allocate(PackedPosition.SIZE);
+        PackedPosition.write(game.snapshot(), buffer);
+        buffer.flip();
+        Game decoded = Game.fromSnapshot(PackedPosition.read(buffer));
+        assertTrue(decoded instanceof CustomChessGame);
+        assertArrayEquals(game.getLegalMoveCodes(), decoded.getLegalMoveCodes());
+        assertEquals(game.getHash(), decoded.getHash());
+    }
+
+    @Test
+    public void testCanPack()
+    {
+        // Fen rejects a missing king, so build that one by hand
+        byte[] cells = new byte[64];
+        cells[4] = (byte) (Position.OCCUPIED | Position.WHITE_BIT | Piece.KING);
+        Position loneKing = new Position(8, 8, cells, Piece.PieceColor.WHITE, 0);
+        assertTrue(PackedPosition.canPack(Fen.parse(Fen.CUSTOM_START)));
+        assertFalse(PackedPosition.canPack(loneKing));
+        assertFalse(PackedPosition.canPack(Fen.parse("4k3/8/4K3 w")));
+        assertFalse(PackedPosition.canPack(Fen.parse("qqqqqqqq/qqqqqqqq/qqqqqqqq/qqqqqqqq/QQQQQQQQ/QQQQQQQQ/4k3/4K3 w")));
+        try
+        {
+            PackedPosition.write(loneKing, ByteBuffer.allocate(PackedPosition.SIZE));
+            fail();
+        } catch (IllegalArgumentException e) {}
+    }
+
+    /**
+     * Writes positions to a file and reads them back at random through a memory map.
+     */
+    @Test
+    public void testMappedFile() throws IOException
+    {
+        List<Position> positions = samplePositions();
+        Path file = Files.createTempFile("positions", ".bin");
+        try
+        {
+            try(FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE))
+            {
+                ByteBuffer buffer = ByteBuffer.allocate(positions.size() * PackedPosition.SIZE);
+                PackedPosition.writeAll(positions, buffer);
+                buffer.flip();
+                while(buffer.hasRemaining()) channel.write(buffer);
+            }
+            try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+            {
+                MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                for(int i = positions.size() - 1; i >= 0; i -= 7)
+                    assertSamePosition(positions.get(i), PackedPosition.read(map, i * PackedPosition.SIZE));
+            }
+        } finally
+        {
+            Files.delete(file);
+        }
+    }
+}
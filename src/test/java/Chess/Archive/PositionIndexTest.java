@@ -0,0 +1,73 @@
+package Chess.Archive;
+
+import Chess.Game.ChessGame;
+import Chess.Game.CustomChessGame;
+import Chess.Game.Game;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PositionIndexTest
+{
+
+    /**
+     * Indexes an archive with runs small enough to force several per thread, then looks up positions from its games.
+     */
+    @Test
+    public void testFindGames() throws IOException
+    {
+        Path dir = Files.createTempDirectory("index-test");
+        Path archive = dir.resolve("games.cgr"), index = dir.resolve("games.idx");
+        try
+        {
+            Random random = new Random(35);
+            List<Game> games = new ArrayList<>();
+            try(GameRecordWriter writer = new GameRecordWriter(archive))
+            {
+                for(int i = 0; i < 40; i++)
+                {
+                    Game game = GameRecordTest.playRandom((i % 4 == 3)? new CustomChessGame() : new ChessGame(),
+                            random, 50);
+                    writer.write(game);
+                    games.add(game);
+                }
+            }
+            long entries = PositionIndexBuilder.build(archive, index, 3, 100);
+            assertTrue(entries > 40 * 40);
+
+            try(PositionIndex lookup = new PositionIndex(index))
+            {
+                assertEquals(entries, lookup.getEntryCount());
+
+                // Every standard game starts from the same position
+                int[] standard = lookup.find(new ChessGame());
+                assertEquals(30, standard.length);
+                for(int i = 1; i < standard.length; i++) assertTrue(standard[i - 1] < standard[i]);
+                assertEquals(10, lookup.find(new CustomChessGame()).length);
+
+                // A position from the middle of each game finds that game
+                for(int i = 0; i < games.size(); i++)
+                {
+                    Game game = games.get(i);
+                    game.gotoPly(random.nextInt(game.getHistoryLength() + 1));
+                    int[] found = lookup.find(game);
+                    assertTrue(Arrays.binarySearch(found, i) >= 0);
+                }
+                assertEquals(0, lookup.find(12345L).length);
+            }
+        } finally
+        {
+            Files.deleteIfExists(archive);
+            Files.deleteIfExists(index);
+            Files.delete(dir);
+        }
+    }
+}
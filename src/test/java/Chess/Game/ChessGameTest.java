@@ -1,9 +1,12 @@
 package Chess.Game;
 
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
 
 import Chess.Board;
 import Chess.Move;
+import Chess.Position;
 import Chess.Pieces.*;
 import Chess.Square;
 import Chess.Game.Game.GameState;
@@ -323,4 +326,125 @@ public class ChessGameTest
         String[] setup7 = {"KB75F", "RB65F", "KW77F"};
         testStalemateSetup(setup7, WHITE);
     }
-}
\ No newline at end of file
+
+    /**
+     * Plays the fool's mate and undoes it. Undo should restore the recorded state without revalidating, and the game
+     * should be playable again.
+     */
+    @Test
+    public void testUndoCheckMate()
+    {
+        makeValidMove(5,1, 5,2);
+        makeValidMove(4,6, 4,4);
+        makeValidMove(6,1, 6,3);
+        long hashBefore = cg.getHash();
+        makeValidMove(3,7, 7,3);
+        assertEquals(BLACK_WINS, cg.getGameState());
+
+        Move mv = cg.undoMove();
+        assertEquals(PLAYING, mv.priorState);
+        assertEquals(PLAYING, cg.getGameState());
+        assertEquals(hashBefore, cg.getHash());
+        assertTrue(cg.isBlacksTurn());
+        makeValidMove(3,7, 7,3);
+        assertEquals(BLACK_WINS, cg.getGameState());
+    }
+
+    /**
+     * Undoing the reply to a check should put the game back in check.
+     */
+    @Test
+    public void testUndoRestoresCheck()
+    {
+        makeValidMove(4,1, 4,3);
+        makeValidMove(5,6, 5,5);
+        makeValidMove(3,0, 7,4);
+        assertEquals(BLACK_IN_CHECK, cg.getGameState());
+        makeValidMove(6,6, 6,5);
+        assertEquals(PLAYING, cg.getGameState());
+        cg.undoMove();
+        assertEquals(BLACK_IN_CHECK, cg.getGameState());
+        assertTrue(cg.isBlacksTurn());
+    }
+
+    /**
+     * Plays a game long enough to take several checkpoints, recording the position at every ply.
+     */
+    private List<Position> playLongGame()
+    {
+        List<Position> positions = new ArrayList<>();
+        positions.add(cg.snapshot());
+        int[][] opening = {{4,1, 4,3}, {3,6, 3,4}, {4,3, 3,4}, {3,7, 3,4}};
+        int[][] shuffle = {{6,0, 5,2}, {6,7, 5,5}, {5,2, 6,0}, {5,5, 6,7}};
+        for(int[] mv : opening)
+        {
+            makeValidMove(mv[0], mv[1], mv[2], mv[3]);
+            positions.add(cg.snapshot());
+        }
+        for(int i = 0; i < 40; i++)
+        {
+            int[] mv = shuffle[i % shuffle.length];
+            makeValidMove(mv[0], mv[1], mv[2], mv[3]);
+            positions.add(cg.snapshot());
+        }
+        return positions;
+    }
+
+    /**
+     * Jumps back and forth through the history and checks the position matches the one recorded at that ply.
+     */
+    @Test
+    public void testGotoPly()
+    {
+        List<Position> positions = playLongGame();
+        int[] targets = {0, 44, 3, 37, 17, 16, 15, 44, 2, 31, 32, 1};
+        for(int ply : targets)
+        {
+            assertTrue(cg.gotoPly(ply));
+            assertEquals(ply, cg.getPly());
+            assertEquals(44, cg.getHistoryLength());
+            assertEquals(positions.get(ply), cg.snapshot());
+            assertEquals(positions.get(ply).hash, cg.getHash());
+        }
+        assertFalse(cg.gotoPly(45));
+        assertFalse(cg.gotoPly(-1));
+    }
+
+    /**
+     * Making a new move after going back in history discards the moves that followed.
+     */
+    @Test
+    public void testNewMoveClearsRedo()
+    {
+        List<Position> positions = playLongGame();
+        cg.gotoPly(20);
+        makeValidMove(1,0, 2,2);
+        assertEquals(21, cg.getHistoryLength());
+        assertNull(cg.redoMove());
+        cg.gotoPly(3);
+        assertEquals(positions.get(3), cg.snapshot());
+        assertNotNull(cg.redoMove());
+        assertEquals(positions.get(4), cg.snapshot());
+    }
+
+    /**
+     * A forfeit ends the game for good: no moves, undo, redo or navigation afterwards.
+     */
+    @Test
+    public void testForfeit()
+    {
+        makeValidMove(4,1, 4,3);
+        makeValidMove(4,6, 4,4);
+        cg.undoMove();
+        assertTrue(cg.forfeit(BLACK));
+        assertEquals(WHITE_WINS, cg.getGameState());
+        assertTrue(cg.isForfeited());
+        assertEquals(0, cg.getLegalMoveCodes().length);
+        assertNull(cg.undoMove());
+        assertNull(cg.redoMove());
+        assertFalse(cg.gotoPly(0));
+        assertEquals(1, cg.getPly());
+        assertFalse(cg.forfeit(WHITE));
+        makeInValidMove(3,6, 3,4);
+    }
+}
@@ -0,0 +1,133 @@
+package Chess.Game;
+
+import Chess.Move;
+import Chess.Notation.Fen;
+import Chess.Position;
+import Chess.Search.Perft;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static Chess.Game.Game.GameState.*;
+import static Chess.Pieces.Piece.PieceColor.*;
+import static org.junit.Assert.*;
+
+public class GameViewTest
+{
+    @Test
+    public void testPublishedViews()
+    {
+        ChessGame game = new ChessGame();
+        GameView start = game.getView();
+        assertEquals(0, start.ply);
+        assertEquals(0, start.lastMove);
+        assertEquals(game.snapshot(), start.position);
+
+        int e4 = Move.encode(12, 28);
+        game.runTurn(e4);
+        GameView afterE4 = game.getView();
+        assertEquals(1, afterE4.ply);
+        assertEquals(e4, afterE4.lastMove);
+        assertEquals(game.getHash(), afterE4.getHash());
+        assertEquals(Fen.parse("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b"), afterE4.position);
+
+        // An illegal move publishes nothing, and move generation leaves the view alone
+        game.runTurn(Move.encode(12, 36));
+        game.getLegalMoveCodes();
+        assertSame(afterE4, game.getView());
+
+        game.undoMove();
+        assertEquals(start.position, game.getView().position);
+        game.redoMove();
+        assertEquals(afterE4.position, game.getView().position);
+        game.gotoPly(0);
+        assertEquals(0, game.getView().ply);
+
+        assertTrue(game.forfeit(WHITE));
+        assertEquals(BLACK_WINS, game.getView().state);
+        assertTrue(game.getView().isOver());
+        assertFalse(start.isOver());
+
+        Position loaded = Fen.parse("4k3/8/8/8/8/8/8/R3K3 b");
+        assertEquals(loaded, Game.fromSnapshot(loaded).getView().position);
+    }
+
+    /**
+     * Moves pushed and popped by searches and counts publish nothing, and leave the game as it was.
+     */
+    @Test
+    public void testPushAndPopPublishNothing()
+    {
+        ChessGame game = new ChessGame();
+        game.runTurn(Move.encode(12, 28));
+        MoveEvents.Subscriber subscriber = game.getMoveEvents().subscribe();
+        GameView view = game.getView();
+        long hash = game.getHash();
+
+        assertFalse(game.pushMove(Move.encode(12, 36)));
+        for(int code : game.getLegalMoveCodes())
+        {
+            assertTrue(game.pushMove(code));
+            assertEquals(2, game.getPly());
+            assertNotNull(game.popMove());
+        }
+        assertEquals(Perft.divide(game, 2).size(), game.getLegalMoveCodes().length);
+        assertSame(view, game.getView());
+        assertEquals(0, subscriber.getLag());
+        assertEquals(hash, game.getHash());
+        assertEquals(1, game.getPly());
+    }
+
+    /**
+     * Reads views on other threads while a game is played, taken back and replayed, and checks every view is a whole
+     * position: its hash matches the placement and both kings are on the board.
+     */
+    @Test
+    public void testConcurrentReaders() throws InterruptedException
+    {
+        Game game = new CustomChessGame();
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicInteger reads = new AtomicInteger();
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread[] readers = new Thread[3];
+        for(int r = 0; r < readers.length; r++)
+        {
+            readers[r] = new Thread(() ->
+            {
+                while(!done.get() && failure.get() == null)
+                {
+                    GameView view = game.getView();
+                    Position position = view.position;
+                    int kings = 0;
+                    for(int y = 0; y < position.boardY; y++)
+                        for(int x = 0; x < position.boardX; x++)
+                            if(position.getPieceType(x, y) == 0) kings++;
+                    if(kings != 2) failure.set("Kings on board: " + kings + " at ply " + view.ply);
+                    else if(Game.fromSnapshot(position).getHash() != view.getHash())
+                        failure.set("Hash mismatch at ply " + view.ply);
+                    reads.incrementAndGet();
+                }
+            });
+            readers[r].start();
+        }
+
+        Random random = new Random(44);
+        for(int round = 0; round < 20 && failure.get() == null; round++)
+        {
+            for(int ply = 0; ply < 30; ply++)
+            {
+                int[] legal = game.getLegalMoveCodes();
+                if(legal.length == 0) break;
+                game.runTurn(legal[random.nextInt(legal.length)]);
+            }
+            game.gotoPly(random.nextInt(game.getPly() + 1));
+        }
+        done.set(true);
+        for(Thread reader : readers) reader.join();
+        assertNull(failure.get());
+        assertTrue(reads.get() > 0);
+    }
+}
@@ -0,0 +1,146 @@
+package Chess.Game;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures fanning the moves of one game out to many spectators, through MoveEvents and, for comparison, through one
+ * queue per spectator. Not a test; run it by hand:
+ *
+ *     java Chess.Game.MoveEventsBench [subscribers] [moves] [threads]
+ */
+public class MoveEventsBench
+{
+    public static void main(String[] args) throws InterruptedException
+    {
+        int subscribers = (args.length > 0)? Integer.parseInt(args[0]) : 10_000;
+        int moves = (args.length > 1)? Integer.parseInt(args[1]) : 20_000;
+        int threads = (args.length > 2)? Integer.parseInt(args[2])
+                : Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        System.out.println(subscribers + " subscribers, " + moves + " moves, " + threads + " reader threads");
+        for(int round = 0; round < 3; round++)
+        {
+            ring(subscribers, moves, threads);
+            queues(subscribers, moves, threads);
+        }
+    }
+
+    private static void ring(int subscribers, int moves, int threads) throws InterruptedException
+    {
+        Game game = new ChessGame();
+        MoveEvents events = game.getMoveEvents();
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicLong delivered = new AtomicLong(), polls = new AtomicLong(), catchUps = new AtomicLong();
+        Thread[] readers = new Thread[threads];
+        for(int t = 0; t < threads; t++)
+        {
+            List<MoveEvents.Subscriber> own = new ArrayList<>();
+            for(int i = t; i < subscribers; i += threads) own.add(events.subscribe());
+            readers[t] = new Thread(() ->
+            {
+                long[] batch = new long[64];
+                long read = 0, batches = 0, caught = 0;
+                boolean last = false;
+                while(!last)
+                {
+                    last = done.get();
+                    for(MoveEvents.Subscriber subscriber : own)
+                    {
+                        int count;
+                        while((count = subscriber.poll(batch)) != 0)
+                        {
+                            if(count < 0)
+                            {
+                                subscriber.catchUp();
+                                caught++;
+                                continue;
+                            }
+                            read += count;
+                            batches++;
+                        }
+                    }
+                }
+                delivered.addAndGet(read);
+                polls.addAndGet(batches);
+                catchUps.addAndGet(caught);
+            });
+            readers[t].start();
+        }
+
+        long start = System.nanoTime();
+        long writerNanos = play(game, moves, null);
+        done.set(true);
+        for(Thread reader : readers) reader.join();
+        long total = System.nanoTime() - start;
+        System.out.printf("ring:   %6.1f ms, writer %7.2f ms, %,d events delivered in %,d batches, %,d catch-ups%n",
+                total / 1e6, writerNanos / 1e6, delivered.get(), polls.get(), catchUps.get());
+    }
+
+    private static void queues(int subscribers, int moves, int threads) throws InterruptedException
+    {
+        Game game = new ChessGame();
+        List<Queue<Long>> queues = new ArrayList<>();
+        for(int i = 0; i < subscribers; i++) queues.add(new ConcurrentLinkedQueue<>());
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicLong delivered = new AtomicLong();
+        Thread[] readers = new Thread[threads];
+        for(int t = 0; t < threads; t++)
+        {
+            int first = t;
+            readers[t] = new Thread(() ->
+            {
+                long read = 0;
+                boolean last = false;
+                while(!last)
+                {
+                    last = done.get();
+                    for(int i = first; i < subscribers; i += threads)
+                        while(queues.get(i).poll() != null) read++;
+                }
+                delivered.addAndGet(read);
+            });
+            readers[t].start();
+        }
+
+        long start = System.nanoTime();
+        long writerNanos = play(game, moves, queues);
+        done.set(true);
+        for(Thread reader : readers) reader.join();
+        long total = System.nanoTime() - start;
+        System.out.printf("queues: %6.1f ms, writer %7.2f ms, %,d events delivered%n",
+                total / 1e6, writerNanos / 1e6, delivered.get());
+    }
+
+    /**
+     * Plays random moves, starting over when a game ends, and returns the time spent handing the changes out: inside
+     * runTurn for the ring, offering to every queue otherwise.
+     */
+    private static long play(Game game, int moves, List<Queue<Long>> queues)
+    {
+        Random random = new Random(45);
+        long publishing = 0;
+        for(int i = 0; i < moves; i++)
+        {
+            int[] legal = game.getLegalMoveCodes();
+            if(legal.length == 0 || game.getPly() >= 200)
+            {
+                game.gotoPly(0);
+                legal = game.getLegalMoveCodes();
+            }
+            long start = System.nanoTime();
+            game.runTurn(legal[random.nextInt(legal.length)]);
+            if(queues != null)
+            {
+                Long event = (long) game.getView().lastMove;
+                for(Queue<Long> queue : queues) queue.offer(event);
+            }
+            publishing += System.nanoTime() - start;
+        }
+        return publishing;
+    }
+}
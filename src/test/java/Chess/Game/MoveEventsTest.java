@@ -0,0 +1,152 @@
+package Chess.Game;
+
+import Chess.Archive.GameRecord;
+import Chess.Move;
+import Chess.Notation.PgnWriter;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static Chess.Game.Game.GameState.*;
+import static Chess.Pieces.Piece.PieceColor.*;
+import static org.junit.Assert.*;
+
+public class MoveEventsTest
+{
+    @Test
+    public void testEvents()
+    {
+        ChessGame game = new ChessGame();
+        MoveEvents events = game.getMoveEvents();
+        assertSame(events, game.getMoveEvents());
+        MoveEvents.Subscriber subscriber = events.subscribe();
+        assertEquals(0, subscriber.getView().ply);
+
+        int e4 = Move.encode(12, 28), e5 = Move.encode(52, 36);
+        game.runTurn(e4);
+        game.runTurn(Move.encode(12, 36));      // Illegal, writes nothing
+        game.runTurn(e5);
+        game.undoMove();
+        game.redoMove();
+        game.gotoPly(0);
+        game.forfeit(WHITE);
+        assertEquals(6, events.getSequence());
+        assertEquals(6, subscriber.getLag());
+
+        long[] batch = new long[4];
+        assertEquals(4, subscriber.poll(batch));
+        assertEquals(MoveEvents.MOVE, MoveEvents.kindOf(batch[0]));
+        assertEquals(e4, MoveEvents.moveOf(batch[0]));
+        assertEquals(1, MoveEvents.plyOf(batch[0]));
+        assertEquals(PLAYING, MoveEvents.stateOf(batch[0]));
+        assertEquals(e5, MoveEvents.moveOf(batch[1]));
+        assertEquals(MoveEvents.UNDO, MoveEvents.kindOf(batch[2]));
+        assertEquals(e5, MoveEvents.moveOf(batch[2]));
+        assertEquals(1, MoveEvents.plyOf(batch[2]));
+        assertEquals(MoveEvents.REDO, MoveEvents.kindOf(batch[3]));
+        assertEquals(2, MoveEvents.plyOf(batch[3]));
+
+        assertEquals(2, subscriber.poll(batch));
+        assertEquals(MoveEvents.JUMP, MoveEvents.kindOf(batch[0]));
+        assertEquals(0, MoveEvents.plyOf(batch[0]));
+        assertEquals(MoveEvents.FORFEIT, MoveEvents.kindOf(batch[1]));
+        assertEquals(BLACK_WINS, MoveEvents.stateOf(batch[1]));
+        assertEquals(0, subscriber.poll(batch));
+
+        // A subscriber joining late starts from the latest view
+        MoveEvents.Subscriber late = events.subscribe();
+        assertSame(game.getView(), late.getView());
+        assertEquals(6, late.getNext());
+    }
+
+    /**
+     * Exporting a game reads its history without moving it, so subscribers and spectators see nothing.
+     */
+    @Test
+    public void testExportPublishesNothing() throws IOException
+    {
+        ChessGame game = new ChessGame();
+        int[] codes = {Move.encode(12, 28), Move.encode(52, 36), Move.encode(6, 21), Move.encode(57, 42)};
+        for(int code : codes) game.runTurn(code);
+        game.undoMove();
+        MoveEvents events = game.getMoveEvents();
+        MoveEvents.Subscriber subscriber = events.subscribe();
+        GameView view = game.getView();
+
+        new PgnWriter(new StringBuilder()).write(game);
+        GameRecord.of(game, false);
+        assertEquals(0, subscriber.getLag());
+        assertSame(view, game.getView());
+        assertEquals(3, game.getPly());
+    }
+
+    @Test
+    public void testOverrunAndCatchUp()
+    {
+        ChessGame game = new ChessGame();
+        MoveEvents events = game.getMoveEvents();
+        MoveEvents.Subscriber slow = events.subscribe();
+        int[] legal = game.getLegalMoveCodes();
+        for(int i = 0; i < events.getCapacity() + 10; i++)
+        {
+            game.runTurn(legal[0]);
+            game.undoMove();
+        }
+        long[] batch = new long[16];
+        assertEquals(-1, slow.poll(batch));
+        assertEquals(-1, slow.poll(batch));
+
+        GameView view = slow.catchUp();
+        assertSame(game.getView(), view);
+        assertEquals(0, slow.getLag());
+        game.runTurn(legal[1]);
+        assertEquals(1, slow.poll(batch));
+        assertEquals(legal[1], MoveEvents.moveOf(batch[0]));
+    }
+
+    /**
+     * Replays the events on other threads while a game is played and checks each subscriber follows the same history:
+     * every event picks up at the ply the previous one left, unless the subscriber had to catch up in between.
+     */
+    @Test
+    public void testConcurrentSubscribers() throws InterruptedException
+    {
+        Game game = new CustomChessGame();
+        MoveEvents events = game.getMoveEvents();
+        AtomicReference<String> failure = new AtomicReference<>();
+        int moves = 2000;
+        Thread[] readers = new Thread[3];
+        for(int r = 0; r < readers.length; r++)
+        {
+            MoveEvents.Subscriber subscriber = events.subscribe();
+            readers[r] = new Thread(() ->
+            {
+                long[] batch = new long[8];
+                int ply = subscriber.getView().ply;
+                while(failure.get() == null && subscriber.getNext() < moves * 2L)
+                {
+                    int count = subscriber.poll(batch);
+                    if(count < 0) ply = subscriber.catchUp().ply;
+                    for(int i = 0; i < count; i++)
+                    {
+                        int kind = MoveEvents.kindOf(batch[i]), next = MoveEvents.plyOf(batch[i]);
+                        int expected = (kind == MoveEvents.MOVE)? ply + 1 : ply - 1;
+                        if(next != expected) failure.set("Ply " + next + " after " + ply + ", kind " + kind);
+                        ply = next;
+                    }
+                }
+            });
+            readers[r].start();
+        }
+
+        for(int i = 0; i < moves; i++)
+        {
+            int[] legal = game.getLegalMoveCodes();
+            game.runTurn(legal[i % legal.length]);
+            game.undoMove();
+        }
+        for(Thread reader : readers) reader.join();
+        assertNull(failure.get());
+    }
+}
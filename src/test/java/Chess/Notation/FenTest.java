@@ -0,0 +1,135 @@
+package Chess.Notation;
+
+import Chess.Game.ChessGame;
+import Chess.Game.CustomChessGame;
+import Chess.Game.Game;
+import Chess.Pieces.Piece;
+import Chess.Position;
+import Chess.Square;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static Chess.Game.Game.GameState.*;
+import static Chess.Pieces.Piece.PieceColor.*;
+
+public class FenTest
+{
+
+    /**
+     * The start FENs should load the same positions as the default game constructors.
+     */
+    @Test
+    public void testStartPositions()
+    {
+        assertEquals(new ChessGame().snapshot(), Fen.parse(Fen.STANDARD_START));
+        assertEquals(new CustomChessGame().snapshot(), Fen.parse(Fen.CUSTOM_START));
+        assertEquals(Fen.STANDARD_START, Fen.write(new ChessGame()));
+        assertEquals(Fen.CUSTOM_START, Fen.write(new CustomChessGame()));
+    }
+
+    /**
+     * Writing a game in progress and loading it back gives the same position, hash and state.
+     */
+    @Test
+    public void testRoundTrip()
+    {
+        Game[] games = {new ChessGame(), new CustomChessGame()};
+        for(Game game : games)
+        {
+            game.runTurn(new Square(4,1), new Square(4,3));
+            game.runTurn(new Square(3,6), new Square(3,4));
+            game.runTurn(new Square(4,3), new Square(3,4));
+            String fen = Fen.write(game);
+            assertTrue(fen.endsWith(" b - - 0 2"));
+            Game copy = (game instanceof ChessGame)? new ChessGame(fen) : new CustomChessGame(fen);
+            assertEquals(game.getHash(), copy.getHash());
+            assertEquals(Fen.write(game.snapshot()), Fen.write(copy.snapshot()));
+            assertTrue(copy.snapshot().hasMoved(3,4));
+        }
+    }
+
+    /**
+     * Checks the parsed details of a custom position with multi-digit empty runs.
+     */
+    @Test
+    public void testParseCustom()
+    {
+        Position pos = Fen.parse("4k5/10/10/3E6/10/10/c9/5K4 b");
+        assertEquals(10, pos.boardX);
+        assertEquals(BLACK, pos.turnColor);
+        assertEquals(Piece.EMPRESS, pos.getPieceType(3,4));
+        assertEquals(WHITE, pos.getPieceColor(3,4));
+        assertEquals(Piece.PRINCESS, pos.getPieceType(0,1));
+        assertEquals(BLACK, pos.getPieceColor(0,1));
+        assertEquals(Piece.KING, pos.getPieceType(4,7));
+    }
+
+    /**
+     * Loads a checkmate position and checks the game detects it.
+     */
+    @Test
+    public void testCheckMate()
+    {
+        ChessGame cg = new ChessGame("7k/6pp/8/8/8/8/8/R3K3 w - - 0 1");
+        assertEquals(PLAYING, cg.getGameState());
+        cg.runTurn(new Square(0,0), new Square(0,7));
+        assertEquals(WHITE_WINS, cg.getGameState());
+    }
+
+    /**
+     * Malformed strings, boards of the wrong size and positions without one king a side are rejected.
+     */
+    @Test
+    public void testInvalid()
+    {
+        String[] bad = {"", "8/8/8/8/8/8/8/7 w", "rnbqkbnr/ppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w", "9/8/8/8/8/8/8/8 w",
+                        "xnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w", "8/8/8/8/8/8/8/8 x"};
+        for(String fen : bad)
+        {
+            try
+            {
+                Fen.parse(fen);
+                fail("Accepted " + fen);
+            } catch (IllegalArgumentException e)
+            {
+                // expected
+            }
+        }
+        // Games need exactly one king a side
+        String[] kings = {"8/8/8/8/8/8/8/8 w - - 0 1", "4k3/8/8/8/8/8/8/8 w", "4k3/8/8/8/8/8/8/K3K3 w",
+                          "3kk3/8/8/8/8/8/8/4K3 b"};
+        for(String fen : kings)
+        {
+            try
+            {
+                new ChessGame(fen);
+                fail("Accepted " + fen);
+            } catch (IllegalArgumentException e)
+            {
+                // expected
+            }
+        }
+        try
+        {
+            new ChessGame(Fen.CUSTOM_START);
+            fail("Accepted a 10x8 position in an 8x8 game");
+        } catch (IllegalArgumentException e)
+        {
+            // expected
+        }
+        // Positions built by hand are checked the same way
+        Position[] positions = {new Position(8, 8, new byte[64], WHITE, 0),
+                                new Position(10, 8, new byte[80], BLACK, 0)};
+        for(Position position : positions)
+        {
+            try
+            {
+                Game.fromSnapshot(position);
+                fail("Accepted a " + position.boardX + "x" + position.boardY + " position without kings");
+            } catch (IllegalArgumentException e)
+            {
+                // expected
+            }
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package Chess.Notation;
+
+import Chess.Game.ChessGame;
+import Chess.Game.CustomChessGame;
+import Chess.Game.Game;
+import Chess.Game.GameView;
+import Chess.Move;
+import Chess.Pieces.Piece.PieceColor;
+import Chess.Square;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class PgnTest
+{
+
+    /**
+     * Helper function for formatting the move between two squares in a game's current position.
+     */
+    private String san(Game game, int fromX, int fromY, int destX, int destY)
+    {
+        int code = Move.encode(fromX + fromY * game.boardX, destX + destY * game.boardX);
+        return San.format(game, code, game.getLegalMoveCodes());
+    }
+
+    /**
+     * Checks pawn moves, captures and piece letters, including the custom pieces.
+     */
+    @Test
+    public void testSanFormat()
+    {
+        ChessGame cg = new ChessGame("4k3/8/8/3p4/4P3/8/8/4K3 w");
+        assertEquals("e5", san(cg, 4,3, 4,4));
+        assertEquals("exd5", san(cg, 4,3, 3,4));
+        assertEquals("Kd2", san(cg, 4,0, 3,1));
+
+        CustomChessGame custom = new CustomChessGame();
+        assertEquals("Cb4", san(custom, 0,1, 1,3));
+        assertEquals("Eb3", san(custom, 0,0, 1,2));
+    }
+
+    /**
+     * Checks that moves are disambiguated by file first, then by rank.
+     */
+    @Test
+    public void testSanDisambiguation()
+    {
+        ChessGame knights = new ChessGame("4k3/8/8/8/8/5N2/8/1N2K3 w");
+        assertEquals("Nbd2", san(knights, 1,0, 3,1));
+        assertEquals("Nfd2", san(knights, 5,2, 3,1));
+        assertEquals("Nh4", san(knights, 5,2, 7,3));
+
+        ChessGame rooks = new ChessGame("4k3/R7/8/8/8/8/R7/4K3 w");
+        assertEquals("R2a4", san(rooks, 0,1, 0,3));
+        assertEquals("R7a4", san(rooks, 0,6, 0,3));
+    }
+
+    /**
+     * Parses SAN back into the same move codes, and rejects ambiguous or illegal moves.
+     */
+    @Test
+    public void testSanParse()
+    {
+        ChessGame knights = new ChessGame("4k3/8/8/8/8/5N2/8/1N2K3 w");
+        int[] legal = knights.getLegalMoveCodes();
+        assertEquals(Move.encode(1, 11), San.parse(knights, "Nbd2", legal));
+        assertEquals(Move.encode(21, 11), San.parse(knights, "N3d2+", legal));
+        assertEquals(-1, San.parse(knights, "Nd2", legal));
+        assertEquals(-1, San.parse(knights, "Qd2", legal));
+        assertEquals(-1, San.parse(knights, "e4", legal));
+    }
+
+    /**
+     * Plays a short game with a check and a mate and returns it.
+     */
+    private Game playFoolsMate()
+    {
+        Game cg = new ChessGame();
+        cg.runTurn(new Square(5,1), new Square(5,2));
+        cg.runTurn(new Square(4,6), new Square(4,4));
+        cg.runTurn(new Square(6,1), new Square(6,3));
+        cg.runTurn(new Square(3,7), new Square(7,3));
+        return cg;
+    }
+
+    /**
+     * Checks the text written for a finished game.
+     */
+    @Test
+    public void testWrite() throws IOException
+    {
+        StringBuilder sb = new StringBuilder();
+        Map<String, String> tags = new LinkedHashMap<>();
+        tags.put("White", "Fool");
+        new PgnWriter(sb).write(playFoolsMate(), tags);
+        String pgn = sb.toString();
+        assertTrue(pgn.startsWith("[Event \"?\"]\n"));
+        assertTrue(pgn.contains("[White \"Fool\"]\n"));
+        assertTrue(pgn.contains("[Result \"0-1\"]\n"));
+        assertTrue(pgn.endsWith("\n1. f3 e5 2. g4 Qh4# 0-1\n\n"));
+    }
+
+    /**
+     * Writes a forfeited game from a set up position with a move taken back, and reads it back. The game itself must
+     * not be moved by writing it.
+     */
+    @Test
+    public void testWriteForfeited() throws IOException
+    {
+        Game game = new ChessGame("4k3/8/8/8/8/5N2/8/1N2K3 b");
+        game.runTurn(new Square(4,7), new Square(3,7));
+        game.runTurn(new Square(1,0), new Square(3,1));
+        game.runTurn(new Square(3,7), new Square(2,7));
+        game.undoMove();
+        assertTrue(game.forfeit(PieceColor.BLACK));
+        GameView view = game.getView();
+
+        StringBuilder sb = new StringBuilder();
+        new PgnWriter(sb).write(game);
+        String pgn = sb.toString();
+        assertTrue(pgn.contains("[FEN \"4k3/8/8/8/8/5N2/8/1N2K3 b - - 0 1\"]\n"));
+        assertTrue(pgn.endsWith("\n1... Kd8 2. Nbd2 1-0\n\n"));
+        assertSame(view, game.getView());
+        assertEquals(2, game.getPly());
+        assertEquals(3, game.getHistoryLength());
+
+        Path file = Files.createTempFile("forfeit", ".pgn");
+        try
+        {
+            Files.write(file, pgn.getBytes(StandardCharsets.ISO_8859_1));
+            try(PgnReader reader = new PgnReader(file))
+            {
+                PgnGame read = reader.next();
+                assertEquals("1-0", read.getResult());
+                Game replayed = read.replay();
+                assertEquals(game.snapshot(), replayed.snapshot());
+                assertEquals(replayed.snapshot(), replayed.getView().position);
+            }
+        } finally
+        {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Builds a small archive of standard, custom and set up games.
+     */
+    private List<Game> buildArchive(Path file, int copies) throws IOException
+    {
+        List<Game> games = new ArrayList<>();
+        for(int i = 0; i < copies; i++)
+        {
+            games.add(playFoolsMate());
+            Game custom = new CustomChessGame();
+            custom.runTurn(new Square(0,1), new Square(1,3));
+            custom.runTurn(new Square(3,6), new Square(3,4));
+            custom.runTurn(new Square(1,3), new Square(4,6));
+            games.add(custom);
+            Game setUp = new ChessGame("4k3/8/8/8/8/5N2/8/1N2K3 b");
+            setUp.runTurn(new Square(4,7), new Square(3,7));
+            setUp.runTurn(new Square(1,0), new Square(3,1));
+            games.add(setUp);
+        }
+        StringBuilder sb = new StringBuilder();
+        PgnWriter writer = new PgnWriter(sb);
+        for(Game game : games) writer.write(game);
+        sb.append("{ trailing comment } 1. e4 (1. d4 d5) e5 $1 2. Nf3 *\n");
+        Files.write(file, sb.toString().getBytes(StandardCharsets.ISO_8859_1));
+        games.add(null);
+        return games;
+    }
+
+    /**
+     * Writes an archive, reads it back one game at a time and checks every game replays to the same position.
+     */
+    @Test
+    public void testReadArchive() throws IOException
+    {
+        Path file = Files.createTempFile("archive", ".pgn");
+        try
+        {
+            List<Game> games = buildArchive(file, 1);
+            try(PgnReader reader = new PgnReader(file))
+            {
+                for(Game expected : games)
+                {
+                    PgnGame read = reader.next();
+                    assertNotNull(read);
+                    Game replayed = read.replay();
+                    if(expected == null)
+                    {
+                        assertEquals(3, replayed.getPly());
+                        assertEquals("*", read.getResult());
+                        continue;
+                    }
+                    assertEquals(expected.getClass(), replayed.getClass());
+                    assertEquals(expected.snapshot(), replayed.snapshot());
+                    assertEquals(expected.getPly(), replayed.getMoveHistory().size());
+                }
+                assertNull(reader.next());
+            }
+        } finally
+        {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Reads a larger archive in parallel and checks each game is seen exactly once.
+     */
+    @Test
+    public void testReadParallel() throws IOException
+    {
+        Path file = Files.createTempFile("archive", ".pgn");
+        try
+        {
+            List<Game> games = buildArchive(file, 200);
+            List<Long> offsets = Collections.synchronizedList(new ArrayList<>());
+            List<Long> hashes = Collections.synchronizedList(new ArrayList<>());
+            long count = PgnReader.forEachParallel(file, 4, game ->
+            {
+                offsets.add(game.offset);
+                hashes.add(game.replay().getHash());
+            });
+            assertEquals(games.size(), count);
+            assertEquals(games.size(), offsets.stream().distinct().count());
+            assertEquals(200, hashes.stream().filter(h -> h == games.get(0).getHash()).count());
+        } finally
+        {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package Chess.Pieces;
+
+import Chess.Board;
+import Chess.Square;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static Chess.Pieces.Piece.PieceColor.*;
+
+public class MoveGeneratorTest extends PieceTester
+{
+
+    /**
+     * Initializes an empty 10x8 board so the custom pieces have room to move.
+     */
+    @Before
+    public void setup()
+    {
+        board = new Board(10, 8);
+    }
+
+    /**
+     * Verifies the Empress combines knight and rook movement from the center of the board.
+     */
+    @Test
+    public void testEmpressMoves()
+    {
+        Piece empress = new Empress(WHITE);
+        board.putPiece(empress, 4,4);
+        moves = empress.getPossibleMoves(board);
+        assertEquals(8 + 9 + 7, moves.size());
+        checkHasMove(6,5);
+        checkHasMove(2,3);
+        checkHasMove(9,4);
+        checkHasMove(4,0);
+        assertFalse(moves.contains(new Square(5,5)));
+    }
+
+    /**
+     * Verifies the Princess combines knight and bishop movement, and that it hops over blocking pieces.
+     */
+    @Test
+    public void testPrincessMoves()
+    {
+        Piece princess = new Princess(BLACK);
+        board.putPiece(princess, 0,0);
+        board.putPiece(new Pawn(BLACK), 1,1);
+        board.putPiece(new Pawn(BLACK), 0,1);
+        moves = princess.getPossibleMoves(board);
+        assertEquals(2, moves.size());
+        checkHasMove(1,2);
+        checkHasMove(2,1);
+    }
+
+    /**
+     * Checks that canAttack agrees with the generated moveset for every piece type on every square of a crowded board.
+     */
+    @Test
+    public void testCanAttackMatchesMoves()
+    {
+        Piece[] pieces = {new King(WHITE), new Knight(WHITE), new Princess(WHITE), new Empress(WHITE),
+                          new Bishop(WHITE), new Rook(WHITE), new Queen(WHITE)};
+        board.putPiece(new Pawn(BLACK), 6,6);
+        board.putPiece(new Pawn(WHITE), 2,4);
+        board.putPiece(new Rook(BLACK), 4,1);
+        for(Piece piece : pieces)
+        {
+            board.putPiece(piece, 4,4);
+            moves = piece.getPossibleMoves(board);
+            for(int x = 0; x < board.xLength; x++)
+                for(int y = 0; y < board.yLength; y++)
+                    assertEquals(moves.contains(new Square(x,y)), piece.canAttack(board, x,y));
+        }
+    }
+
+    /**
+     * Verifies the type codes and component masks of each piece.
+     */
+    @Test
+    public void testTypeCodes()
+    {
+        assertTrue(new King(WHITE).isKing());
+        assertFalse(new Queen(WHITE).isKing());
+        assertEquals(Piece.EMPRESS, new Empress(BLACK).getType());
+        int princess = MoveGenerator.components(Piece.PRINCESS);
+        assertEquals(MoveGenerator.KNIGHT_LEAP | MoveGenerator.DIAG_SLIDE, princess);
+    }
+}
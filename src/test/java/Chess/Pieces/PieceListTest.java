@@ -0,0 +1,86 @@
+package Chess.Pieces;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static Chess.Pieces.Piece.PieceColor.*;
+
+public class PieceListTest
+{
+    private PieceList list;
+    private Piece king, knight, rook, pawn;
+
+    /**
+     * Adds a handful of pieces out of type order.
+     */
+    @Before
+    public void setup()
+    {
+        list = new PieceList();
+        king = new King(WHITE);
+        knight = new Knight(WHITE);
+        rook = new Rook(WHITE);
+        pawn = new Pawn(WHITE);
+        list.add(rook);
+        list.add(pawn);
+        list.add(king);
+        list.add(knight);
+    }
+
+    /**
+     * Checks that slots are ordered by type code with the King first.
+     */
+    @Test
+    public void testOrderedByType()
+    {
+        assertEquals(4, list.size());
+        assertEquals(king, list.get(0));
+        assertEquals(pawn, list.get(1));
+        assertEquals(knight, list.get(2));
+        assertEquals(rook, list.get(3));
+    }
+
+    /**
+     * Adding the same piece twice should not create a second slot.
+     */
+    @Test
+    public void testNoDuplicates()
+    {
+        list.add(rook);
+        assertEquals(4, list.size());
+        assertEquals(4, list.count());
+    }
+
+    /**
+     * Removing and restoring a piece keeps its slot and the order of the roster.
+     */
+    @Test
+    public void testRemoveAndRestore()
+    {
+        list.remove(knight);
+        assertEquals(4, list.size());
+        assertEquals(3, list.count());
+        assertNull(list.get(2));
+        assertTrue(list.contains(knight));
+        for(Piece piece : list)
+            assertNotEquals(knight, piece);
+
+        list.restore(knight);
+        assertEquals(4, list.count());
+        assertEquals(knight, list.get(2));
+    }
+
+    /**
+     * Pieces from another roster are ignored.
+     */
+    @Test
+    public void testForeignPiece()
+    {
+        Piece other = new Queen(WHITE);
+        list.remove(other);
+        list.restore(other);
+        assertFalse(list.contains(other));
+        assertEquals(4, list.count());
+    }
+}
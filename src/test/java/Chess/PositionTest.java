@@ -0,0 +1,100 @@
+package Chess;
+
+import Chess.Game.ChessGame;
+import Chess.Game.CustomChessGame;
+import Chess.Game.Game;
+import Chess.Pieces.Piece;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static Chess.Pieces.Piece.PieceColor.*;
+
+public class PositionTest
+{
+
+    /**
+     * Checks that a snapshot of the starting position has the right pieces and flags.
+     */
+    @Test
+    public void testSnapshotContents()
+    {
+        Position pos = new ChessGame().snapshot();
+        assertEquals(8, pos.boardX);
+        assertEquals(WHITE, pos.turnColor);
+        assertEquals(Piece.KING, pos.getPieceType(4,0));
+        assertEquals(BLACK, pos.getPieceColor(3,7));
+        assertFalse(pos.hasMoved(1,1));
+        assertFalse(pos.hasPiece(4,4));
+        assertEquals(-1, pos.getPieceType(4,4));
+        assertNull(pos.getPieceColor(20,20));
+    }
+
+    /**
+     * The snapshot should not change when the game it came from keeps moving.
+     */
+    @Test
+    public void testSnapshotIsIndependent()
+    {
+        ChessGame cg = new ChessGame();
+        Position before = cg.snapshot();
+        cg.runTurn(new Square(4,1), new Square(4,3));
+        assertTrue(before.hasPiece(4,1));
+        assertFalse(before.hasPiece(4,3));
+        assertNotEquals(before, cg.snapshot());
+        assertNotEquals(before.hash, cg.getHash());
+    }
+
+    /**
+     * Rebuilding a game from a snapshot gives back an equal position for both game modes.
+     */
+    @Test
+    public void testFromSnapshot()
+    {
+        Game[] games = {new ChessGame(), new CustomChessGame()};
+        for(Game game : games)
+        {
+            game.runTurn(new Square(2,1), new Square(2,3));
+            Position pos = game.snapshot();
+            Game copy = Game.fromSnapshot(pos);
+            assertEquals(game.getClass(), copy.getClass());
+            assertEquals(pos, copy.snapshot());
+            assertEquals(game.getHash(), copy.getHash());
+            assertTrue(copy.isBlacksTurn());
+            assertTrue(copy.snapshot().hasMoved(2,3));
+        }
+        assertNull(Game.fromSnapshot(null));
+    }
+
+    /**
+     * The incrementally updated hash should always equal a hash computed from scratch, including after captures and
+     * undos.
+     */
+    @Test
+    public void testHashMatchesScratch()
+    {
+        ChessGame cg = new ChessGame();
+        long start = cg.getHash();
+        int[][] moves = {{4,1, 4,3}, {3,6, 3,4}, {4,3, 3,4}, {3,7, 3,4}};
+        for(int[] mv : moves)
+        {
+            cg.runTurn(new Square(mv[0], mv[1]), new Square(mv[2], mv[3]));
+            assertEquals(Position.of(boardOf(cg), cg.getTurnColor()).hash, cg.getHash());
+        }
+        for(int i = 0; i < moves.length; i++)
+            cg.undoMove();
+        assertEquals(start, cg.getHash());
+    }
+
+    /**
+     * Rebuilds a board from a game's snapshot.
+     */
+    private Board boardOf(Game game)
+    {
+        Position pos = game.snapshot();
+        Board board = new Board(pos.boardX, pos.boardY);
+        for(int x = 0; x < pos.boardX; x++)
+            for(int y = 0; y < pos.boardY; y++)
+                board.putPiece(Position.decode(pos.getCode(x,y)), x,y);
+        return board;
+    }
+}
@@ -0,0 +1,115 @@
+package Chess.Search;
+
+import Chess.Game.ChessGame;
+import Chess.Position;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.*;
+
+public class AnalyzerTest
+{
+    private static final Analyzer.Limits FOREVER = new Analyzer.Limits(Long.MAX_VALUE, 64, 0);
+
+    private static Throwable failure(CompletableFuture<?> future)
+    {
+        try
+        {
+            future.join();
+        } catch (CompletionException e)
+        {
+            return e.getCause();
+        } catch (CancellationException e)
+        {
+            return e;
+        }
+        fail("Completed normally");
+        return null;
+    }
+
+    @Test
+    public void testMatchesSearch()
+    {
+        ChessGame game = new ChessGame();
+        Search.Result expected = new Search(new Evaluator(), null).search(game, 3000, 3);
+        List<Search.Result> updates = new CopyOnWriteArrayList<>();
+        try(Analyzer analyzer = new Analyzer(2, 4, null))
+        {
+            Search.Result result = analyzer.analyze(game.snapshot(), new Analyzer.Limits(3000, 3, 0), updates::add)
+                    .join();
+            assertEquals(expected.moveCode, result.moveCode);
+            assertEquals(expected.score, result.score);
+            assertEquals(expected.nodes, result.nodes);
+            assertEquals(result.depth, updates.size());
+            for(int i = 0; i < updates.size(); i++) assertEquals(i + 1, updates.get(i).depth);
+        }
+    }
+
+    @Test
+    public void testCancelAndDeadline() throws InterruptedException
+    {
+        Position start = new ChessGame().snapshot();
+        try(Analyzer analyzer = new Analyzer(1, 4, null))
+        {
+            CountDownLatch started = new CountDownLatch(1);
+            CompletableFuture<Search.Result> endless = analyzer.analyze(start, FOREVER, result -> started.countDown());
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            // Waits behind the endless search and runs out of time before any depth completes
+            CompletableFuture<Search.Result> starved = analyzer.analyze(start, new Analyzer.Limits(1000, 2, 50));
+            assertTrue(failure(starved) instanceof TimeoutException);
+
+            endless.cancel(true);
+            long begin = System.nanoTime();
+            Search.Result timed = analyzer.analyze(start, Analyzer.Limits.ofTime(300)).join();
+            long millis = (System.nanoTime() - begin) / 1_000_000;
+            assertTrue(timed.depth >= 1);
+            assertNotEquals(0, timed.moveCode);
+            assertTrue("Took " + millis + "ms", millis < 2000);
+        }
+    }
+
+    @Test
+    public void testBoundedQueue() throws InterruptedException
+    {
+        Position start = new ChessGame().snapshot();
+        try(Analyzer analyzer = new Analyzer(1, 1, null))
+        {
+            CountDownLatch started = new CountDownLatch(1);
+            CompletableFuture<Search.Result> running = analyzer.analyze(start, FOREVER, result -> started.countDown());
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            CompletableFuture<Search.Result> queued = analyzer.analyze(start, FOREVER);
+            assertEquals(1, analyzer.getQueued());
+            CompletableFuture<Search.Result> rejected = analyzer.analyze(start, FOREVER);
+            assertTrue(failure(rejected) instanceof RejectedExecutionException);
+
+            // A request cancelled while it waits is skipped
+            queued.cancel(true);
+            running.cancel(true);
+            assertNotEquals(0, analyzer.analyze(start, new Analyzer.Limits(500, 2, 0)).join().moveCode);
+        }
+    }
+
+    @Test
+    public void testCloseFailsQueued() throws InterruptedException
+    {
+        Position start = new ChessGame().snapshot();
+        Analyzer analyzer = new Analyzer(1, 2, null);
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<Search.Result> running = analyzer.analyze(start, FOREVER, result -> started.countDown());
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        CompletableFuture<Search.Result> queued = analyzer.analyze(start, FOREVER);
+        analyzer.close();
+        assertTrue(failure(queued) instanceof RejectedExecutionException);
+        assertTrue(failure(analyzer.analyze(start, FOREVER)) instanceof RejectedExecutionException);
+        running.cancel(true);
+    }
+}
@@ -0,0 +1,39 @@
+package Chess.Search;
+
+import Chess.Game.ChessGame;
+import Chess.Game.CustomChessGame;
+import Chess.Game.Game;
+import Chess.Position;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class PerftTest
+{
+    @Test
+    public void testStandardCounts()
+    {
+        Game game = new ChessGame();
+        Position start = game.snapshot();
+        assertEquals(1, Perft.count(game, 0));
+        assertEquals(20, Perft.count(game, 1));
+        assertEquals(400, Perft.count(game, 2));
+        assertEquals(8902, Perft.count(game, 3));
+        assertEquals(start, game.snapshot());
+    }
+
+    @Test
+    public void testDivide()
+    {
+        for(Game game : new Game[] {new ChessGame(), new CustomChessGame()})
+        {
+            Map<Integer, Long> counts = Perft.divide(game, 3);
+            assertEquals(game.getLegalMoveCodes().length, counts.size());
+            long total = 0;
+            for(long count : counts.values()) total += count;
+            assertEquals(Perft.count(game, 3), total);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package Chess.Search;
+
+import Chess.Game.ChessGame;
+import Chess.Game.CustomChessGame;
+import Chess.Game.Game;
+import Chess.Move;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+public class SearchTest
+{
+    private static int code(Game game, String from, String dest)
+    {
+        return Move.encode(square(game, from), square(game, dest));
+    }
+
+    private static int square(Game game, String name)
+    {
+        return (name.charAt(0) - 'a') + (name.charAt(1) - '1') * game.boardX;
+    }
+
+    @Test
+    public void testFindsMate()
+    {
+        Search search = new Search(new Evaluator(), null);
+        ChessGame game = new ChessGame("6k1/5ppp/8/8/8/8/8/R5K1 w");
+        Search.Result result = search.search(game, 100000, 10);
+        assertEquals(code(game, "a1", "a8"), result.moveCode);
+        assertEquals(Search.MATE - 1, result.score);
+        // The game itself is left alone
+        assertEquals(0, game.getPly());
+
+        game.runTurn(result.moveCode);
+        assertEquals(Game.GameState.WHITE_WINS, game.getGameState());
+        assertEquals(0, search.search(game, 1000, 10).moveCode);
+    }
+
+    @Test
+    public void testWinsMaterial() throws IOException
+    {
+        // The Empress on d5 is undefended
+        CustomChessGame game = new CustomChessGame("4k5/10/10/3e6/10/10/3R6/4K5 w");
+        Path file = Files.createTempFile("tt", ".bin");
+        try(TranspositionTable table = new TranspositionTable(file, 1 << 16))
+        {
+            Search.Result result = new Search(new Evaluator(), table).search(game, 20000, 6);
+            assertEquals(code(game, "d2", "d5"), result.moveCode);
+            assertTrue(result.score > 400);
+        } finally
+        {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testNodeLimit()
+    {
+        Search search = new Search(new Evaluator(), null);
+        Game game = new CustomChessGame();
+        Search.Result small = search.search(game, 500, 64);
+        assertTrue(small.nodes <= 501);
+        assertNotEquals(0, small.moveCode);
+        assertTrue(new Search(new Evaluator(), null).search(game, 20000, 64).depth >= small.depth);
+        // Same budget, same answer
+        assertEquals(small.moveCode, search.search(game, 500, 64).moveCode);
+    }
+}
@@ -0,0 +1,79 @@
+package Chess.Search;
+
+import Chess.Archive.PackedPosition;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SelfPlayTest
+{
+    private Path dir;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        dir = Files.createTempDirectory("selfplay");
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        for(Path file : SelfPlay.listShards(dir)) Files.delete(file);
+        Files.deleteIfExists(dir);
+    }
+
+    @Test
+    public void testRun() throws IOException
+    {
+        SelfPlay selfPlay = new SelfPlay(dir, 3, 200);
+        selfPlay.setMaxPly(40);
+        selfPlay.setShardBytes(SelfPlay.RECORD_SIZE * 50);
+        SelfPlay.Stats stats = selfPlay.run(6, 40);
+        assertEquals(6, stats.games);
+        assertTrue(stats.positions > 0);
+        assertTrue(stats.distinctPositions > 0);
+        assertTrue(stats.nodes <= stats.positions * 201);
+
+        List<Path> shards = SelfPlay.listShards(dir);
+        assertEquals(stats.shards, shards.size());
+        assertTrue(shards.size() > 3);
+        long total = 0;
+        List<Integer> results = new ArrayList<>();
+        for(Path shard : shards)
+            total += SelfPlay.readShard(shard, (position, score, result) ->
+            {
+                assertTrue(PackedPosition.canPack(position));
+                assertTrue(result >= -1 && result <= 1);
+                results.add(result);
+            });
+        assertEquals(stats.positions, total);
+        assertEquals(total, results.size());
+    }
+
+    /**
+     * Checks that the games depend on the seed only, not on the number of threads.
+     */
+    @Test
+    public void testReproducible() throws IOException
+    {
+        SelfPlay one = new SelfPlay(dir.resolve("one"), 1, 100);
+        SelfPlay two = new SelfPlay(dir.resolve("two"), 2, 100);
+        one.setMaxPly(20);
+        two.setMaxPly(20);
+        long a = one.run(4, 7).positions, b = two.run(4, 7).positions;
+        assertEquals(a, b);
+        for(String name : new String[] {"one", "two"})
+        {
+            for(Path file : SelfPlay.listShards(dir.resolve(name))) Files.delete(file);
+            Files.delete(dir.resolve(name));
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package Chess.Search;
+
+import Chess.Game.ChessGame;
+import Chess.Game.CustomChessGame;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static Chess.Search.TranspositionTable.*;
+import static org.junit.Assert.*;
+
+public class TranspositionTableTest
+{
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        file = Files.createTempFile("tt", ".bin");
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void testStoreAndProbe() throws IOException
+    {
+        long standard = new ChessGame().getHash(), custom = new CustomChessGame().getHash();
+        try(TranspositionTable tt = new TranspositionTable(file, 1 << 16))
+        {
+            assertEquals(0, tt.probe(standard));
+            tt.store(standard, 0x0C1C, -35, 7, BOUND_EXACT);
+            tt.store(custom, 0x0B1F, 12, 3, BOUND_LOWER);
+
+            long data = tt.probe(standard);
+            assertEquals(0x0C1C, move(data));
+            assertEquals(-35, score(data));
+            assertEquals(7, depth(data));
+            assertEquals(BOUND_EXACT, bound(data));
+            assertEquals(BOUND_LOWER, bound(tt.probe(custom)));
+
+            // A shallower bound from the same search does not replace a deeper result
+            tt.store(standard, 0x0D1D, 100, 2, BOUND_UPPER);
+            assertEquals(7, depth(tt.probe(standard)));
+            // A new search may replace it, and keeps the old best move when it has none
+            tt.newSearch();
+            tt.store(standard, 0, 100, 2, BOUND_UPPER);
+            assertEquals(2, depth(tt.probe(standard)));
+            assertEquals(0x0C1C, move(tt.probe(standard)));
+        }
+    }
+
+    /**
+     * Checks entries survive reopening, and that a file of another size is cleared.
+     */
+    @Test
+    public void testWarmStart() throws IOException
+    {
+        try(TranspositionTable tt = new TranspositionTable(file, 1 << 16))
+        {
+            tt.newSearch();
+            for(long h = 1; h <= 500; h++) tt.store(h * 0x9E3779B97F4A7C15L, (int) h, (int) h, 4, BOUND_EXACT);
+        }
+        try(TranspositionTable tt = new TranspositionTable(file, 1 << 16))
+        {
+            int found = 0;
+            for(long h = 1; h <= 500; h++)
+                if(score(tt.probe(h * 0x9E3779B97F4A7C15L)) == h) found++;
+            assertTrue(found > 450);
+            assertTrue(tt.getUsage() > 0);
+        }
+        try(TranspositionTable tt = new TranspositionTable(file, 1 << 15))
+        {
+            assertEquals((1 << 15) / 16, tt.capacity());
+            assertEquals(0, tt.probe(0x9E3779B97F4A7C15L));
+        }
+    }
+
+    /**
+     * Fills a tiny table over many searches and checks the newest entries are the ones kept.
+     */
+    @Test
+    public void testAgeEviction() throws IOException
+    {
+        try(TranspositionTable tt = new TranspositionTable(file, 64 * 4))
+        {
+            assertEquals(16, tt.capacity());
+            for(int search = 0; search < 5; search++)
+            {
+                tt.newSearch();
+                for(long h = 0; h < 16; h++) tt.store(search * 1000 + h, 0, search, 10, BOUND_EXACT);
+            }
+            for(long h = 0; h < 16; h++) assertEquals(4, score(tt.probe(4000 + h)));
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package Chess.Search;
+
+import Chess.Game.ChessGame;
+import Chess.Game.CustomChessGame;
+import Chess.Game.Game;
+import Chess.Notation.Fen;
+import Chess.Position;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class WorkerPoolTest
+{
+    private static void assertSameResult(Search.Result expected, Search.Result actual)
+    {
+        assertEquals(expected.moveCode, actual.moveCode);
+        assertEquals(expected.score, actual.score);
+        assertEquals(expected.depth, actual.depth);
+        assertEquals(expected.nodes, actual.nodes);
+    }
+
+    private static void deleteAll(Path dir) throws IOException
+    {
+        try(Stream<Path> files = Files.list(dir))
+        {
+            for(Path file : (Iterable<Path>) files::iterator) Files.delete(file);
+        }
+        Files.delete(dir);
+    }
+
+    @Test
+    public void testRing() throws IOException
+    {
+        Path file = Files.createTempFile("ring", ".bin");
+        try(SharedRing pool = SharedRing.create(file, 4); SharedRing worker = SharedRing.open(file))
+        {
+            Position start = new ChessGame().snapshot();
+            // Go round the ring a few times
+            for(int i = 1; i <= 10; i++)
+            {
+                assertTrue(pool.offerRequest(i, 1000 + i, 3, start));
+                SharedRing.Request request = worker.pollRequest();
+                assertEquals(i, request.jobId);
+                assertEquals(1000 + i, request.nodeLimit);
+                assertEquals(start, request.position);
+                assertNull(worker.pollRequest());
+                assertTrue(worker.offerReply(i, SharedRing.STATUS_OK, new Search.Result(i, -i, 2, 77)));
+                SharedRing.Reply reply = pool.pollReply();
+                assertEquals(i, reply.jobId);
+                assertEquals(-i, reply.result.score);
+                assertEquals(77, reply.result.nodes);
+            }
+            for(int i = 0; i < 4; i++) assertTrue(pool.offerRequest(i, 1, 1, start));
+            assertFalse(pool.offerRequest(5, 1, 1, start));
+
+            worker.beat();
+            assertEquals(1, pool.getHeartbeat());
+            pool.reset();
+            assertNull(worker.pollRequest());
+            assertEquals(0, pool.getHeartbeat());
+        } finally
+        {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testMatchesInProcessSearch() throws IOException
+    {
+        List<Game> games = new ArrayList<>();
+        games.add(new ChessGame());
+        games.add(new CustomChessGame());
+        games.add(Game.fromSnapshot(Fen.parse("6k1/5ppp/8/8/8/8/8/R5K1 w")));
+        Path dir = Files.createTempDirectory("workers");
+        try(WorkerPool pool = new WorkerPool(2, dir))
+        {
+            pool.start();
+            List<CompletableFuture<Search.Result>> futures = new ArrayList<>();
+            for(Game game : games) futures.add(pool.search(game.snapshot(), 2000, 3));
+            Search search = new Search(new Evaluator(), null);
+            for(int i = 0; i < games.size(); i++)
+                assertSameResult(search.search(games.get(i), 2000, 3), futures.get(i).join());
+            assertEquals(0, pool.getRestarts());
+        } finally
+        {
+            deleteAll(dir);
+        }
+    }
+
+    @Test
+    public void testRestartsCrashedWorker() throws Exception
+    {
+        Game game = new CustomChessGame();
+        Search.Result expected = new Search(new Evaluator(), null).search(game, 20000, 4);
+        Path dir = Files.createTempDirectory("workers");
+        try(WorkerPool pool = new WorkerPool(1, dir))
+        {
+            pool.start();
+            assertNotEquals(0, pool.search(game.snapshot(), 100, 1).join().moveCode);
+            long pid = pool.getWorkerPids()[0];
+            assertNotEquals(0, pid);
+
+            // Killed in the middle of the search, or at worst just after it
+            CompletableFuture<Search.Result> future = pool.search(game.snapshot(), 20000, 4);
+            Thread.sleep(100);
+            ProcessHandle.of(pid).ifPresent(ProcessHandle::destroyForcibly);
+            assertSameResult(expected, future.join());
+            for(int i = 0; i < 100 && pool.getRestarts() == 0; i++) Thread.sleep(50);
+            assertEquals(1, pool.getRestarts());
+            assertSameResult(expected, pool.search(game.snapshot(), 20000, 4).join());
+            assertNotEquals(pid, pool.getWorkerPids()[0]);
+        } finally
+        {
+            deleteAll(dir);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package Chess.Server;
+
+import Chess.Game.ChessGame;
+import Chess.Game.CustomChessGame;
+import Chess.Position;
+import Chess.Search.Analyzer.Limits;
+import Chess.Search.Search;
+import Chess.Server.AnalysisScheduler.Priority;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class AnalysisSchedulerTest
+{
+    private static final Limits FOREVER = new Limits(Long.MAX_VALUE, 64, 0);
+
+    /**
+     * Starts an endless batch job on the only worker, so that the jobs queued after it wait until it is cancelled.
+     */
+    private static CompletableFuture<Search.Result> block(AnalysisScheduler scheduler, Position position)
+            throws InterruptedException
+    {
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<Search.Result> blocker = scheduler.submit("gate", Priority.BATCH, position, FOREVER,
+                result -> started.countDown());
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        return blocker;
+    }
+
+    @Test
+    public void testTenantsTakeTurns() throws InterruptedException
+    {
+        Position start = new ChessGame().snapshot();
+        try(AnalysisScheduler scheduler = new AnalysisScheduler(1, 100, null))
+        {
+            CompletableFuture<Search.Result> blocker = block(scheduler, start);
+            List<String> order = Collections.synchronizedList(new ArrayList<>());
+            List<CompletableFuture<Search.Result>> jobs = new ArrayList<>();
+            for(int i = 0; i < 5; i++)
+                jobs.add(scheduler.submit("a", Priority.BATCH, start, new Limits(300, 2, 0)).whenComplete((r, e) ->
+                        order.add("a")));
+            for(int i = 0; i < 2; i++)
+                jobs.add(scheduler.submit("b", Priority.BATCH, start, new Limits(300, 2, 0)).whenComplete((r, e) ->
+                        order.add("b")));
+            AnalysisScheduler.Stats batch = scheduler.getStats(Priority.BATCH);
+            assertEquals(7, batch.getQueued());
+
+            blocker.cancel(true);
+            for(CompletableFuture<Search.Result> job : jobs) assertNotEquals(0, job.join().moveCode);
+            assertEquals(List.of("a", "b", "a", "b", "a", "a", "a"), order);
+            assertEquals(0, batch.getQueued());
+            // Stats are updated by a callback of the future, which may run after join returns
+            for(int i = 0; i < 100 && batch.getCompleted() < 8; i++) Thread.sleep(10);
+            assertEquals(8, batch.getSubmitted());
+            assertEquals(8, batch.getCompleted());
+            assertEquals(8, batch.wait.getCount());
+        }
+    }
+
+    @Test
+    public void testInteractivePreemptsBatch() throws InterruptedException
+    {
+        Position custom = new CustomChessGame().snapshot();
+        try(AnalysisScheduler scheduler = new AnalysisScheduler(1, 100, null))
+        {
+            List<Integer> depths = Collections.synchronizedList(new ArrayList<>());
+            CountDownLatch deepening = new CountDownLatch(1);
+            CompletableFuture<Search.Result> batch = scheduler.submit("archive", Priority.BATCH, custom,
+                    new Limits(Long.MAX_VALUE, 4, 0), result ->
+            {
+                depths.add(result.depth);
+                deepening.countDown();
+            });
+            assertTrue(deepening.await(10, TimeUnit.SECONDS));
+
+            Search.Result interactive = scheduler.submit("player", Priority.INTERACTIVE, custom,
+                    new Limits(500, 2, 0)).join();
+            assertNotEquals(0, interactive.moveCode);
+            assertFalse(batch.isDone());
+            assertEquals(1, scheduler.getStats(Priority.BATCH).getPreempted());
+
+            // The batch job picks up where it left off: every depth is reported once
+            Search.Result result = batch.join();
+            assertEquals(4, result.depth);
+            assertEquals(List.of(1, 2, 3, 4), depths);
+            assertEquals(1, scheduler.getStats(Priority.INTERACTIVE).wait.getCount());
+        }
+    }
+
+    @Test
+    public void testRejectsWhenFull() throws InterruptedException
+    {
+        Position start = new ChessGame().snapshot();
+        AnalysisScheduler scheduler = new AnalysisScheduler(1, 2, null);
+        CompletableFuture<Search.Result> blocker = block(scheduler, start);
+        CompletableFuture<Search.Result> first = scheduler.submit("a", Priority.BATCH, start, FOREVER);
+        CompletableFuture<Search.Result> second = scheduler.submit("a", Priority.INTERACTIVE, start, FOREVER);
+        try
+        {
+            scheduler.submit("b", Priority.INTERACTIVE, start, FOREVER).join();
+            fail("Queue should be full");
+        } catch (CompletionException e)
+        {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+        first.cancel(true);
+        assertEquals(0, scheduler.getStats(Priority.BATCH).getQueued());
+
+        // Closing drops the waiting job and stops the running one with what it found
+        scheduler.close();
+        try
+        {
+            second.join();
+            fail("Waiting job should be dropped");
+        } catch (CompletionException e)
+        {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+        assertNotEquals(0, blocker.join().moveCode);
+    }
+}
@@ -0,0 +1,198 @@
+package Chess.Server;
+
+import Chess.Game.ChessGame;
+import Chess.Game.CustomChessGame;
+import Chess.Game.Game;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class GameRegistryTest
+{
+    /**
+     * Plays the knight out and back, so a game can take any number of moves.
+     */
+    private static int shuffleKnight(Game game)
+    {
+        int[] legal = game.getLegalMoveCodes();
+        game.runTurn(legal[game.getPly() % 2 == 0? 0 : legal.length - 1]);
+        return game.getPly();
+    }
+
+    @Test
+    public void testSubmitAndRemove()
+    {
+        GameRegistry registry = new GameRegistry(3);
+        int a = registry.add(new ChessGame()), b = registry.add(new CustomChessGame());
+        assertEquals(2, registry.size());
+
+        List<CompletableFuture<Integer>> plies = new ArrayList<>();
+        for(int i = 0; i < 50; i++) plies.add(registry.submit(a, GameRegistryTest::shuffleKnight));
+        for(int i = 0; i < 50; i++) assertEquals(i + 1, (int) plies.get(i).join());
+        assertEquals(10, (int) registry.submit(b, game -> game.boardX).join());
+
+        assertEquals(50, registry.getInfo(a).ply);
+        assertEquals(50, registry.getInfo(a).operations);
+        assertEquals(registry.ownerOf(a), registry.getInfo(a).owner);
+
+        assertTrue(registry.remove(a).join());
+        assertFalse(registry.remove(a).join());
+        assertNull(registry.getInfo(a));
+        assertEquals(1, registry.size());
+        try
+        {
+            registry.submit(a, Game::getPly).join();
+            fail();
+        } catch (CompletionException e)
+        {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+    }
+
+    /**
+     * Checks that listing and stats answer while an owner is stuck in a long task.
+     */
+    @Test
+    public void testQueriesDoNotBlock() throws InterruptedException
+    {
+        GameRegistry registry = new GameRegistry(2);
+        int id = registry.add(new ChessGame());
+        CountDownLatch started = new CountDownLatch(1), release = new CountDownLatch(1);
+        CompletableFuture<Integer> stuck = registry.submit(id, game ->
+        {
+            started.countDown();
+            try
+            {
+                release.await();
+            } catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            return shuffleKnight(game);
+        });
+        registry.submit(id, GameRegistryTest::shuffleKnight);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        assertEquals(1, registry.list().size());
+        assertEquals(0, registry.getInfo(id).ply);
+        int owner = registry.ownerOf(id);
+        assertEquals(1, registry.getWorkerStats().get(owner).queued);
+        assertEquals(1, registry.getWorkerStats().get(owner).games);
+
+        release.countDown();
+        assertEquals(1, (int) stuck.join());
+        assertEquals(2, (int) registry.submit(id, Game::getPly).join());
+    }
+
+    /**
+     * Puts every busy game on one worker and checks rebalance spreads them, and that moves keep their order while
+     * games change owner.
+     */
+    @Test
+    public void testRebalance()
+    {
+        int threads = 4;
+        GameRegistry registry = new GameRegistry(threads);
+        List<Integer> ids = new ArrayList<>();
+        for(int i = 0; i < 40; i++) ids.add(registry.add(new ChessGame()));
+        List<Integer> hot = new ArrayList<>();
+        for(int id : ids) if(registry.ownerOf(id) == 0) hot.add(id);
+
+        List<CompletableFuture<Integer>> plies = new ArrayList<>();
+        for(int round = 0; round < 20; round++)
+            for(int id : hot) plies.add(registry.submit(id, GameRegistryTest::shuffleKnight));
+        for(CompletableFuture<Integer> ply : plies) ply.join();
+        registry.submit(hot.get(0), Game::getPly).join();
+
+        int moved = registry.rebalance(1.25);
+        assertTrue(moved >= hot.size() / 2);
+        for(int round = 0; round < 20; round++)
+            for(int id : hot) registry.submit(id, GameRegistryTest::shuffleKnight);
+        for(int id : hot) assertEquals(40, (int) registry.submit(id, Game::getPly).join());
+
+        int onFirst = 0;
+        for(int id : hot) if(registry.ownerOf(id) == 0) onFirst++;
+        assertTrue(onFirst <= hot.size() / 2 + 1);
+        int games = 0;
+        for(GameRegistry.WorkerStats stats : registry.getWorkerStats()) games += stats.games;
+        assertEquals(ids.size(), games);
+        // Nothing ran since the last rebalance, so there is nothing to move
+        registry.rebalance(1.25);
+        assertEquals(0, registry.rebalance(1.25));
+    }
+
+    /**
+     * Checks removing a game that was moved drops its route, and that a move planned before the removal does not
+     * route it again.
+     */
+    @Test
+    public void testRemoveMovedGame()
+    {
+        GameRegistry registry = new GameRegistry(2);
+        int id = registry.add(new ChessGame());
+        int home = registry.ownerOf(id), other = 1 - home;
+        registry.migrate(id, other);
+        assertEquals(other, registry.ownerOf(id));
+        assertEquals(1, (int) registry.submit(id, GameRegistryTest::shuffleKnight).join());
+        assertEquals(other, registry.getInfo(id).owner);
+
+        assertTrue(registry.remove(id).join());
+        assertEquals(home, registry.ownerOf(id));
+        registry.migrate(id, other);
+        assertEquals(home, registry.ownerOf(id));
+        registry.close();
+    }
+
+    /**
+     * Checks close stops the workers, lets the running task finish and fails the queued and later ones.
+     */
+    @Test
+    public void testClose() throws InterruptedException
+    {
+        GameRegistry registry = new GameRegistry(2);
+        int id = registry.add(new ChessGame());
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<Integer> running = registry.submit(id, game ->
+        {
+            started.countDown();
+            try
+            {
+                new CountDownLatch(1).await();
+            } catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            return shuffleKnight(game);
+        });
+        CompletableFuture<Integer> queued = registry.submit(id, GameRegistryTest::shuffleKnight);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        registry.close();
+        assertEquals(1, (int) running.join());
+        for(CompletableFuture<?> future : List.of(queued, registry.remove(id)))
+        {
+            try
+            {
+                future.join();
+                fail();
+            } catch (CompletionException e)
+            {
+                assertTrue(e.getCause() instanceof RejectedExecutionException);
+            }
+        }
+        try
+        {
+            registry.add(new ChessGame());
+            fail();
+        } catch (RejectedExecutionException e) {}
+        registry.close();
+    }
+}
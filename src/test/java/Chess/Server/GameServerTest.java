@@ -0,0 +1,111 @@
+package Chess.Server;
+
+import Chess.Notation.Fen;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.*;
+
+public class GameServerTest
+{
+    private GameServer server;
+
+    @Before
+    public void setUp()
+    {
+        server = new GameServer(1000);
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        server.close();
+    }
+
+    @Test
+    public void testCommands()
+    {
+        assertEquals("OK 1", server.execute("NEW"));
+        assertEquals("OK 2", server.execute("new custom"));
+        assertEquals("OK e4 PLAYING", server.execute("MOVE 1 e4"));
+        assertEquals("OK Nc6 PLAYING", server.execute("MOVE 1 b8c6"));
+        assertTrue(server.execute("MOVE 1 e6").startsWith("ERR Illegal move"));
+        assertEquals("OK PLAYING 2 " + Fen.write(Fen.parse("r1bqkbnr/pppppppp/2n5/8/4P3/8/PPPP1PPP/RNBQKBNR w"), 2),
+                server.execute("STATE 1"));
+        assertEquals("OK PLAYING", server.execute("UNDO 1"));
+        assertEquals(20, server.execute("LEGAL 1").split(" ").length - 1);
+        assertTrue(server.execute("LEGAL 2").contains(" Cb3"));
+
+        assertEquals("OK WHITE_WINS", server.execute("FORFEIT 1 black"));
+        assertEquals("ERR Game is over", server.execute("MOVE 1 e5"));
+        assertEquals("ERR Game was forfeited", server.execute("UNDO 1"));
+        assertEquals("ERR Game is over", server.execute("FORFEIT 1 WHITE"));
+
+        assertEquals("OK 3", server.execute("NEW FEN 6k1/5ppp/8/8/8/8/8/R5K1 w"));
+        assertEquals("OK Ra8# WHITE_WINS", server.execute("MOVE 3 Ra8"));
+        assertTrue(server.execute("NEW FEN 8/8/8/8/8/8/8/8 w").startsWith("ERR Need one king a side"));
+
+        assertEquals("OK", server.execute("DROP 2"));
+        assertTrue(server.execute("STATE 2").startsWith("ERR No game"));
+        assertTrue(server.execute("MOVE x e4").startsWith("ERR Bad game id"));
+        assertTrue(server.execute("FLY 1").startsWith("ERR Unknown command"));
+        assertTrue(server.execute("STATS").startsWith("OK 2 3 "));
+        assertEquals("BYE", server.execute("QUIT"));
+    }
+
+    /**
+     * Plays the fool's mate in many games at once, each over its own connection.
+     */
+    @Test
+    public void testConcurrentClients() throws Exception
+    {
+        server.start(0);
+        int clients = 64;
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        try
+        {
+            List<Future<String>> results = new ArrayList<>();
+            for(int i = 0; i < clients; i++)
+                results.add(pool.submit(() ->
+                {
+                    try(Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+                        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF_8));
+                        PrintWriter out = new PrintWriter(socket.getOutputStream(), true))
+                    {
+                        out.println("NEW");
+                        String id = in.readLine().substring(3);
+                        String reply = null;
+                        for(String move : new String[] {"f3", "e5", "g4", "Qh4"})
+                        {
+                            out.println("MOVE " + id + " " + move);
+                            reply = in.readLine();
+                        }
+                        out.println("QUIT");
+                        assertEquals("BYE", in.readLine());
+                        return reply;
+                    }
+                }));
+            for(Future<String> result : results) assertEquals("OK Qh4# BLACK_WINS", result.get());
+        } finally
+        {
+            pool.shutdownNow();
+        }
+        assertEquals(clients, server.getGameCount());
+        assertEquals(clients * 4L, server.getMoveLatency().getCount());
+        assertTrue(server.getMoveLatency().getPercentileMicros(99) > 0);
+    }
+}
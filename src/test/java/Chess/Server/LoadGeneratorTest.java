@@ -0,0 +1,58 @@
+package Chess.Server;
+
+import Chess.Server.LoadGenerator.Mode;
+import Chess.Server.LoadGenerator.Report;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class LoadGeneratorTest
+{
+    private static void assertPlayed(Report report)
+    {
+        assertEquals(0, report.errors);
+        assertTrue(report.moves > 0);
+        assertTrue(report.games > 0);
+        assertTrue(report.moveP50 > 0 && report.moveP50 <= report.moveP99 && report.moveP99 <= report.moveP999);
+    }
+
+    @Test
+    public void testDirect() throws InterruptedException
+    {
+        LoadGenerator generator = new LoadGenerator(Mode.DIRECT, 4);
+        generator.setMaxPly(20);
+        Report report = generator.run(200, 48);
+        assertPlayed(report);
+        assertTrue(report.games >= 4);
+        String json = report.toJson();
+        assertTrue(json, json.startsWith("{\"mode\":\"direct\",\"players\":4,"));
+        assertTrue(json, json.contains("\"moveMicros\":{\"p50\":" + report.moveP50 + ",\"p99\":"));
+    }
+
+    @Test
+    public void testThroughServer() throws IOException, InterruptedException
+    {
+        try(GameServer server = new GameServer();
+            NioTransport transport = new NioTransport(server, 2))
+        {
+            server.start(0);
+            transport.start(0);
+
+            LoadGenerator line = new LoadGenerator(Mode.LINE, 8);
+            line.setPort(server.getPort());
+            line.setThinkMillis(0, 2);
+            line.setCustomPercent(100);
+            assertPlayed(line.run(300, 48));
+
+            LoadGenerator binary = new LoadGenerator(Mode.BINARY, 8);
+            binary.setPort(transport.getPort());
+            binary.setMaxPly(10);
+            Report report = binary.run(300, 48);
+            assertPlayed(report);
+            // Every game was dropped once its player was done with it
+            assertEquals(0, server.getGameCount());
+        }
+    }
+}
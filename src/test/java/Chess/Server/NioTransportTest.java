@@ -0,0 +1,165 @@
+package Chess.Server;
+
+import Chess.Game.Game.GameState;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static Chess.Server.NioTransport.*;
+import static org.junit.Assert.*;
+
+public class NioTransportTest
+{
+    private GameServer server;
+    private NioTransport transport;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        server = new GameServer(1000);
+        transport = new NioTransport(server, 2);
+        transport.start(0);
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        transport.close();
+    }
+
+    private SocketChannel connect() throws IOException
+    {
+        return SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), transport.getPort()));
+    }
+
+    private static ByteBuffer readReplies(SocketChannel channel, int count) throws IOException
+    {
+        ByteBuffer replies = ByteBuffer.allocate(count * RESPONSE_SIZE);
+        while(replies.hasRemaining()) if(channel.read(replies) < 0) throw new IOException("Closed early");
+        return replies.flip();
+    }
+
+    private static void assertReply(ByteBuffer replies, byte op, byte status, GameState state, int gameId, int ply)
+    {
+        assertEquals(op, replies.get());
+        assertEquals(status, replies.get());
+        assertEquals(state.ordinal(), replies.get());
+        replies.get();
+        assertEquals(gameId, replies.getInt());
+        assertEquals(ply, replies.getInt());
+    }
+
+    /**
+     * Sends a whole game's requests in one write and checks every reply.
+     */
+    @Test
+    public void testPipelinedRequests() throws IOException
+    {
+        try(SocketChannel channel = connect())
+        {
+            ByteBuffer requests = ByteBuffer.allocate(16 * REQUEST_SIZE);
+            putRequest(requests, OP_NEW_STANDARD, 0, 0, 0);
+            putRequest(requests, OP_MOVE, 1, 13, 21);   // f3
+            putRequest(requests, OP_MOVE, 1, 52, 36);   // e5
+            putRequest(requests, OP_MOVE, 1, 14, 22);   // g3, taken back
+            putRequest(requests, OP_UNDO, 1, 0, 0);
+            putRequest(requests, OP_MOVE, 1, 14, 30);   // g4
+            putRequest(requests, OP_MOVE, 1, 0, 0);     // Not a legal move
+            putRequest(requests, OP_MOVE, 1, 59, 31);   // Qh4#
+            putRequest(requests, OP_MOVE, 1, 12, 28);
+            putRequest(requests, OP_STATE, 9, 0, 0);
+            putRequest(requests, OP_FORFEIT, 1, 0, 0);
+            putRequest(requests, (byte) 99, 1, 0, 0);
+            channel.write(requests.flip());
+
+            ByteBuffer replies = readReplies(channel, 12);
+            assertReply(replies, OP_NEW_STANDARD, STATUS_OK, GameState.PLAYING, 1, 0);
+            assertReply(replies, OP_MOVE, STATUS_OK, GameState.PLAYING, 1, 1);
+            assertReply(replies, OP_MOVE, STATUS_OK, GameState.PLAYING, 1, 2);
+            assertReply(replies, OP_MOVE, STATUS_OK, GameState.PLAYING, 1, 3);
+            assertReply(replies, OP_UNDO, STATUS_OK, GameState.PLAYING, 1, 2);
+            assertReply(replies, OP_MOVE, STATUS_OK, GameState.PLAYING, 1, 3);
+            assertReply(replies, OP_MOVE, STATUS_ILLEGAL_MOVE, GameState.PLAYING, 1, 3);
+            assertReply(replies, OP_MOVE, STATUS_OK, GameState.BLACK_WINS, 1, 4);
+            assertReply(replies, OP_MOVE, STATUS_GAME_OVER, GameState.BLACK_WINS, 1, 4);
+            assertReply(replies, OP_STATE, STATUS_NO_GAME, GameState.PLAYING, 9, 0);
+            assertReply(replies, OP_FORFEIT, STATUS_GAME_OVER, GameState.BLACK_WINS, 1, 4);
+            assertReply(replies, (byte) 99, STATUS_BAD_REQUEST, GameState.BLACK_WINS, 1, 4);
+        }
+        // The text protocol sees the same game
+        assertTrue(server.execute("STATE 1").startsWith("OK BLACK_WINS 4 "));
+
+        try(SocketChannel channel = connect())
+        {
+            ByteBuffer requests = ByteBuffer.allocate(2 * REQUEST_SIZE);
+            putRequest(requests, OP_DROP, 1, 0, 0);
+            putRequest(requests, OP_DROP, 1, 0, 0);
+            channel.write(requests.flip());
+            ByteBuffer replies = readReplies(channel, 2);
+            assertReply(replies, OP_DROP, STATUS_OK, GameState.PLAYING, 1, 0);
+            assertReply(replies, OP_DROP, STATUS_NO_GAME, GameState.PLAYING, 1, 0);
+        }
+        assertEquals(0, server.getGameCount());
+    }
+
+    /**
+     * Floods several connections with more requests than fit in the buffers, so replies back up while reading.
+     */
+    @Test
+    public void testManyConnections() throws Exception
+    {
+        int connections = 8, rounds = 2000;
+        ExecutorService pool = Executors.newFixedThreadPool(connections);
+        try
+        {
+            List<Future<?>> futures = new ArrayList<>();
+            for(int c = 0; c < connections; c++)
+                futures.add(pool.submit(() ->
+                {
+                    try(SocketChannel channel = connect())
+                    {
+                        ByteBuffer request = ByteBuffer.allocate(REQUEST_SIZE);
+                        putRequest(request, OP_NEW_CUSTOM, 0, 0, 0);
+                        channel.write(request.flip());
+                        ByteBuffer created = readReplies(channel, 1);
+                        int gameId = created.getInt(4);
+
+                        // Knight out and back, as a move and an undo
+                        ByteBuffer requests = ByteBuffer.allocate(rounds * 2 * REQUEST_SIZE);
+                        for(int i = 0; i < rounds; i++)
+                        {
+                            putRequest(requests, OP_MOVE, gameId, 2, 21);
+                            putRequest(requests, OP_UNDO, gameId, 0, 0);
+                        }
+                        requests.flip();
+                        while(requests.hasRemaining()) channel.write(requests);
+                        ByteBuffer replies = readReplies(channel, rounds * 2);
+                        for(int i = 0; i < rounds * 2; i++)
+                        {
+                            assertEquals(STATUS_OK, replies.get(i * RESPONSE_SIZE + 1));
+                            assertEquals(gameId, replies.getInt(i * RESPONSE_SIZE + 4));
+                            assertEquals((i + 1) % 2, replies.getInt(i * RESPONSE_SIZE + 8));
+                        }
+                    }
+                    return null;
+                }));
+            for(Future<?> future : futures) future.get();
+        } finally
+        {
+            pool.shutdownNow();
+        }
+        assertEquals(connections, server.getGameCount());
+        assertEquals(connections * (long) rounds, server.getMoveLatency().getCount());
+    }
+}
@@ -0,0 +1,218 @@
+package Chess.Server;
+
+import Chess.Game.ChessGame;
+import Chess.Game.CustomChessGame;
+import Chess.Game.Game;
+import Chess.Notation.Fen;
+import Chess.Position;
+import Chess.Search.Evaluator;
+import Chess.Search.Perft;
+import Chess.Search.Search;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.*;
+
+public class PerftCoordinatorTest
+{
+    private static Process launchWorker(int port) throws Exception
+    {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(PerftWorker.class.getName());
+        command.add(InetAddress.getLoopbackAddress().getHostAddress());
+        command.add(Integer.toString(port));
+        command.add("1");
+        return new ProcessBuilder(command).redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+    }
+
+    private static Thread workerThread(int port)
+    {
+        Thread thread = new Thread(() ->
+        {
+            try
+            {
+                PerftWorker.run(InetAddress.getLoopbackAddress().getHostAddress(), port);
+            } catch (Exception e)
+            {
+                // Coordinator closed
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    @Test
+    public void testWorkerProcesses() throws Exception
+    {
+        List<Process> processes = new ArrayList<>();
+        try(PerftCoordinator coordinator = new PerftCoordinator())
+        {
+            coordinator.start(0);
+            for(int i = 0; i < 2; i++) processes.add(launchWorker(coordinator.getPort()));
+            assertTrue(coordinator.awaitWorkers(2, 30_000));
+
+            Game game = new ChessGame();
+            PerftCoordinator.PerftResult result = coordinator.perft(game.snapshot(), 3, 2);
+            assertEquals(8902, result.nodes);
+            assertEquals(Perft.divide(game, 3), result.byRootMove);
+            assertEquals(400, result.jobs);
+
+            Game custom = new CustomChessGame();
+            result = coordinator.perft(custom.snapshot(), 3, 1);
+            assertEquals(Perft.count(custom, 3), result.nodes);
+            assertEquals(custom.getLegalMoveCodes().length, result.jobs);
+            assertEquals(0, coordinator.getReassigned());
+        } finally
+        {
+            for(Process process : processes)
+                if(!process.waitFor(5, TimeUnit.SECONDS)) process.destroyForcibly();
+        }
+    }
+
+    @Test
+    public void testTranspositionsSentOnce() throws Exception
+    {
+        try(PerftCoordinator coordinator = new PerftCoordinator())
+        {
+            coordinator.start(0);
+            workerThread(coordinator.getPort());
+            assertTrue(coordinator.awaitWorkers(1, 5_000));
+
+            // Kings and knights only: Nb3 Kd7 Nd4 Ke7 and Nb3 Ke7 Nd4 Kd7 reach the same position
+            Position root = Fen.parse("4k3/8/8/8/8/8/8/N3K2N w - - 0 1");
+            Game game = Game.fromSnapshot(root);
+            PerftCoordinator.PerftResult result = coordinator.perft(root, 5, 4);
+            assertEquals(Perft.count(game, 5), result.nodes);
+            assertEquals(Perft.divide(game, 5), result.byRootMove);
+            assertTrue(result.jobs < Perft.count(game, 4));
+        }
+    }
+
+    @Test
+    public void testScoreRootMoves() throws Exception
+    {
+        try(PerftCoordinator coordinator = new PerftCoordinator())
+        {
+            coordinator.start(0);
+            workerThread(coordinator.getPort());
+            workerThread(coordinator.getPort());
+            assertTrue(coordinator.awaitWorkers(2, 5_000));
+
+            Game game = new ChessGame();
+            Position start = game.snapshot();
+            Map<Integer, Integer> scores = coordinator.scoreRootMoves(start, 2_000, 2);
+            assertEquals(20, scores.size());
+            Search search = new Search(new Evaluator(), null);
+            for(Map.Entry<Integer, Integer> entry : scores.entrySet())
+            {
+                game.runTurn(entry.getKey());
+                assertEquals(-search.search(Game.fromSnapshot(game.snapshot()), 2_000, 2).score,
+                        (int) entry.getValue());
+                game.undoMove();
+            }
+        }
+    }
+
+    @Test
+    public void testLostWorkerJobIsReassigned() throws Exception
+    {
+        try(PerftCoordinator coordinator = new PerftCoordinator())
+        {
+            coordinator.start(0);
+            // Takes the first job it is given and drops the connection without replying
+            Socket rogue = new Socket(InetAddress.getLoopbackAddress(), coordinator.getPort());
+            assertTrue(coordinator.awaitWorkers(1, 5_000));
+            Thread dropper = new Thread(() ->
+            {
+                try(Socket socket = rogue)
+                {
+                    new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF_8)).readLine();
+                } catch (Exception e)
+                {
+                    // Closed either way
+                }
+            });
+            dropper.start();
+            Game game = new ChessGame();
+            Position start = game.snapshot();
+            // The good worker joins once the rogue has a job, so the rogue is sure to get one
+            new Thread(() ->
+            {
+                try
+                {
+                    dropper.join();
+                } catch (InterruptedException e)
+                {
+                    return;
+                }
+                workerThread(coordinator.getPort());
+            }).start();
+            PerftCoordinator.PerftResult result = coordinator.perft(start, 3, 1);
+            assertEquals(8902, result.nodes);
+            assertTrue(coordinator.getReassigned() >= 1);
+        }
+    }
+
+    @Test
+    public void testPoisonJobFailsRun() throws Exception
+    {
+        try(PerftCoordinator coordinator = new PerftCoordinator())
+        {
+            coordinator.start(0);
+            // Each connection takes the job and drops it, like a worker the job crashes
+            Thread dropper = new Thread(() ->
+            {
+                for(int i = 0; i < PerftCoordinator.MAX_ATTEMPTS; i++)
+                {
+                    try(Socket socket = new Socket(InetAddress.getLoopbackAddress(), coordinator.getPort()))
+                    {
+                        new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF_8)).readLine();
+                    } catch (Exception e)
+                    {
+                        return;
+                    }
+                }
+            });
+            dropper.setDaemon(true);
+            dropper.start();
+            // Ka7 is the only legal move, so the run is one job
+            Position root = Fen.parse("k7/8/8/8/8/8/8/1R2K3 b - - 0 1");
+            try
+            {
+                coordinator.scoreRootMoves(root, 1000, 1);
+                fail();
+            } catch (IOException e)
+            {
+                String expected = "lost " + PerftCoordinator.MAX_ATTEMPTS + " workers";
+                assertTrue(e.getMessage(), e.getMessage().endsWith(expected));
+            }
+            assertEquals(PerftCoordinator.MAX_ATTEMPTS - 1, coordinator.getReassigned());
+        }
+    }
+
+    @Test
+    public void testWorkerError() throws Exception
+    {
+        Search search = new Search(new Evaluator(), null);
+        String fen = Fen.write(new ChessGame().snapshot());
+        assertEquals("OK 4 400", PerftWorker.execute(search, "PERFT 4 2 " + fen));
+        assertTrue(PerftWorker.execute(search, "PERFT 5 2 not a fen").startsWith("ERR 5 "));
+        assertTrue(PerftWorker.execute(search, "HELLO").startsWith("ERR "));
+    }
+}
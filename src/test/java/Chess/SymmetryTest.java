@@ -0,0 +1,98 @@
+package Chess;
+
+import Chess.Game.ChessGame;
+import Chess.Game.CustomChessGame;
+import Chess.Game.Game;
+import Chess.Notation.Fen;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static Chess.Symmetry.*;
+import static org.junit.Assert.*;
+
+public class SymmetryTest
+{
+
+    private static int countValid(Position position)
+    {
+        int count = 0;
+        for(int t = 0; t < COUNT; t++) if(isValid(position, t)) count++;
+        return count;
+    }
+
+    @Test
+    public void testValidTransforms()
+    {
+        assertEquals(4, countValid(Fen.parse(Fen.STANDARD_START)));
+        assertEquals(4, countValid(Fen.parse(Fen.CUSTOM_START)));
+        assertEquals(16, countValid(Fen.parse("8/8/8/3k4/8/8/1R6/4K3 w")));
+        assertEquals(8, countValid(Fen.parse("10/10/10/3k6/10/10/1E8/4K5 w")));
+        assertTrue(isValid(Fen.parse(Fen.STANDARD_START), FLIP_Y | SWAP_COLORS));
+        assertFalse(isValid(Fen.parse(Fen.STANDARD_START), FLIP_Y));
+    }
+
+    /**
+     * Checks that mirrored, color flipped and rotated positions share a canonical hash, and different ones do not.
+     */
+    @Test
+    public void testCanonicalHash()
+    {
+        // Mirrored moves from the start
+        ChessGame a3 = new ChessGame("rnbqkbnr/pppppppp/8/8/8/P7/1PPPPPPP/RNBQKBNR b");
+        ChessGame h3 = new ChessGame("rnbkqbnr/pppppppp/8/8/8/7P/PPPPPPP1/RNBKQBNR b");
+        assertEquals(canonicalHash(a3.snapshot()), canonicalHash(h3.snapshot()));
+        assertNotEquals(a3.getHash(), h3.getHash());
+
+        // White after 1. e4 and black after the color flipped move
+        Position e4 = Fen.parse("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b");
+        Position e5 = Fen.parse("rnbqkbnr/pppp1ppp/8/4p3/8/8/PPPPPPPP/RNBQKBNR w");
+        assertEquals(canonicalHash(e4), canonicalHash(e5));
+        assertEquals(canonicalize(e4), canonicalize(e5));
+
+        // Pawnless ending rotated by a quarter turn
+        Position rook = Fen.parse("8/8/8/3k4/8/8/1R6/4K3 w");
+        Position rotated = apply(rook, TRANSPOSE | FLIP_X);
+        assertEquals(canonicalHash(rook), canonicalHash(rotated));
+
+        assertNotEquals(canonicalHash(e4), canonicalHash(Fen.parse("rnbqkbnr/pppppppp/8/8/3P4/8/PPP1PPPP/RNBQKBNR b")));
+    }
+
+    /**
+     * Checks that the legal moves of every transformed position are the transformed legal moves of the original, and
+     * that inverse undoes each transform.
+     */
+    @Test
+    public void testMoveTransforms()
+    {
+        Random random = new Random(39);
+        Game[] games = {new ChessGame(), new CustomChessGame(), new ChessGame("8/8/8/3k4/8/8/1R6/4K3 w"),
+                new CustomChessGame("10/10/10/3k6/10/10/1C8/4K5 b")};
+        for(Game game : games)
+        {
+            for(int ply = 0; ply < 12; ply++)
+            {
+                int[] legal = game.getLegalMoveCodes();
+                if(legal.length == 0) break;
+                game.runTurn(legal[random.nextInt(legal.length)]);
+            }
+            Position position = game.snapshot();
+            int[] moves = game.getLegalMoveCodes();
+            for(int t = 0; t < COUNT; t++)
+            {
+                if(!isValid(position, t)) continue;
+                Position transformed = apply(position, t);
+                assertEquals(position, apply(transformed, inverse(t)));
+
+                int[] expected = new int[moves.length];
+                for(int i = 0; i < expected.length; i++)
+                    expected[i] = transformMove(moves[i], t, game.boardX, game.boardY);
+                Arrays.sort(expected);
+                Game other = Game.fromSnapshot(transformed);
+                assertEquals(transformed.hash, other.getHash());
+                assertArrayEquals(expected, other.getLegalMoveCodes());
+            }
+        }
+    }
+}